@@ -0,0 +1,75 @@
+/**
+ * Read-only access to the edges of every node by their position among the node's edges, as
+ * consumed by OffHeapWorkspace. Unlike GraphView this assumes no flat edge numbering, so Graph
+ * implements it directly over its edge lists, and OffHeapGraph over its off-heap arrays
+ */
+public interface AdjacencyView {
+
+  /**
+   * Returns the number of nodes in the graph
+   *
+   * @return The number of nodes in the graph
+   */
+  int getNumberOfNodes();
+
+  /**
+   * Returns an upper bound on the weight of any edge in the graph
+   *
+   * @return The largest edge weight, 0 if the graph has no edges
+   */
+  int getMaxEdgeWeight();
+
+  /**
+   * Returns the number of outgoing edges of the given node
+   *
+   * @param node The id of the node
+   * @return The number of outgoing edges
+   * @throws IllegalArgumentException if the node is not contained in the graph
+   */
+  int getOutDegree(int node) throws IllegalArgumentException;
+
+  /**
+   * Returns the node the _index_th outgoing edge of _node_ leads to
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getOutDegree(node)
+   * @return The target of the edge
+   */
+  int getOutNeighbor(int node, int index);
+
+  /**
+   * Returns the weight of the _index_th outgoing edge of _node_
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getOutDegree(node)
+   * @return The weight of the edge
+   */
+  int getOutWeight(int node, int index);
+
+  /**
+   * Returns the number of incoming edges of the given node
+   *
+   * @param node The id of the node
+   * @return The number of incoming edges
+   * @throws IllegalArgumentException if the node is not contained in the graph
+   */
+  int getInDegree(int node) throws IllegalArgumentException;
+
+  /**
+   * Returns the node the _index_th incoming edge of _node_ comes from
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getInDegree(node)
+   * @return The source of the edge
+   */
+  int getInNeighbor(int node, int index);
+
+  /**
+   * Returns the weight of the _index_th incoming edge of _node_
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getInDegree(node)
+   * @return The weight of the edge
+   */
+  int getInWeight(int node, int index);
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes shortest path trees from many sources at once. The sources are split across a fork-join
+ * pool, and every worker runs its own dijkstra searches over the shared, read-only compressed
+ * graph, which may be a MappedGraph. Each worker keeps one SearchWorkspace for all of its
+ * searches, so that no per source state is allocated. Finished trees are handed to a consumer
+ * rather than collected, which keeps the memory use independent of the number of sources
+ */
+public class BatchShortestPaths {
+
+  // the number of sources below which a range of sources is not split any further
+  private static final int SPLIT_THRESHOLD = 4;
+  // the largest region of a file mapped at once, whole rows of the matrix are mapped together
+  private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+  private GraphView graph;
+  private ForkJoinPool pool;
+  private ThreadLocal<SearchWorkspace> workspace;
+
+  /**
+   * Receives the shortest path tree of one source. The tree is a view of the workspace of the
+   * worker that computed it, and changes as soon as accept returns, so whatever is to be kept must
+   * be copied out. Consumers are called from several threads at once
+   */
+  public interface TreeConsumer {
+
+    /**
+     * Receives a finished shortest path tree
+     *
+     * @param tree The tree, rooted at the source of the search
+     */
+    void accept(ShortestPathTree tree);
+  }
+
+  /**
+   * Constructs a new BatchShortestPaths on the common pool
+   *
+   * @param graph The graph to be searched
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public BatchShortestPaths(GraphView graph) throws IllegalArgumentException {
+    this(graph, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new BatchShortestPaths
+   *
+   * @param graph The graph to be searched
+   * @param pool  The pool the searches run on
+   * @throws IllegalArgumentException if the graph or pool is null
+   */
+  public BatchShortestPaths(GraphView graph, ForkJoinPool pool)
+      throws IllegalArgumentException {
+    this.graph = InputValidation.ensureNotNull(graph);
+    this.pool = InputValidation.ensureNotNull(pool);
+    this.workspace = new ThreadLocal<SearchWorkspace>() {
+      @Override
+      protected SearchWorkspace initialValue() {
+        return new SearchWorkspace(BatchShortestPaths.this.graph);
+      }
+    };
+  }
+
+  /**
+   * Computes the shortest path tree of every source in parallel and hands each to the consumer.
+   * Returns once every tree has been consumed
+   *
+   * @param sources  The sources of the searches
+   * @param consumer The consumer of the trees, called concurrently from the workers of the pool
+   * @throws IllegalArgumentException if the sources or consumer are null, or a source is not
+   *                                  contained in the graph
+   */
+  public void forEachTree(int[] sources, TreeConsumer consumer) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(sources);
+    InputValidation.ensureNotNull(consumer);
+    int numberOfNodes = this.graph.getNumberOfNodes();
+    for (int source : sources) {
+      InputValidation.ensureWithin(source, 0, numberOfNodes - 1,
+          "Source is not contained the graph");
+    }
+    this.pool.invoke(new Searches(sources, 0, sources.length, consumer));
+  }
+
+  /**
+   * Computes the distance between every pair of nodes
+   *
+   * @return The row major distance matrix, in which the distance from u to v is at index
+   *         u * n + v, with Main.UNREACHABLE for pairs that are not connected
+   * @throws IllegalArgumentException if the matrix does not fit in an array
+   */
+  public int[] allPairs() throws IllegalArgumentException {
+    final int numberOfNodes = this.graph.getNumberOfNodes();
+    if ((long) numberOfNodes * numberOfNodes > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Distance matrix is too large for an array");
+    }
+    final int[] matrix = new int[numberOfNodes * numberOfNodes];
+    this.forEachTree(allNodes(numberOfNodes), new TreeConsumer() {
+      @Override
+      public void accept(ShortestPathTree tree) {
+        tree.copyDistances(matrix, tree.getRoot() * numberOfNodes, numberOfNodes);
+      }
+    });
+    return matrix;
+  }
+
+  /**
+   * Computes the distance between every pair of nodes and writes the matrix to a memory mapped
+   * file, so that matrices larger than the heap can be produced. The file holds the row major
+   * matrix as n * n big endian ints, as DataOutputStream would write them, with Main.UNREACHABLE
+   * for pairs that are not connected. Any existing file is replaced
+   *
+   * @param file The file the matrix is written to
+   * @throws IllegalArgumentException if the file is null or a single row is too large to be mapped
+   * @throws IOException              if the file cannot be written
+   */
+  public void allPairs(Path file) throws IllegalArgumentException, IOException {
+    InputValidation.ensureNotNull(file);
+    final int numberOfNodes = this.graph.getNumberOfNodes();
+    long rowBytes = 4L * numberOfNodes;
+    if (rowBytes > MAX_CHUNK_BYTES) {
+      throw new IllegalArgumentException("Rows of the distance matrix are too large to be mapped");
+    }
+    final int rowsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / Math.max(1, rowBytes));
+    int numberOfChunks = (numberOfNodes + rowsPerChunk - 1) / rowsPerChunk;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer[] mapped = new MappedByteBuffer[numberOfChunks];
+      final IntBuffer[] chunks = new IntBuffer[numberOfChunks];
+      for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+        int rows = Math.min(rowsPerChunk, numberOfNodes - chunk * rowsPerChunk);
+        mapped[chunk] = channel.map(FileChannel.MapMode.READ_WRITE,
+            chunk * rowsPerChunk * rowBytes, rows * rowBytes);
+        chunks[chunk] = mapped[chunk].order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+      }
+
+      final ThreadLocal<int[]> rows = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+          return new int[numberOfNodes];
+        }
+      };
+      this.forEachTree(allNodes(numberOfNodes), new TreeConsumer() {
+        @Override
+        public void accept(ShortestPathTree tree) {
+          int source = tree.getRoot();
+          int[] distances = rows.get();
+          tree.copyDistances(distances, 0, numberOfNodes);
+          // every row is written through its own view, so workers never share a position
+          IntBuffer row = chunks[source / rowsPerChunk].duplicate();
+          row.position((source % rowsPerChunk) * numberOfNodes);
+          row.put(distances, 0, numberOfNodes);
+        }
+      });
+
+      for (MappedByteBuffer buffer : mapped) {
+        buffer.force();
+      }
+    }
+  }
+
+  /**
+   * Returns the nodes 0, 1, ..., numberOfNodes - 1
+   *
+   * @param numberOfNodes The number of nodes
+   * @return Every node of the graph
+   */
+  private static int[] allNodes(int numberOfNodes) {
+    int[] nodes = new int[numberOfNodes];
+    for (int node = 0; node < numberOfNodes; node++) {
+      nodes[node] = node;
+    }
+    return nodes;
+  }
+
+  /**
+   * A range of sources. Ranges larger than the threshold are split in half and searched in
+   * parallel
+   */
+  private class Searches extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private int[] sources;
+    private int begin;
+    private int end;
+    private transient TreeConsumer consumer;
+
+    /**
+     * Constructs a new Searches
+     *
+     * @param sources  The sources of the batch
+     * @param begin    The first index of the range
+     * @param end      The exclusive last index of the range
+     * @param consumer The consumer of the trees
+     */
+    private Searches(int[] sources, int begin, int end, TreeConsumer consumer) {
+      this.sources = sources;
+      this.begin = begin;
+      this.end = end;
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.end - this.begin > SPLIT_THRESHOLD) {
+        int middle = (this.begin + this.end) >>> 1;
+        invokeAll(new Searches(this.sources, this.begin, middle, this.consumer),
+            new Searches(this.sources, middle, this.end, this.consumer));
+        return;
+      }
+
+      SearchWorkspace workspace = BatchShortestPaths.this.workspace.get();
+      for (int index = this.begin; index < this.end; index++) {
+        this.consumer.accept(workspace.shortestPathTree(BatchShortestPaths.this.graph,
+            this.sources[index], false));
+      }
+    }
+  }
+}
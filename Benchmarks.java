@@ -0,0 +1,475 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A benchmark harness for graph construction, the priority queues and the searches, run on the
+ * random, grid and power law graphs of GraphGenerators. Every benchmark is warmed up before it is
+ * measured, and reports the time and the bytes allocated per operation, so that a change to an
+ * engine can be compared against the results of an earlier run.
+ *
+ * Usage: java Benchmarks [number of nodes] [results file] [baseline results file]
+ *
+ * The results are written as tab separated lines of name, nanoseconds and bytes per operation, and
+ * the same file given as a baseline to a later run adds the change of every benchmark
+ */
+public class Benchmarks {
+
+  private static final int WARMUP_RUNS = 3;
+  private static final int MEASURED_RUNS = 5;
+  private static final int SOURCES_PER_RUN = 4;
+  private static final int QUERIES_PER_RUN = 50;
+  private static final int MAX_WEIGHT = 1000;
+
+  // results are folded into this so that the work cannot be optimized away
+  private static volatile long sink;
+
+  /**
+   * One benchmark. setUp runs before every run and is not measured
+   */
+  private abstract static class Benchmark {
+
+    private String name;
+    private long operations;
+
+    /**
+     * Constructs a new Benchmark
+     *
+     * @param name       The name the results are reported under
+     * @param operations The number of operations one run performs
+     */
+    private Benchmark(String name, long operations) {
+      this.name = name;
+      this.operations = operations;
+    }
+
+    void setUp() {
+    }
+
+    abstract long run();
+  }
+
+  /**
+   * Runs every benchmark and prints the results
+   *
+   * @param args The number of nodes, the results file and the baseline results file, all optional
+   * @throws IOException if a results file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    int numberOfNodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    Path output = args.length > 1 ? Paths.get(args[1]) : null;
+    Map<String, double[]> baseline = args.length > 2
+        ? readResults(Paths.get(args[2])) : new HashMap<String, double[]>();
+
+    int side = (int) Math.sqrt(numberOfNodes);
+    List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+    benchmarks.addAll(graphBenchmarks("random", numberOfNodes, new Generator() {
+      @Override
+      public Graph generate() {
+        return GraphGenerators.erdosRenyi(numberOfNodes, 4, MAX_WEIGHT, 1);
+      }
+    }));
+    benchmarks.addAll(graphBenchmarks("grid", side * side, new Generator() {
+      @Override
+      public Graph generate() {
+        return GraphGenerators.grid(side, side, MAX_WEIGHT, 1);
+      }
+    }));
+    benchmarks.addAll(graphBenchmarks("powerlaw", numberOfNodes, new Generator() {
+      @Override
+      public Graph generate() {
+        return GraphGenerators.powerLaw(numberOfNodes, 2, MAX_WEIGHT, 1);
+      }
+    }));
+    Map<String, Double> edgeGaps = new LinkedHashMap<String, Double>();
+    benchmarks.addAll(reorderingBenchmarks(side, edgeGaps));
+    benchmarks.addAll(queueBenchmarks("binary heap", numberOfNodes, 0));
+    benchmarks.addAll(queueBenchmarks("4-ary heap", numberOfNodes, 1));
+    benchmarks.addAll(queueBenchmarks("dial", numberOfNodes, 2));
+    benchmarks.addAll(queueBenchmarks("radix", numberOfNodes, 3));
+
+    StringBuilder results = new StringBuilder();
+    System.out.println(
+        String.format("%-40s %14s %14s %10s", "benchmark", "ns/op", "B/op", "change"));
+    for (Benchmark benchmark : benchmarks) {
+      double[] measured = measure(benchmark);
+      double[] previous = baseline.get(benchmark.name);
+      String change = previous == null
+          ? "" : String.format("%+.1f%%", 100 * (measured[0] / previous[0] - 1));
+      System.out.println(String.format("%-40s %14.1f %14.1f %10s", benchmark.name, measured[0],
+          measured[1], change));
+      results.append(benchmark.name).append('\t').append(measured[0]).append('\t')
+          .append(measured[1]).append('\n');
+    }
+    for (Map.Entry<String, Double> gap : edgeGaps.entrySet()) {
+      System.out.println(String.format("%-40s %14.1f", gap.getKey() + " mean edge id gap",
+          gap.getValue()));
+    }
+    if (output != null) {
+      Files.write(output, results.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Supplies the graph of a family of benchmarks
+   */
+  private interface Generator {
+    Graph generate();
+  }
+
+  /**
+   * Builds the construction and search benchmarks of one graph
+   *
+   * @param family        The name of the kind of graph
+   * @param numberOfNodes The number of nodes of the graph
+   * @param generator     Generates the graph
+   * @return The benchmarks
+   */
+  private static List<Benchmark> graphBenchmarks(String family, int numberOfNodes,
+      Generator generator) {
+    Graph graph = generator.generate();
+    CompressedGraph compressedGraph = CompressedGraph.fromGraph(graph);
+    int numberOfEdges = compressedGraph.getNumberOfEdges();
+    Random random = new Random(2);
+    int[] sources = new int[SOURCES_PER_RUN];
+    for (int index = 0; index < sources.length; index++) {
+      sources[index] = random.nextInt(numberOfNodes);
+    }
+    int[] queries = new int[2 * QUERIES_PER_RUN];
+    for (int index = 0; index < queries.length; index++) {
+      queries[index] = random.nextInt(numberOfNodes);
+    }
+
+    List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+    benchmarks.add(new Benchmark(family + " addEdge", numberOfEdges) {
+      @Override
+      long run() {
+        return generator.generate().getNumberOfNodes();
+      }
+    });
+    benchmarks.add(new Benchmark(family + " compress per edge", numberOfEdges) {
+      @Override
+      long run() {
+        return CompressedGraph.fromGraph(graph).getNumberOfEdges();
+      }
+    });
+    benchmarks.add(new Benchmark(family + " dijkstra", sources.length) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int source : sources) {
+          total += Main.dijkstra(graph, source).getFirst().get(0);
+        }
+        return total;
+      }
+    });
+    benchmarks.add(new Benchmark(family + " dijkstra compressed", sources.length) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int source : sources) {
+          total += Main.dijkstra(compressedGraph, source).getFirst().get(0);
+        }
+        return total;
+      }
+    });
+    SearchWorkspace workspace = new SearchWorkspace(compressedGraph);
+    benchmarks.add(new Benchmark(family + " workspace compressed", sources.length) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int source : sources) {
+          total += workspace.shortestPathTree(compressedGraph, source, false).getSettledNodes();
+        }
+        return total;
+      }
+    });
+    EncodedGraph encodedGraph = EncodedGraph.encode(compressedGraph, false);
+    benchmarks.add(new Benchmark(family + " workspace encoded", sources.length) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int source : sources) {
+          total += workspace.shortestPathTree(encodedGraph, source, false).getSettledNodes();
+        }
+        return total;
+      }
+    });
+    BoundedSearch boundedSearch = new BoundedSearch(compressedGraph);
+    benchmarks.add(new Benchmark(family + " withinRadius " + 4 * MAX_WEIGHT, sources.length) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int source : sources) {
+          total += boundedSearch.withinRadius(source, 4 * MAX_WEIGHT).size();
+        }
+        return total;
+      }
+    });
+    benchmarks.add(new Benchmark(family + " shortestPathTree", sources.length) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int source : sources) {
+          total += Main.shortestPathTree(graph, source, false).getFirst()[0];
+        }
+        return total;
+      }
+    });
+    benchmarks.add(new Benchmark(family + " shortestPath", QUERIES_PER_RUN) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int index = 0; index < queries.length; index += 2) {
+          total += Main.shortestPath(graph, queries[index], queries[index + 1]).getDistance();
+        }
+        return total;
+      }
+    });
+    benchmarks.add(new Benchmark(family + " bidirectionalShortestPath", QUERIES_PER_RUN) {
+      @Override
+      long run() {
+        long total = 0;
+        for (int index = 0; index < queries.length; index += 2) {
+          total += Main.bidirectionalShortestPath(graph, queries[index], queries[index + 1])
+              .getDistance();
+        }
+        return total;
+      }
+    });
+    return benchmarks;
+  }
+
+  /**
+   * Builds the benchmarks of the node orders of NodeReordering. A grid is numbered row by row,
+   * which already has good locality, so its ids are shuffled first, as the ids of a graph imported
+   * from a file often are, and every order is then measured against the shuffled one
+   *
+   * @param side     The number of rows and columns of the grid
+   * @param edgeGaps Filled with the mean edge id gap of every order, the locality the searches see
+   * @return The benchmarks
+   */
+  private static List<Benchmark> reorderingBenchmarks(int side, Map<String, Double> edgeGaps) {
+    CompressedGraph grid = CompressedGraph.fromGraph(GraphGenerators.grid(side, side, MAX_WEIGHT,
+        1));
+    int numberOfNodes = grid.getNumberOfNodes();
+    Random random = new Random(4);
+    int[] shuffle = new int[numberOfNodes];
+    for (int node = 0; node < numberOfNodes; node++) {
+      int position = random.nextInt(node + 1);
+      shuffle[node] = shuffle[position];
+      shuffle[position] = node;
+    }
+    NodeReordering shuffled = NodeReordering.of(grid, shuffle);
+    double[] x = new double[numberOfNodes];
+    double[] y = new double[numberOfNodes];
+    for (int node = 0; node < numberOfNodes; node++) {
+      x[node] = shuffled.toOriginal(node) % side;
+      y[node] = shuffled.toOriginal(node) / side;
+    }
+    CompressedGraph shuffledGrid = shuffled.getGraph();
+    Map<String, NodeReordering> orders = new LinkedHashMap<String, NodeReordering>();
+    orders.put("shuffled", NodeReordering.of(shuffledGrid, identity(numberOfNodes)));
+    orders.put("bfs", NodeReordering.breadthFirst(shuffledGrid));
+    orders.put("rcm", NodeReordering.reverseCuthillMcKee(shuffledGrid));
+    orders.put("hilbert", NodeReordering.hilbert(shuffledGrid, x, y));
+
+    int[] sources = new int[SOURCES_PER_RUN];
+    for (int index = 0; index < sources.length; index++) {
+      sources[index] = random.nextInt(numberOfNodes);
+    }
+    SearchWorkspace workspace = new SearchWorkspace(shuffledGrid);
+    int[] distances = new int[numberOfNodes];
+    List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+    for (Map.Entry<String, NodeReordering> order : orders.entrySet()) {
+      NodeReordering reordering = order.getValue();
+      edgeGaps.put("grid " + order.getKey(), NodeReordering.getMeanEdgeGap(reordering.getGraph()));
+      benchmarks.add(new Benchmark("grid " + order.getKey() + " order search", sources.length) {
+        @Override
+        long run() {
+          long total = 0;
+          for (int source : sources) {
+            reordering.distancesFrom(workspace, source, distances);
+            total += distances[0];
+          }
+          return total;
+        }
+      });
+    }
+    return benchmarks;
+  }
+
+  /**
+   * Returns the order that keeps every node where it is
+   *
+   * @param numberOfNodes The number of nodes
+   * @return The ids from 0 to _numberOfNodes_ - 1
+   */
+  private static int[] identity(int numberOfNodes) {
+    int[] order = new int[numberOfNodes];
+    for (int node = 0; node < numberOfNodes; node++) {
+      order[node] = node;
+    }
+    return order;
+  }
+
+  /**
+   * Builds the insert, decreaseKey and extractMin benchmarks of one kind of queue. The keys lie
+   * within MAX_WEIGHT of each other, as they do in a dijkstra search, so that every queue accepts
+   * them
+   *
+   * @param name     The name of the queue
+   * @param capacity The number of nodes put into the queue
+   * @param kind     0 for a binary heap, 1 for a 4-ary heap, 2 for a Dial queue and 3 for a radix
+   *                 heap
+   * @return The benchmarks
+   */
+  private static List<Benchmark> queueBenchmarks(String name, int capacity, int kind) {
+    Random random = new Random(3);
+    int[] keys = new int[capacity];
+    for (int node = 0; node < capacity; node++) {
+      keys[node] = random.nextInt(MAX_WEIGHT);
+    }
+    NodeQueue[] queue = new NodeQueue[1];
+
+    List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+    benchmarks.add(new Benchmark(name + " insert", capacity) {
+      @Override
+      void setUp() {
+        queue[0] = newQueue(capacity, kind);
+      }
+
+      @Override
+      long run() {
+        for (int node = 0; node < capacity; node++) {
+          queue[0].insert(node, keys[node]);
+        }
+        return queue[0].size();
+      }
+    });
+    benchmarks.add(new Benchmark(name + " decreaseKey", capacity) {
+      @Override
+      void setUp() {
+        queue[0] = newQueue(capacity, kind);
+        for (int node = 0; node < capacity; node++) {
+          queue[0].insert(node, MAX_WEIGHT);
+        }
+      }
+
+      @Override
+      long run() {
+        for (int node = 0; node < capacity; node++) {
+          queue[0].decreaseKey(node, keys[node]);
+        }
+        return queue[0].getMinimumDistance();
+      }
+    });
+    benchmarks.add(new Benchmark(name + " extractMin", capacity) {
+      @Override
+      void setUp() {
+        queue[0] = newQueue(capacity, kind);
+        for (int node = 0; node < capacity; node++) {
+          queue[0].insert(node, keys[node]);
+        }
+      }
+
+      @Override
+      long run() {
+        long total = 0;
+        while (!queue[0].isEmpty()) {
+          total += queue[0].extractMin();
+        }
+        return total;
+      }
+    });
+    return benchmarks;
+  }
+
+  /**
+   * Constructs an empty queue of the given kind
+   *
+   * @param capacity The capacity of the queue
+   * @param kind     The kind of queue, as for queueBenchmarks
+   * @return The queue
+   */
+  private static NodeQueue newQueue(int capacity, int kind) {
+    switch (kind) {
+      case 0:
+        return new PriorityQueue(capacity, 2);
+      case 1:
+        return new PriorityQueue(capacity, 4);
+      case 2:
+        return new DialQueue(capacity, MAX_WEIGHT);
+      default:
+        return new RadixHeap(capacity);
+    }
+  }
+
+  /**
+   * Warms a benchmark up and measures it
+   *
+   * @param benchmark The benchmark
+   * @return The mean nanoseconds and bytes allocated per operation, with -1 bytes if the virtual
+   *         machine cannot count allocations
+   */
+  private static double[] measure(Benchmark benchmark) {
+    for (int run = 0; run < WARMUP_RUNS; run++) {
+      benchmark.setUp();
+      sink += benchmark.run();
+    }
+    long nanos = 0;
+    long bytes = 0;
+    for (int run = 0; run < MEASURED_RUNS; run++) {
+      benchmark.setUp();
+      long bytesBefore = allocatedBytes();
+      long start = System.nanoTime();
+      sink += benchmark.run();
+      nanos += System.nanoTime() - start;
+      bytes += allocatedBytes() - bytesBefore;
+    }
+    double operations = (double) MEASURED_RUNS * benchmark.operations;
+    return new double[] {nanos / operations, allocatedBytes() < 0 ? -1 : bytes / operations};
+  }
+
+  /**
+   * Returns the number of bytes the current thread has allocated so far
+   *
+   * @return The allocated bytes, -1 if the virtual machine cannot count them
+   */
+  private static long allocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+    }
+    return -1;
+  }
+
+  /**
+   * Reads the results of an earlier run
+   *
+   * @param file The results file
+   * @return The nanoseconds and bytes per operation of every benchmark by name
+   * @throws IOException if the file cannot be read
+   */
+  private static Map<String, double[]> readResults(Path file) throws IOException {
+    Map<String, double[]> results = new HashMap<String, double[]>();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      String[] fields = line.split("\t");
+      if (fields.length == 3) {
+        results.put(fields[0],
+            new double[] {Double.parseDouble(fields[1]), Double.parseDouble(fields[2])});
+      }
+    }
+    return results;
+  }
+}
@@ -0,0 +1,460 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Searches that only need the neighborhood of their sources: every node within a radius, the k
+ * nearest of a set of targets, and the isochrone of several sources at once. Main.dijkstra answers
+ * these by computing the whole tree; these searches stop as soon as the frontier passes the bound,
+ * so their cost depends on the size of the region rather than of the graph.
+ *
+ * Distances are longs, so no path is too long to measure, and nodes that were not reached have the
+ * distance INFINITY rather than a sentinel which real distances could exceed. The queue is a binary
+ * heap of (distance, node) entries with lazy deletion: an improved node is pushed again and its
+ * stale entries are skipped when they surface, which needs no position index.
+ *
+ * Results are Regions which hold only the nodes that were settled, in order of distance. Like a
+ * SearchWorkspace, a BoundedSearch is reset between searches by advancing an epoch, so a search
+ * costs nothing beyond the region it explores. It is not thread safe
+ */
+public class BoundedSearch {
+
+  // the distance of a node that was not reached
+  public static final long INFINITY = Long.MAX_VALUE;
+
+  private final GraphView graph;
+  private final long[] distances;
+  private final int[] parents;
+  private final int[] origins; // the source each node was reached from
+  private final int[] stamps; // the epoch in which each node was last reached
+  private final int[] settled; // the epoch in which each node was settled
+  private final int[] targets; // the epoch in which each node was made a target
+  private long[] heapDistances;
+  private int[] heapNodes;
+  private int heapSize;
+  private int[] region; // the nodes the last search put into its result, in order
+  private int regionSize;
+  private int numberSettled;
+  private int epoch;
+
+  /**
+   * The nodes a bounded search settled, in increasing order of distance
+   */
+  public static final class Region {
+
+    private final int[] nodes;
+    private final long[] distances;
+    private final int[] parents;
+    private final int[] origins;
+
+    /**
+     * Constructs a new Region
+     *
+     * @param nodes     The nodes of the region
+     * @param distances The distance of every node
+     * @param parents   The node every node was reached from, itself for a source
+     * @param origins   The source every node was reached from
+     */
+    private Region(int[] nodes, long[] distances, int[] parents, int[] origins) {
+      this.nodes = nodes;
+      this.distances = distances;
+      this.parents = parents;
+      this.origins = origins;
+    }
+
+    /**
+     * Returns the number of nodes in the region
+     *
+     * @return The number of nodes
+     */
+    public int size() {
+      return this.nodes.length;
+    }
+
+    /**
+     * Returns the node at a position of the region
+     *
+     * @param index The position, within [0, size())
+     * @return The node
+     * @throws IllegalArgumentException if there is no such position
+     */
+    public int getNode(int index) throws IllegalArgumentException {
+      return this.nodes[this.ensureContained(index)];
+    }
+
+    /**
+     * Returns the distance of the node at a position of the region
+     *
+     * @param index The position, within [0, size())
+     * @return The distance from the nearest source
+     * @throws IllegalArgumentException if there is no such position
+     */
+    public long getDistance(int index) throws IllegalArgumentException {
+      return this.distances[this.ensureContained(index)];
+    }
+
+    /**
+     * Returns the node on the shortest path just before the node at a position of the region
+     *
+     * @param index The position, within [0, size())
+     * @return The parent, the node itself for a source
+     * @throws IllegalArgumentException if there is no such position
+     */
+    public int getParent(int index) throws IllegalArgumentException {
+      return this.parents[this.ensureContained(index)];
+    }
+
+    /**
+     * Returns the source that is nearest to the node at a position of the region
+     *
+     * @param index The position, within [0, size())
+     * @return The source the shortest path starts at
+     * @throws IllegalArgumentException if there is no such position
+     */
+    public int getOrigin(int index) throws IllegalArgumentException {
+      return this.origins[this.ensureContained(index)];
+    }
+
+    /**
+     * Returns a copy of the nodes of the region
+     *
+     * @return The nodes in increasing order of distance
+     */
+    public int[] getNodes() {
+      return this.nodes.clone();
+    }
+
+    /**
+     * Returns a copy of the distances of the nodes of the region
+     *
+     * @return The distance of every node, in the order of getNodes()
+     */
+    public long[] getDistances() {
+      return this.distances.clone();
+    }
+
+    /**
+     * Ensures a position is within the region
+     *
+     * @param index The position
+     * @return The position
+     * @throws IllegalArgumentException if it is not
+     */
+    private int ensureContained(int index) throws IllegalArgumentException {
+      return InputValidation.ensureWithin(index, 0, this.nodes.length - 1,
+          "Position is not within the region");
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder("[");
+      for (int index = 0; index < this.nodes.length; index++) {
+        builder.append(index == 0 ? "" : ", ").append(this.nodes[index]).append('=')
+            .append(this.distances[index]);
+      }
+      return builder.append(']').toString();
+    }
+  }
+
+  /**
+   * Constructs a new BoundedSearch over the given graph
+   *
+   * @param graph The graph to be searched
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public BoundedSearch(GraphView graph) throws IllegalArgumentException {
+    this.graph = InputValidation.ensureNotNull(graph);
+    int numberOfNodes = graph.getNumberOfNodes();
+    this.distances = new long[numberOfNodes];
+    this.parents = new int[numberOfNodes];
+    this.origins = new int[numberOfNodes];
+    this.stamps = new int[numberOfNodes];
+    this.settled = new int[numberOfNodes];
+    this.targets = new int[numberOfNodes];
+    this.heapDistances = new long[16];
+    this.heapNodes = new int[16];
+    this.region = new int[16];
+    this.epoch = 0;
+  }
+
+  /**
+   * Finds every node whose distance from _source_ is at most _radius_
+   *
+   * @param source The node the search starts at
+   * @param radius The largest distance of a node in the region
+   * @return The nodes within the radius, in increasing order of distance
+   * @throws IllegalArgumentException if the source is not contained in the graph or the radius is
+   *                                  negative
+   */
+  public Region withinRadius(int source, long radius) throws IllegalArgumentException {
+    return this.isochrone(new int[] {source}, radius);
+  }
+
+  /**
+   * Finds every node whose distance from the nearest of _sources_ is at most _radius_, along with
+   * that nearest source. This is a single search seeded with all of the sources, so it costs no
+   * more than one search over the union of their regions
+   *
+   * @param sources The nodes the search starts at
+   * @param radius  The largest distance of a node in the region
+   * @return The nodes within the radius of any source, in increasing order of distance
+   * @throws IllegalArgumentException if the sources are null or empty, a source is not contained
+   *                                  in the graph, or the radius is negative
+   */
+  public Region isochrone(int[] sources, long radius) throws IllegalArgumentException {
+    if (radius < 0) {
+      throw new IllegalArgumentException("Radius cannot be negative");
+    }
+    this.reset();
+    this.search(sources, radius, false, 0);
+    return this.collect();
+  }
+
+  /**
+   * Finds the _k_ targets nearest to _source_, stopping as soon as the k-th is settled
+   *
+   * @param source  The node the search starts at
+   * @param targets The nodes that count as targets
+   * @param k       The number of targets to find
+   * @return The nearest targets, fewer than _k_ if fewer can be reached, in increasing order of
+   *         distance
+   * @throws IllegalArgumentException if the targets are null, k is not positive, or a node is not
+   *                                  contained in the graph
+   */
+  public Region nearest(int source, int[] targets, int k) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(targets);
+    InputValidation.ensureGreaterThan(k, 1, "Number of targets must be positive");
+    for (int target : targets) {
+      InputValidation.ensureWithin(target, 0, this.graph.getNumberOfNodes() - 1,
+          "Target is not contained in the graph");
+    }
+    this.reset();
+    int numberOfTargets = 0;
+    for (int target : targets) {
+      if (this.targets[target] != this.epoch) {
+        this.targets[target] = this.epoch;
+        numberOfTargets += 1;
+      }
+    }
+    this.search(new int[] {source}, INFINITY, true, Math.min(k, numberOfTargets));
+    return this.collect();
+  }
+
+  /**
+   * Builds the path from the nearest source to a node settled by the last search
+   *
+   * @param node The node the path ends at
+   * @return The nodes of the path, empty if the last search did not settle the node
+   * @throws IllegalArgumentException if the node is not contained in the graph
+   */
+  public List<Integer> getPath(int node) throws IllegalArgumentException {
+    InputValidation.ensureWithin(node, 0, this.graph.getNumberOfNodes() - 1,
+        "Node is not contained in the graph");
+    List<Integer> path = new ArrayList<Integer>();
+    if (this.settled[node] != this.epoch) {
+      return path;
+    }
+    for (int current = node; ; current = this.parents[current]) {
+      path.add(current);
+      if (this.parents[current] == current) {
+        break;
+      }
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Returns the number of nodes the last search settled, which includes nodes settled before a
+   * nearest search found enough targets
+   *
+   * @return The number of settled nodes
+   */
+  public int getSettledNodes() {
+    return this.numberSettled;
+  }
+
+  /**
+   * Runs dijkstra's algorithm from every source at once until the frontier passes the radius or
+   * enough targets are settled, putting the settled nodes, or only the settled targets, into the
+   * region
+   *
+   * @param sources         The nodes the search starts at
+   * @param radius          The largest distance to settle
+   * @param targetsOnly     Whether only targets go into the region
+   * @param numberOfTargets The number of targets to stop after, if only targets go into the region
+   * @throws IllegalArgumentException if the sources are null or empty, or a source is not
+   *                                  contained in the graph
+   */
+  private void search(int[] sources, long radius, boolean targetsOnly, int numberOfTargets)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(sources);
+    if (sources.length == 0) {
+      throw new IllegalArgumentException("There must be at least one source");
+    }
+    for (int source : sources) {
+      InputValidation.ensureWithin(source, 0, this.graph.getNumberOfNodes() - 1,
+          "Source is not contained in the graph");
+    }
+    if (targetsOnly && numberOfTargets == 0) {
+      return;
+    }
+    for (int source : sources) {
+      this.reach(source, 0, source, source);
+    }
+
+    while (this.heapSize > 0) {
+      long closestDistance = this.heapDistances[0];
+      int closestNode = this.heapNodes[0];
+      this.pop();
+      // a node improved after it was pushed leaves a stale entry behind, which is skipped here
+      if (this.settled[closestNode] == this.epoch) {
+        continue;
+      }
+      this.settled[closestNode] = this.epoch;
+      this.numberSettled += 1;
+      if (!targetsOnly || this.targets[closestNode] == this.epoch) {
+        this.append(closestNode);
+        if (targetsOnly && this.regionSize == numberOfTargets) {
+          break;
+        }
+      }
+
+      int end = this.graph.getOutgoingEnd(closestNode);
+      for (int edge = this.graph.getOutgoingBegin(closestNode); edge < end; edge++) {
+        int neighbor = this.graph.getTarget(edge);
+        long newDistance = closestDistance + this.graph.getWeight(edge);
+        // a neighbor beyond the radius could never be settled, so it is not even queued
+        if (newDistance > radius || this.getDistance(neighbor) <= newDistance) {
+          continue;
+        }
+        this.reach(neighbor, newDistance, closestNode, this.origins[closestNode]);
+      }
+    }
+  }
+
+  /**
+   * Copies the region of the last search out of the search state
+   *
+   * @return The region
+   */
+  private Region collect() {
+    int[] nodes = Arrays.copyOf(this.region, this.regionSize);
+    long[] regionDistances = new long[nodes.length];
+    int[] regionParents = new int[nodes.length];
+    int[] regionOrigins = new int[nodes.length];
+    for (int index = 0; index < nodes.length; index++) {
+      regionDistances[index] = this.distances[nodes[index]];
+      regionParents[index] = this.parents[nodes[index]];
+      regionOrigins[index] = this.origins[nodes[index]];
+    }
+    return new Region(nodes, regionDistances, regionParents, regionOrigins);
+  }
+
+  /**
+   * Starts a new epoch, which forgets every node reached before
+   */
+  private void reset() {
+    this.epoch += 1;
+    if (this.epoch == Integer.MAX_VALUE) {
+      // only after two billion searches, so clearing every stamp once is cheap enough
+      Arrays.fill(this.stamps, 0);
+      Arrays.fill(this.settled, 0);
+      Arrays.fill(this.targets, 0);
+      this.epoch = 1;
+    }
+    this.heapSize = 0;
+    this.regionSize = 0;
+    this.numberSettled = 0;
+  }
+
+  /**
+   * Records a new tentative distance of a node and queues it
+   *
+   * @param node     The node reached
+   * @param distance Its distance
+   * @param parent   The node it was reached from
+   * @param origin   The source it was reached from
+   */
+  private void reach(int node, long distance, int parent, int origin) {
+    this.distances[node] = distance;
+    this.parents[node] = parent;
+    this.origins[node] = origin;
+    this.stamps[node] = this.epoch;
+    this.push(node, distance);
+  }
+
+  /**
+   * Returns the distance of a node in the current epoch
+   *
+   * @param node The node
+   * @return The distance, INFINITY if the node was not reached
+   */
+  private long getDistance(int node) {
+    return this.stamps[node] == this.epoch ? this.distances[node] : INFINITY;
+  }
+
+  /**
+   * Adds a settled node to the region
+   *
+   * @param node The node
+   */
+  private void append(int node) {
+    if (this.regionSize == this.region.length) {
+      this.region = Arrays.copyOf(this.region, 2 * this.region.length);
+    }
+    this.region[this.regionSize++] = node;
+  }
+
+  /**
+   * Adds an entry to the heap and sifts it up
+   *
+   * @param node     The node
+   * @param distance Its distance
+   */
+  private void push(int node, long distance) {
+    if (this.heapSize == this.heapNodes.length) {
+      this.heapNodes = Arrays.copyOf(this.heapNodes, 2 * this.heapSize);
+      this.heapDistances = Arrays.copyOf(this.heapDistances, 2 * this.heapSize);
+    }
+    int index = this.heapSize++;
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (this.heapDistances[parent] <= distance) {
+        break;
+      }
+      this.heapNodes[index] = this.heapNodes[parent];
+      this.heapDistances[index] = this.heapDistances[parent];
+      index = parent;
+    }
+    this.heapNodes[index] = node;
+    this.heapDistances[index] = distance;
+  }
+
+  /**
+   * Removes the entry at the top of the heap and sifts the last entry down into its place
+   */
+  private void pop() {
+    int node = this.heapNodes[--this.heapSize];
+    long distance = this.heapDistances[this.heapSize];
+    int index = 0;
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= this.heapSize) {
+        break;
+      }
+      if (child + 1 < this.heapSize && this.heapDistances[child + 1] < this.heapDistances[child]) {
+        child += 1;
+      }
+      if (distance <= this.heapDistances[child]) {
+        break;
+      }
+      this.heapNodes[index] = this.heapNodes[child];
+      this.heapDistances[index] = this.heapDistances[child];
+      index = child;
+    }
+    this.heapNodes[index] = node;
+    this.heapDistances[index] = distance;
+  }
+}
@@ -0,0 +1,462 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable representation for a directed graph with positively weighted edges, stored in
+ * compressed sparse row (CSR) form. The outgoing edges of node i occupy the index range
+ * [forwardOffsets[i], forwardOffsets[i + 1]) of the parallel target and weight arrays, and the
+ * incoming edges are stored the same way in the reverse arrays. Edges of a node are sorted by
+ * neighbor id.
+ */
+public class CompressedGraph implements GraphView {
+
+  private final int numberOfNodes;
+  private final int numberOfEdges;
+  private final int maxWeight;
+  private final int[] forwardOffsets;
+  private final int[] forwardTargets;
+  private final int[] forwardWeights;
+  private final int[] reverseOffsets;
+  private final int[] reverseSources;
+  private final int[] reverseWeights;
+
+  /**
+   * Constructs a new CompressedGraph from already laid out CSR arrays. Only the builder calls this
+   *
+   * @param numberOfNodes  The number of nodes in the graph
+   * @param forwardOffsets The offsets into the forward arrays, of length numberOfNodes + 1
+   * @param forwardTargets The target of each outgoing edge
+   * @param forwardWeights The weight of each outgoing edge
+   * @param reverseOffsets The offsets into the reverse arrays, of length numberOfNodes + 1
+   * @param reverseSources The source of each incoming edge
+   * @param reverseWeights The weight of each incoming edge
+   */
+  private CompressedGraph(int numberOfNodes, int[] forwardOffsets, int[] forwardTargets,
+      int[] forwardWeights, int[] reverseOffsets, int[] reverseSources, int[] reverseWeights) {
+    this.numberOfNodes = numberOfNodes;
+    this.numberOfEdges = forwardTargets.length;
+    this.forwardOffsets = forwardOffsets;
+    this.forwardTargets = forwardTargets;
+    this.forwardWeights = forwardWeights;
+    this.reverseOffsets = reverseOffsets;
+    this.reverseSources = reverseSources;
+    this.reverseWeights = reverseWeights;
+    int largestWeight = 0;
+    for (int edge = 0; edge < forwardWeights.length; edge++) {
+      largestWeight = Math.max(largestWeight, forwardWeights[edge]);
+    }
+    this.maxWeight = largestWeight;
+  }
+
+  /**
+   * Freezes the given graph into its compressed form. Later changes to _graph_ are not reflected in
+   * the result
+   *
+   * @param graph The graph to be compressed
+   * @return A compressed copy of the given graph
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public static CompressedGraph fromGraph(Graph graph) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+
+    Builder builder = new Builder(graph.getNumberOfNodes());
+    for (int from = 0; from < graph.getNumberOfNodes(); from++) {
+      List<Pair<Integer, Integer>> outEdges = graph.getOutgoingEdges(from);
+      for (int index = 0; index < outEdges.size(); index++) {
+        Pair<Integer, Integer> currentEdge = outEdges.get(index);
+        builder.addEdge(from, currentEdge.getFirst(), currentEdge.getSecond());
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the number of nodes in the graph
+   *
+   * @return The number of nodes in the graph
+   */
+  public int getNumberOfNodes() {
+    return this.numberOfNodes;
+  }
+
+  /**
+   * Returns the number of edges in the graph
+   *
+   * @return The number of edges in the graph
+   */
+  public int getNumberOfEdges() {
+    return this.numberOfEdges;
+  }
+
+  /**
+   * Returns the largest weight of any edge in the graph
+   *
+   * @return The largest edge weight, 0 if the graph has no edges
+   */
+  public int getMaxWeight() {
+    return this.maxWeight;
+  }
+
+  /**
+   * Returns the index of the first outgoing edge of the given node
+   *
+   * @param node The id of the node
+   * @return The index of the node's first outgoing edge
+   */
+  public int getOutgoingBegin(int node) {
+    return this.forwardOffsets[node];
+  }
+
+  /**
+   * Returns the index one past the last outgoing edge of the given node
+   *
+   * @param node The id of the node
+   * @return The exclusive end index of the node's outgoing edges
+   */
+  public int getOutgoingEnd(int node) {
+    return this.forwardOffsets[node + 1];
+  }
+
+  /**
+   * Returns the node the given outgoing edge leads to
+   *
+   * @param edge The index of an outgoing edge
+   * @return The target node of the edge
+   */
+  public int getTarget(int edge) {
+    return this.forwardTargets[edge];
+  }
+
+  /**
+   * Returns the weight of the given outgoing edge
+   *
+   * @param edge The index of an outgoing edge
+   * @return The weight of the edge
+   */
+  public int getWeight(int edge) {
+    return this.forwardWeights[edge];
+  }
+
+  /**
+   * Determines whether the incoming edges of the graph are available, which they always are
+   *
+   * @return True
+   */
+  public boolean hasIncomingEdges() {
+    return true;
+  }
+
+  /**
+   * Returns the index of the first incoming edge of the given node
+   *
+   * @param node The id of the node
+   * @return The index of the node's first incoming edge
+   */
+  public int getIncomingBegin(int node) {
+    return this.reverseOffsets[node];
+  }
+
+  /**
+   * Returns the index one past the last incoming edge of the given node
+   *
+   * @param node The id of the node
+   * @return The exclusive end index of the node's incoming edges
+   */
+  public int getIncomingEnd(int node) {
+    return this.reverseOffsets[node + 1];
+  }
+
+  /**
+   * Returns the node the given incoming edge comes from
+   *
+   * @param edge The index of an incoming edge
+   * @return The source node of the edge
+   */
+  public int getSource(int edge) {
+    return this.reverseSources[edge];
+  }
+
+  /**
+   * Returns the weight of the given incoming edge
+   *
+   * @param edge The index of an incoming edge
+   * @return The weight of the edge
+   */
+  public int getIncomingWeight(int edge) {
+    return this.reverseWeights[edge];
+  }
+
+  /**
+   * Returns an estimate of the number of bytes held by the arrays of this graph
+   *
+   * @return The approximate heap footprint of the graph in bytes
+   */
+  public long estimateMemoryBytes() {
+    // two offset arrays of n + 1 ints and four edge arrays of m ints
+    return 4L * (2L * (this.numberOfNodes + 1) + 4L * this.numberOfEdges);
+  }
+
+  /**
+   * A builder which collects edges into flat arrays and lays them out in CSR form in one pass
+   */
+  public static class Builder {
+
+    private int numberOfNodes;
+    private int numberOfEdges;
+    private int[] froms;
+    private int[] tos;
+    private int[] weights;
+    private boolean deduplicate;
+
+    /**
+     * Constructs a new Builder for a graph with _numberOfNodes_ nodes and no edges
+     *
+     * @param numberOfNodes The number of nodes in the graph
+     * @throws IllegalArgumentException if the number of nodes is negative
+     */
+    public Builder(int numberOfNodes) throws IllegalArgumentException {
+      this.numberOfNodes = InputValidation
+          .ensureGreaterThan(numberOfNodes, 0, "Number of nodes must be positive");
+      this.numberOfEdges = 0;
+      this.froms = new int[16];
+      this.tos = new int[16];
+      this.weights = new int[16];
+      this.deduplicate = false;
+    }
+
+    /**
+     * Sets whether duplicate edges are merged rather than rejected. Edge lists exported from road
+     * networks and other sources often repeat an edge with different weights, and only the
+     * lightest of them can be on a shortest path, so that is the one which is kept
+     *
+     * @param deduplicate True to keep the lightest of every set of duplicates, False to reject them
+     * @return This builder
+     */
+    public Builder deduplicate(boolean deduplicate) {
+      this.deduplicate = deduplicate;
+      return this;
+    }
+
+    /**
+     * Adds _numberToBeAdded_ many nodes to the graph being built
+     *
+     * @param numberToBeAdded The number of nodes to be added
+     * @return This builder
+     * @throws IllegalArgumentException if the number of nodes to be added is negative
+     */
+    public Builder addNodes(int numberToBeAdded) throws IllegalArgumentException {
+      InputValidation.ensureGreaterThan(numberToBeAdded, 0, "Must add a positive number of nodes");
+      this.numberOfNodes += numberToBeAdded;
+      return this;
+    }
+
+    /**
+     * Adds an edge from _from_ to _to_. Duplicates are only detected when the graph is built
+     *
+     * @param from   The id for the node the edge comes from
+     * @param to     The id for the node the edge goes to
+     * @param weight The weight of edge to be added
+     * @return This builder
+     * @throws IllegalArgumentException if either node is out of bounds or the weight is not
+     *                                  positive
+     */
+    public Builder addEdge(int from, int to, int weight) throws IllegalArgumentException {
+      InputValidation.ensureWithin(from, 0, this.numberOfNodes - 1,
+          "From node cannot be less than zero or greater than the number of nodes - 1");
+      InputValidation.ensureWithin(to, 0, this.numberOfNodes - 1,
+          "To node cannot be less than 0 or greater than the number of nodes - 1");
+      InputValidation.ensureGreaterThan(weight, 0, "Edges must be positively weighted");
+
+      this.ensureCapacity(this.numberOfEdges + 1);
+      this.froms[this.numberOfEdges] = from;
+      this.tos[this.numberOfEdges] = to;
+      this.weights[this.numberOfEdges] = weight;
+      this.numberOfEdges += 1;
+      return this;
+    }
+
+    /**
+     * Adds the first _count_ edges of the given parallel arrays, growing the builder at most once
+     *
+     * @param froms   The node every edge comes from
+     * @param tos     The node every edge goes to
+     * @param weights The weight of every edge
+     * @param count   The number of edges to be added
+     * @return This builder
+     * @throws IllegalArgumentException if an array is null or shorter than _count_, a node is out
+     *                                  of bounds or a weight is not positive
+     */
+    public Builder addEdges(int[] froms, int[] tos, int[] weights, int count)
+        throws IllegalArgumentException {
+      InputValidation.ensureNotNull(froms);
+      InputValidation.ensureNotNull(tos);
+      InputValidation.ensureNotNull(weights);
+      InputValidation.ensureWithin(count, 0,
+          Math.min(froms.length, Math.min(tos.length, weights.length)),
+          "Count cannot exceed the length of the arrays");
+      this.ensureCapacity(this.numberOfEdges + count);
+      for (int index = 0; index < count; index++) {
+        this.addEdge(froms[index], tos[index], weights[index]);
+      }
+      return this;
+    }
+
+    /**
+     * Grows the edge arrays so that they hold at least _capacity_ edges
+     *
+     * @param capacity The number of edges needed
+     */
+    private void ensureCapacity(int capacity) {
+      if (capacity > this.froms.length) {
+        int newCapacity = Math.max(capacity, this.froms.length * 2);
+        this.froms = Arrays.copyOf(this.froms, newCapacity);
+        this.tos = Arrays.copyOf(this.tos, newCapacity);
+        this.weights = Arrays.copyOf(this.weights, newCapacity);
+      }
+    }
+
+    /**
+     * Lays the collected edges out in CSR form
+     *
+     * @return The compressed graph
+     * @throws IllegalArgumentException if a duplicate edge was added and duplicates are not merged
+     */
+    public CompressedGraph build() throws IllegalArgumentException {
+      int[] forwardOffsets = new int[this.numberOfNodes + 1];
+      int[] forwardTargets = new int[this.numberOfEdges];
+      int[] forwardWeights = new int[this.numberOfEdges];
+      scatter(this.froms, this.tos, forwardOffsets, forwardTargets, forwardWeights);
+
+      if (this.deduplicate) {
+        int numberOfEdges = this.merge(forwardOffsets, forwardTargets, forwardWeights);
+        forwardTargets = Arrays.copyOf(forwardTargets, numberOfEdges);
+        forwardWeights = Arrays.copyOf(forwardWeights, numberOfEdges);
+        // the reverse arrays are scattered from the merged edges, which hold no duplicates
+        this.numberOfEdges = numberOfEdges;
+        for (int node = 0; node < this.numberOfNodes; node++) {
+          for (int edge = forwardOffsets[node]; edge < forwardOffsets[node + 1]; edge++) {
+            this.froms[edge] = node;
+          }
+        }
+        System.arraycopy(forwardTargets, 0, this.tos, 0, numberOfEdges);
+        System.arraycopy(forwardWeights, 0, this.weights, 0, numberOfEdges);
+      }
+
+      int[] reverseOffsets = new int[this.numberOfNodes + 1];
+      int[] reverseSources = new int[this.numberOfEdges];
+      int[] reverseWeights = new int[this.numberOfEdges];
+      scatter(this.tos, this.froms, reverseOffsets, reverseSources, reverseWeights);
+
+      return new CompressedGraph(this.numberOfNodes, forwardOffsets, forwardTargets,
+          forwardWeights, reverseOffsets, reverseSources, reverseWeights);
+    }
+
+    /**
+     * Counting sorts the collected edges by _keys_ into the given offset, neighbor and weight
+     * arrays, then sorts every row by neighbor id and rejects duplicates unless they are merged
+     * later
+     *
+     * @param keys       The node each edge is grouped under
+     * @param neighbors  The node on the other end of each edge
+     * @param offsets    The offsets array to fill, of length numberOfNodes + 1
+     * @param rowNodes   The neighbor array to fill
+     * @param rowWeights The weight array to fill
+     * @throws IllegalArgumentException if a duplicate edge was added
+     */
+    private void scatter(int[] keys, int[] neighbors, int[] offsets, int[] rowNodes,
+        int[] rowWeights) throws IllegalArgumentException {
+      for (int edge = 0; edge < this.numberOfEdges; edge++) {
+        offsets[keys[edge] + 1] += 1;
+      }
+      for (int node = 0; node < this.numberOfNodes; node++) {
+        offsets[node + 1] += offsets[node];
+      }
+
+      int[] next = Arrays.copyOf(offsets, this.numberOfNodes);
+      for (int edge = 0; edge < this.numberOfEdges; edge++) {
+        int slot = next[keys[edge]]++;
+        rowNodes[slot] = neighbors[edge];
+        rowWeights[slot] = this.weights[edge];
+      }
+
+      for (int node = 0; node < this.numberOfNodes; node++) {
+        sortRow(rowNodes, rowWeights, offsets[node], offsets[node + 1]);
+        if (this.deduplicate) {
+          continue;
+        }
+        for (int edge = offsets[node] + 1; edge < offsets[node + 1]; edge++) {
+          if (rowNodes[edge] == rowNodes[edge - 1]) {
+            throw new IllegalArgumentException("Duplicate edges are not allowed");
+          }
+        }
+      }
+    }
+
+    /**
+     * Collapses every run of edges to the same neighbor in the sorted rows into its lightest edge,
+     * moving the rows down over the gaps and rewriting the offsets
+     *
+     * @param offsets    The offsets of the rows, of length numberOfNodes + 1
+     * @param rowNodes   The sorted neighbor array
+     * @param rowWeights The weight array
+     * @return The number of edges left
+     */
+    private int merge(int[] offsets, int[] rowNodes, int[] rowWeights) {
+      int write = 0;
+      for (int node = 0; node < this.numberOfNodes; node++) {
+        int begin = offsets[node];
+        int end = offsets[node + 1];
+        offsets[node] = write;
+        for (int edge = begin; edge < end; edge++) {
+          if (write > offsets[node] && rowNodes[write - 1] == rowNodes[edge]) {
+            rowWeights[write - 1] = Math.min(rowWeights[write - 1], rowWeights[edge]);
+          } else {
+            rowNodes[write] = rowNodes[edge];
+            rowWeights[write] = rowWeights[edge];
+            write += 1;
+          }
+        }
+      }
+      offsets[this.numberOfNodes] = write;
+      return write;
+    }
+
+    /**
+     * Sorts one row of parallel neighbor and weight arrays by neighbor id. Short rows are insertion
+     * sorted in place, long rows are packed into longs so that high degree nodes stay O(d log d)
+     *
+     * @param rowNodes   The neighbor array
+     * @param rowWeights The weight array
+     * @param begin      The first index of the row
+     * @param end        The exclusive last index of the row
+     */
+    private static void sortRow(int[] rowNodes, int[] rowWeights, int begin, int end) {
+      if (end - begin > 32) {
+        long[] packed = new long[end - begin];
+        for (int index = begin; index < end; index++) {
+          packed[index - begin] =
+              ((long) rowNodes[index] << 32) | (rowWeights[index] & 0xffffffffL);
+        }
+        Arrays.sort(packed);
+        for (int index = begin; index < end; index++) {
+          rowNodes[index] = (int) (packed[index - begin] >>> 32);
+          rowWeights[index] = (int) packed[index - begin];
+        }
+        return;
+      }
+
+      for (int index = begin + 1; index < end; index++) {
+        int currentNode = rowNodes[index];
+        int currentWeight = rowWeights[index];
+        int position = index - 1;
+        while (position >= begin && rowNodes[position] > currentNode) {
+          rowNodes[position + 1] = rowNodes[position];
+          rowWeights[position + 1] = rowWeights[position];
+          position -= 1;
+        }
+        rowNodes[position + 1] = currentNode;
+        rowWeights[position + 1] = currentWeight;
+      }
+    }
+  }
+}
@@ -0,0 +1,796 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Represents a contraction hierarchy over a graph. Preprocessing contracts the nodes one at a time
+ * in order of importance, and whenever removing a node would lengthen a shortest path between two
+ * of its remaining neighbors, a shortcut edge that skips the node is added. Afterwards every
+ * shortest path can be found by two searches that only climb towards more important nodes: one
+ * forward from the source and one backward from the target. These searches settle a few hundred
+ * nodes even on continental graphs
+ */
+public class ContractionHierarchy {
+
+  // the number of nodes a witness search may settle before it gives up and a shortcut is added
+  private static final int WITNESS_SETTLE_LIMIT = 500;
+  // a smaller limit for the witness searches that only estimate a priority
+  private static final int ESTIMATE_SETTLE_LIMIT = 50;
+  // how much more the edge difference counts than the contracted neighbors in a priority
+  private static final int EDGE_DIFFERENCE_WEIGHT = 2;
+
+  private int numberOfNodes;
+  private int[] rank; // the position of every node in the contraction order
+  private int numberOfShortcuts;
+  private long preprocessingMillis;
+
+  // edges to more important nodes, grouped by their source
+  private int[] upwardOffsets;
+  private int[] upwardTargets;
+  private int[] upwardWeights;
+  private int[] upwardMiddles; // the node a shortcut skips, -1 for an original edge
+
+  // edges from more important nodes, grouped by their target
+  private int[] downwardOffsets;
+  private int[] downwardSources;
+  private int[] downwardWeights;
+  private int[] downwardMiddles;
+
+  /**
+   * Constructs a new ContractionHierarchy. Only build calls this
+   *
+   * @param numberOfNodes The number of nodes in the graph
+   */
+  private ContractionHierarchy(int numberOfNodes) {
+    this.numberOfNodes = numberOfNodes;
+    this.rank = new int[numberOfNodes];
+  }
+
+  /**
+   * Contracts every node of the given graph. The next node to be contracted is the one with the
+   * smallest priority, which is a weighted sum of its edge difference (the shortcuts its
+   * contraction would add minus the edges it would remove) and the number of its neighbors that
+   * are already contracted.
+   * Priorities are updated lazily when a node reaches the front of the queue, and eagerly for the
+   * neighbors of every contracted node
+   *
+   * @param graph The graph to be preprocessed
+   * @return The contraction hierarchy of the graph
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public static ContractionHierarchy build(Graph graph) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    long startTime = System.nanoTime();
+    int numberOfNodes = graph.getNumberOfNodes();
+    ContractionHierarchy hierarchy = new ContractionHierarchy(numberOfNodes);
+    Contraction contraction = new Contraction(graph);
+
+    PriorityQueue order = new PriorityQueue(numberOfNodes);
+    for (int node = 0; node < numberOfNodes; node++) {
+      order.insert(node, contraction.priority(node));
+    }
+
+    int nextRank = 0;
+    while (!order.isEmpty()) {
+      int node = order.extractMin();
+      int priority = contraction.priority(node);
+      if (!order.isEmpty() && priority > order.getMinimumDistance()) {
+        // the priority was stale, so the node has to wait its turn again
+        order.insert(node, priority);
+        continue;
+      }
+
+      hierarchy.rank[node] = nextRank;
+      nextRank += 1;
+      int[] neighbors = contraction.contract(node);
+      for (int index = 0; index < neighbors.length; index++) {
+        int neighbor = neighbors[index];
+        int newPriority = contraction.priority(neighbor);
+        if (newPriority < order.lookup(neighbor)) {
+          order.decreaseKey(neighbor, newPriority);
+        } else {
+          order.increaseKey(neighbor, newPriority);
+        }
+      }
+    }
+
+    hierarchy.numberOfShortcuts = contraction.numberOfShortcuts;
+    hierarchy.layOut(contraction);
+    hierarchy.preprocessingMillis = (System.nanoTime() - startTime) / 1000000;
+    return hierarchy;
+  }
+
+  /**
+   * Returns the number of shortcuts preprocessing added
+   *
+   * @return The number of shortcuts
+   */
+  public int getNumberOfShortcuts() {
+    return this.numberOfShortcuts;
+  }
+
+  /**
+   * Returns how long preprocessing took
+   *
+   * @return The preprocessing time in milliseconds
+   */
+  public long getPreprocessingMillis() {
+    return this.preprocessingMillis;
+  }
+
+  /**
+   * Returns an estimate of the number of bytes held by the arrays of this hierarchy
+   *
+   * @return The approximate heap footprint of the hierarchy in bytes
+   */
+  public long estimateMemoryBytes() {
+    long nodeArrays = 3L * (this.numberOfNodes + 1);
+    long edgeArrays = 3L * this.upwardTargets.length + 3L * this.downwardSources.length;
+    return 4L * (nodeArrays + edgeArrays);
+  }
+
+  /**
+   * Returns the position of the given node in the contraction order
+   *
+   * @param node The id of the node
+   * @return The rank of the node, higher is more important
+   */
+  public int getRank(int node) {
+    return this.rank[node];
+  }
+
+  /**
+   * Returns the number of nodes in the graph
+   *
+   * @return The number of nodes in the graph
+   */
+  public int getNumberOfNodes() {
+    return this.numberOfNodes;
+  }
+
+  /**
+   * Returns the index of the first edge from _node_ to a more important node
+   *
+   * @param node The id of the node
+   * @return The index of the node's first upward edge
+   */
+  int getUpwardBegin(int node) {
+    return this.upwardOffsets[node];
+  }
+
+  /**
+   * Returns the index one past the last edge from _node_ to a more important node
+   *
+   * @param node The id of the node
+   * @return The exclusive end index of the node's upward edges
+   */
+  int getUpwardEnd(int node) {
+    return this.upwardOffsets[node + 1];
+  }
+
+  /**
+   * Returns the node an upward edge leads to
+   *
+   * @param edge The index of an upward edge
+   * @return The target of the edge
+   */
+  int getUpwardTarget(int edge) {
+    return this.upwardTargets[edge];
+  }
+
+  /**
+   * Returns the weight of an upward edge
+   *
+   * @param edge The index of an upward edge
+   * @return The weight of the edge
+   */
+  int getUpwardWeight(int edge) {
+    return this.upwardWeights[edge];
+  }
+
+  /**
+   * Returns the index of the first edge into _node_ from a more important node
+   *
+   * @param node The id of the node
+   * @return The index of the node's first downward edge
+   */
+  int getDownwardBegin(int node) {
+    return this.downwardOffsets[node];
+  }
+
+  /**
+   * Returns the index one past the last edge into _node_ from a more important node
+   *
+   * @param node The id of the node
+   * @return The exclusive end index of the node's downward edges
+   */
+  int getDownwardEnd(int node) {
+    return this.downwardOffsets[node + 1];
+  }
+
+  /**
+   * Returns the node a downward edge comes from
+   *
+   * @param edge The index of a downward edge
+   * @return The source of the edge
+   */
+  int getDownwardSource(int edge) {
+    return this.downwardSources[edge];
+  }
+
+  /**
+   * Returns the weight of a downward edge
+   *
+   * @param edge The index of a downward edge
+   * @return The weight of the edge
+   */
+  int getDownwardWeight(int edge) {
+    return this.downwardWeights[edge];
+  }
+
+  /**
+   * Creates the reusable state for queries on this hierarchy. A query may be reused for any number
+   * of searches, but only by one thread at a time
+   *
+   * @return A new query
+   */
+  public Query newQuery() {
+    return new Query();
+  }
+
+  /**
+   * Finds the shortest path from _source_ to _target_ with a fresh query. Repeated queries should
+   * reuse one from newQuery instead, since creating a query costs time linear in the graph
+   *
+   * @param source The node the path starts at
+   * @param target The node the path ends at
+   * @return The distance, the path in original edges and the number of settled nodes
+   * @throws IllegalArgumentException if either node is not contained in the graph
+   */
+  public PathResult shortestPath(int source, int target) throws IllegalArgumentException {
+    return this.newQuery().shortestPath(source, target);
+  }
+
+  /**
+   * Groups the edges collected during contraction into the upward and downward arrays
+   *
+   * @param contraction The finished contraction
+   */
+  private void layOut(Contraction contraction) {
+    int upwardCount = contraction.upwardFroms.size();
+    this.upwardOffsets = new int[this.numberOfNodes + 1];
+    this.upwardTargets = new int[upwardCount];
+    this.upwardWeights = new int[upwardCount];
+    this.upwardMiddles = new int[upwardCount];
+    group(contraction.upwardFroms, contraction.upwardTos, contraction.upwardWeights,
+        contraction.upwardMiddles, this.upwardOffsets, this.upwardTargets, this.upwardWeights,
+        this.upwardMiddles);
+
+    int downwardCount = contraction.downwardTos.size();
+    this.downwardOffsets = new int[this.numberOfNodes + 1];
+    this.downwardSources = new int[downwardCount];
+    this.downwardWeights = new int[downwardCount];
+    this.downwardMiddles = new int[downwardCount];
+    group(contraction.downwardTos, contraction.downwardFroms, contraction.downwardWeights,
+        contraction.downwardMiddles, this.downwardOffsets, this.downwardSources,
+        this.downwardWeights, this.downwardMiddles);
+  }
+
+  /**
+   * Counting sorts edges by their key node into offset form
+   *
+   * @param keys         The node every edge is grouped under
+   * @param neighbors    The node on the other end of every edge
+   * @param weights      The weight of every edge
+   * @param middles      The middle node of every edge
+   * @param offsets      The offsets array to fill
+   * @param rowNeighbors The neighbor array to fill
+   * @param rowWeights   The weight array to fill
+   * @param rowMiddles   The middle array to fill
+   */
+  private static void group(IntList keys, IntList neighbors, IntList weights, IntList middles,
+      int[] offsets, int[] rowNeighbors, int[] rowWeights, int[] rowMiddles) {
+    for (int edge = 0; edge < keys.size(); edge++) {
+      offsets[keys.get(edge) + 1] += 1;
+    }
+    for (int node = 0; node + 1 < offsets.length; node++) {
+      offsets[node + 1] += offsets[node];
+    }
+    int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+    for (int edge = 0; edge < keys.size(); edge++) {
+      int slot = next[keys.get(edge)]++;
+      rowNeighbors[slot] = neighbors.get(edge);
+      rowWeights[slot] = weights.get(edge);
+      rowMiddles[slot] = middles.get(edge);
+    }
+  }
+
+  /**
+   * Replaces the edge from _from_ to _to_ with the original edges it stands for, and appends every
+   * node after _from_ to the path
+   *
+   * @param from   The source of the edge
+   * @param to     The target of the edge
+   * @param middle The node the edge skips, -1 for an original edge
+   * @param path   The path to be appended to
+   */
+  private void unpack(int from, int to, int middle, List<Integer> path) {
+    // edges still to be unpacked, from left to right, as (from, to, middle) triples
+    Deque<int[]> stack = new ArrayDeque<int[]>();
+    stack.push(new int[] {from, to, middle});
+    while (!stack.isEmpty()) {
+      int[] edge = stack.pop();
+      if (edge[2] == -1) {
+        path.add(edge[1]);
+        continue;
+      }
+      // the middle node was contracted before both ends, so the first half is a downward edge
+      // into it and the second half is an upward edge out of it
+      int skipped = edge[2];
+      int secondMiddle = -1;
+      for (int index = this.upwardOffsets[skipped]; index < this.upwardOffsets[skipped + 1];
+          index++) {
+        if (this.upwardTargets[index] == edge[1]) {
+          secondMiddle = this.upwardMiddles[index];
+          break;
+        }
+      }
+      int firstMiddle = -1;
+      for (int index = this.downwardOffsets[skipped]; index < this.downwardOffsets[skipped + 1];
+          index++) {
+        if (this.downwardSources[index] == edge[0]) {
+          firstMiddle = this.downwardMiddles[index];
+          break;
+        }
+      }
+      stack.push(new int[] {skipped, edge[1], secondMiddle});
+      stack.push(new int[] {edge[0], skipped, firstMiddle});
+    }
+  }
+
+  /**
+   * The reusable state of a bidirectional upward search. Distances are only valid for nodes whose
+   * stamp equals the current query number, so starting a new query takes constant time
+   */
+  public class Query {
+
+    // index 0 is the forward search, index 1 the backward search
+    private int[][] distances;
+    private int[][] parent;
+    private int[][] parentEdge;
+    private int[][] stamps;
+    private PriorityQueue[] queues;
+    private int currentStamp;
+
+    /**
+     * Constructs a new Query sized for the hierarchy
+     */
+    private Query() {
+      int numberOfNodes = ContractionHierarchy.this.numberOfNodes;
+      this.distances = new int[2][numberOfNodes];
+      this.parent = new int[2][numberOfNodes];
+      this.parentEdge = new int[2][numberOfNodes];
+      this.stamps = new int[2][numberOfNodes];
+      this.queues = new PriorityQueue[] {new PriorityQueue(numberOfNodes),
+          new PriorityQueue(numberOfNodes)};
+      this.currentStamp = 0;
+    }
+
+    /**
+     * Finds the shortest path from _source_ to _target_. Each side stops once its smallest key is
+     * at least the best distance found through a node both sides reached
+     *
+     * @param source The node the path starts at
+     * @param target The node the path ends at
+     * @return The distance, the path in original edges and the number of settled nodes
+     * @throws IllegalArgumentException if either node is not contained in the graph
+     */
+    public PathResult shortestPath(int source, int target) throws IllegalArgumentException {
+      ContractionHierarchy hierarchy = ContractionHierarchy.this;
+      InputValidation.ensureWithin(source, 0, hierarchy.numberOfNodes - 1,
+          "Source is not contained the graph");
+      InputValidation.ensureWithin(target, 0, hierarchy.numberOfNodes - 1,
+          "Target is not contained the graph");
+
+      this.currentStamp += 1;
+      if (this.currentStamp == Integer.MAX_VALUE) {
+        Arrays.fill(this.stamps[0], 0);
+        Arrays.fill(this.stamps[1], 0);
+        this.currentStamp = 1;
+      }
+      this.reach(0, source, 0, source, -1);
+      this.reach(1, target, 0, target, -1);
+
+      long bestDistance = Long.MAX_VALUE;
+      int meetingNode = -1;
+      int settledNodes = 0;
+      while (true) {
+        boolean forwardDone = this.queues[0].isEmpty()
+            || this.queues[0].getMinimumDistance() >= bestDistance;
+        boolean backwardDone = this.queues[1].isEmpty()
+            || this.queues[1].getMinimumDistance() >= bestDistance;
+        if (forwardDone && backwardDone) {
+          break;
+        }
+        int side = backwardDone || (!forwardDone
+            && this.queues[0].getMinimumDistance() <= this.queues[1].getMinimumDistance()) ? 0 : 1;
+        int closestDistance = this.queues[side].getMinimumDistance();
+        int closestNode = this.queues[side].extractMin();
+        settledNodes += 1;
+
+        if (this.stamps[1 - side][closestNode] == this.currentStamp
+            && (long) closestDistance + this.distances[1 - side][closestNode] < bestDistance) {
+          bestDistance = (long) closestDistance + this.distances[1 - side][closestNode];
+          meetingNode = closestNode;
+        }
+
+        int[] offsets = side == 0 ? hierarchy.upwardOffsets : hierarchy.downwardOffsets;
+        int[] neighbors = side == 0 ? hierarchy.upwardTargets : hierarchy.downwardSources;
+        int[] weights = side == 0 ? hierarchy.upwardWeights : hierarchy.downwardWeights;
+        for (int edge = offsets[closestNode]; edge < offsets[closestNode + 1]; edge++) {
+          this.reach(side, neighbors[edge], closestDistance + weights[edge], closestNode, edge);
+        }
+      }
+      this.queues[0].clear();
+      this.queues[1].clear();
+
+      if (meetingNode == -1) {
+        return PathResult.unreachable(settledNodes);
+      }
+      return new PathResult((int) bestDistance, this.unpackPath(source, target, meetingNode),
+          settledNodes);
+    }
+
+    /**
+     * Records that _node_ was reached by the given side with _distance_, if that is an improvement
+     *
+     * @param side     0 for the forward search, 1 for the backward search
+     * @param node     The node reached
+     * @param distance The distance it was reached with
+     * @param from     The node it was reached from
+     * @param edge     The index of the edge it was reached over, -1 for the root
+     */
+    private void reach(int side, int node, int distance, int from, int edge) {
+      if (this.stamps[side][node] != this.currentStamp) {
+        this.stamps[side][node] = this.currentStamp;
+        this.queues[side].insert(node, distance);
+      } else if (distance < this.distances[side][node] && this.queues[side].contains(node)) {
+        this.queues[side].decreaseKey(node, distance);
+      } else {
+        return;
+      }
+      this.distances[side][node] = distance;
+      this.parent[side][node] = from;
+      this.parentEdge[side][node] = edge;
+    }
+
+    /**
+     * Follows the parent edges of both searches from the meeting node and unpacks every shortcut
+     *
+     * @param source      The source of the query
+     * @param target      The target of the query
+     * @param meetingNode The node where the searches met
+     * @return The path in original edges
+     */
+    private List<Integer> unpackPath(int source, int target, int meetingNode) {
+      ContractionHierarchy hierarchy = ContractionHierarchy.this;
+      // collect the upward edges from the source to the meeting node
+      List<Integer> forwardEdges = new ArrayList<Integer>();
+      for (int node = meetingNode; node != source; node = this.parent[0][node]) {
+        forwardEdges.add(this.parentEdge[0][node]);
+      }
+
+      List<Integer> path = new ArrayList<Integer>();
+      path.add(source);
+      int current = source;
+      for (int index = forwardEdges.size() - 1; index >= 0; index--) {
+        int edge = forwardEdges.get(index);
+        hierarchy.unpack(current, hierarchy.upwardTargets[edge], hierarchy.upwardMiddles[edge],
+            path);
+        current = hierarchy.upwardTargets[edge];
+      }
+      // the backward parents point towards the target
+      for (int node = meetingNode; node != target; node = this.parent[1][node]) {
+        int edge = this.parentEdge[1][node];
+        hierarchy.unpack(node, this.parent[1][node], hierarchy.downwardMiddles[edge], path);
+      }
+      return path;
+    }
+  }
+
+  /**
+   * The mutable graph that shrinks while nodes are contracted, together with the edges it hands
+   * over to the finished hierarchy
+   */
+  private static class Contraction {
+
+    private int numberOfNodes;
+    private EdgeList[] outgoing;
+    private EdgeList[] incoming;
+    private boolean[] contracted;
+    private int[] contractedNeighbors;
+    private int numberOfShortcuts;
+
+    private IntList upwardFroms = new IntList();
+    private IntList upwardTos = new IntList();
+    private IntList upwardWeights = new IntList();
+    private IntList upwardMiddles = new IntList();
+    private IntList downwardFroms = new IntList();
+    private IntList downwardTos = new IntList();
+    private IntList downwardWeights = new IntList();
+    private IntList downwardMiddles = new IntList();
+
+    // witness search state, reset through the stamps
+    private int[] witnessDistances;
+    private int[] witnessStamps;
+    private int witnessStamp;
+    private PriorityQueue witnessQueue;
+
+    /**
+     * Copies the edges of the given graph
+     *
+     * @param graph The graph to be contracted
+     */
+    private Contraction(Graph graph) {
+      this.numberOfNodes = graph.getNumberOfNodes();
+      this.outgoing = new EdgeList[this.numberOfNodes];
+      this.incoming = new EdgeList[this.numberOfNodes];
+      for (int node = 0; node < this.numberOfNodes; node++) {
+        this.outgoing[node] = new EdgeList();
+        this.incoming[node] = new EdgeList();
+      }
+      for (int from = 0; from < this.numberOfNodes; from++) {
+        List<Pair<Integer, Integer>> outEdges = graph.getOutgoingEdges(from);
+        for (int index = 0; index < outEdges.size(); index++) {
+          int to = outEdges.get(index).getFirst();
+          int weight = outEdges.get(index).getSecond();
+          if (to != from) {
+            this.outgoing[from].add(to, weight, -1);
+            this.incoming[to].add(from, weight, -1);
+          }
+        }
+      }
+      this.contracted = new boolean[this.numberOfNodes];
+      this.contractedNeighbors = new int[this.numberOfNodes];
+      this.witnessDistances = new int[this.numberOfNodes];
+      this.witnessStamps = new int[this.numberOfNodes];
+      this.witnessStamp = 0;
+      this.witnessQueue = new PriorityQueue(this.numberOfNodes);
+    }
+
+    /**
+     * Computes the contraction priority of the given node
+     *
+     * @param node The node whose priority is desired
+     * @return The weighted edge difference plus the number of contracted neighbors
+     */
+    private int priority(int node) {
+      int shortcuts = this.addShortcuts(node, false);
+      int removedEdges = this.outgoing[node].size + this.incoming[node].size;
+      return EDGE_DIFFERENCE_WEIGHT * (shortcuts - removedEdges) + this.contractedNeighbors[node];
+    }
+
+    /**
+     * Contracts the given node: adds the shortcuts it needs, hands its remaining edges over to the
+     * hierarchy and removes it from the graph
+     *
+     * @param node The node to be contracted
+     * @return The neighbors whose priority has to be updated
+     */
+    private int[] contract(int node) {
+      this.addShortcuts(node, true);
+
+      EdgeList outEdges = this.outgoing[node];
+      EdgeList inEdges = this.incoming[node];
+      IntList neighbors = new IntList();
+      for (int index = 0; index < outEdges.size; index++) {
+        int to = outEdges.nodes[index];
+        this.upwardFroms.add(node);
+        this.upwardTos.add(to);
+        this.upwardWeights.add(outEdges.weights[index]);
+        this.upwardMiddles.add(outEdges.middles[index]);
+        this.incoming[to].remove(node);
+        this.contractedNeighbors[to] += 1;
+        neighbors.add(to);
+      }
+      for (int index = 0; index < inEdges.size; index++) {
+        int from = inEdges.nodes[index];
+        this.downwardFroms.add(from);
+        this.downwardTos.add(node);
+        this.downwardWeights.add(inEdges.weights[index]);
+        this.downwardMiddles.add(inEdges.middles[index]);
+        this.outgoing[from].remove(node);
+        this.contractedNeighbors[from] += 1;
+        neighbors.add(from);
+      }
+      this.contracted[node] = true;
+      this.outgoing[node] = new EdgeList();
+      this.incoming[node] = new EdgeList();
+      return neighbors.toArray();
+    }
+
+    /**
+     * Finds the pairs of neighbors whose shortest path runs through _node_, and adds a shortcut
+     * for each of them if _apply_ is set
+     *
+     * @param node  The node being contracted
+     * @param apply Whether to add the shortcuts or only count them
+     * @return The number of shortcuts needed
+     */
+    private int addShortcuts(int node, boolean apply) {
+      EdgeList inEdges = this.incoming[node];
+      EdgeList outEdges = this.outgoing[node];
+      int maxOutWeight = 0;
+      for (int index = 0; index < outEdges.size; index++) {
+        maxOutWeight = Math.max(maxOutWeight, outEdges.weights[index]);
+      }
+
+      int shortcuts = 0;
+      for (int inIndex = 0; inIndex < inEdges.size; inIndex++) {
+        int from = inEdges.nodes[inIndex];
+        int inWeight = inEdges.weights[inIndex];
+        this.witnessSearch(from, node, inWeight + maxOutWeight,
+            apply ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+        for (int outIndex = 0; outIndex < outEdges.size; outIndex++) {
+          int to = outEdges.nodes[outIndex];
+          if (to == from) {
+            continue;
+          }
+          int viaWeight = inWeight + outEdges.weights[outIndex];
+          if (this.witnessStamps[to] == this.witnessStamp
+              && this.witnessDistances[to] <= viaWeight) {
+            continue;
+          }
+          shortcuts += 1;
+          if (apply) {
+            this.addShortcut(from, to, viaWeight, node);
+          }
+        }
+      }
+      return shortcuts;
+    }
+
+    /**
+     * Runs a bounded dijkstra from _source_ that ignores _avoided_, so that the distances it leaves
+     * behind show which paths through _avoided_ have a witness of equal or shorter length
+     *
+     * @param source      The node the search starts at
+     * @param avoided     The node being contracted
+     * @param maxDistance The distance beyond which no witness is useful
+     * @param settleLimit The number of nodes after which the search gives up
+     */
+    private void witnessSearch(int source, int avoided, int maxDistance, int settleLimit) {
+      this.witnessStamp += 1;
+      this.witnessStamps[source] = this.witnessStamp;
+      this.witnessDistances[source] = 0;
+      this.witnessQueue.insert(source, 0);
+      int settled = 0;
+      while (!this.witnessQueue.isEmpty() && settled < settleLimit) {
+        int closestDistance = this.witnessQueue.getMinimumDistance();
+        if (closestDistance > maxDistance) {
+          break;
+        }
+        int closestNode = this.witnessQueue.extractMin();
+        settled += 1;
+        EdgeList outEdges = this.outgoing[closestNode];
+        for (int index = 0; index < outEdges.size; index++) {
+          int neighbor = outEdges.nodes[index];
+          int newDistance = closestDistance + outEdges.weights[index];
+          if (neighbor == avoided) {
+            continue;
+          }
+          if (this.witnessStamps[neighbor] != this.witnessStamp) {
+            this.witnessStamps[neighbor] = this.witnessStamp;
+            this.witnessDistances[neighbor] = newDistance;
+            this.witnessQueue.insert(neighbor, newDistance);
+          } else if (newDistance < this.witnessDistances[neighbor]
+              && this.witnessQueue.contains(neighbor)) {
+            this.witnessDistances[neighbor] = newDistance;
+            this.witnessQueue.decreaseKey(neighbor, newDistance);
+          }
+        }
+      }
+      this.witnessQueue.clear();
+    }
+
+    /**
+     * Adds a shortcut from _from_ to _to_, or shortens the existing edge between them
+     *
+     * @param from   The source of the shortcut
+     * @param to     The target of the shortcut
+     * @param weight The weight of the shortcut
+     * @param middle The node the shortcut skips
+     */
+    private void addShortcut(int from, int to, int weight, int middle) {
+      int existing = this.outgoing[from].indexOf(to);
+      if (existing == -1) {
+        this.outgoing[from].add(to, weight, middle);
+        this.incoming[to].add(from, weight, middle);
+        this.numberOfShortcuts += 1;
+      } else if (weight < this.outgoing[from].weights[existing]) {
+        this.outgoing[from].set(existing, weight, middle);
+        EdgeList incomingEdges = this.incoming[to];
+        incomingEdges.set(incomingEdges.indexOf(from), weight, middle);
+        this.numberOfShortcuts += 1;
+      }
+    }
+  }
+
+  /**
+   * A growable list of edges to or from one node, in parallel primitive arrays
+   */
+  private static class EdgeList {
+
+    private int[] nodes = new int[4];
+    private int[] weights = new int[4];
+    private int[] middles = new int[4];
+    private int size = 0;
+
+    private void add(int node, int weight, int middle) {
+      if (this.size == this.nodes.length) {
+        this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+        this.weights = Arrays.copyOf(this.weights, 2 * this.size);
+        this.middles = Arrays.copyOf(this.middles, 2 * this.size);
+      }
+      this.set(this.size, weight, middle);
+      this.nodes[this.size] = node;
+      this.size += 1;
+    }
+
+    private void set(int index, int weight, int middle) {
+      this.weights[index] = weight;
+      this.middles[index] = middle;
+    }
+
+    private int indexOf(int node) {
+      for (int index = 0; index < this.size; index++) {
+        if (this.nodes[index] == node) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    private void remove(int node) {
+      int index = this.indexOf(node);
+      if (index != -1) {
+        // move the last edge into the gap
+        this.size -= 1;
+        this.nodes[index] = this.nodes[this.size];
+        this.weights[index] = this.weights[this.size];
+        this.middles[index] = this.middles[this.size];
+      }
+    }
+  }
+
+  /**
+   * A growable list of primitive ints
+   */
+  private static class IntList {
+
+    private int[] values = new int[16];
+    private int size = 0;
+
+    private void add(int value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, 2 * this.size);
+      }
+      this.values[this.size] = value;
+      this.size += 1;
+    }
+
+    private int get(int index) {
+      return this.values[index];
+    }
+
+    private int size() {
+      return this.size;
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(this.values, this.size);
+    }
+  }
+}
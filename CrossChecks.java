@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Randomized cross-checks of the engines against the plain searches of Main. Every round builds a
+ * seeded random graph, changes it, and compares what the engines compute on the result, or what
+ * DynamicShortestPaths repairs after every change, with what Main computes on a Graph holding the
+ * same edges. KShortestPaths is checked against a brute force enumeration of simple paths, and
+ * ManyToMany on grids, along with the number of nodes its forward searches settle, which must stay
+ * below their full upward search spaces. The first disagreement is thrown as an
+ * IllegalStateException naming the check and the round.
+ *
+ * Usage: java --enable-preview CrossChecks [rounds] [seed]
+ */
+public class CrossChecks {
+
+  private static final int MAX_WEIGHT = 100;
+
+  /**
+   * Runs every check
+   *
+   * @param args The number of rounds and the seed, both optional
+   * @throws IOException if a graph file cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+    for (int round = 0; round < rounds; round++) {
+      checkSnapshot(round, new Random(seed + round));
+    }
+    System.out.println("snapshot consumers: " + rounds + " rounds agree");
+    for (int round = 0; round < rounds; round++) {
+      checkRepairs(round, new Random(seed + round));
+    }
+    System.out.println("dynamic repairs: " + rounds + " rounds agree");
+    for (int round = 0; round < rounds; round++) {
+      checkKShortestPaths(round, new Random(seed + round));
+    }
+    System.out.println("k shortest paths: " + rounds + " rounds agree");
+    long forwardSettledNodes = 0;
+    long upwardSearchSpace = 0;
+    for (int round = 0; round < rounds; round++) {
+      long[] counts = checkManyToMany(round, new Random(seed + round));
+      forwardSettledNodes += counts[0];
+      upwardSearchSpace += counts[1];
+    }
+    if (rounds > 0 && forwardSettledNodes >= upwardSearchSpace) {
+      throw new IllegalStateException("many to many forward searches are never cut short");
+    }
+    System.out.println("many to many: " + rounds + " rounds agree, forward searches settled "
+        + forwardSettledNodes + " of " + upwardSearchSpace + " upward nodes");
+  }
+
+  /**
+   * Runs a changed VersionedGraph snapshot through every consumer of GraphView, and checks that
+   * its edge ids are dense
+   *
+   * @param round  The number of the round, for the messages
+   * @param random The source of the graph and the changes
+   * @throws IOException if the graph file cannot be written
+   */
+  private static void checkSnapshot(int round, Random random) throws IOException {
+    int numberOfNodes = 100 + random.nextInt(300);
+    Graph graph = GraphGenerators.erdosRenyi(numberOfNodes, 1 + 3 * random.nextDouble(),
+        MAX_WEIGHT, random.nextLong());
+    VersionedGraph versionedGraph = new VersionedGraph(graph);
+
+    // grow the graph by a partial block, and add, reweigh and remove edges on both copies
+    VersionedGraph.Batch batch = versionedGraph.newBatch();
+    int addedNodes = 1 + random.nextInt(100);
+    graph.addNodes(addedNodes);
+    batch.addNodes(addedNodes);
+    numberOfNodes += addedNodes;
+    for (int change = 0; change < numberOfNodes; change++) {
+      int from = random.nextInt(numberOfNodes);
+      int to = random.nextInt(numberOfNodes);
+      int weight = 1 + random.nextInt(MAX_WEIGHT);
+      if (graph.getEdgeWeight(from, to) == -1) {
+        graph.addEdge(from, to, weight);
+        batch.addEdge(from, to, weight);
+      } else if (random.nextBoolean()) {
+        graph.updateEdgeWeight(from, to, weight);
+        batch.updateEdgeWeight(from, to, weight);
+      } else {
+        graph.removeEdge(from, to);
+        batch.removeEdge(from, to);
+      }
+    }
+    VersionedGraph.Snapshot snapshot = batch.commit();
+    String name = "round " + round + ": ";
+
+    int outgoingEnd = 0;
+    int incomingEnd = 0;
+    for (int node = 0; node < numberOfNodes; node++) {
+      if (snapshot.getOutgoingBegin(node) != outgoingEnd
+          || snapshot.getIncomingBegin(node) != incomingEnd) {
+        throw new IllegalStateException(name + "edge ids are not dense at node " + node);
+      }
+      outgoingEnd = snapshot.getOutgoingEnd(node);
+      incomingEnd = snapshot.getIncomingEnd(node);
+    }
+    if (outgoingEnd != snapshot.getNumberOfEdges() || incomingEnd != outgoingEnd) {
+      throw new IllegalStateException(name + "edge ids do not end at the number of edges");
+    }
+
+    int source = random.nextInt(numberOfNodes);
+    int target = random.nextInt(numberOfNodes);
+    int[] forward = Main.shortestPathTree(graph, source, false).getFirst();
+    int[] reverse = Main.shortestPathTree(graph, source, true).getFirst();
+    CompressedGraph reference = CompressedGraph.fromGraph(graph);
+    SearchWorkspace workspace = new SearchWorkspace(snapshot);
+
+    compare(name + "workspace", workspace.shortestPathTree(snapshot, source, false), forward);
+    compare(name + "reverse workspace", workspace.shortestPathTree(snapshot, source, true),
+        reverse);
+    if (!Main.dijkstra(snapshot, source).getFirst()
+        .equals(Main.dijkstra(reference, source).getFirst())) {
+      throw new IllegalStateException(name + "dijkstra disagrees");
+    }
+    compare(name + "delta stepping", new DeltaStepping(snapshot).distancesFrom(source), forward);
+    if (!Arrays.equals(new BatchShortestPaths(snapshot).allPairs(),
+        new BatchShortestPaths(reference).allPairs())) {
+      throw new IllegalStateException(name + "all pairs disagree");
+    }
+
+    BoundedSearch.Region region = new BoundedSearch(snapshot).withinRadius(source,
+        Integer.MAX_VALUE);
+    for (int index = 0; index < region.size(); index++) {
+      if (region.getDistance(index) != forward[region.getNode(index)]) {
+        throw new IllegalStateException(name + "bounded search disagrees at node "
+            + region.getNode(index));
+      }
+    }
+
+    List<PathResult> paths = new KShortestPaths(snapshot).shortestPaths(source, target, 3);
+    List<PathResult> expectedPaths = new KShortestPaths(reference).shortestPaths(source, target, 3);
+    for (int index = 0; index < Math.max(paths.size(), expectedPaths.size()); index++) {
+      if (index >= paths.size() || index >= expectedPaths.size()
+          || paths.get(index).getDistance() != expectedPaths.get(index).getDistance()) {
+        throw new IllegalStateException(name + "k shortest paths disagree");
+      }
+    }
+
+    EncodedGraph encodedGraph = EncodedGraph.encode(snapshot, true);
+    compare(name + "encoded", workspace.shortestPathTree(encodedGraph, source, false), forward);
+    compare(name + "reverse encoded", workspace.shortestPathTree(encodedGraph, source, true),
+        reverse);
+
+    Path file = Files.createTempFile("snapshot", ".graph");
+    try {
+      GraphFile.write(snapshot, file, true);
+      MappedGraph mappedGraph = GraphFile.map(file);
+      compare(name + "mapped", workspace.shortestPathTree(mappedGraph, source, false), forward);
+      compare(name + "reverse mapped", workspace.shortestPathTree(mappedGraph, source, true),
+          reverse);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    try (Arena arena = Arena.ofConfined();
+        OffHeapWorkspace offHeapWorkspace = new OffHeapWorkspace(numberOfNodes, arena)) {
+      OffHeapGraph offHeapGraph = OffHeapGraph.copyOf(snapshot, arena);
+      compare(name + "off heap", workspace.shortestPathTree(offHeapGraph, source, false), forward);
+      offHeapWorkspace.shortestPathTree(offHeapGraph, source, true);
+      for (int node = 0; node < numberOfNodes; node++) {
+        if (offHeapWorkspace.getDistance(node) != reverse[node]) {
+          throw new IllegalStateException(name + "reverse off heap disagrees at node " + node);
+        }
+      }
+    }
+
+    int[] reordered = new int[numberOfNodes];
+    NodeReordering.reverseCuthillMcKee(snapshot).distancesFrom(workspace, source, reordered);
+    compare(name + "reordered", reordered, forward);
+  }
+
+  /**
+   * Changes a graph edge by edge through DynamicShortestPaths, self loops included, and checks the
+   * repaired trees of its sources against full searches after every change
+   *
+   * @param round  The number of the round, for the messages
+   * @param random The source of the graph and the changes
+   */
+  private static void checkRepairs(int round, Random random) {
+    int numberOfNodes = 20 + random.nextInt(80);
+    Graph graph = GraphGenerators.erdosRenyi(numberOfNodes, 1 + 2 * random.nextDouble(),
+        MAX_WEIGHT, random.nextLong());
+    DynamicShortestPaths dynamic = new DynamicShortestPaths(graph);
+    int[] sources = {0, random.nextInt(numberOfNodes), random.nextInt(numberOfNodes)};
+    for (int source : sources) {
+      dynamic.addSource(source);
+    }
+
+    for (int change = 0; change < 4 * numberOfNodes; change++) {
+      int from = random.nextInt(numberOfNodes);
+      // a quarter of the changes are self loops, half of those on a source
+      int to = random.nextInt(numberOfNodes);
+      if (random.nextInt(4) == 0) {
+        from = random.nextBoolean() ? sources[random.nextInt(sources.length)] : from;
+        to = from;
+      }
+      int weight = 1 + random.nextInt(MAX_WEIGHT);
+      if (graph.getEdgeWeight(from, to) == -1) {
+        dynamic.addEdge(from, to, weight);
+      } else if (random.nextBoolean()) {
+        dynamic.updateEdgeWeight(from, to, weight);
+      } else {
+        dynamic.removeEdge(from, to);
+      }
+
+      for (int source : sources) {
+        int[] expected = Main.shortestPathTree(graph, source, false).getFirst();
+        for (int node = 0; node < numberOfNodes; node++) {
+          if (dynamic.getDistance(source, node) != expected[node]) {
+            throw new IllegalStateException("round " + round + ": repair of source " + source
+                + " after changing " + from + " -> " + to + " disagrees at node " + node);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the k shortest loopless paths between two nodes of a small random graph, and checks them
+   * against every simple path between the nodes, enumerated by brute force
+   *
+   * @param round  The number of the round, for the messages
+   * @param random The source of the graph and the nodes
+   */
+  private static void checkKShortestPaths(int round, Random random) {
+    int numberOfNodes = 6 + random.nextInt(6);
+    Graph graph = GraphGenerators.erdosRenyi(numberOfNodes, 1.5 + 1.5 * random.nextDouble(), 10,
+        random.nextLong());
+    int source = random.nextInt(numberOfNodes);
+    int target = random.nextInt(numberOfNodes);
+    String name = "round " + round + ": k shortest paths from " + source + " to " + target;
+
+    List<Integer> allDistances = new ArrayList<Integer>();
+    boolean[] onPath = new boolean[numberOfNodes];
+    onPath[source] = true;
+    enumerateSimplePaths(graph, source, target, 0, onPath, allDistances);
+    Collections.sort(allDistances);
+
+    int k = 1 + random.nextInt(12);
+    List<PathResult> paths =
+        new KShortestPaths(CompressedGraph.fromGraph(graph)).shortestPaths(source, target, k);
+    if (paths.size() != Math.min(k, allDistances.size())) {
+      throw new IllegalStateException(name + " found " + paths.size() + " of "
+          + allDistances.size() + " paths for k = " + k);
+    }
+    Set<List<Integer>> distinct = new HashSet<List<Integer>>();
+    for (int index = 0; index < paths.size(); index++) {
+      List<Integer> path = paths.get(index).getPath();
+      if (path.get(0) != source || path.get(path.size() - 1) != target
+          || new HashSet<Integer>(path).size() != path.size() || !distinct.add(path)) {
+        throw new IllegalStateException(name + ": path " + path + " is not a new simple path");
+      }
+      int length = 0;
+      for (int node = 1; node < path.size(); node++) {
+        int weight = graph.getEdgeWeight(path.get(node - 1), path.get(node));
+        if (weight == -1) {
+          throw new IllegalStateException(name + ": path " + path + " uses a missing edge");
+        }
+        length += weight;
+      }
+      if (length != paths.get(index).getDistance() || length != allDistances.get(index)) {
+        throw new IllegalStateException(name + ": path " + index + " has length " + length
+            + " instead of " + allDistances.get(index));
+      }
+    }
+  }
+
+  /**
+   * Collects the lengths of every simple path from _node_ to _target_ that avoids the nodes on the
+   * path so far
+   *
+   * @param graph     The graph
+   * @param node      The last node of the path so far
+   * @param target    The target
+   * @param distance  The length of the path so far
+   * @param onPath    Whether each node is on the path so far
+   * @param distances Filled with the length of every complete path
+   */
+  private static void enumerateSimplePaths(Graph graph, int node, int target, int distance,
+      boolean[] onPath, List<Integer> distances) {
+    if (node == target) {
+      distances.add(distance);
+      return;
+    }
+    for (int index = 0; index < graph.getOutDegree(node); index++) {
+      int neighbor = graph.getOutNeighbor(node, index);
+      if (!onPath[neighbor]) {
+        onPath[neighbor] = true;
+        enumerateSimplePaths(graph, neighbor, target, distance + graph.getOutWeight(node, index),
+            onPath, distances);
+        onPath[neighbor] = false;
+      }
+    }
+  }
+
+  /**
+   * Computes a distance matrix between nearby sources and targets of a grid with ManyToMany, and
+   * checks it against full searches
+   *
+   * @param round  The number of the round, for the messages
+   * @param random The source of the graph and the nodes
+   * @return The number of nodes the forward searches settled, and the number they would have
+   *         settled had none been cut short
+   */
+  private static long[] checkManyToMany(int round, Random random) {
+    int rows = 10 + random.nextInt(20);
+    int columns = 10 + random.nextInt(20);
+    Graph graph = GraphGenerators.grid(rows, columns, MAX_WEIGHT, random.nextLong());
+    ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+
+    // the nodes lie within a small window, so every row is bounded early by its nearby targets
+    int top = random.nextInt(rows - 5);
+    int left = random.nextInt(columns - 5);
+    int[] sources = new int[1 + random.nextInt(10)];
+    int[] targets = new int[1 + random.nextInt(10)];
+    for (int index = 0; index < sources.length; index++) {
+      sources[index] = (top + random.nextInt(5)) * columns + left + random.nextInt(5);
+    }
+    for (int index = 0; index < targets.length; index++) {
+      targets[index] = (top + random.nextInt(5)) * columns + left + random.nextInt(5);
+    }
+
+    ManyToMany manyToMany = new ManyToMany(hierarchy);
+    int[] matrix = manyToMany.distances(sources, targets);
+    long upwardSearchSpace = 0;
+    for (int index = 0; index < sources.length; index++) {
+      int[] expected = Main.shortestPathTree(graph, sources[index], false).getFirst();
+      for (int column = 0; column < targets.length; column++) {
+        if (matrix[index * targets.length + column] != expected[targets[column]]) {
+          throw new IllegalStateException("round " + round + ": many to many disagrees from "
+              + sources[index] + " to " + targets[column]);
+        }
+      }
+      upwardSearchSpace += countUpwardReachable(hierarchy, sources[index]);
+    }
+    return new long[] {manyToMany.getForwardSettledNodes(), upwardSearchSpace};
+  }
+
+  /**
+   * Counts the nodes reachable from a node over upward edges of a hierarchy, which a forward
+   * upward search settles when it is not cut short
+   *
+   * @param hierarchy The hierarchy
+   * @param source    The node
+   * @return The number of reachable nodes, the node included
+   */
+  private static int countUpwardReachable(ContractionHierarchy hierarchy, int source) {
+    boolean[] reached = new boolean[hierarchy.getNumberOfNodes()];
+    int[] stack = new int[hierarchy.getNumberOfNodes()];
+    int size = 0;
+    int count = 1;
+    reached[source] = true;
+    stack[size++] = source;
+    while (size > 0) {
+      int node = stack[--size];
+      for (int edge = hierarchy.getUpwardBegin(node); edge < hierarchy.getUpwardEnd(node);
+          edge++) {
+        int target = hierarchy.getUpwardTarget(edge);
+        if (!reached[target]) {
+          reached[target] = true;
+          stack[size++] = target;
+          count += 1;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Checks the distances of a shortest path tree
+   *
+   * @param name     The name of the check
+   * @param tree     The tree
+   * @param expected The expected distance of every node
+   * @throws IllegalStateException if a distance differs
+   */
+  private static void compare(String name, ShortestPathTree tree, int[] expected)
+      throws IllegalStateException {
+    for (int node = 0; node < expected.length; node++) {
+      if (tree.getDistance(node) != expected[node]) {
+        throw new IllegalStateException(name + " disagrees at node " + node);
+      }
+    }
+  }
+
+  /**
+   * Checks an array of distances
+   *
+   * @param name     The name of the check
+   * @param actual   The distance of every node
+   * @param expected The expected distance of every node
+   * @throws IllegalStateException if a distance differs
+   */
+  private static void compare(String name, int[] actual, int[] expected)
+      throws IllegalStateException {
+    for (int node = 0; node < expected.length; node++) {
+      if (actual[node] != expected[node]) {
+        throw new IllegalStateException(name + " disagrees at node " + node);
+      }
+    }
+  }
+}
@@ -0,0 +1,280 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A parallel single source shortest path engine based on delta-stepping. Tentative distances are
+ * kept in buckets of width delta. All nodes of the lowest nonempty bucket are relaxed at once:
+ * first their light edges (weight at most delta), repeatedly, since these can put nodes back into
+ * the same bucket, and then their heavy edges once, since these never can. Every round of
+ * relaxations is split across a fork-join pool, and distances are lowered with an atomic minimum so
+ * that no locks are needed. The resulting distances are exactly those of dijkstra
+ */
+public class DeltaStepping {
+
+  // the number of nodes below which a round of relaxations is not split any further
+  private static final int SPLIT_THRESHOLD = 512;
+
+  private GraphView graph;
+  private int delta;
+  private int maxWeight;
+  private ForkJoinPool pool;
+
+  /**
+   * Constructs a new DeltaStepping on the common pool with a delta chosen from the weights of the
+   * graph
+   *
+   * @param graph The graph to be searched
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public DeltaStepping(GraphView graph) throws IllegalArgumentException {
+    this(graph, chooseDelta(graph), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new DeltaStepping
+   *
+   * @param graph The graph to be searched
+   * @param delta The width of a bucket. Small values approach dijkstra, with little parallelism,
+   *              and large values approach bellman-ford, with much wasted work
+   * @param pool  The pool the relaxations run on
+   * @throws IllegalArgumentException if the graph or pool is null, or delta is not positive
+   */
+  public DeltaStepping(GraphView graph, int delta, ForkJoinPool pool)
+      throws IllegalArgumentException {
+    this.graph = InputValidation.ensureNotNull(graph);
+    this.delta = InputValidation.ensureGreaterThan(delta, 1, "Delta must be positive");
+    this.pool = InputValidation.ensureNotNull(pool);
+    this.maxWeight = graph.getMaxWeight();
+  }
+
+  /**
+   * Picks a bucket width from the weights of the graph. With d the average out degree, a width of
+   * the maximum weight divided by d keeps the expected number of light edges per node constant,
+   * which is the choice that balances the work of the phases against their number
+   *
+   * @param graph The graph to be searched
+   * @return A bucket width of at least 1
+   */
+  public static int chooseDelta(GraphView graph) {
+    InputValidation.ensureNotNull(graph);
+    if (graph.getNumberOfEdges() == 0) {
+      return 1;
+    }
+    double averageDegree = (double) graph.getNumberOfEdges() / graph.getNumberOfNodes();
+    return Math.max(1, (int) Math.ceil(graph.getMaxWeight() / Math.max(1.0, averageDegree)));
+  }
+
+  /**
+   * Returns the bucket width in use
+   *
+   * @return The bucket width
+   */
+  public int getDelta() {
+    return this.delta;
+  }
+
+  /**
+   * Computes the distance from _source_ to every node
+   *
+   * @param source The source node
+   * @return The distance to every node, Main.UNREACHABLE for nodes that cannot be reached
+   * @throws IllegalArgumentException if the source is not contained in the graph
+   */
+  public int[] distancesFrom(int source) throws IllegalArgumentException {
+    int numberOfNodes = this.graph.getNumberOfNodes();
+    InputValidation.ensureWithin(source, 0, numberOfNodes - 1, "Source is not contained the graph");
+
+    AtomicIntegerArray distances = new AtomicIntegerArray(numberOfNodes);
+    for (int node = 0; node < numberOfNodes; node++) {
+      distances.set(node, Main.UNREACHABLE);
+    }
+    distances.set(source, 0);
+    // the distance every node last had its edges relaxed with, so that duplicates are skipped
+    int[] relaxedDistances = new int[numberOfNodes];
+    Arrays.fill(relaxedDistances, Main.UNREACHABLE);
+
+    // pending distances never span more than maxWeight, so the buckets can be reused cyclically
+    int numberOfBuckets = this.maxWeight / this.delta + 2;
+    IntList[] buckets = new IntList[numberOfBuckets];
+    for (int index = 0; index < numberOfBuckets; index++) {
+      buckets[index] = new IntList();
+    }
+    buckets[0].add(source);
+    int pending = 1;
+    IntList settled = new IntList();
+
+    for (long bucket = 0; pending > 0; bucket++) {
+      IntList current = buckets[(int) (bucket % numberOfBuckets)];
+      if (current.size() == 0) {
+        continue;
+      }
+      settled.clear();
+
+      // light edges can refill the current bucket, so relax them until it stays empty
+      while (current.size() > 0) {
+        pending -= current.size();
+        IntList frontier = new IntList();
+        for (int index = 0; index < current.size(); index++) {
+          int node = current.get(index);
+          int distance = distances.get(node);
+          if (distance / this.delta == bucket && relaxedDistances[node] != distance) {
+            relaxedDistances[node] = distance;
+            frontier.add(node);
+            settled.add(node);
+          }
+        }
+        current.clear();
+        IntList improved = this.pool.invoke(
+            new Relaxation(frontier, 0, frontier.size(), distances, true));
+        pending += this.distribute(improved, distances, buckets);
+      }
+
+      // heavy edges always lead past the current bucket, so one round is enough
+      IntList improved = this.pool.invoke(
+          new Relaxation(settled, 0, settled.size(), distances, false));
+      pending += this.distribute(improved, distances, buckets);
+    }
+
+    int[] result = new int[numberOfNodes];
+    for (int node = 0; node < numberOfNodes; node++) {
+      result[node] = distances.get(node);
+    }
+    return result;
+  }
+
+  /**
+   * Puts every improved node into the bucket of its new distance
+   *
+   * @param improved  The nodes whose distance was lowered
+   * @param distances The tentative distances
+   * @param buckets   The cyclic buckets
+   * @return The number of nodes added to a bucket
+   */
+  private int distribute(IntList improved, AtomicIntegerArray distances, IntList[] buckets) {
+    for (int index = 0; index < improved.size(); index++) {
+      int node = improved.get(index);
+      buckets[(distances.get(node) / this.delta) % buckets.length].add(node);
+    }
+    return improved.size();
+  }
+
+  /**
+   * One round of relaxations of either the light or the heavy edges of a range of nodes. Ranges
+   * larger than the threshold are split in half and relaxed in parallel
+   */
+  private class Relaxation extends RecursiveTask<IntList> {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient IntList nodes;
+    private int begin;
+    private int end;
+    private AtomicIntegerArray distances;
+    private boolean light;
+
+    /**
+     * Constructs a new Relaxation
+     *
+     * @param nodes     The nodes whose edges are relaxed
+     * @param begin     The first index of the range
+     * @param end       The exclusive last index of the range
+     * @param distances The tentative distances
+     * @param light     Whether to relax the light or the heavy edges
+     */
+    private Relaxation(IntList nodes, int begin, int end, AtomicIntegerArray distances,
+        boolean light) {
+      this.nodes = nodes;
+      this.begin = begin;
+      this.end = end;
+      this.distances = distances;
+      this.light = light;
+    }
+
+    @Override
+    protected IntList compute() {
+      if (this.end - this.begin > SPLIT_THRESHOLD) {
+        int middle = (this.begin + this.end) >>> 1;
+        Relaxation left = new Relaxation(this.nodes, this.begin, middle, this.distances,
+            this.light);
+        left.fork();
+        IntList improved = new Relaxation(this.nodes, middle, this.end, this.distances,
+            this.light).compute();
+        improved.addAll(left.join());
+        return improved;
+      }
+
+      GraphView graph = DeltaStepping.this.graph;
+      int delta = DeltaStepping.this.delta;
+      IntList improved = new IntList();
+      for (int index = this.begin; index < this.end; index++) {
+        int node = this.nodes.get(index);
+        int distance = this.distances.get(node);
+        int edgeEnd = graph.getOutgoingEnd(node);
+        for (int edge = graph.getOutgoingBegin(node); edge < edgeEnd; edge++) {
+          int weight = graph.getWeight(edge);
+          if ((weight <= delta) == this.light
+              && lowerTo(this.distances, graph.getTarget(edge), distance + weight)) {
+            improved.add(graph.getTarget(edge));
+          }
+        }
+      }
+      return improved;
+    }
+  }
+
+  /**
+   * Atomically lowers the distance of _node_ to _distance_ if that is smaller
+   *
+   * @param distances The tentative distances
+   * @param node      The node whose distance may be lowered
+   * @param distance  The candidate distance
+   * @return True if the distance was lowered, False otherwise
+   */
+  private static boolean lowerTo(AtomicIntegerArray distances, int node, int distance) {
+    int current = distances.get(node);
+    while (distance < current) {
+      if (distances.compareAndSet(node, current, distance)) {
+        return true;
+      }
+      current = distances.get(node);
+    }
+    return false;
+  }
+
+  /**
+   * A growable list of primitive ints
+   */
+  private static class IntList {
+
+    private int[] values = new int[16];
+    private int size = 0;
+
+    private void add(int value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, 2 * this.size);
+      }
+      this.values[this.size] = value;
+      this.size += 1;
+    }
+
+    private void addAll(IntList other) {
+      for (int index = 0; index < other.size; index++) {
+        this.add(other.values[index]);
+      }
+    }
+
+    private int get(int index) {
+      return this.values[index];
+    }
+
+    private int size() {
+      return this.size;
+    }
+
+    private void clear() {
+      this.size = 0;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * A representation for Dial's bucket queue, a monotone priority queue for integer distances. While
+ * a dijkstra search runs over edges of weight at most C, every tentative distance lies within C of
+ * the last one extracted, so C + 1 buckets used cyclically are enough to hold them all. Each bucket
+ * is a doubly linked list threaded through int arrays, which makes insert and decreaseKey constant
+ * time and extractMin amortized constant time
+ */
+public class DialQueue implements NodeQueue {
+
+  private int[] heads; // the first node of every bucket, -1 if empty
+  private int[] next; // the next node in the same bucket, -1 at the end
+  private int[] previous; // the previous node in the same bucket, -1 at the front
+  private int[] distances; // the distance of every node in the queue
+  private boolean[] contained;
+  private int currentDistance; // no node in the queue is closer than this
+  private int size;
+
+  /**
+   * Constructs a new DialQueue
+   *
+   * @param capacity  The number of node ids the queue must hold
+   * @param maxWeight The largest edge weight of the graph being searched
+   * @throws IllegalArgumentException if the capacity is negative or the weight is not positive
+   */
+  public DialQueue(int capacity, int maxWeight) throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(capacity, 0, "Capacity cannot be negative");
+    InputValidation.ensureGreaterThan(maxWeight, 1, "Maximum weight must be positive");
+    this.heads = new int[maxWeight + 1];
+    Arrays.fill(this.heads, -1);
+    this.next = new int[capacity];
+    this.previous = new int[capacity];
+    this.distances = new int[capacity];
+    this.contained = new boolean[capacity];
+    this.currentDistance = 0;
+    this.size = 0;
+  }
+
+  @Override
+  public void insert(int node, int distance) throws IllegalArgumentException {
+    InputValidation.ensureWithin(node, 0, this.contained.length - 1,
+        "Node is outside the capacity of the queue");
+    if (this.contained[node]) {
+      throw new IllegalArgumentException("Node is already contained in the queue");
+    }
+    // an empty queue may start over anywhere, but keeping the cursor where it is when the distance
+    // fits leaves room for later keys between the last extracted distance and this one
+    if (this.size == 0 && !this.isInWindow(distance)) {
+      this.currentDistance = distance;
+    }
+    this.ensureInWindow(distance);
+    this.link(node, distance);
+    this.contained[node] = true;
+    this.size += 1;
+  }
+
+  @Override
+  public void decreaseKey(int node, int distance) throws IllegalArgumentException {
+    if (!this.contains(node)) {
+      throw new IllegalArgumentException("Node is not contained in the queue");
+    }
+    if (distance > this.distances[node]) {
+      throw new IllegalArgumentException("New distance is greater than the current distance");
+    }
+    this.ensureInWindow(distance);
+    this.unlink(node);
+    this.link(node, distance);
+  }
+
+  @Override
+  public boolean contains(int node) {
+    return node >= 0 && node < this.contained.length && this.contained[node];
+  }
+
+  @Override
+  public int getMinimumDistance() throws UnsupportedOperationException {
+    if (this.size == 0) {
+      throw new UnsupportedOperationException("Cannot peek at an empty queue");
+    }
+    // walk the cursor forward to the first nonempty bucket
+    while (this.heads[this.currentDistance % this.heads.length] == -1) {
+      this.currentDistance += 1;
+    }
+    return this.currentDistance;
+  }
+
+  @Override
+  public int extractMin() throws UnsupportedOperationException {
+    if (this.size == 0) {
+      throw new UnsupportedOperationException("Cannot extract min on an empty queue");
+    }
+    int closestNode = this.heads[this.getMinimumDistance() % this.heads.length];
+    this.unlink(closestNode);
+    this.contained[closestNode] = false;
+    this.size -= 1;
+    return closestNode;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public void clear() {
+    for (int bucket = 0; bucket < this.heads.length && this.size > 0; bucket++) {
+      for (int node = this.heads[bucket]; node != -1; node = this.next[node]) {
+        this.contained[node] = false;
+        this.size -= 1;
+      }
+      this.heads[bucket] = -1;
+    }
+  }
+
+  /**
+   * Ensures the distance fits in the window of buckets currently in use
+   *
+   * @param distance The distance to be checked
+   * @throws IllegalArgumentException if the distance lies outside the window
+   */
+  private void ensureInWindow(int distance) throws IllegalArgumentException {
+    if (!this.isInWindow(distance)) {
+      throw new IllegalArgumentException(
+          "Distance must be within the maximum weight of the last extracted distance");
+    }
+  }
+
+  /**
+   * Determines whether the distance fits in the window of buckets currently in use
+   *
+   * @param distance The distance to be checked
+   * @return True if the distance fits, False otherwise
+   */
+  private boolean isInWindow(int distance) {
+    return distance >= this.currentDistance
+        && (long) distance - this.currentDistance < this.heads.length;
+  }
+
+  /**
+   * Adds the node to the front of the bucket of _distance_
+   *
+   * @param node     The node to be added
+   * @param distance The distance of the node
+   */
+  private void link(int node, int distance) {
+    int bucket = distance % this.heads.length;
+    int head = this.heads[bucket];
+    this.distances[node] = distance;
+    this.previous[node] = -1;
+    this.next[node] = head;
+    if (head != -1) {
+      this.previous[head] = node;
+    }
+    this.heads[bucket] = node;
+  }
+
+  /**
+   * Removes the node from its bucket
+   *
+   * @param node The node to be removed
+   */
+  private void unlink(int node) {
+    int before = this.previous[node];
+    int after = this.next[node];
+    if (before == -1) {
+      this.heads[this.distances[node] % this.heads.length] = after;
+    } else {
+      this.next[before] = after;
+    }
+    if (after != -1) {
+      this.previous[after] = before;
+    }
+  }
+}
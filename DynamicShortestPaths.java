@@ -0,0 +1,400 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the shortest path trees of a set of registered sources up to date while the graph changes.
+ * Edges are added, reweighted and removed through this class, which applies the change to the
+ * graph and then repairs only the part of every tree the change affects, in the manner of
+ * Ramalingam and Reps, instead of searching the whole graph again:
+ *
+ * - a new or cheaper edge (u, v) can only shorten paths through v, so a dijkstra search seeded with
+ * the improved distance of v visits exactly the nodes that get closer
+ *
+ * - a dearer or removed edge (u, v) only matters if it is the tree edge of v, in which case the
+ * subtree under v loses its distances. Those nodes are seeded with their best distance through an
+ * incoming edge from outside the subtree, and a dijkstra search restricted to the subtree settles
+ * the rest
+ *
+ * Every update reports the number of nodes it touched over all sources, so its cost can be seen to
+ * follow the size of the change rather than the size of the graph. If the graph is changed behind
+ * the back of this class, which its version reveals, the trees are recomputed from scratch
+ */
+public class DynamicShortestPaths {
+
+  private final Graph graph;
+  private final Map<Integer, Tree> trees;
+  private long expectedVersion;
+  private int capacity;
+  private NodeQueue queue;
+  private int[] affected; // the nodes of the subtree being repaired
+  private int[] stamps; // the repair in which each node was marked affected
+  private int epoch;
+  private long numberOfUpdates;
+  private long touchedNodes;
+  private long recomputations;
+
+  /**
+   * The distances and parents of one source, as returned by Main.shortestPathTree
+   */
+  private static class Tree {
+
+    private int[] distances;
+    private int[] parents;
+
+    /**
+     * Constructs a new Tree
+     *
+     * @param tree The distance and parent arrays
+     */
+    private Tree(Pair<int[], int[]> tree) {
+      this.distances = tree.getFirst();
+      this.parents = tree.getSecond();
+    }
+  }
+
+  /**
+   * Constructs a new DynamicShortestPaths with no sources
+   *
+   * @param graph The graph to be maintained
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public DynamicShortestPaths(Graph graph) throws IllegalArgumentException {
+    this.graph = InputValidation.ensureNotNull(graph);
+    this.trees = new LinkedHashMap<Integer, Tree>();
+    this.expectedVersion = graph.getVersion();
+    this.allocate(graph.getNumberOfNodes());
+    this.numberOfUpdates = 0;
+    this.touchedNodes = 0;
+    this.recomputations = 0;
+  }
+
+  /**
+   * Starts maintaining the shortest path tree of _source_
+   *
+   * @param source The root of the tree
+   * @throws IllegalArgumentException if the source is not contained in the graph
+   */
+  public void addSource(int source) throws IllegalArgumentException {
+    this.synchronize();
+    if (!this.trees.containsKey(source)) {
+      this.trees.put(source, new Tree(Main.shortestPathTree(this.graph, source, false)));
+    }
+  }
+
+  /**
+   * Stops maintaining the shortest path tree of _source_
+   *
+   * @param source The root of the tree
+   * @return True if the source was registered, False otherwise
+   */
+  public boolean removeSource(int source) {
+    return this.trees.remove(source) != null;
+  }
+
+  /**
+   * Returns the distance from _source_ to _node_
+   *
+   * @param source A registered source
+   * @param node   The node
+   * @return The distance, Main.UNREACHABLE if the node cannot be reached
+   * @throws IllegalArgumentException if the source is not registered or the node is not contained
+   *                                  in the graph
+   */
+  public int getDistance(int source, int node) throws IllegalArgumentException {
+    return this.getTree(source, node).distances[node];
+  }
+
+  /**
+   * Returns the parent of _node_ in the shortest path tree of _source_
+   *
+   * @param source A registered source
+   * @param node   The node
+   * @return The parent, the source for the source itself and -1 if the node cannot be reached
+   * @throws IllegalArgumentException if the source is not registered or the node is not contained
+   *                                  in the graph
+   */
+  public int getParent(int source, int node) throws IllegalArgumentException {
+    return this.getTree(source, node).parents[node];
+  }
+
+  /**
+   * Adds an edge to the graph and repairs every tree
+   *
+   * @param from   The id for the node the edge comes from
+   * @param to     The id for the node the edge goes to
+   * @param weight The weight of the edge
+   * @return The number of nodes touched over all trees
+   * @throws IllegalArgumentException if the graph rejects the edge
+   */
+  public int addEdge(int from, int to, int weight) throws IllegalArgumentException {
+    this.synchronize();
+    this.graph.addEdge(from, to, weight);
+    this.expectedVersion = this.graph.getVersion();
+
+    int touched = 0;
+    for (Tree tree : this.trees.values()) {
+      touched += this.repairDecrease(tree, from, to, weight);
+    }
+    return this.count(touched);
+  }
+
+  /**
+   * Changes the weight of an edge of the graph and repairs every tree
+   *
+   * @param from   The id for the node the edge comes from
+   * @param to     The id for the node the edge goes to
+   * @param weight The new weight of the edge
+   * @return The number of nodes touched over all trees
+   * @throws IllegalArgumentException if the graph has no such edge or the weight is not positive
+   */
+  public int updateEdgeWeight(int from, int to, int weight) throws IllegalArgumentException {
+    this.synchronize();
+    int previousWeight = this.graph.updateEdgeWeight(from, to, weight);
+    this.expectedVersion = this.graph.getVersion();
+
+    int touched = 0;
+    for (Tree tree : this.trees.values()) {
+      if (weight < previousWeight) {
+        touched += this.repairDecrease(tree, from, to, weight);
+      } else if (weight > previousWeight) {
+        touched += this.repairIncrease(tree, from, to);
+      }
+    }
+    return this.count(touched);
+  }
+
+  /**
+   * Removes an edge from the graph and repairs every tree
+   *
+   * @param from The id for the node the edge comes from
+   * @param to   The id for the node the edge goes to
+   * @return The number of nodes touched over all trees
+   * @throws IllegalArgumentException if the graph has no such edge
+   */
+  public int removeEdge(int from, int to) throws IllegalArgumentException {
+    this.synchronize();
+    this.graph.removeEdge(from, to);
+    this.expectedVersion = this.graph.getVersion();
+
+    int touched = 0;
+    for (Tree tree : this.trees.values()) {
+      touched += this.repairIncrease(tree, from, to);
+    }
+    return this.count(touched);
+  }
+
+  /**
+   * Returns the number of updates made through this class
+   *
+   * @return The number of updates
+   */
+  public long getNumberOfUpdates() {
+    return this.numberOfUpdates;
+  }
+
+  /**
+   * Returns the number of nodes all updates touched together
+   *
+   * @return The number of touched nodes
+   */
+  public long getTouchedNodes() {
+    return this.touchedNodes;
+  }
+
+  /**
+   * Returns the number of times the trees were recomputed because the graph changed outside of
+   * this class
+   *
+   * @return The number of recomputations
+   */
+  public long getRecomputations() {
+    return this.recomputations;
+  }
+
+  /**
+   * Repairs a tree after the edge from _from_ to _to_ got the weight _weight_, which is lower than
+   * before or new. The graph must already hold the change
+   *
+   * @param tree   The tree
+   * @param from   The node the edge comes from
+   * @param to     The node the edge goes to
+   * @param weight The weight of the edge
+   * @return The number of nodes that got closer to the source
+   */
+  private int repairDecrease(Tree tree, int from, int to, int weight) {
+    int[] distances = tree.distances;
+    int[] parents = tree.parents;
+    if (distances[from] == Main.UNREACHABLE || distances[from] + weight >= distances[to]) {
+      return 0;
+    }
+    distances[to] = distances[from] + weight;
+    parents[to] = from;
+    this.queue.insert(to, distances[to]);
+    return this.settle(distances, parents);
+  }
+
+  /**
+   * Repairs a tree after the edge from _from_ to _to_ became dearer or was removed. The graph must
+   * already hold the change
+   *
+   * @param tree The tree
+   * @param from The node the edge comes from
+   * @param to   The node the edge goes to
+   * @return The number of nodes in the subtree that was repaired
+   */
+  private int repairIncrease(Tree tree, int from, int to) {
+    int[] distances = tree.distances;
+    int[] parents = tree.parents;
+    if (from == to || parents[to] != from) {
+      // the tree does not use the edge, so no distance depends on it. a self loop is never used,
+      // but on the root it would pass the parent check, since the root is its own parent
+      return 0;
+    }
+
+    // mark the subtree hanging off the edge, all of whose distances went through it
+    this.epoch += 1;
+    if (this.epoch == Integer.MAX_VALUE) {
+      Arrays.fill(this.stamps, 0);
+      this.epoch = 1;
+    }
+    int numberAffected = 0;
+    this.affected[numberAffected++] = to;
+    this.stamps[to] = this.epoch;
+    for (int index = 0; index < numberAffected; index++) {
+      int node = this.affected[index];
+      int degree = this.graph.getOutDegree(node);
+      for (int edge = 0; edge < degree; edge++) {
+        int child = this.graph.getOutNeighbor(node, edge);
+        if (parents[child] == node && this.stamps[child] != this.epoch) {
+          this.stamps[child] = this.epoch;
+          this.affected[numberAffected++] = child;
+        }
+      }
+    }
+    for (int index = 0; index < numberAffected; index++) {
+      distances[this.affected[index]] = Main.UNREACHABLE;
+      parents[this.affected[index]] = -1;
+    }
+
+    // seed the subtree with its best edges from the rest of the tree, whose distances still hold
+    for (int index = 0; index < numberAffected; index++) {
+      int node = this.affected[index];
+      int degree = this.graph.getInDegree(node);
+      for (int edge = 0; edge < degree; edge++) {
+        int parent = this.graph.getInNeighbor(node, edge);
+        if (this.stamps[parent] == this.epoch || distances[parent] == Main.UNREACHABLE) {
+          continue;
+        }
+        int newDistance = distances[parent] + this.graph.getInWeight(node, edge);
+        if (newDistance < distances[node]) {
+          distances[node] = newDistance;
+          parents[node] = parent;
+        }
+      }
+      if (distances[node] != Main.UNREACHABLE) {
+        this.queue.insert(node, distances[node]);
+      }
+    }
+    this.settle(distances, parents);
+    return numberAffected;
+  }
+
+  /**
+   * Runs dijkstra's algorithm from the nodes in the queue, improving only the nodes that can get
+   * closer to the source
+   *
+   * @param distances The distances of the tree
+   * @param parents   The parents of the tree
+   * @return The number of nodes settled
+   */
+  private int settle(int[] distances, int[] parents) {
+    int settled = 0;
+    while (!this.queue.isEmpty()) {
+      int closestDistance = this.queue.getMinimumDistance();
+      int closestNode = this.queue.extractMin();
+      settled += 1;
+
+      int degree = this.graph.getOutDegree(closestNode);
+      for (int index = 0; index < degree; index++) {
+        int neighbor = this.graph.getOutNeighbor(closestNode, index);
+        int newDistance = closestDistance + this.graph.getOutWeight(closestNode, index);
+        if (distances[neighbor] <= newDistance) {
+          continue;
+        }
+        if (this.queue.contains(neighbor)) {
+          this.queue.decreaseKey(neighbor, newDistance);
+        } else {
+          this.queue.insert(neighbor, newDistance);
+        }
+        distances[neighbor] = newDistance;
+        parents[neighbor] = closestNode;
+      }
+    }
+    return settled;
+  }
+
+  /**
+   * Recomputes every tree if the graph changed since the last update made through this class
+   */
+  private void synchronize() {
+    if (this.graph.getVersion() == this.expectedVersion) {
+      return;
+    }
+    this.allocate(this.graph.getNumberOfNodes());
+    for (Map.Entry<Integer, Tree> entry : this.trees.entrySet()) {
+      entry.setValue(new Tree(Main.shortestPathTree(this.graph, entry.getKey(), false)));
+    }
+    this.expectedVersion = this.graph.getVersion();
+    this.recomputations += 1;
+  }
+
+  /**
+   * Sizes the working arrays and the queue to the graph
+   *
+   * @param numberOfNodes The number of nodes of the graph
+   */
+  private void allocate(int numberOfNodes) {
+    if (numberOfNodes == this.capacity) {
+      return;
+    }
+    this.capacity = numberOfNodes;
+    // the seeds of a repair are not ordered by distance, which only a heap accepts
+    this.queue = new PriorityQueue(numberOfNodes, 4);
+    this.affected = new int[numberOfNodes];
+    this.stamps = new int[numberOfNodes];
+    this.epoch = 0;
+  }
+
+  /**
+   * Records the nodes an update touched
+   *
+   * @param touched The number of touched nodes
+   * @return The same number
+   */
+  private int count(int touched) {
+    this.numberOfUpdates += 1;
+    this.touchedNodes += touched;
+    return touched;
+  }
+
+  /**
+   * Returns the tree of a registered source, after checking the node
+   *
+   * @param source The source
+   * @param node   A node of the graph
+   * @return The tree
+   * @throws IllegalArgumentException if the source is not registered or the node is not contained
+   *                                  in the graph
+   */
+  private Tree getTree(int source, int node) throws IllegalArgumentException {
+    this.synchronize();
+    InputValidation.ensureWithin(node, 0, this.graph.getNumberOfNodes() - 1,
+        "Node is not contained the graph");
+    Tree tree = this.trees.get(source);
+    if (tree == null) {
+      throw new IllegalArgumentException("Source " + source + " is not registered");
+    }
+    return tree;
+  }
+}
@@ -0,0 +1,422 @@
+import java.util.Arrays;
+
+/**
+ * An immutable graph whose adjacency is compressed to a fraction of the size of a CompressedGraph,
+ * for graphs too large to keep in memory as plain int arrays. Every node has a block of bytes:
+ *
+ * - its degree, as a varint
+ *
+ * - the weights of its edges, packed with as many bits each as the largest weight of the graph
+ * needs
+ *
+ * - its neighbors in increasing order, as varints: the first as the zigzag encoded difference from
+ * the node itself and every other as the gap from the one before
+ *
+ * Gaps between the ids of neighbors are usually small, and smaller still after a NodeReordering,
+ * so most of them take a single byte. A Cursor decodes a block edge by edge inside the relaxation
+ * loop of a search without materializing it, and the blocks of a node are found through a sparse
+ * index which records where every INDEX_INTERVAL-th block starts, from which the blocks in between
+ * are skipped. Searches run on the graph through the overloads of SearchWorkspace that take one.
+ *
+ * Incoming edges are optional, and a graph encoded without them takes half the memory but cannot
+ * be searched in reverse
+ */
+public class EncodedGraph {
+
+  // the number of nodes per entry of the sparse index
+  public static final int INDEX_INTERVAL = 16;
+
+  private final int numberOfNodes;
+  private final int numberOfEdges;
+  private final int maxWeight;
+  private final int bitsPerWeight;
+  private final Direction outgoing;
+  private final Direction incoming; // null if the incoming edges were not encoded
+
+  /**
+   * The encoded edges of one direction
+   */
+  private static class Direction {
+
+    private final byte[] blocks;
+    private final int[] index; // where the block of every INDEX_INTERVAL-th node starts
+
+    /**
+     * Constructs a new Direction
+     *
+     * @param blocks The blocks of every node, one after the other
+     * @param index  The start of the block of every INDEX_INTERVAL-th node
+     */
+    private Direction(byte[] blocks, int[] index) {
+      this.blocks = blocks;
+      this.index = index;
+    }
+  }
+
+  /**
+   * Constructs a new EncodedGraph
+   *
+   * @param numberOfNodes The number of nodes
+   * @param numberOfEdges The number of edges
+   * @param maxWeight     The largest edge weight
+   * @param bitsPerWeight The number of bits every weight is packed into
+   * @param outgoing      The outgoing edges
+   * @param incoming      The incoming edges, null if they were not encoded
+   */
+  private EncodedGraph(int numberOfNodes, int numberOfEdges, int maxWeight, int bitsPerWeight,
+      Direction outgoing, Direction incoming) {
+    this.numberOfNodes = numberOfNodes;
+    this.numberOfEdges = numberOfEdges;
+    this.maxWeight = maxWeight;
+    this.bitsPerWeight = bitsPerWeight;
+    this.outgoing = outgoing;
+    this.incoming = incoming;
+  }
+
+  /**
+   * Encodes a graph. Any GraphView can be encoded, including a MappedGraph, so a graph stored in a
+   * file can be brought into memory without ever holding its int arrays on the heap
+   *
+   * @param graph             The graph
+   * @param withIncomingEdges Whether to encode the incoming edges, which reverse searches need
+   * @return The encoded graph
+   * @throws IllegalArgumentException if the graph is null, the incoming edges are requested of a
+   *                                  graph without them, or the encoding is too large for an array
+   */
+  public static EncodedGraph encode(GraphView graph, boolean withIncomingEdges)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    if (withIncomingEdges && !graph.hasIncomingEdges()) {
+      throw new IllegalArgumentException("Graph has no incoming edges to encode");
+    }
+    int bitsPerWeight = 32 - Integer.numberOfLeadingZeros(graph.getMaxWeight());
+    return new EncodedGraph(graph.getNumberOfNodes(), graph.getNumberOfEdges(),
+        graph.getMaxWeight(), bitsPerWeight, encodeDirection(graph, false, bitsPerWeight),
+        withIncomingEdges ? encodeDirection(graph, true, bitsPerWeight) : null);
+  }
+
+  /**
+   * Returns the number of nodes in the graph
+   *
+   * @return The number of nodes in the graph
+   */
+  public int getNumberOfNodes() {
+    return this.numberOfNodes;
+  }
+
+  /**
+   * Returns the number of edges in the graph
+   *
+   * @return The number of edges in the graph
+   */
+  public int getNumberOfEdges() {
+    return this.numberOfEdges;
+  }
+
+  /**
+   * Returns the largest weight of any edge in the graph
+   *
+   * @return The largest edge weight, 0 if the graph has no edges
+   */
+  public int getMaxWeight() {
+    return this.maxWeight;
+  }
+
+  /**
+   * Determines whether the incoming edges were encoded
+   *
+   * @return True if the graph can be searched in reverse, False otherwise
+   */
+  public boolean hasIncomingEdges() {
+    return this.incoming != null;
+  }
+
+  /**
+   * Returns the number of bits every edge weight is packed into
+   *
+   * @return The width of a weight
+   */
+  public int getBitsPerWeight() {
+    return this.bitsPerWeight;
+  }
+
+  /**
+   * Returns the number of bytes held by the arrays of this graph
+   *
+   * @return The heap footprint of the encoded edges and their indexes in bytes
+   */
+  public long estimateMemoryBytes() {
+    long bytes = this.outgoing.blocks.length + 4L * this.outgoing.index.length;
+    if (this.incoming != null) {
+      bytes += this.incoming.blocks.length + 4L * this.incoming.index.length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Encodes the edges of one direction
+   *
+   * @param graph         The graph
+   * @param reverse       Whether to encode the incoming rather than the outgoing edges
+   * @param bitsPerWeight The number of bits every weight is packed into
+   * @return The encoded edges
+   * @throws IllegalArgumentException if the encoding is too large for an array
+   */
+  private static Direction encodeDirection(GraphView graph, boolean reverse, int bitsPerWeight)
+      throws IllegalArgumentException {
+    int numberOfNodes = graph.getNumberOfNodes();
+    int[] index = new int[(numberOfNodes + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+    byte[] blocks = new byte[Math.max(16, numberOfNodes + graph.getNumberOfEdges())];
+    int size = 0;
+    long[] edges = new long[16];
+    for (int node = 0; node < numberOfNodes; node++) {
+      int begin = reverse ? graph.getIncomingBegin(node) : graph.getOutgoingBegin(node);
+      int degree = (reverse ? graph.getIncomingEnd(node) : graph.getOutgoingEnd(node)) - begin;
+      if (edges.length < degree) {
+        edges = new long[Math.max(degree, 2 * edges.length)];
+      }
+      for (int edge = 0; edge < degree; edge++) {
+        int neighbor = reverse ? graph.getSource(begin + edge) : graph.getTarget(begin + edge);
+        int weight = reverse
+            ? graph.getIncomingWeight(begin + edge) : graph.getWeight(begin + edge);
+        edges[edge] = (long) neighbor << 32 | weight;
+      }
+      Arrays.sort(edges, 0, degree);
+
+      // a varint takes at most 5 bytes
+      long required = (long) size + 5 + getWeightBytes(degree, bitsPerWeight) + 5L * degree;
+      if (required > Integer.MAX_VALUE - 8) {
+        throw new IllegalArgumentException("Graph is too large to encode");
+      }
+      if (required > blocks.length) {
+        blocks = Arrays.copyOf(blocks, (int) Math.min(Integer.MAX_VALUE - 8,
+            Math.max(required, 2L * blocks.length)));
+      }
+      if (node % INDEX_INTERVAL == 0) {
+        index[node / INDEX_INTERVAL] = size;
+      }
+      size = writeVarint(blocks, size, degree);
+      for (int edge = 0; edge < degree; edge++) {
+        writeBits(blocks, 8L * size + (long) edge * bitsPerWeight, bitsPerWeight,
+            (int) edges[edge]);
+      }
+      size += getWeightBytes(degree, bitsPerWeight);
+      int previous = node;
+      for (int edge = 0; edge < degree; edge++) {
+        int neighbor = (int) (edges[edge] >>> 32);
+        int gap = neighbor - previous;
+        size = writeVarint(blocks, size, edge == 0 ? gap << 1 ^ gap >> 31 : gap);
+        previous = neighbor;
+      }
+    }
+    return new Direction(Arrays.copyOf(blocks, size), index);
+  }
+
+  /**
+   * Finds the block of a node, starting from the closest indexed block before it and skipping the
+   * blocks in between
+   *
+   * @param direction     The encoded edges
+   * @param node          The node
+   * @param bitsPerWeight The number of bits every weight is packed into
+   * @return The position of the first byte of the block
+   */
+  private static int findBlock(Direction direction, int node, int bitsPerWeight) {
+    byte[] blocks = direction.blocks;
+    int position = direction.index[node / INDEX_INTERVAL];
+    for (int skipped = node % INDEX_INTERVAL; skipped > 0; skipped--) {
+      int degree = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte next = blocks[position++];
+        degree |= (next & 0x7f) << shift;
+        if (next >= 0) {
+          break;
+        }
+      }
+      position += getWeightBytes(degree, bitsPerWeight);
+      // every varint ends with the only one of its bytes whose high bit is clear
+      while (degree > 0) {
+        if (blocks[position++] >= 0) {
+          degree -= 1;
+        }
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Returns the number of bytes the packed weights of a node take
+   *
+   * @param degree        The number of edges of the node
+   * @param bitsPerWeight The number of bits every weight is packed into
+   * @return The number of bytes
+   */
+  private static int getWeightBytes(int degree, int bitsPerWeight) {
+    return (int) (((long) degree * bitsPerWeight + 7) >>> 3);
+  }
+
+  /**
+   * Writes a non negative or zigzag encoded number as a varint, seven bits per byte with the high
+   * bit set on every byte but the last
+   *
+   * @param blocks   The array to write to, large enough
+   * @param position The position to write at
+   * @param value    The number, read as unsigned
+   * @return The position after the varint
+   */
+  private static int writeVarint(byte[] blocks, int position, int value) {
+    while ((value & ~0x7f) != 0) {
+      blocks[position++] = (byte) (value & 0x7f | 0x80);
+      value >>>= 7;
+    }
+    blocks[position++] = (byte) value;
+    return position;
+  }
+
+  /**
+   * Ors the low bits of a number into a zeroed bit range, least significant bit first
+   *
+   * @param blocks The array to write to, large enough
+   * @param bit    The first bit to write
+   * @param bits   The number of bits to write
+   * @param value  The number
+   */
+  private static void writeBits(byte[] blocks, long bit, int bits, int value) {
+    for (int written = 0; written < bits; ) {
+      int position = (int) ((bit + written) >>> 3);
+      int offset = (int) ((bit + written) & 7);
+      int count = Math.min(8 - offset, bits - written);
+      blocks[position] |= (byte) (((value >>> written) & ((1 << count) - 1)) << offset);
+      written += count;
+    }
+  }
+
+  /**
+   * Reads a number written by writeBits
+   *
+   * @param blocks The array to read from
+   * @param bit    The first bit to read
+   * @param bits   The number of bits to read
+   * @return The number
+   */
+  private static int readBits(byte[] blocks, long bit, int bits) {
+    if (bits == 0) {
+      return 0;
+    }
+    int position = (int) (bit >>> 3);
+    int offset = (int) (bit & 7);
+    long value = 0;
+    // at most 31 bits after an offset of at most 7 span at most 5 bytes
+    for (int read = 0; read < offset + bits; read += 8) {
+      value |= (long) (blocks[position++] & 0xff) << read;
+    }
+    return (int) (value >>> offset & ((1L << bits) - 1));
+  }
+
+  /**
+   * Decodes the edges of one node at a time. A cursor holds no state beyond the node it is on, so
+   * one cursor can be moved across nodes and graphs without allocating
+   */
+  public static class Cursor {
+
+    private byte[] blocks;
+    private int bitsPerWeight;
+    private int position; // the next neighbor varint
+    private long weightBit; // the first bit of the next weight
+    private int remaining;
+    private boolean first; // whether the next varint is the difference from the node
+    private int neighbor;
+    private int weight;
+
+    /**
+     * Constructs a new Cursor on no node
+     */
+    public Cursor() {
+      this.remaining = 0;
+    }
+
+    /**
+     * Moves the cursor before the first edge of a node
+     *
+     * @param graph   The graph
+     * @param node    The node
+     * @param reverse Whether to decode the incoming rather than the outgoing edges
+     * @return This cursor
+     * @throws IllegalArgumentException if the graph is null, the node is not contained in it, or
+     *                                  the incoming edges are requested of a graph without them
+     */
+    public Cursor moveTo(EncodedGraph graph, int node, boolean reverse)
+        throws IllegalArgumentException {
+      InputValidation.ensureWithin(node, 0, InputValidation.ensureNotNull(graph).numberOfNodes - 1,
+          "Node is not contained in the graph");
+      if (reverse && graph.incoming == null) {
+        throw new IllegalArgumentException("Graph has no incoming edges to decode");
+      }
+      Direction direction = reverse ? graph.incoming : graph.outgoing;
+      this.blocks = direction.blocks;
+      this.bitsPerWeight = graph.bitsPerWeight;
+      int position = findBlock(direction, node, graph.bitsPerWeight);
+      int degree = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte next = this.blocks[position++];
+        degree |= (next & 0x7f) << shift;
+        if (next >= 0) {
+          break;
+        }
+      }
+      this.remaining = degree;
+      this.weightBit = 8L * position;
+      this.position = position + getWeightBytes(degree, graph.bitsPerWeight);
+      this.first = true;
+      this.neighbor = node;
+      return this;
+    }
+
+    /**
+     * Advances the cursor to the next edge of its node
+     *
+     * @return True if there was another edge, False if the node has no more
+     */
+    public boolean next() {
+      if (this.remaining == 0) {
+        return false;
+      }
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte next = this.blocks[this.position++];
+        value |= (next & 0x7f) << shift;
+        if (next >= 0) {
+          break;
+        }
+      }
+      if (this.first) {
+        this.neighbor += (value >>> 1) ^ -(value & 1);
+        this.first = false;
+      } else {
+        this.neighbor += value;
+      }
+      this.weight = readBits(this.blocks, this.weightBit, this.bitsPerWeight);
+      this.weightBit += this.bitsPerWeight;
+      this.remaining -= 1;
+      return true;
+    }
+
+    /**
+     * Returns the node on the other end of the current edge
+     *
+     * @return The neighbor
+     */
+    public int getNeighbor() {
+      return this.neighbor;
+    }
+
+    /**
+     * Returns the weight of the current edge
+     *
+     * @return The weight
+     */
+    public int getWeight() {
+      return this.weight;
+    }
+  }
+}
@@ -4,13 +4,15 @@ import java.util.List;
 /**
  * A representation for a directed graph with positively weighted edges
  */
-public class Graph {
+public class Graph implements AdjacencyView {
 
   // pair of (node, edge weight)
   private List<ArrayList<Pair<Integer, Integer>>> outgoingEdges;
   private List<ArrayList<Pair<Integer, Integer>>> incomingEdges;
   private int numberOfNodes;
   private int numberOfEdges;
+  private int maxEdgeWeight;
+  private long version; // bumped by every change, so derived data can tell when it is stale
 
   /**
    * Constructs a new empty Graph
@@ -46,6 +48,7 @@ public class Graph {
    * Adds one node to the graph
    */
   public void addNode() {
+    this.version += 1;
     this.numberOfNodes += 1;
     this.outgoingEdges.add(new ArrayList<Pair<Integer, Integer>>());
     this.incomingEdges.add(new ArrayList<Pair<Integer, Integer>>());
@@ -60,6 +63,7 @@ public class Graph {
     // input validation
     InputValidation.ensureGreaterThan(numberToBeAdded, 0, "Must add a positive number of nodes");
 
+    this.version += 1;
     this.numberOfNodes += numberToBeAdded;
     for (int index = 0; index < numberToBeAdded; index++) {
       this.outgoingEdges.add(new ArrayList<Pair<Integer, Integer>>());
@@ -72,10 +76,34 @@ public class Graph {
    *
    * @return The number of nodes in the graph
    */
+  @Override
   public int getNumberOfNodes() {
     return this.numberOfNodes;
   }
 
+  /**
+   * Returns the version of the graph, which every change to its nodes or edges increases. Anything
+   * computed from the graph can remember the version it was computed at, and is stale once the
+   * version differs
+   *
+   * @return The current version
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Returns the largest weight any edge in the graph has had, which lets searches pick a priority
+   * queue suited to the range of distances. Lowering or removing edges does not lower it, so it is
+   * an upper bound on the current weights
+   *
+   * @return The largest edge weight, 0 if the graph has never had edges
+   */
+  @Override
+  public int getMaxEdgeWeight() {
+    return this.maxEdgeWeight;
+  }
+
   /**
    * Adds an edge from _from_ to _to_, ensuring that both id's are valid. This method will only
    * allow the addition of nodes that already exist in the graph. Duplicate edges are not allowed
@@ -97,17 +125,131 @@ public class Graph {
 
     List<Pair<Integer, Integer>> currentOutgoingEdges = this.outgoingEdges.get(from);
     List<Pair<Integer, Integer>> currentIncomingEdges = this.incomingEdges.get(to);
-    List<Integer> currentOutNeighbors = ListUtilities
-        .map(currentOutgoingEdges, (element) -> element.getFirst());
-    List<Integer> currentInNeighbors = ListUtilities
-        .map(currentIncomingEdges, (element) -> element.getFirst());
-    if (currentOutNeighbors.contains(to) || currentInNeighbors.contains(from)) {
+    if (containsNeighbor(currentOutgoingEdges, to)) {
       throw new IllegalArgumentException("Duplicate edges are not allowed");
     } else {
       currentOutgoingEdges.add(new Pair<Integer, Integer>(to, weight));
       currentIncomingEdges.add(new Pair<Integer, Integer>(from, weight));
       this.numberOfEdges += 1;
+      this.maxEdgeWeight = Math.max(this.maxEdgeWeight, weight);
+      this.version += 1;
+    }
+  }
+
+  /**
+   * Changes the weight of the edge from _from_ to _to_
+   *
+   * @param from   The id for the node the edge comes from
+   * @param to     The id for the node the edge goes to
+   * @param weight The new weight of the edge
+   * @return The previous weight of the edge
+   * @throws IllegalArgumentException if either node is not contained in the graph, the weight is
+   *                                  not positive or there is no such edge
+   */
+  public int updateEdgeWeight(int from, int to, int weight) throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(weight, 0, "Edges must be positively weighted");
+    int outgoingIndex = this.findEdge(from, to);
+    List<Pair<Integer, Integer>> currentOutgoingEdges = this.outgoingEdges.get(from);
+    List<Pair<Integer, Integer>> currentIncomingEdges = this.incomingEdges.get(to);
+    int incomingIndex = indexOfNeighbor(currentIncomingEdges, from);
+
+    int previousWeight = currentOutgoingEdges.get(outgoingIndex).getSecond();
+    currentOutgoingEdges.set(outgoingIndex, new Pair<Integer, Integer>(to, weight));
+    currentIncomingEdges.set(incomingIndex, new Pair<Integer, Integer>(from, weight));
+    this.maxEdgeWeight = Math.max(this.maxEdgeWeight, weight);
+    this.version += 1;
+    return previousWeight;
+  }
+
+  /**
+   * Removes the edge from _from_ to _to_
+   *
+   * @param from The id for the node the edge comes from
+   * @param to   The id for the node the edge goes to
+   * @return The weight of the removed edge
+   * @throws IllegalArgumentException if either node is not contained in the graph or there is no
+   *                                  such edge
+   */
+  public int removeEdge(int from, int to) throws IllegalArgumentException {
+    int outgoingIndex = this.findEdge(from, to);
+    List<Pair<Integer, Integer>> currentOutgoingEdges = this.outgoingEdges.get(from);
+    List<Pair<Integer, Integer>> currentIncomingEdges = this.incomingEdges.get(to);
+    int incomingIndex = indexOfNeighbor(currentIncomingEdges, from);
+
+    int weight = currentOutgoingEdges.remove(outgoingIndex).getSecond();
+    currentIncomingEdges.remove(incomingIndex);
+    this.numberOfEdges -= 1;
+    this.version += 1;
+    return weight;
+  }
+
+  /**
+   * Returns the weight of the edge from _from_ to _to_
+   *
+   * @param from The id for the node the edge comes from
+   * @param to   The id for the node the edge goes to
+   * @return The weight of the edge, -1 if there is no such edge
+   * @throws IllegalArgumentException if either node is not contained in the graph
+   */
+  public int getEdgeWeight(int from, int to) throws IllegalArgumentException {
+    InputValidation.ensureWithin(from, 0, this.numberOfNodes - 1,
+        "From node is not contained the graph");
+    InputValidation.ensureWithin(to, 0, this.numberOfNodes - 1,
+        "To node is not contained the graph");
+    List<Pair<Integer, Integer>> currentOutgoingEdges = this.outgoingEdges.get(from);
+    int index = indexOfNeighbor(currentOutgoingEdges, to);
+    return index == -1 ? -1 : currentOutgoingEdges.get(index).getSecond();
+  }
+
+  /**
+   * Finds the edge from _from_ to _to_ among the outgoing edges of _from_
+   *
+   * @param from The id for the node the edge comes from
+   * @param to   The id for the node the edge goes to
+   * @return The index of the edge in the outgoing edges of _from_
+   * @throws IllegalArgumentException if either node is not contained in the graph or there is no
+   *                                  such edge
+   */
+  private int findEdge(int from, int to) throws IllegalArgumentException {
+    InputValidation.ensureWithin(from, 0, this.numberOfNodes - 1,
+        "From node is not contained the graph");
+    InputValidation.ensureWithin(to, 0, this.numberOfNodes - 1,
+        "To node is not contained the graph");
+    int index = indexOfNeighbor(this.outgoingEdges.get(from), to);
+    if (index == -1) {
+      throw new IllegalArgumentException("There is no edge from " + from + " to " + to);
+    }
+    return index;
+  }
+
+  /**
+   * Determines whether any of the given edges leads to _neighbor_. Every edge is stored in the
+   * outgoing list of its source and the incoming list of its target, so scanning one of them is
+   * enough, and scanning in place avoids building a list of neighbors for every edge added. Bulk
+   * loads should use GraphImporter or CompressedGraph.Builder, which find duplicates by sorting
+   *
+   * @param edges    The outgoing or incoming edges of a node
+   * @param neighbor The node to be looked for
+   * @return True if an edge leads to the neighbor, False otherwise
+   */
+  private static boolean containsNeighbor(List<Pair<Integer, Integer>> edges, int neighbor) {
+    return indexOfNeighbor(edges, neighbor) != -1;
+  }
+
+  /**
+   * Returns the index of the edge that leads to _neighbor_
+   *
+   * @param edges    The outgoing or incoming edges of a node
+   * @param neighbor The node to be looked for
+   * @return The index of the edge, -1 if no edge leads to the neighbor
+   */
+  private static int indexOfNeighbor(List<Pair<Integer, Integer>> edges, int neighbor) {
+    for (int index = 0; index < edges.size(); index++) {
+      if (edges.get(index).getFirst() == neighbor) {
+        return index;
+      }
     }
+    return -1;
   }
 
   /**
@@ -151,4 +293,81 @@ public class Graph {
     }
     return incomingEdgesCopy;
   }
+
+  /**
+   * Returns the number of outgoing edges of the given node. Together with getOutNeighbor and
+   * getOutWeight this walks the edges in place, without the copy made by getOutgoingEdges
+   *
+   * @param node The id of the node
+   * @return The number of outgoing edges
+   * @throws IllegalArgumentException if the node's id is out of bounds
+   */
+  @Override
+  public int getOutDegree(int node) throws IllegalArgumentException {
+    InputValidation
+        .ensureWithin(node, 0, this.numberOfNodes - 1, "Node is not contained the graph");
+    return this.outgoingEdges.get(node).size();
+  }
+
+  /**
+   * Returns the node the _index_th outgoing edge of _node_ leads to
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getOutDegree(node)
+   * @return The target of the edge
+   */
+  @Override
+  public int getOutNeighbor(int node, int index) {
+    return this.outgoingEdges.get(node).get(index).getFirst();
+  }
+
+  /**
+   * Returns the weight of the _index_th outgoing edge of _node_
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getOutDegree(node)
+   * @return The weight of the edge
+   */
+  @Override
+  public int getOutWeight(int node, int index) {
+    return this.outgoingEdges.get(node).get(index).getSecond();
+  }
+
+  /**
+   * Returns the number of incoming edges of the given node
+   *
+   * @param node The id of the node
+   * @return The number of incoming edges
+   * @throws IllegalArgumentException if the node's id is out of bounds
+   */
+  @Override
+  public int getInDegree(int node) throws IllegalArgumentException {
+    InputValidation
+        .ensureWithin(node, 0, this.numberOfNodes - 1, "Node is not contained the graph");
+    return this.incomingEdges.get(node).size();
+  }
+
+  /**
+   * Returns the node the _index_th incoming edge of _node_ comes from
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getInDegree(node)
+   * @return The source of the edge
+   */
+  @Override
+  public int getInNeighbor(int node, int index) {
+    return this.incomingEdges.get(node).get(index).getFirst();
+  }
+
+  /**
+   * Returns the weight of the _index_th incoming edge of _node_
+   *
+   * @param node  The id of the node
+   * @param index The index of the edge, below getInDegree(node)
+   * @return The weight of the edge
+   */
+  @Override
+  public int getInWeight(int node, int index) {
+    return this.incomingEdges.get(node).get(index).getSecond();
+  }
 }
@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the binary graph file format, so that large graphs can be opened without
+ * replaying every edge. A file is a header of eight little endian ints (magic, version, flags,
+ * number of nodes, number of edges, maximum weight and two reserved zeros) followed by the CSR
+ * arrays of CompressedGraph as little endian ints: the forward offsets, targets and weights, and,
+ * if the REVERSE_INDEX flag is set, the reverse offsets, sources and weights. Little endian matches
+ * the byte order of the machines the files are served on, so reading an int needs no swapping
+ */
+public class GraphFile {
+
+  private static final int MAGIC = 0x31525343; // "CSR1" when read as little endian bytes
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+  // the flag set when the file holds the incoming edges as well
+  private static final int REVERSE_INDEX = 1;
+
+  /**
+   * Writes the given graph to a graph file, replacing any existing file
+   *
+   * @param graph        The graph to be written
+   * @param file         The file the graph is written to
+   * @param reverseIndex Whether the incoming edges are written as well. Without them the file is
+   *                     half the size, but searches that walk edges backwards cannot use it
+   * @throws IllegalArgumentException if the graph or file is null
+   * @throws IOException              if the file cannot be written
+   */
+  public static void write(Graph graph, Path file, boolean reverseIndex)
+      throws IllegalArgumentException, IOException {
+    write(CompressedGraph.fromGraph(graph), file, reverseIndex);
+  }
+
+  /**
+   * Writes the given graph to a graph file, replacing any existing file
+   *
+   * @param graph        The graph to be written
+   * @param file         The file the graph is written to
+   * @param reverseIndex Whether the incoming edges are written as well
+   * @throws IllegalArgumentException if the graph or file is null, or a reverse index is requested
+   *                                  for a graph without incoming edges
+   * @throws IOException              if the file cannot be written
+   */
+  public static void write(GraphView graph, Path file, boolean reverseIndex)
+      throws IllegalArgumentException, IOException {
+    InputValidation.ensureNotNull(graph);
+    InputValidation.ensureNotNull(file);
+    if (reverseIndex && !graph.hasIncomingEdges()) {
+      throw new IllegalArgumentException("Graph has no incoming edges to be written");
+    }
+    int numberOfNodes = graph.getNumberOfNodes();
+    int numberOfEdges = graph.getNumberOfEdges();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      int[] header = {MAGIC, VERSION, reverseIndex ? REVERSE_INDEX : 0, numberOfNodes,
+          numberOfEdges, graph.getMaxWeight(), 0, 0};
+      for (int value : header) {
+        put(channel, buffer, value);
+      }
+
+      for (int node = 0; node <= numberOfNodes; node++) {
+        put(channel, buffer, node < numberOfNodes ? graph.getOutgoingBegin(node) : numberOfEdges);
+      }
+      for (int edge = 0; edge < numberOfEdges; edge++) {
+        put(channel, buffer, graph.getTarget(edge));
+      }
+      for (int edge = 0; edge < numberOfEdges; edge++) {
+        put(channel, buffer, graph.getWeight(edge));
+      }
+
+      if (reverseIndex) {
+        for (int node = 0; node <= numberOfNodes; node++) {
+          put(channel, buffer,
+              node < numberOfNodes ? graph.getIncomingBegin(node) : numberOfEdges);
+        }
+        for (int edge = 0; edge < numberOfEdges; edge++) {
+          put(channel, buffer, graph.getSource(edge));
+        }
+        for (int edge = 0; edge < numberOfEdges; edge++) {
+          put(channel, buffer, graph.getIncomingWeight(edge));
+        }
+      }
+      flush(channel, buffer);
+    }
+  }
+
+  /**
+   * Memory maps a graph file. Only the header is read, so this returns in about the same time for
+   * any size of graph, and the arrays are paged in as searches touch them
+   *
+   * @param file The graph file
+   * @return A graph backed by the mapped file
+   * @throws IllegalArgumentException if the file is null, or is not a graph file of a supported
+   *                                  version
+   * @throws IOException              if the file cannot be read or mapped
+   */
+  public static MappedGraph map(Path file) throws IllegalArgumentException, IOException {
+    InputValidation.ensureNotNull(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining() && channel.read(header) != -1) {
+        continue;
+      }
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IllegalArgumentException("Not a graph file");
+      }
+      if (header.getInt() != VERSION) {
+        throw new IllegalArgumentException("Unsupported graph file version");
+      }
+      boolean reverseIndex = (header.getInt() & REVERSE_INDEX) != 0;
+      int numberOfNodes = header.getInt();
+      int numberOfEdges = header.getInt();
+      int maxWeight = header.getInt();
+
+      long offsetInts = numberOfNodes + 1L;
+      long sectionBytes = 4L * (offsetInts + 2L * numberOfEdges);
+      if (numberOfNodes < 0 || numberOfEdges < 0 || channel.size()
+          != HEADER_BYTES + (reverseIndex ? 2 * sectionBytes : sectionBytes)) {
+        throw new IllegalArgumentException("Graph file is truncated or corrupt");
+      }
+
+      long position = HEADER_BYTES;
+      MappedGraph.IntSection forwardOffsets =
+          new MappedGraph.IntSection(channel, position, offsetInts);
+      position += 4 * offsetInts;
+      MappedGraph.IntSection forwardTargets =
+          new MappedGraph.IntSection(channel, position, numberOfEdges);
+      position += 4L * numberOfEdges;
+      MappedGraph.IntSection forwardWeights =
+          new MappedGraph.IntSection(channel, position, numberOfEdges);
+      position += 4L * numberOfEdges;
+
+      MappedGraph.IntSection reverseOffsets = null;
+      MappedGraph.IntSection reverseSources = null;
+      MappedGraph.IntSection reverseWeights = null;
+      if (reverseIndex) {
+        reverseOffsets = new MappedGraph.IntSection(channel, position, offsetInts);
+        position += 4 * offsetInts;
+        reverseSources = new MappedGraph.IntSection(channel, position, numberOfEdges);
+        position += 4L * numberOfEdges;
+        reverseWeights = new MappedGraph.IntSection(channel, position, numberOfEdges);
+      }
+      return new MappedGraph(numberOfNodes, numberOfEdges, maxWeight, forwardOffsets,
+          forwardTargets, forwardWeights, reverseOffsets, reverseSources, reverseWeights);
+    }
+  }
+
+  /**
+   * Appends an int to the buffer, writing the buffer out first if it is full
+   *
+   * @param channel The channel being written
+   * @param buffer  The write buffer
+   * @param value   The int to be written
+   * @throws IOException if the file cannot be written
+   */
+  private static void put(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+    if (buffer.remaining() < 4) {
+      flush(channel, buffer);
+    }
+    buffer.putInt(value);
+  }
+
+  /**
+   * Writes out everything in the buffer and empties it
+   *
+   * @param channel The channel being written
+   * @param buffer  The write buffer
+   * @throws IOException if the file cannot be written
+   */
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
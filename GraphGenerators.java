@@ -0,0 +1,159 @@
+import java.util.Random;
+
+/**
+ * Builds synthetic graphs for benchmarks and experiments. Every generator is seeded, so the same
+ * arguments always give the same graph, and edge weights are drawn uniformly from [1, maxWeight]
+ */
+public class GraphGenerators {
+
+  /**
+   * Generates a random sparse graph in which every ordered pair of distinct nodes is an edge with
+   * the same probability, chosen so that nodes have _averageDegree_ outgoing edges on average.
+   * Instead of flipping a coin for each of the n * (n - 1) pairs, the gap to the next edge is drawn
+   * from the geometric distribution, so the time taken is proportional to the number of edges
+   *
+   * @param numberOfNodes The number of nodes
+   * @param averageDegree The expected number of outgoing edges of a node
+   * @param maxWeight     The largest edge weight
+   * @param seed          The seed of the random numbers
+   * @return The generated graph
+   * @throws IllegalArgumentException if there are fewer than two nodes, the degree is not within
+   *                                  (0, numberOfNodes - 1] or the weight is not positive
+   */
+  public static Graph erdosRenyi(int numberOfNodes, double averageDegree, int maxWeight,
+      long seed) throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(numberOfNodes, 2, "There must be at least two nodes");
+    InputValidation.ensureGreaterThan(maxWeight, 1, "Maximum weight must be positive");
+    if (!(averageDegree > 0 && averageDegree <= numberOfNodes - 1)) {
+      throw new IllegalArgumentException("Average degree must be within (0, numberOfNodes - 1]");
+    }
+    Random random = new Random(seed);
+    Graph graph = new Graph(numberOfNodes);
+    double probability = averageDegree / (numberOfNodes - 1);
+    long numberOfPairs = (long) numberOfNodes * (numberOfNodes - 1);
+
+    // the pair (from, to) is numbered from * (n - 1) + j, where j is _to_ with _from_ skipped
+    long pair = -1;
+    double logOfMiss = Math.log(1 - probability);
+    while (true) {
+      pair += probability >= 1
+          ? 1 : 1 + (long) Math.floor(Math.log(1 - random.nextDouble()) / logOfMiss);
+      if (pair >= numberOfPairs || pair < 0) {
+        return graph;
+      }
+      int from = (int) (pair / (numberOfNodes - 1));
+      int to = (int) (pair % (numberOfNodes - 1));
+      if (to >= from) {
+        to += 1;
+      }
+      graph.addEdge(from, to, 1 + random.nextInt(maxWeight));
+    }
+  }
+
+  /**
+   * Generates a road-like grid in which every node is connected in both directions to the nodes
+   * above, below, left and right of it. Each direction of an edge gets its own weight
+   *
+   * @param rows      The number of rows
+   * @param columns   The number of columns
+   * @param maxWeight The largest edge weight
+   * @param seed      The seed of the random numbers
+   * @return The generated graph, in which node r * columns + c is in row r and column c
+   * @throws IllegalArgumentException if a dimension or the weight is not positive
+   */
+  public static Graph grid(int rows, int columns, int maxWeight, long seed)
+      throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(rows, 1, "Number of rows must be positive");
+    InputValidation.ensureGreaterThan(columns, 1, "Number of columns must be positive");
+    InputValidation.ensureGreaterThan(maxWeight, 1, "Maximum weight must be positive");
+    Random random = new Random(seed);
+    Graph graph = new Graph(rows * columns);
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        int node = row * columns + column;
+        if (column + 1 < columns) {
+          graph.addEdge(node, node + 1, 1 + random.nextInt(maxWeight));
+          graph.addEdge(node + 1, node, 1 + random.nextInt(maxWeight));
+        }
+        if (row + 1 < rows) {
+          graph.addEdge(node, node + columns, 1 + random.nextInt(maxWeight));
+          graph.addEdge(node + columns, node, 1 + random.nextInt(maxWeight));
+        }
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Generates a scale free graph by preferential attachment. Nodes arrive one at a time and connect
+   * in both directions to _edgesPerNode_ distinct earlier nodes, each picked with a probability
+   * proportional to its degree, which gives the power law degree distribution and the few very high
+   * degree hubs of social and web graphs
+   *
+   * @param numberOfNodes The number of nodes
+   * @param edgesPerNode  The number of earlier nodes every new node connects to
+   * @param maxWeight     The largest edge weight
+   * @param seed          The seed of the random numbers
+   * @return The generated graph
+   * @throws IllegalArgumentException if the number of nodes does not exceed _edgesPerNode_, or
+   *                                  _edgesPerNode_ or the weight is not positive
+   */
+  public static Graph powerLaw(int numberOfNodes, int edgesPerNode, int maxWeight, long seed)
+      throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(edgesPerNode, 1, "Edges per node must be positive");
+    InputValidation.ensureGreaterThan(numberOfNodes, edgesPerNode + 1,
+        "There must be more nodes than edges per node");
+    InputValidation.ensureGreaterThan(maxWeight, 1, "Maximum weight must be positive");
+    Random random = new Random(seed);
+    Graph graph = new Graph(numberOfNodes);
+
+    // every edge adds both of its ends, so picking a uniform entry picks a node by its degree
+    int[] ends = new int[2 * edgesPerNode * numberOfNodes];
+    int numberOfEnds = 0;
+    int[] picked = new int[edgesPerNode];
+
+    // the first edgesPerNode + 1 nodes form a complete graph to attach to
+    for (int from = 0; from <= edgesPerNode; from++) {
+      for (int to = 0; to < from; to++) {
+        graph.addEdge(from, to, 1 + random.nextInt(maxWeight));
+        graph.addEdge(to, from, 1 + random.nextInt(maxWeight));
+        ends[numberOfEnds++] = from;
+        ends[numberOfEnds++] = to;
+      }
+    }
+
+    for (int node = edgesPerNode + 1; node < numberOfNodes; node++) {
+      int numberPicked = 0;
+      while (numberPicked < edgesPerNode) {
+        int candidate = ends[random.nextInt(numberOfEnds)];
+        if (!contains(picked, numberPicked, candidate)) {
+          picked[numberPicked++] = candidate;
+        }
+      }
+      for (int index = 0; index < edgesPerNode; index++) {
+        graph.addEdge(node, picked[index], 1 + random.nextInt(maxWeight));
+        graph.addEdge(picked[index], node, 1 + random.nextInt(maxWeight));
+        ends[numberOfEnds++] = node;
+        ends[numberOfEnds++] = picked[index];
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Determines whether the first _count_ values of the array include _value_
+   *
+   * @param values The values
+   * @param count  The number of values to look at
+   * @param value  The value to be looked for
+   * @return True if the value is found, False otherwise
+   */
+  private static boolean contains(int[] values, int count, int value) {
+    for (int index = 0; index < count; index++) {
+      if (values[index] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,455 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads graphs from text files straight into a CompressedGraph, without going through Graph. Two
+ * formats are understood:
+ *
+ * DIMACS, as used by the shortest path challenge: lines starting with c are comments, the line
+ * "p sp n m" gives the number of nodes and edges, and every line "a u v w" is an edge from u to v
+ * of weight w, with nodes numbered from 1.
+ *
+ * Edge lists: every line "u v" or "u v w" is an edge from u to v with the weight w, or 1 if there
+ * is none, with nodes numbered from 0. Lines starting with # or % are comments, and the number of
+ * nodes is one more than the largest id.
+ *
+ * The file is memory mapped and parsed byte by byte, so no line is ever turned into a String. Files
+ * larger than CHUNK_BYTES are cut into chunks at line boundaries that are parsed in parallel, and
+ * the edges of all chunks are handed to the builder in one bulk call
+ */
+public class GraphImporter {
+
+  // the smallest amount of input worth parsing on a thread of its own
+  private static final long CHUNK_BYTES = 1L << 22;
+  // the largest region of a file mapped at once
+  private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+  /**
+   * The supported file formats
+   */
+  public enum Format {
+    DIMACS, EDGE_LIST
+  }
+
+  private Format format;
+  private ForkJoinPool pool;
+  private boolean deduplicate;
+  private long numberOfEdgesRead;
+  private long elapsedNanos;
+
+  /**
+   * Constructs a new GraphImporter which parses on the common pool and rejects duplicate edges
+   *
+   * @param format The format of the files to be read
+   * @throws IllegalArgumentException if the format is null
+   */
+  public GraphImporter(Format format) throws IllegalArgumentException {
+    this(format, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new GraphImporter which rejects duplicate edges
+   *
+   * @param format The format of the files to be read
+   * @param pool   The pool the chunks are parsed on
+   * @throws IllegalArgumentException if the format or pool is null
+   */
+  public GraphImporter(Format format, ForkJoinPool pool) throws IllegalArgumentException {
+    this.format = InputValidation.ensureNotNull(format);
+    this.pool = InputValidation.ensureNotNull(pool);
+    this.deduplicate = false;
+  }
+
+  /**
+   * Sets whether duplicate edges are merged, keeping the lightest, rather than rejected
+   *
+   * @param deduplicate True to merge duplicate edges, False to reject them
+   * @return This importer
+   */
+  public GraphImporter deduplicate(boolean deduplicate) {
+    this.deduplicate = deduplicate;
+    return this;
+  }
+
+  /**
+   * Reads a graph from the given file
+   *
+   * @param file The file to be read
+   * @return The graph in the file
+   * @throws IllegalArgumentException if the file is null or malformed, or contains duplicate edges
+   *                                  that are not merged
+   * @throws IOException              if the file cannot be read
+   */
+  public CompressedGraph read(Path file) throws IllegalArgumentException, IOException {
+    InputValidation.ensureNotNull(file);
+    long start = System.nanoTime();
+
+    List<Chunk> chunks = new ArrayList<Chunk>();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      // enough chunks to keep every worker busy, but none smaller than CHUNK_BYTES or larger than
+      // a single mapping can be
+      long wanted = Math.min((size + CHUNK_BYTES - 1) / CHUNK_BYTES,
+          4L * this.pool.getParallelism());
+      wanted = Math.max(wanted, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+      int numberOfChunks = (int) Math.max(1, wanted);
+
+      long[] bounds = new long[numberOfChunks + 1];
+      for (int chunk = 1; chunk < numberOfChunks; chunk++) {
+        long position = Math.max(bounds[chunk - 1], size * chunk / numberOfChunks);
+        bounds[chunk] = nextLine(channel, position);
+      }
+      bounds[numberOfChunks] = size;
+      for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk],
+            bounds[chunk + 1] - bounds[chunk]);
+        chunks.add(new Chunk(buffer, bounds[chunk], this.format));
+      }
+    }
+
+    // the mappings stay valid after the channel is closed
+    List<Future<Chunk>> parsed = this.pool.invokeAll(chunks);
+    int numberOfNodes = 0;
+    long numberOfEdges = 0;
+    boolean problemLineSeen = false;
+    for (Future<Chunk> future : parsed) {
+      Chunk chunk = join(future);
+      if (chunk.declaredNodes >= 0) {
+        if (problemLineSeen) {
+          throw new IllegalArgumentException("File has more than one problem line");
+        }
+        problemLineSeen = true;
+        numberOfNodes = chunk.declaredNodes;
+      }
+      numberOfEdges += chunk.count;
+    }
+    if (this.format == Format.DIMACS && !problemLineSeen) {
+      throw new IllegalArgumentException("File has no problem line");
+    }
+    if (numberOfEdges > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("File has too many edges for a compressed graph");
+    }
+    if (this.format == Format.EDGE_LIST) {
+      for (Chunk chunk : chunks) {
+        numberOfNodes = Math.max(numberOfNodes, chunk.largestNode + 1);
+      }
+    }
+
+    CompressedGraph.Builder builder = new CompressedGraph.Builder(numberOfNodes)
+        .deduplicate(this.deduplicate);
+    for (Chunk chunk : chunks) {
+      builder.addEdges(chunk.froms, chunk.tos, chunk.weights, chunk.count);
+    }
+    CompressedGraph graph = builder.build();
+
+    this.numberOfEdgesRead = numberOfEdges;
+    this.elapsedNanos = System.nanoTime() - start;
+    return graph;
+  }
+
+  /**
+   * Returns the number of edge lines in the last file read, including duplicates that were merged
+   *
+   * @return The number of edges read
+   */
+  public long getNumberOfEdgesRead() {
+    return this.numberOfEdgesRead;
+  }
+
+  /**
+   * Returns how long reading the last file took, from opening it to building the graph
+   *
+   * @return The time taken in milliseconds
+   */
+  public long getElapsedMillis() {
+    return this.elapsedNanos / 1000000;
+  }
+
+  /**
+   * Returns the throughput of the last file read
+   *
+   * @return The number of edges read per second
+   */
+  public double getEdgesPerSecond() {
+    return this.elapsedNanos == 0 ? 0 : this.numberOfEdgesRead * 1e9 / this.elapsedNanos;
+  }
+
+  /**
+   * Finds the start of the first line at or after _position_
+   *
+   * @param channel  The channel of the file
+   * @param position A position in the file
+   * @return The position just after the next line break, or the size of the file
+   * @throws IOException if the file cannot be read
+   */
+  private static long nextLine(FileChannel channel, long position) throws IOException {
+    if (position == 0) {
+      return 0;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    // a line break just before _position_ means a line starts right at it
+    position -= 1;
+    while (true) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        return channel.size();
+      }
+      for (int index = 0; index < read; index++) {
+        if (buffer.get(index) == '\n') {
+          return position + index + 1;
+        }
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Waits for a parsed chunk, rethrowing whatever stopped it from being parsed
+   *
+   * @param future The chunk being parsed
+   * @return The parsed chunk
+   * @throws IllegalArgumentException if the chunk is malformed
+   */
+  private static Chunk join(Future<Chunk> future) throws IllegalArgumentException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading a graph", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getCause();
+      }
+      throw new IllegalStateException("Could not read a graph", e.getCause());
+    }
+  }
+
+  /**
+   * A region of the file holding whole lines, and the edges parsed from it
+   */
+  private static class Chunk implements Callable<Chunk> {
+
+    private MappedByteBuffer buffer;
+    private long offset; // the position of the region in the file, for error messages
+    private Format format;
+    private int position;
+    private int[] froms = new int[1024];
+    private int[] tos = new int[1024];
+    private int[] weights = new int[1024];
+    private int count = 0;
+    private int largestNode = -1;
+    private int declaredNodes = -1; // the number of nodes on the problem line, if this chunk has it
+
+    /**
+     * Constructs a new Chunk
+     *
+     * @param buffer The mapped region
+     * @param offset The position of the region in the file
+     * @param format The format of the file
+     */
+    private Chunk(MappedByteBuffer buffer, long offset, Format format) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.format = format;
+      this.position = 0;
+    }
+
+    @Override
+    public Chunk call() {
+      int limit = this.buffer.limit();
+      while (this.position < limit) {
+        this.skipBlanks();
+        if (this.position >= limit) {
+          break;
+        }
+        byte first = this.buffer.get(this.position);
+        if (first == '\n' || first == '\r') {
+          this.position += 1;
+        } else if (this.format == Format.DIMACS) {
+          this.parseDimacsLine(first);
+        } else if (first == '#' || first == '%') {
+          this.skipLine();
+        } else {
+          int from = this.parseNumber();
+          int to = this.parseNumber();
+          this.skipBlanks();
+          int weight = this.atEndOfLine() ? 1 : this.parseNumber();
+          this.endLine();
+          this.add(from, to, weight);
+        }
+      }
+      this.buffer = null;
+      return this;
+    }
+
+    /**
+     * Parses one line of a DIMACS file
+     *
+     * @param first The first character of the line
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    private void parseDimacsLine(byte first) throws IllegalArgumentException {
+      if (first == 'c') {
+        this.skipLine();
+      } else if (first == 'a') {
+        this.position += 1;
+        int from = this.parseNumber() - 1;
+        int to = this.parseNumber() - 1;
+        int weight = this.parseNumber();
+        this.endLine();
+        this.add(from, to, weight);
+      } else if (first == 'p') {
+        if (this.declaredNodes >= 0) {
+          throw new IllegalArgumentException("File has more than one problem line");
+        }
+        this.position += 1;
+        this.skipBlanks();
+        // the problem type, sp for shortest paths
+        while (this.position < this.buffer.limit() && isLetter(this.buffer.get(this.position))) {
+          this.position += 1;
+        }
+        this.declaredNodes = this.parseNumber();
+        this.parseNumber();
+        this.endLine();
+      } else {
+        throw this.malformed();
+      }
+    }
+
+    /**
+     * Appends an edge, growing the arrays if they are full
+     *
+     * @param from   The node the edge comes from
+     * @param to     The node the edge goes to
+     * @param weight The weight of the edge
+     * @throws IllegalArgumentException if a node is negative
+     */
+    private void add(int from, int to, int weight) throws IllegalArgumentException {
+      if (from < 0 || to < 0) {
+        throw this.malformed();
+      }
+      if (this.count == this.froms.length) {
+        int newCapacity = 2 * this.count;
+        this.froms = Arrays.copyOf(this.froms, newCapacity);
+        this.tos = Arrays.copyOf(this.tos, newCapacity);
+        this.weights = Arrays.copyOf(this.weights, newCapacity);
+      }
+      this.froms[this.count] = from;
+      this.tos[this.count] = to;
+      this.weights[this.count] = weight;
+      this.count += 1;
+      this.largestNode = Math.max(this.largestNode, Math.max(from, to));
+    }
+
+    /**
+     * Parses a nonnegative decimal number after any blanks
+     *
+     * @return The number
+     * @throws IllegalArgumentException if there is no number or it does not fit in an int
+     */
+    private int parseNumber() throws IllegalArgumentException {
+      this.skipBlanks();
+      int limit = this.buffer.limit();
+      int start = this.position;
+      long value = 0;
+      while (this.position < limit) {
+        int digit = this.buffer.get(this.position) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        value = 10 * value + digit;
+        if (value > Integer.MAX_VALUE) {
+          throw this.malformed();
+        }
+        this.position += 1;
+      }
+      if (this.position == start) {
+        throw this.malformed();
+      }
+      return (int) value;
+    }
+
+    /**
+     * Moves past spaces and tabs
+     */
+    private void skipBlanks() {
+      int limit = this.buffer.limit();
+      while (this.position < limit) {
+        byte current = this.buffer.get(this.position);
+        if (current != ' ' && current != '\t') {
+          return;
+        }
+        this.position += 1;
+      }
+    }
+
+    /**
+     * Determines whether the position is at a line break or the end of the chunk
+     *
+     * @return True at the end of a line, False otherwise
+     */
+    private boolean atEndOfLine() {
+      if (this.position >= this.buffer.limit()) {
+        return true;
+      }
+      byte current = this.buffer.get(this.position);
+      return current == '\n' || current == '\r';
+    }
+
+    /**
+     * Moves past the end of a line that must hold nothing else
+     *
+     * @throws IllegalArgumentException if anything but blanks is left on the line
+     */
+    private void endLine() throws IllegalArgumentException {
+      this.skipBlanks();
+      if (!this.atEndOfLine()) {
+        throw this.malformed();
+      }
+      this.skipLine();
+    }
+
+    /**
+     * Moves past the next line break
+     */
+    private void skipLine() {
+      int limit = this.buffer.limit();
+      while (this.position < limit && this.buffer.get(this.position) != '\n') {
+        this.position += 1;
+      }
+      this.position += 1;
+    }
+
+    /**
+     * Builds the exception for a malformed line
+     *
+     * @return The exception, naming the position in the file
+     */
+    private IllegalArgumentException malformed() {
+      return new IllegalArgumentException(
+          "Malformed line near byte " + (this.offset + this.position) + " of the file");
+    }
+
+    /**
+     * Determines whether a character is an ASCII letter
+     *
+     * @param character The character
+     * @return True if it is a letter, False otherwise
+     */
+    private static boolean isLetter(byte character) {
+      return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z');
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Read-only access to a directed graph with positively weighted edges in compressed sparse row
+ * form, as consumed by the shortest path engines. The outgoing edges of node i are the edge indices
+ * [getOutgoingBegin(i), getOutgoingEnd(i)), and the incoming edges are indexed the same way in a
+ * separate range. Edge indices are dense: the ranges of consecutive nodes are adjacent and together
+ * cover [0, getNumberOfEdges()) in each direction, so the begin indices can be copied as CSR
+ * offsets. Implementations may keep their arrays on the heap or in a mapped file
+ */
+public interface GraphView {
+
+  /**
+   * Returns the number of nodes in the graph
+   *
+   * @return The number of nodes in the graph
+   */
+  int getNumberOfNodes();
+
+  /**
+   * Returns the number of edges in the graph
+   *
+   * @return The number of edges in the graph
+   */
+  int getNumberOfEdges();
+
+  /**
+   * Returns the largest weight of any edge in the graph
+   *
+   * @return The largest edge weight, 0 if the graph has no edges
+   */
+  int getMaxWeight();
+
+  /**
+   * Returns the index of the first outgoing edge of the given node
+   *
+   * @param node The id of the node
+   * @return The index of the node's first outgoing edge
+   */
+  int getOutgoingBegin(int node);
+
+  /**
+   * Returns the index one past the last outgoing edge of the given node
+   *
+   * @param node The id of the node
+   * @return The exclusive end index of the node's outgoing edges
+   */
+  int getOutgoingEnd(int node);
+
+  /**
+   * Returns the node the given outgoing edge leads to
+   *
+   * @param edge The index of an outgoing edge
+   * @return The target node of the edge
+   */
+  int getTarget(int edge);
+
+  /**
+   * Returns the weight of the given outgoing edge
+   *
+   * @param edge The index of an outgoing edge
+   * @return The weight of the edge
+   */
+  int getWeight(int edge);
+
+  /**
+   * Determines whether the incoming edges of the graph are available
+   *
+   * @return True if the incoming edge methods may be called, False otherwise
+   */
+  boolean hasIncomingEdges();
+
+  /**
+   * Returns the index of the first incoming edge of the given node
+   *
+   * @param node The id of the node
+   * @return The index of the node's first incoming edge
+   * @throws UnsupportedOperationException if the graph has no incoming edges
+   */
+  int getIncomingBegin(int node) throws UnsupportedOperationException;
+
+  /**
+   * Returns the index one past the last incoming edge of the given node
+   *
+   * @param node The id of the node
+   * @return The exclusive end index of the node's incoming edges
+   * @throws UnsupportedOperationException if the graph has no incoming edges
+   */
+  int getIncomingEnd(int node) throws UnsupportedOperationException;
+
+  /**
+   * Returns the node the given incoming edge comes from
+   *
+   * @param edge The index of an incoming edge
+   * @return The source node of the edge
+   * @throws UnsupportedOperationException if the graph has no incoming edges
+   */
+  int getSource(int edge) throws UnsupportedOperationException;
+
+  /**
+   * Returns the weight of the given incoming edge
+   *
+   * @param edge The index of an incoming edge
+   * @return The weight of the edge
+   * @throws UnsupportedOperationException if the graph has no incoming edges
+   */
+  int getIncomingWeight(int edge) throws UnsupportedOperationException;
+}
@@ -0,0 +1,471 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the k shortest loopless paths between two nodes with Yen's algorithm, for alternative
+ * routes. Every path after the first deviates from one of the paths found before it at some spur
+ * node: it shares the root of that path up to the spur node and then follows the shortest path to
+ * the target that avoids the nodes of the root and the edges the earlier paths with the same root
+ * took out of the spur node. Yen's algorithm runs one such spur search per node of the last path
+ * found, keeps the results as candidates, and takes the shortest candidate as the next path.
+ *
+ * Three things keep this close to the cost of a single query:
+ *
+ * - the spur searches run on a MaskedView of the graph, which hides nodes and edges by stamping
+ * them, so the graph is never copied
+ *
+ * - one reverse search from the target, over the incoming edges, gives the distance from every node
+ * to the target in the whole graph, a lower bound on its distance in any masked view. The spur
+ * searches are A* searches guided by it, which walk straight along the tree where nothing is
+ * masked, skip nodes that cannot reach the target at all, and give up as soon as they cannot beat
+ * the candidates already good enough to fill the k paths
+ *
+ * - the spur searches of one round are independent and run in parallel on a fork-join pool, each
+ * worker with its own masked view and search state
+ */
+public class KShortestPaths {
+
+  // the number of spur searches below which a range of them is not split any further
+  private static final int SPLIT_THRESHOLD = 2;
+
+  private final GraphView graph;
+  private final ForkJoinPool pool;
+  private final ThreadLocal<SpurSearch> spurSearch;
+  private final ThreadLocal<SearchWorkspace> workspace;
+
+  /**
+   * A view of the graph in which some nodes and edges are hidden. Every masked edge leaves the spur
+   * node, so nodes are masked by stamping them, and edges by stamping their targets, which only
+   * counts for edges out of the spur node. Masking is undone all at once by advancing an epoch
+   */
+  private static class MaskedView {
+
+    private final int[] maskedNodes; // the epoch in which each node was last masked
+    private final int[] maskedTargets; // the epoch in which the edges to each node were masked
+    private int spurNode;
+    private int epoch;
+
+    /**
+     * Constructs a new MaskedView in which nothing is masked
+     *
+     * @param graph The graph
+     */
+    private MaskedView(GraphView graph) {
+      this.maskedNodes = new int[graph.getNumberOfNodes()];
+      this.maskedTargets = new int[graph.getNumberOfNodes()];
+      this.spurNode = -1;
+      this.epoch = 1;
+    }
+
+    /**
+     * Unmasks every node and edge
+     *
+     * @param spurNode The node the edges masked from now on leave
+     */
+    private void clear(int spurNode) {
+      this.epoch += 1;
+      if (this.epoch == Integer.MAX_VALUE) {
+        Arrays.fill(this.maskedNodes, 0);
+        Arrays.fill(this.maskedTargets, 0);
+        this.epoch = 1;
+      }
+      this.spurNode = spurNode;
+    }
+
+    /**
+     * Hides a node and every edge into or out of it
+     *
+     * @param node The node
+     */
+    private void maskNode(int node) {
+      this.maskedNodes[node] = this.epoch;
+    }
+
+    /**
+     * Hides every edge from the spur node to _to_
+     *
+     * @param to The target of the edges
+     */
+    private void maskEdges(int to) {
+      this.maskedTargets[to] = this.epoch;
+    }
+
+    /**
+     * Determines whether an edge is hidden, by itself or by its target
+     *
+     * @param from The source of the edge
+     * @param to   The target of the edge
+     * @return True if the edge is masked, False otherwise
+     */
+    private boolean isMasked(int from, int to) {
+      return this.maskedNodes[to] == this.epoch
+          || (from == this.spurNode && this.maskedTargets[to] == this.epoch);
+    }
+  }
+
+  /**
+   * A path found by a spur search, waiting to be one of the k paths
+   */
+  private static class Candidate {
+
+    private final int distance;
+    private final int[] path;
+    private final int settledNodes;
+
+    /**
+     * Constructs a new Candidate
+     *
+     * @param distance     The length of the path
+     * @param path         The nodes of the path
+     * @param settledNodes The number of nodes the search that found it settled
+     */
+    private Candidate(int distance, int[] path, int settledNodes) {
+      this.distance = distance;
+      this.path = path;
+      this.settledNodes = settledNodes;
+    }
+  }
+
+  // shorter candidates first, and candidates of equal length by their nodes, so that the same path
+  // found from two spur nodes is only kept once
+  private static final Comparator<Candidate> CANDIDATE_ORDER = new Comparator<Candidate>() {
+    @Override
+    public int compare(Candidate first, Candidate second) {
+      if (first.distance != second.distance) {
+        return Integer.compare(first.distance, second.distance);
+      }
+      return Arrays.compare(first.path, second.path);
+    }
+  };
+
+  /**
+   * The reusable state of the spur searches of one worker
+   */
+  private static class SpurSearch {
+
+    private final MaskedView view;
+    private final int[] distances;
+    private final int[] parents;
+    private final int[] stamps;
+    private final PriorityQueue queue;
+    private int epoch;
+
+    /**
+     * Constructs a new SpurSearch
+     *
+     * @param graph The graph to be searched
+     */
+    private SpurSearch(GraphView graph) {
+      int numberOfNodes = graph.getNumberOfNodes();
+      this.view = new MaskedView(graph);
+      this.distances = new int[numberOfNodes];
+      this.parents = new int[numberOfNodes];
+      this.stamps = new int[numberOfNodes];
+      this.queue = new PriorityQueue(numberOfNodes, 4);
+      this.epoch = 0;
+    }
+  }
+
+  /**
+   * Constructs a new KShortestPaths on the common pool
+   *
+   * @param graph The graph to be searched, with incoming edges
+   * @throws IllegalArgumentException if the graph is null or has no incoming edges
+   */
+  public KShortestPaths(GraphView graph) throws IllegalArgumentException {
+    this(graph, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new KShortestPaths
+   *
+   * @param graph The graph to be searched, with incoming edges
+   * @param pool  The pool the spur searches run on
+   * @throws IllegalArgumentException if the graph or pool is null, or the graph has no incoming
+   *                                  edges
+   */
+  public KShortestPaths(GraphView graph, ForkJoinPool pool) throws IllegalArgumentException {
+    this.graph = InputValidation.ensureNotNull(graph);
+    this.pool = InputValidation.ensureNotNull(pool);
+    if (!graph.hasIncomingEdges()) {
+      throw new IllegalArgumentException("Graph has no incoming edges for the reverse search");
+    }
+    this.spurSearch = new ThreadLocal<SpurSearch>() {
+      @Override
+      protected SpurSearch initialValue() {
+        return new SpurSearch(KShortestPaths.this.graph);
+      }
+    };
+    this.workspace = new ThreadLocal<SearchWorkspace>() {
+      @Override
+      protected SearchWorkspace initialValue() {
+        return new SearchWorkspace(KShortestPaths.this.graph);
+      }
+    };
+  }
+
+  /**
+   * Finds up to _k_ loopless paths from _source_ to _target_, in increasing order of length. Paths
+   * of equal length are ordered by their nodes
+   *
+   * @param source The node the paths start at
+   * @param target The node the paths end at
+   * @param k      The number of paths to find
+   * @return The paths, fewer than _k_ if there are no more, none if the target is unreachable. The
+   *         settled nodes of each are those of the search that found it
+   * @throws IllegalArgumentException if either node is not contained in the graph or k is not
+   *                                  positive
+   */
+  public List<PathResult> shortestPaths(int source, int target, int k)
+      throws IllegalArgumentException {
+    int numberOfNodes = this.graph.getNumberOfNodes();
+    InputValidation.ensureWithin(source, 0, numberOfNodes - 1,
+        "Source is not contained the graph");
+    InputValidation.ensureWithin(target, 0, numberOfNodes - 1,
+        "Target is not contained the graph");
+    InputValidation.ensureGreaterThan(k, 1, "Number of paths must be positive");
+
+    // the distance from every node to the target, the heuristic of every spur search
+    ShortestPathTree reverseTree = this.workspace.get().shortestPathTree(this.graph, target,
+        true);
+    int[] bounds = new int[numberOfNodes];
+    reverseTree.copyDistances(bounds, 0, numberOfNodes);
+    List<PathResult> paths = new ArrayList<PathResult>();
+    if (bounds[source] == Main.UNREACHABLE) {
+      return paths;
+    }
+    // the first path is read off the reverse tree, whose parents lead towards the target
+    int length = 1;
+    for (int node = source; node != target; node = reverseTree.getParent(node)) {
+      length += 1;
+    }
+    int[] first = new int[length];
+    first[0] = source;
+    for (int index = 1; index < length; index++) {
+      first[index] = reverseTree.getParent(first[index - 1]);
+    }
+    List<int[]> found = new ArrayList<int[]>();
+    found.add(first);
+    paths.add(toResult(first, bounds[source], reverseTree.getSettledNodes()));
+
+    TreeSet<Candidate> candidates = new TreeSet<Candidate>(CANDIDATE_ORDER);
+    while (paths.size() < k) {
+      int[] last = found.get(found.size() - 1);
+      // a path longer than the candidates which would already fill the k paths is of no use
+      int needed = k - paths.size();
+      int limit = Main.UNREACHABLE;
+      if (candidates.size() >= needed) {
+        Candidate bound = null;
+        for (Candidate candidate : candidates) {
+          bound = candidate;
+          needed -= 1;
+          if (needed == 0) {
+            break;
+          }
+        }
+        limit = bound.distance;
+      }
+
+      Candidate[] spurs = new Candidate[last.length - 1];
+      this.pool.invoke(new SpurSearches(last, found, bounds, target, limit, spurs, 0,
+          spurs.length));
+      for (Candidate spur : spurs) {
+        if (spur != null) {
+          candidates.add(spur);
+        }
+      }
+      if (candidates.isEmpty()) {
+        break;
+      }
+      Candidate next = candidates.pollFirst();
+      found.add(next.path);
+      paths.add(toResult(next.path, next.distance, next.settledNodes));
+    }
+    return paths;
+  }
+
+  /**
+   * Runs the spur search of one node of the last path found
+   *
+   * @param search    The state of the search
+   * @param last      The last path found
+   * @param spurIndex The position of the spur node in the path
+   * @param found     Every path found so far
+   * @param bounds    The distance from every node to the target in the whole graph
+   * @param target    The target
+   * @param limit     The length a candidate may not exceed to be of use
+   * @return The candidate that deviates at the spur node, null if there is none within the limit
+   */
+  private Candidate spur(SpurSearch search, int[] last, int spurIndex, List<int[]> found,
+      int[] bounds, int target, int limit) {
+    GraphView graph = this.graph;
+    MaskedView view = search.view;
+    view.clear(last[spurIndex]);
+    int rootDistance = 0;
+    for (int index = 0; index < spurIndex; index++) {
+      view.maskNode(last[index]);
+      rootDistance += getLightestWeight(graph, last[index], last[index + 1]);
+    }
+    // every path found with this root has taken its edge out of the spur node already
+    for (int[] path : found) {
+      if (path.length > spurIndex + 1
+          && Arrays.equals(path, 0, spurIndex + 1, last, 0, spurIndex + 1)) {
+        view.maskEdges(path[spurIndex + 1]);
+      }
+    }
+
+    int spurNode = last[spurIndex];
+    search.epoch += 1;
+    if (search.epoch == Integer.MAX_VALUE) {
+      Arrays.fill(search.stamps, 0);
+      search.epoch = 1;
+    }
+    search.queue.clear();
+    search.distances[spurNode] = 0;
+    search.parents[spurNode] = spurNode;
+    search.stamps[spurNode] = search.epoch;
+    search.queue.insert(spurNode, bounds[spurNode]);
+    int settledNodes = 0;
+    while (!search.queue.isEmpty()) {
+      // the keys are lower bounds on the length of the spur path through the node
+      if ((long) rootDistance + search.queue.getMinimumDistance() > limit) {
+        return null;
+      }
+      int closestNode = search.queue.extractMin();
+      settledNodes += 1;
+      if (closestNode == target) {
+        int length = spurIndex + 1;
+        for (int node = target; node != spurNode; node = search.parents[node]) {
+          length += 1;
+        }
+        int[] path = Arrays.copyOf(last, length);
+        for (int node = target, index = length - 1; node != spurNode;
+            node = search.parents[node], index--) {
+          path[index] = node;
+        }
+        return new Candidate(rootDistance + search.distances[target], path, settledNodes);
+      }
+
+      int closestDistance = search.distances[closestNode];
+      int end = graph.getOutgoingEnd(closestNode);
+      for (int edge = graph.getOutgoingBegin(closestNode); edge < end; edge++) {
+        int neighbor = graph.getTarget(edge);
+        // nodes that cannot reach the target even in the whole graph are never worth a visit
+        if (bounds[neighbor] == Main.UNREACHABLE || view.isMasked(closestNode, neighbor)) {
+          continue;
+        }
+        int newDistance = closestDistance + graph.getWeight(edge);
+        if (search.stamps[neighbor] != search.epoch) {
+          search.stamps[neighbor] = search.epoch;
+          search.queue.insert(neighbor, newDistance + bounds[neighbor]);
+        } else if (newDistance < search.distances[neighbor] && search.queue.contains(neighbor)) {
+          search.queue.decreaseKey(neighbor, newDistance + bounds[neighbor]);
+        } else {
+          continue;
+        }
+        search.distances[neighbor] = newDistance;
+        search.parents[neighbor] = closestNode;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the weight of the lightest edge from _from_ to _to_
+   *
+   * @param graph The graph
+   * @param from  The source of the edge
+   * @param to    The target of the edge
+   * @return The weight
+   */
+  private static int getLightestWeight(GraphView graph, int from, int to) {
+    int lightest = Main.UNREACHABLE;
+    int end = graph.getOutgoingEnd(from);
+    for (int edge = graph.getOutgoingBegin(from); edge < end; edge++) {
+      if (graph.getTarget(edge) == to) {
+        lightest = Math.min(lightest, graph.getWeight(edge));
+      }
+    }
+    return lightest;
+  }
+
+  /**
+   * Wraps a path in a PathResult
+   *
+   * @param path         The nodes of the path
+   * @param distance     Its length
+   * @param settledNodes The number of nodes the search that found it settled
+   * @return The result
+   */
+  private static PathResult toResult(int[] path, int distance, int settledNodes) {
+    List<Integer> nodes = new ArrayList<Integer>(path.length);
+    for (int node : path) {
+      nodes.add(node);
+    }
+    return new PathResult(distance, nodes, settledNodes);
+  }
+
+  /**
+   * A range of the spur searches of one round. Ranges larger than the threshold are split in half
+   * and searched in parallel
+   */
+  private class SpurSearches extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] last;
+    private final transient List<int[]> found;
+    private final int[] bounds;
+    private final int target;
+    private final int limit;
+    private final transient Candidate[] spurs;
+    private final int begin;
+    private final int end;
+
+    /**
+     * Constructs a new SpurSearches
+     *
+     * @param last   The last path found
+     * @param found  Every path found so far
+     * @param bounds The distance from every node to the target in the whole graph
+     * @param target The target
+     * @param limit  The length a candidate may not exceed to be of use
+     * @param spurs  Filled with the candidate of every spur node, or null
+     * @param begin  The first spur index of the range
+     * @param end    The exclusive last spur index of the range
+     */
+    private SpurSearches(int[] last, List<int[]> found, int[] bounds, int target, int limit,
+        Candidate[] spurs, int begin, int end) {
+      this.last = last;
+      this.found = found;
+      this.bounds = bounds;
+      this.target = target;
+      this.limit = limit;
+      this.spurs = spurs;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.end - this.begin > SPLIT_THRESHOLD) {
+        int middle = (this.begin + this.end) >>> 1;
+        invokeAll(new SpurSearches(this.last, this.found, this.bounds, this.target, this.limit,
+            this.spurs, this.begin, middle), new SpurSearches(this.last, this.found,
+            this.bounds, this.target, this.limit, this.spurs, middle, this.end));
+        return;
+      }
+
+      SpurSearch search = KShortestPaths.this.spurSearch.get();
+      for (int index = this.begin; index < this.end; index++) {
+        this.spurs[index] = KShortestPaths.this.spur(search, this.last, index, this.found,
+            this.bounds, this.target, this.limit);
+      }
+    }
+  }
+}
@@ -0,0 +1,389 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Represents the preprocessed landmark tables of the ALT algorithm (A*, landmarks and the triangle
+ * inequality). For every landmark L the distances d(L, v) and d(v, L) to and from every node v
+ * are stored, which gives the lower bounds d(v, t) >= d(L, t) - d(L, v) and
+ * d(v, t) >= d(v, L) - d(t, L) on the distance from any node to the target. Using the largest of
+ * these bounds as the potential of an A* search steers it towards the target, so it settles far
+ * fewer nodes than dijkstra
+ */
+public class Landmarks {
+
+  private static final int MAGIC = 0x414c5431; // "ALT1"
+  private static final int VERSION = 1;
+
+  /**
+   * The strategies for placing landmarks
+   */
+  public enum Selection {
+    // every new landmark is the node farthest away from the ones already chosen
+    FARTHEST,
+    // every new landmark is a leaf of a large subtree whose lower bounds are still poor
+    AVOID
+  }
+
+  private int numberOfNodes;
+  private int[] landmarks;
+  private int numberOfLandmarks; // only below _landmarks.length_ while landmarks are being chosen
+  // both tables are node major: the distances of node v start at v * landmarks.length
+  private int[] fromLandmark; // d(L, v)
+  private int[] toLandmark; // d(v, L)
+
+  /**
+   * Constructs a new Landmarks from already computed tables
+   *
+   * @param numberOfNodes The number of nodes in the graph the tables were computed on
+   * @param landmarks     The landmark nodes
+   * @param fromLandmark  The node major table of distances from every landmark
+   * @param toLandmark    The node major table of distances to every landmark
+   */
+  private Landmarks(int numberOfNodes, int[] landmarks, int[] fromLandmark, int[] toLandmark) {
+    this.numberOfNodes = numberOfNodes;
+    this.landmarks = landmarks;
+    this.numberOfLandmarks = landmarks.length;
+    this.fromLandmark = fromLandmark;
+    this.toLandmark = toLandmark;
+  }
+
+  /**
+   * Chooses _numberOfLandmarks_ landmarks with the given strategy and computes their distance
+   * tables. Every landmark costs one forward and one backward search over the whole graph. Random
+   * choices are seeded, so the same graph always yields the same landmarks
+   *
+   * @param graph             The graph to be preprocessed
+   * @param numberOfLandmarks The number of landmarks to be chosen
+   * @param selection         The strategy for placing landmarks
+   * @return The landmark tables
+   * @throws IllegalArgumentException if the number of landmarks is not positive or exceeds the
+   *                                  number of nodes
+   */
+  public static Landmarks select(Graph graph, int numberOfLandmarks, Selection selection)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    InputValidation.ensureNotNull(selection);
+    int numberOfNodes = graph.getNumberOfNodes();
+    InputValidation.ensureWithin(numberOfLandmarks, 1, numberOfNodes,
+        "Number of landmarks must be positive and at most the number of nodes");
+
+    int[] landmarks = new int[numberOfLandmarks];
+    int[] fromLandmark = new int[numberOfNodes * numberOfLandmarks];
+    int[] toLandmark = new int[numberOfNodes * numberOfLandmarks];
+    Landmarks tables = new Landmarks(numberOfNodes, landmarks, fromLandmark, toLandmark);
+    Random random = new Random(0);
+
+    for (int index = 0; index < numberOfLandmarks; index++) {
+      // the tables only hold the first _index_ landmarks while the next one is chosen
+      tables.numberOfLandmarks = index;
+      int landmark = selection == Selection.FARTHEST
+          ? tables.farthestNode(graph, random) : tables.avoidNode(graph, random);
+      landmarks[index] = landmark;
+
+      int[] from = Main.shortestPathTree(graph, landmark, false).getFirst();
+      int[] to = Main.shortestPathTree(graph, landmark, true).getFirst();
+      for (int node = 0; node < numberOfNodes; node++) {
+        fromLandmark[node * numberOfLandmarks + index] = from[node];
+        toLandmark[node * numberOfLandmarks + index] = to[node];
+      }
+    }
+    tables.numberOfLandmarks = numberOfLandmarks;
+    return tables;
+  }
+
+  /**
+   * Returns a copy of the landmark nodes
+   *
+   * @return A copy of the landmark nodes
+   */
+  public int[] getLandmarks() {
+    return Arrays.copyOf(this.landmarks, this.landmarks.length);
+  }
+
+  /**
+   * Returns the lower bound the landmarks give on the distance from _node_ to _target_
+   *
+   * @param node   The node the distance is measured from
+   * @param target The node the distance is measured to
+   * @return A lower bound on the distance, 0 if no landmark gives one
+   */
+  public int lowerBound(int node, int target) {
+    int stride = this.landmarks.length;
+    int bound = 0;
+    for (int index = 0; index < this.numberOfLandmarks; index++) {
+      // d(v, t) >= d(L, t) - d(L, v)
+      int landmarkToNode = this.fromLandmark[node * stride + index];
+      int landmarkToTarget = this.fromLandmark[target * stride + index];
+      if (landmarkToNode != Main.UNREACHABLE && landmarkToTarget != Main.UNREACHABLE) {
+        bound = Math.max(bound, landmarkToTarget - landmarkToNode);
+      }
+      // d(v, t) >= d(v, L) - d(t, L)
+      int nodeToLandmark = this.toLandmark[node * stride + index];
+      int targetToLandmark = this.toLandmark[target * stride + index];
+      if (nodeToLandmark != Main.UNREACHABLE && targetToLandmark != Main.UNREACHABLE) {
+        bound = Math.max(bound, nodeToLandmark - targetToLandmark);
+      }
+    }
+    return bound;
+  }
+
+  /**
+   * Finds the shortest path from _source_ to _target_ with an A* search whose potential is the
+   * landmark lower bound. Landmarks can leave some nodes without a bound, which makes the potential
+   * admissible but not always consistent, so a node whose distance improves after it was settled is
+   * put back into the queue
+   *
+   * @param graph  The graph the tables were computed on
+   * @param source The node the path starts at
+   * @param target The node the path ends at
+   * @return The distance, the path and the number of settled nodes
+   * @throws IllegalArgumentException if the graph does not match the tables or either node is not
+   *                                  contained in the graph
+   */
+  public PathResult shortestPath(Graph graph, int source, int target)
+      throws IllegalArgumentException {
+    if (graph.getNumberOfNodes() != this.numberOfNodes) {
+      throw new IllegalArgumentException("Landmarks were computed for a different graph");
+    }
+    InputValidation.ensureWithin(source, 0, this.numberOfNodes - 1,
+        "Source is not contained the graph");
+    InputValidation.ensureWithin(target, 0, this.numberOfNodes - 1,
+        "Target is not contained the graph");
+
+    int[] distances = new int[this.numberOfNodes];
+    int[] potentials = new int[this.numberOfNodes];
+    int[] parent = new int[this.numberOfNodes];
+    Arrays.fill(distances, Main.UNREACHABLE);
+    Arrays.fill(parent, -1);
+    PriorityQueue queue = new PriorityQueue(this.numberOfNodes);
+    distances[source] = 0;
+    potentials[source] = this.lowerBound(source, target);
+    parent[source] = source;
+    queue.insert(source, potentials[source]);
+    int settledNodes = 0;
+
+    while (!queue.isEmpty()) {
+      int closestNode = queue.extractMin();
+      int closestDistance = distances[closestNode];
+      settledNodes += 1;
+      if (closestNode == target) {
+        return new PathResult(closestDistance, Main.followParents(parent, target), settledNodes);
+      }
+
+      int outDegree = graph.getOutDegree(closestNode);
+      for (int index = 0; index < outDegree; index++) {
+        int neighbor = graph.getOutNeighbor(closestNode, index);
+        int newDistance = closestDistance + graph.getOutWeight(closestNode, index);
+        if (distances[neighbor] <= newDistance) {
+          continue;
+        }
+        if (parent[neighbor] == -1) {
+          potentials[neighbor] = this.lowerBound(neighbor, target);
+        }
+        distances[neighbor] = newDistance;
+        parent[neighbor] = closestNode;
+        if (queue.contains(neighbor)) {
+          queue.decreaseKey(neighbor, newDistance + potentials[neighbor]);
+        } else {
+          queue.insert(neighbor, newDistance + potentials[neighbor]);
+        }
+      }
+    }
+
+    return PathResult.unreachable(settledNodes);
+  }
+
+  /**
+   * Writes the landmark tables to the given file so that preprocessing need not be repeated
+   *
+   * @param file The file to be written
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path file) throws IOException {
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(this.numberOfNodes);
+      output.writeInt(this.landmarks.length);
+      for (int index = 0; index < this.landmarks.length; index++) {
+        output.writeInt(this.landmarks[index]);
+      }
+      for (int index = 0; index < this.fromLandmark.length; index++) {
+        output.writeInt(this.fromLandmark[index]);
+      }
+      for (int index = 0; index < this.toLandmark.length; index++) {
+        output.writeInt(this.toLandmark[index]);
+      }
+    }
+  }
+
+  /**
+   * Reads landmark tables previously written by save
+   *
+   * @param file The file to be read
+   * @return The landmark tables
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the file is not a landmark file of a supported version
+   */
+  public static Landmarks load(Path file) throws IOException, IllegalArgumentException {
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      if (input.readInt() != MAGIC) {
+        throw new IllegalArgumentException("Not a landmark file");
+      }
+      if (input.readInt() != VERSION) {
+        throw new IllegalArgumentException("Unsupported landmark file version");
+      }
+      int numberOfNodes = input.readInt();
+      int[] landmarks = new int[input.readInt()];
+      int[] fromLandmark = new int[numberOfNodes * landmarks.length];
+      int[] toLandmark = new int[numberOfNodes * landmarks.length];
+      for (int index = 0; index < landmarks.length; index++) {
+        landmarks[index] = input.readInt();
+      }
+      for (int index = 0; index < fromLandmark.length; index++) {
+        fromLandmark[index] = input.readInt();
+      }
+      for (int index = 0; index < toLandmark.length; index++) {
+        toLandmark[index] = input.readInt();
+      }
+      return new Landmarks(numberOfNodes, landmarks, fromLandmark, toLandmark);
+    }
+  }
+
+  /**
+   * Finds the node whose smallest distance from the current landmarks is largest. Without any
+   * landmarks the search starts from a random node instead. Nodes no landmark can reach count as
+   * infinitely far, which places landmarks in every part of a disconnected graph
+   *
+   * @param graph  The graph being preprocessed
+   * @param random The source of randomness
+   * @return The next landmark
+   */
+  private int farthestNode(Graph graph, Random random) {
+    int stride = this.landmarks.length;
+    int[][] distances = new int[Math.max(1, this.numberOfLandmarks)][];
+    if (this.numberOfLandmarks == 0) {
+      distances[0] = Main.shortestPathTree(graph, random.nextInt(this.numberOfNodes), false)
+          .getFirst();
+    } else {
+      for (int index = 0; index < this.numberOfLandmarks; index++) {
+        int[] column = new int[this.numberOfNodes];
+        for (int node = 0; node < this.numberOfNodes; node++) {
+          column[node] = this.fromLandmark[node * stride + index];
+        }
+        distances[index] = column;
+      }
+    }
+
+    int farthestNode = -1;
+    long farthestDistance = -1;
+    for (int node = 0; node < this.numberOfNodes; node++) {
+      if (this.isLandmark(node)) {
+        continue;
+      }
+      long smallestDistance = Long.MAX_VALUE;
+      for (int index = 0; index < distances.length; index++) {
+        smallestDistance = Math.min(smallestDistance, distances[index][node]);
+      }
+      if (smallestDistance > farthestDistance) {
+        farthestDistance = smallestDistance;
+        farthestNode = node;
+      }
+    }
+    return farthestNode;
+  }
+
+  /**
+   * Implements the avoid heuristic: grow a shortest path tree from a random root, weigh every node
+   * by how much its distance from the root exceeds the current lower bound, and sum the weights of
+   * every subtree that holds no landmark yet. Starting at the heaviest subtree, walk down to the
+   * heaviest child until a leaf is reached, which becomes the next landmark
+   *
+   * @param graph  The graph being preprocessed
+   * @param random The source of randomness
+   * @return The next landmark
+   */
+  private int avoidNode(Graph graph, Random random) {
+    int root = random.nextInt(this.numberOfNodes);
+    Pair<int[], int[]> tree = Main.shortestPathTree(graph, root, false);
+    int[] distances = tree.getFirst();
+    int[] parent = tree.getSecond();
+
+    // visit the reached nodes from the deepest up so that children come before their parents
+    List<Integer> order = new ArrayList<Integer>();
+    for (int node = 0; node < this.numberOfNodes; node++) {
+      if (parent[node] != -1) {
+        order.add(node);
+      }
+    }
+    order.sort((first, second) -> Integer.compare(distances[second], distances[first]));
+
+    long[] sizes = new long[this.numberOfNodes];
+    boolean[] holdsLandmark = new boolean[this.numberOfNodes];
+    for (int index = 0; index < order.size(); index++) {
+      int node = order.get(index);
+      holdsLandmark[node] |= this.isLandmark(node);
+      if (holdsLandmark[node]) {
+        sizes[node] = 0;
+      } else {
+        sizes[node] += distances[node] - this.lowerBound(root, node);
+      }
+      if (node != root) {
+        holdsLandmark[parent[node]] |= holdsLandmark[node];
+        sizes[parent[node]] += sizes[node];
+      }
+    }
+
+    int current = root;
+    for (int node = 0; node < this.numberOfNodes; node++) {
+      if (parent[node] != -1 && sizes[node] > sizes[current]) {
+        current = node;
+      }
+    }
+    if (sizes[current] == 0) {
+      // every subtree already holds a landmark, so fall back to the farthest node
+      return this.farthestNode(graph, random);
+    }
+
+    // walk down to the heaviest child until a leaf is reached
+    int[] heaviestChild = new int[this.numberOfNodes];
+    Arrays.fill(heaviestChild, -1);
+    for (int node = 0; node < this.numberOfNodes; node++) {
+      if (parent[node] != -1 && node != root && sizes[node] > 0
+          && (heaviestChild[parent[node]] == -1
+          || sizes[node] > sizes[heaviestChild[parent[node]]])) {
+        heaviestChild[parent[node]] = node;
+      }
+    }
+    while (heaviestChild[current] != -1) {
+      current = heaviestChild[current];
+    }
+    return current;
+  }
+
+  /**
+   * Determines whether the given node is one of the current landmarks
+   *
+   * @param node The node to be checked
+   * @return True if the node is a landmark, False otherwise
+   */
+  private boolean isLandmark(int node) {
+    for (int index = 0; index < this.numberOfLandmarks; index++) {
+      if (this.landmarks[index] == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
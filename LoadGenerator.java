@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A load generator for QueryServer. It sends random distance queries from many virtual threads at
+ * once and reports the throughput and the latency percentiles of the successful ones, as well as
+ * how many the server rejected or failed.
+ *
+ * Usage: java LoadGenerator [server url] [number of nodes] [requests] [concurrent requests] [batch]
+ *
+ * With a batch size above 1, every request posts that many queries to /batch instead
+ */
+public class LoadGenerator {
+
+  private final URI server;
+  private final int numberOfNodes;
+  private final long seed;
+  private final HttpClient client;
+
+  /**
+   * The results of a run
+   */
+  public static class Report {
+
+    private final int succeeded;
+    private final int rejected;
+    private final int failed;
+    private final long elapsedNanos;
+    private final long[] latencies;
+    private final int queriesPerRequest;
+
+    /**
+     * Constructs a new Report
+     *
+     * @param succeeded         The number of successful requests
+     * @param rejected          The number of requests rejected by admission control
+     * @param failed            The number of requests that failed otherwise
+     * @param elapsedNanos      The duration of the run
+     * @param latencies         The sorted latencies of the successful requests in nanoseconds
+     * @param queriesPerRequest The number of queries in every request
+     */
+    private Report(int succeeded, int rejected, int failed, long elapsedNanos, long[] latencies,
+        int queriesPerRequest) {
+      this.succeeded = succeeded;
+      this.rejected = rejected;
+      this.failed = failed;
+      this.elapsedNanos = elapsedNanos;
+      this.latencies = latencies;
+      this.queriesPerRequest = queriesPerRequest;
+    }
+
+    /**
+     * Returns the number of successful requests
+     *
+     * @return The number of successful requests
+     */
+    public int getSucceeded() {
+      return this.succeeded;
+    }
+
+    /**
+     * Returns the number of requests the server rejected with 503
+     *
+     * @return The number of rejected requests
+     */
+    public int getRejected() {
+      return this.rejected;
+    }
+
+    /**
+     * Returns the number of requests that failed for any other reason
+     *
+     * @return The number of failed requests
+     */
+    public int getFailed() {
+      return this.failed;
+    }
+
+    /**
+     * Returns the number of queries answered per second
+     *
+     * @return The throughput
+     */
+    public double getQueriesPerSecond() {
+      return (double) this.succeeded * this.queriesPerRequest * 1e9 / this.elapsedNanos;
+    }
+
+    /**
+     * Returns a percentile of the latency of the successful requests
+     *
+     * @param fraction The percentile as a fraction within (0, 1]
+     * @return The latency in microseconds, 0 if no request succeeded
+     * @throws IllegalArgumentException if the fraction is not within (0, 1]
+     */
+    public double getLatencyPercentileMicros(double fraction) throws IllegalArgumentException {
+      if (!(fraction > 0 && fraction <= 1)) {
+        throw new IllegalArgumentException("Percentile must be within (0, 1]");
+      }
+      if (this.latencies.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(fraction * this.latencies.length) - 1;
+      return this.latencies[Math.max(0, rank)] / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d ok, %d rejected, %d failed, %.0f queries/s, p50 %.1f us, "
+          + "p99 %.1f us", this.succeeded, this.rejected, this.failed, this.getQueriesPerSecond(),
+          this.getLatencyPercentileMicros(0.5), this.getLatencyPercentileMicros(0.99));
+    }
+  }
+
+  /**
+   * Constructs a new LoadGenerator
+   *
+   * @param server        The base URL of the server, such as http://localhost:8080
+   * @param numberOfNodes The number of nodes of the served graph, which queries are drawn from
+   * @param seed          The seed of the random queries
+   * @throws IllegalArgumentException if the URL is null or the number of nodes is not positive
+   */
+  public LoadGenerator(URI server, int numberOfNodes, long seed) throws IllegalArgumentException {
+    this.server = InputValidation.ensureNotNull(server);
+    this.numberOfNodes = InputValidation.ensureGreaterThan(numberOfNodes, 1,
+        "Number of nodes must be positive");
+    this.seed = seed;
+    // QueryServer only speaks HTTP/1.1, so the client should not try to upgrade every connection
+    this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+        .executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+  }
+
+  /**
+   * Sends _numberOfRequests_ requests, at most _concurrency_ of them at a time, and waits for all
+   * of them
+   *
+   * @param numberOfRequests The number of requests
+   * @param concurrency      The largest number of requests in flight
+   * @param batchSize        The number of queries per request, 1 for /distance requests
+   * @return The results
+   * @throws IllegalArgumentException if a number is not positive
+   * @throws InterruptedException if the run is interrupted
+   */
+  public Report run(int numberOfRequests, int concurrency, int batchSize)
+      throws IllegalArgumentException, InterruptedException {
+    InputValidation.ensureGreaterThan(numberOfRequests, 1, "Number of requests must be positive");
+    InputValidation.ensureGreaterThan(concurrency, 1, "Concurrency must be positive");
+    InputValidation.ensureGreaterThan(batchSize, 1, "Batch size must be positive");
+    Random random = new Random(this.seed);
+    long[] latencies = new long[numberOfRequests];
+    AtomicInteger succeeded = new AtomicInteger();
+    AtomicInteger rejected = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    Semaphore inFlight = new Semaphore(concurrency);
+
+    long start = System.nanoTime();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int index = 0; index < numberOfRequests; index++) {
+        HttpRequest request = this.newRequest(random, batchSize);
+        inFlight.acquire();
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              long sent = System.nanoTime();
+              HttpResponse<String> response = LoadGenerator.this.client.send(request,
+                  HttpResponse.BodyHandlers.ofString());
+              long latency = System.nanoTime() - sent;
+              if (response.statusCode() == 200) {
+                latencies[succeeded.getAndIncrement()] = latency;
+              } else if (response.statusCode() == 503) {
+                rejected.incrementAndGet();
+              } else {
+                failed.incrementAndGet();
+              }
+            } catch (IOException | RuntimeException e) {
+              // unchecked failures of the client count as well, so every request is reported
+              failed.incrementAndGet();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              failed.incrementAndGet();
+            } finally {
+              inFlight.release();
+            }
+          }
+        });
+      }
+      // closing the executor waits for the requests still in flight
+    }
+    long elapsed = System.nanoTime() - start;
+
+    long[] successful = Arrays.copyOf(latencies, succeeded.get());
+    Arrays.sort(successful);
+    return new Report(succeeded.get(), rejected.get(), failed.get(), elapsed, successful,
+        batchSize);
+  }
+
+  /**
+   * Builds a random request
+   *
+   * @param random    The random numbers
+   * @param batchSize The number of queries of the request
+   * @return The request
+   */
+  private HttpRequest newRequest(Random random, int batchSize) {
+    if (batchSize == 1) {
+      return HttpRequest.newBuilder(this.server.resolve("/distance?source="
+          + random.nextInt(this.numberOfNodes) + "&target=" + random.nextInt(this.numberOfNodes)))
+          .GET().build();
+    }
+    StringBuilder body = new StringBuilder();
+    for (int query = 0; query < batchSize; query++) {
+      body.append(random.nextInt(this.numberOfNodes)).append(' ')
+          .append(random.nextInt(this.numberOfNodes)).append('\n');
+    }
+    return HttpRequest.newBuilder(this.server.resolve("/batch"))
+        .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+  }
+
+  /**
+   * Runs the load generator against a server
+   *
+   * @param args The server URL, the number of nodes, the number of requests, the number of
+   *             concurrent requests and the batch size
+   * @throws InterruptedException if the run is interrupted
+   */
+  public static void main(String[] args) throws InterruptedException {
+    if (args.length < 2) {
+      System.out.println("usage: java LoadGenerator [server url] [number of nodes] [requests] "
+          + "[concurrent requests] [batch size]");
+      return;
+    }
+    LoadGenerator generator = new LoadGenerator(URI.create(args[0]), Integer.parseInt(args[1]), 1);
+    int numberOfRequests = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+    int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+    int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+    System.out.println(generator.run(numberOfRequests, concurrency, batchSize));
+  }
+}
@@ -1,11 +1,23 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 // the runner class for the algorithm
 public class Main {
 
+  // the distance of a node that cannot be reached, used by everything except dijkstra
+  public static final int UNREACHABLE = Integer.MAX_VALUE;
+
   public static Pair<List<Integer>, List<Integer>> dijkstra(Graph graph,
       int startingNode) {
+    SearchStatistics statistics = SearchMetrics.ENABLED ? new SearchStatistics("dijkstra") : null;
+    if (SearchMetrics.ENABLED) {
+      statistics.start();
+    }
     List<Integer> distances = new ArrayList<Integer>(graph.getNumberOfNodes());
     List<Integer> parent = new ArrayList<Integer>(graph.getNumberOfNodes());
     List<Boolean> seen = new ArrayList<Boolean>(graph.getNumberOfNodes());
@@ -24,33 +36,465 @@ public class Main {
         // since this is not a possible node, it indicate an absence of parent
         parent.add(-1);
       }
+      if (SearchMetrics.ENABLED) {
+        statistics.seeded(queue.size());
+      }
+    }
+    if (SearchMetrics.ENABLED) {
+      statistics.endInitialization();
     }
 
     while (!queue.isEmpty()) {
-      Pair<Integer, Integer> closestNodeAndDistance = queue.extractMin();
-      int closestNode = closestNodeAndDistance.getFirst();
-      int closestDistance = closestNodeAndDistance.getSecond();
+      int closestDistance = queue.getMinimumDistance();
+      int closestNode = queue.extractMin();
       seen.set(closestNode, true);
+      if (SearchMetrics.ENABLED) {
+        statistics.extracted();
+      }
 
-      List<Pair<Integer, Integer>> outEdges = graph.getOutgoingEdges(closestNode);
-      for (int index = 0; index < outEdges.size(); index++) {
-        Pair<Integer, Integer> currentEdge = outEdges.get(index);
-        int currentOutNeighbor = currentEdge.getFirst();
-        int currentEdgeWeight = currentEdge.getSecond();
+      int outDegree = graph.getOutDegree(closestNode);
+      for (int index = 0; index < outDegree; index++) {
+        int currentOutNeighbor = graph.getOutNeighbor(closestNode, index);
+        int currentEdgeWeight = graph.getOutWeight(closestNode, index);
+        if (SearchMetrics.ENABLED) {
+          statistics.relaxed();
+        }
         if (!seen.get(currentOutNeighbor)) {
           int distanceToNeighbor = queue.lookup(currentOutNeighbor);
           if (distanceToNeighbor > closestDistance + currentEdgeWeight) {
             distances.set(currentOutNeighbor, closestDistance + currentEdgeWeight);
             queue.decreaseKey(currentOutNeighbor, closestDistance + currentEdgeWeight);
             parent.set(currentOutNeighbor, closestNode);
+            if (SearchMetrics.ENABLED) {
+              statistics.decreased();
+            }
           }
         }
       }
     }
 
+    if (SearchMetrics.ENABLED) {
+      statistics.endSearch();
+      statistics.finish();
+    }
     return new Pair<List<Integer>, List<Integer>>(distances, parent);
   }
 
+  /**
+   * Runs dijkstra's algorithm over the compressed form of a graph, either a CompressedGraph or a
+   * MappedGraph. The search itself only touches primitive arrays, and the results are boxed once at
+   * the end so that they match the lists returned for a Graph
+   *
+   * @param graph        The compressed graph to be searched
+   * @param startingNode The source node
+   * @return A pair of the distance list and the parent list
+   */
+  public static Pair<List<Integer>, List<Integer>> dijkstra(GraphView graph,
+      int startingNode) {
+    SearchStatistics statistics = SearchMetrics.ENABLED
+        ? new SearchStatistics("dijkstra compressed") : null;
+    if (SearchMetrics.ENABLED) {
+      statistics.start();
+    }
+    int numberOfNodes = graph.getNumberOfNodes();
+    int[] distances = new int[numberOfNodes];
+    int[] parent = new int[numberOfNodes];
+    boolean[] seen = new boolean[numberOfNodes];
+    Arrays.fill(distances, 9999);
+    Arrays.fill(parent, -1);
+    distances[startingNode] = 0;
+    parent[startingNode] = startingNode;
+    // nodes enter the queue once their distance drops below the sentinel, which gives the same
+    // result as inserting them all up front and keeps the queue monotone
+    NodeQueue queue = NodeQueue.forMaxWeight(numberOfNodes, graph.getMaxWeight());
+    queue.insert(startingNode, 0);
+    if (SearchMetrics.ENABLED) {
+      statistics.seeded(queue.size());
+      statistics.endInitialization();
+    }
+
+    while (!queue.isEmpty()) {
+      int closestDistance = queue.getMinimumDistance();
+      int closestNode = queue.extractMin();
+      seen[closestNode] = true;
+      if (SearchMetrics.ENABLED) {
+        statistics.extracted();
+      }
+
+      int end = graph.getOutgoingEnd(closestNode);
+      for (int edge = graph.getOutgoingBegin(closestNode); edge < end; edge++) {
+        int currentOutNeighbor = graph.getTarget(edge);
+        int newDistance = closestDistance + graph.getWeight(edge);
+        if (SearchMetrics.ENABLED) {
+          statistics.relaxed();
+        }
+        if (!seen[currentOutNeighbor] && distances[currentOutNeighbor] > newDistance) {
+          if (queue.contains(currentOutNeighbor)) {
+            queue.decreaseKey(currentOutNeighbor, newDistance);
+            if (SearchMetrics.ENABLED) {
+              statistics.decreased();
+            }
+          } else {
+            queue.insert(currentOutNeighbor, newDistance);
+            if (SearchMetrics.ENABLED) {
+              statistics.inserted(queue.size());
+            }
+          }
+          distances[currentOutNeighbor] = newDistance;
+          parent[currentOutNeighbor] = closestNode;
+        }
+      }
+    }
+
+    if (SearchMetrics.ENABLED) {
+      statistics.endSearch();
+    }
+    Pair<List<Integer>, List<Integer>> result =
+        new Pair<List<Integer>, List<Integer>>(toList(distances), toList(parent));
+    if (SearchMetrics.ENABLED) {
+      statistics.finish();
+    }
+    return result;
+  }
+
+  /**
+   * Finds the shortest path from _source_ to _target_. Unlike dijkstra, nodes only enter the queue
+   * once they are reached, and the search stops as soon as the target is settled
+   *
+   * @param graph  The graph to be searched
+   * @param source The node the path starts at
+   * @param target The node the path ends at
+   * @return The distance, the path and the number of settled nodes
+   * @throws IllegalArgumentException if either node is not contained in the graph
+   */
+  public static PathResult shortestPath(Graph graph, int source, int target)
+      throws IllegalArgumentException {
+    SearchStatistics statistics = SearchMetrics.ENABLED
+        ? new SearchStatistics("shortestPath") : null;
+    if (SearchMetrics.ENABLED) {
+      statistics.start();
+    }
+    int numberOfNodes = graph.getNumberOfNodes();
+    InputValidation.ensureWithin(source, 0, numberOfNodes - 1, "Source is not contained the graph");
+    InputValidation.ensureWithin(target, 0, numberOfNodes - 1, "Target is not contained the graph");
+
+    int[] distances = new int[numberOfNodes];
+    int[] parent = new int[numberOfNodes];
+    boolean[] seen = new boolean[numberOfNodes];
+    Arrays.fill(parent, -1);
+    NodeQueue queue = NodeQueue.forMaxWeight(numberOfNodes, graph.getMaxEdgeWeight());
+    distances[source] = 0;
+    parent[source] = source;
+    queue.insert(source, 0);
+    int settledNodes = 0;
+    if (SearchMetrics.ENABLED) {
+      statistics.seeded(queue.size());
+      statistics.endInitialization();
+    }
+
+    PathResult result = null;
+    while (!queue.isEmpty()) {
+      int closestDistance = queue.getMinimumDistance();
+      int closestNode = queue.extractMin();
+      seen[closestNode] = true;
+      settledNodes += 1;
+      if (SearchMetrics.ENABLED) {
+        statistics.extracted();
+      }
+      if (closestNode == target) {
+        if (SearchMetrics.ENABLED) {
+          statistics.endSearch();
+        }
+        result = new PathResult(closestDistance, followParents(parent, target), settledNodes);
+        break;
+      }
+
+      int outDegree = graph.getOutDegree(closestNode);
+      for (int index = 0; index < outDegree; index++) {
+        int currentOutNeighbor = graph.getOutNeighbor(closestNode, index);
+        int newDistance = closestDistance + graph.getOutWeight(closestNode, index);
+        if (SearchMetrics.ENABLED) {
+          statistics.relaxed();
+        }
+        if (seen[currentOutNeighbor]) {
+          continue;
+        }
+        if (parent[currentOutNeighbor] == -1) {
+          // first time this node is reached
+          distances[currentOutNeighbor] = newDistance;
+          parent[currentOutNeighbor] = closestNode;
+          queue.insert(currentOutNeighbor, newDistance);
+          if (SearchMetrics.ENABLED) {
+            statistics.inserted(queue.size());
+          }
+        } else if (distances[currentOutNeighbor] > newDistance) {
+          distances[currentOutNeighbor] = newDistance;
+          parent[currentOutNeighbor] = closestNode;
+          queue.decreaseKey(currentOutNeighbor, newDistance);
+          if (SearchMetrics.ENABLED) {
+            statistics.decreased();
+          }
+        }
+      }
+    }
+
+    if (result == null) {
+      if (SearchMetrics.ENABLED) {
+        statistics.endSearch();
+      }
+      result = PathResult.unreachable(settledNodes);
+    }
+    if (SearchMetrics.ENABLED) {
+      statistics.finish();
+    }
+    return result;
+  }
+
+  /**
+   * Finds the shortest path from _source_ to _target_ by growing one search forward from the source
+   * over the outgoing edges and one backward from the target over the incoming edges. The side with
+   * the smaller queue is expanded next, and the search stops once the two smallest keys add up to
+   * at least the best path seen through a node reached from both sides
+   *
+   * @param graph  The graph to be searched
+   * @param source The node the path starts at
+   * @param target The node the path ends at
+   * @return The distance, the path and the number of nodes settled by both searches together
+   * @throws IllegalArgumentException if either node is not contained in the graph
+   */
+  public static PathResult bidirectionalShortestPath(Graph graph, int source, int target)
+      throws IllegalArgumentException {
+    SearchStatistics statistics = SearchMetrics.ENABLED
+        ? new SearchStatistics("bidirectionalShortestPath") : null;
+    if (SearchMetrics.ENABLED) {
+      statistics.start();
+    }
+    int numberOfNodes = graph.getNumberOfNodes();
+    InputValidation.ensureWithin(source, 0, numberOfNodes - 1, "Source is not contained the graph");
+    InputValidation.ensureWithin(target, 0, numberOfNodes - 1, "Target is not contained the graph");
+    if (source == target) {
+      List<Integer> path = new ArrayList<Integer>();
+      path.add(source);
+      if (SearchMetrics.ENABLED) {
+        statistics.endInitialization();
+        statistics.extracted();
+        statistics.endSearch();
+        statistics.finish();
+      }
+      return new PathResult(0, path, 1);
+    }
+
+    // index 0 is the forward search, index 1 the backward search
+    int[][] distances = new int[2][numberOfNodes];
+    int[][] parent = new int[2][numberOfNodes];
+    boolean[][] seen = new boolean[2][numberOfNodes];
+    NodeQueue[] queues = {NodeQueue.forMaxWeight(numberOfNodes, graph.getMaxEdgeWeight()),
+        NodeQueue.forMaxWeight(numberOfNodes, graph.getMaxEdgeWeight())};
+    Arrays.fill(parent[0], -1);
+    Arrays.fill(parent[1], -1);
+    parent[0][source] = source;
+    parent[1][target] = target;
+    queues[0].insert(source, 0);
+    queues[1].insert(target, 0);
+    if (SearchMetrics.ENABLED) {
+      // the queue sizes of both frontiers are counted together
+      statistics.seeded(1);
+      statistics.seeded(2);
+      statistics.endInitialization();
+    }
+
+    long bestDistance = Long.MAX_VALUE;
+    int meetingNode = -1;
+    int settledNodes = 0;
+
+    while (!queues[0].isEmpty() && !queues[1].isEmpty()) {
+      // meeting point rule: no unsettled node can improve on the best path any more
+      if ((long) queues[0].getMinimumDistance() + queues[1].getMinimumDistance() >= bestDistance) {
+        break;
+      }
+
+      int side = queues[0].size() <= queues[1].size() ? 0 : 1;
+      int otherSide = 1 - side;
+      int closestDistance = queues[side].getMinimumDistance();
+      int closestNode = queues[side].extractMin();
+      seen[side][closestNode] = true;
+      settledNodes += 1;
+      if (SearchMetrics.ENABLED) {
+        statistics.extracted();
+      }
+
+      int degree = side == 0 ? graph.getOutDegree(closestNode) : graph.getInDegree(closestNode);
+      for (int index = 0; index < degree; index++) {
+        int neighbor = side == 0
+            ? graph.getOutNeighbor(closestNode, index) : graph.getInNeighbor(closestNode, index);
+        int newDistance = closestDistance + (side == 0
+            ? graph.getOutWeight(closestNode, index) : graph.getInWeight(closestNode, index));
+        if (SearchMetrics.ENABLED) {
+          statistics.relaxed();
+        }
+        if (seen[side][neighbor]) {
+          continue;
+        }
+        if (parent[side][neighbor] == -1) {
+          distances[side][neighbor] = newDistance;
+          parent[side][neighbor] = closestNode;
+          queues[side].insert(neighbor, newDistance);
+          if (SearchMetrics.ENABLED) {
+            statistics.inserted(queues[0].size() + queues[1].size());
+          }
+        } else if (distances[side][neighbor] > newDistance) {
+          distances[side][neighbor] = newDistance;
+          parent[side][neighbor] = closestNode;
+          queues[side].decreaseKey(neighbor, newDistance);
+          if (SearchMetrics.ENABLED) {
+            statistics.decreased();
+          }
+        } else {
+          continue;
+        }
+
+        // the neighbor has been reached from the other side too
+        if (parent[otherSide][neighbor] != -1
+            && (long) newDistance + distances[otherSide][neighbor] < bestDistance) {
+          bestDistance = (long) newDistance + distances[otherSide][neighbor];
+          meetingNode = neighbor;
+        }
+      }
+    }
+
+    if (SearchMetrics.ENABLED) {
+      statistics.endSearch();
+    }
+    PathResult result;
+    if (meetingNode == -1) {
+      result = PathResult.unreachable(settledNodes);
+    } else {
+      List<Integer> path = followParents(parent[0], meetingNode);
+      // the backward parents point towards the target
+      for (int node = meetingNode; node != target; ) {
+        node = parent[1][node];
+        path.add(node);
+      }
+      result = new PathResult((int) bestDistance, path, settledNodes);
+    }
+    if (SearchMetrics.ENABLED) {
+      statistics.finish();
+    }
+    return result;
+  }
+
+  /**
+   * Computes the full shortest path tree rooted at _root_. Unlike dijkstra, unreachable nodes are
+   * marked with UNREACHABLE instead of the 9999 sentinel, so distances of any size are exact. This
+   * is what the preprocessing steps of the faster query engines are built on
+   *
+   * @param graph   The graph to be searched
+   * @param root    The root of the tree
+   * @param reverse Whether to follow incoming instead of outgoing edges, which yields the distances
+   *                from every node to the root rather than from the root to every node
+   * @return A pair of the distance array and the parent array, in which the root is its own parent
+   *         and unreachable nodes have the parent -1
+   * @throws IllegalArgumentException if the root is not contained in the graph
+   */
+  public static Pair<int[], int[]> shortestPathTree(Graph graph, int root, boolean reverse)
+      throws IllegalArgumentException {
+    SearchStatistics statistics = SearchMetrics.ENABLED
+        ? new SearchStatistics("shortestPathTree") : null;
+    if (SearchMetrics.ENABLED) {
+      statistics.start();
+    }
+    int numberOfNodes = graph.getNumberOfNodes();
+    InputValidation.ensureWithin(root, 0, numberOfNodes - 1, "Root is not contained the graph");
+
+    int[] distances = new int[numberOfNodes];
+    int[] parent = new int[numberOfNodes];
+    boolean[] seen = new boolean[numberOfNodes];
+    Arrays.fill(distances, UNREACHABLE);
+    Arrays.fill(parent, -1);
+    NodeQueue queue = NodeQueue.forMaxWeight(numberOfNodes, graph.getMaxEdgeWeight());
+    distances[root] = 0;
+    parent[root] = root;
+    queue.insert(root, 0);
+    if (SearchMetrics.ENABLED) {
+      statistics.seeded(queue.size());
+      statistics.endInitialization();
+    }
+
+    while (!queue.isEmpty()) {
+      int closestDistance = queue.getMinimumDistance();
+      int closestNode = queue.extractMin();
+      seen[closestNode] = true;
+      if (SearchMetrics.ENABLED) {
+        statistics.extracted();
+      }
+
+      int degree = reverse ? graph.getInDegree(closestNode) : graph.getOutDegree(closestNode);
+      for (int index = 0; index < degree; index++) {
+        int neighbor = reverse
+            ? graph.getInNeighbor(closestNode, index) : graph.getOutNeighbor(closestNode, index);
+        int newDistance = closestDistance + (reverse
+            ? graph.getInWeight(closestNode, index) : graph.getOutWeight(closestNode, index));
+        if (SearchMetrics.ENABLED) {
+          statistics.relaxed();
+        }
+        if (seen[neighbor] || distances[neighbor] <= newDistance) {
+          continue;
+        }
+        if (parent[neighbor] == -1) {
+          queue.insert(neighbor, newDistance);
+          if (SearchMetrics.ENABLED) {
+            statistics.inserted(queue.size());
+          }
+        } else {
+          queue.decreaseKey(neighbor, newDistance);
+          if (SearchMetrics.ENABLED) {
+            statistics.decreased();
+          }
+        }
+        distances[neighbor] = newDistance;
+        parent[neighbor] = closestNode;
+      }
+    }
+
+    if (SearchMetrics.ENABLED) {
+      statistics.endSearch();
+      statistics.finish();
+    }
+    return new Pair<int[], int[]>(distances, parent);
+  }
+
+  /**
+   * Follows parent pointers from _node_ back to the root of the search
+   *
+   * @param parent The parent array of a search, in which the root is its own parent
+   * @param node   The node the path ends at
+   * @return The nodes from the root to _node_
+   */
+  static List<Integer> followParents(int[] parent, int node) {
+    List<Integer> path = new ArrayList<Integer>();
+    path.add(node);
+    while (parent[node] != node) {
+      node = parent[node];
+      path.add(node);
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Boxes the given array into a list
+   *
+   * @param values The array to be boxed
+   * @return A list with the same elements as the array
+   */
+  private static List<Integer> toList(int[] values) {
+    List<Integer> list = new ArrayList<Integer>(values.length);
+    for (int index = 0; index < values.length; index++) {
+      list.add(values[index]);
+    }
+    return list;
+  }
+
   public static void main(String[] args) {
     System.out.println("Hello world!");
     Graph exampleGraph = new Graph(6);
@@ -71,6 +515,107 @@ public class Main {
     List<Integer> parents = distancesAndParents.getSecond();
     System.out.println("distances: " + distances);
     System.out.println("parents: " + parents);
+
+    CompressedGraph compressedGraph = CompressedGraph.fromGraph(exampleGraph);
+    Pair<List<Integer>, List<Integer>> compressedResult = dijkstra(compressedGraph, 0);
+    System.out.println("compressed distances: " + compressedResult.getFirst());
+    System.out.println("compressed parents: " + compressedResult.getSecond());
+
+    System.out.println("path from 0 to 3: " + shortestPath(exampleGraph, 0, 3));
+    System.out.println("bidirectional path from 0 to 3: "
+        + bidirectionalShortestPath(exampleGraph, 0, 3));
+
+    Landmarks landmarks = Landmarks.select(exampleGraph, 2, Landmarks.Selection.AVOID);
+    PathResult landmarkResult = landmarks.shortestPath(exampleGraph, 0, 3);
+    System.out.println("landmark path from 0 to 3: " + landmarkResult);
+    System.out.println("settled nodes: " + landmarkResult.getSettledNodes() + " with landmarks, "
+        + shortestPath(exampleGraph, 0, 3).getSettledNodes() + " with early termination, "
+        + exampleGraph.getNumberOfNodes() + " with dijkstra");
+
+    ContractionHierarchy hierarchy = ContractionHierarchy.build(exampleGraph);
+    System.out.println("contraction hierarchy: " + hierarchy.getNumberOfShortcuts()
+        + " shortcuts, " + hierarchy.getPreprocessingMillis() + " ms, "
+        + hierarchy.estimateMemoryBytes() + " bytes");
+    System.out.println("hierarchy path from 0 to 3: " + hierarchy.shortestPath(0, 3));
+
+    int[] manyToMany = new ManyToMany(hierarchy).distances(new int[] {0, 2, 4}, new int[] {1, 3});
+    System.out.println("distances from 0, 2 and 4 to 1 and 3: " + Arrays.toString(manyToMany));
+
+    SearchWorkspace workspace = new SearchWorkspace(compressedGraph);
+    System.out.println("workspace path from 0 to 3: "
+        + workspace.shortestPath(compressedGraph, 0, 3).getPath(3));
+
+    ShortestPathTreeCache cache = new ShortestPathTreeCache(exampleGraph, 1 << 20);
+    cache.get(0);
+    System.out.println("cached distances from 0: " + Arrays.toString(cache.get(0).getFirst())
+        + ", " + cache.getHits() + " hit, " + cache.getMisses() + " miss");
+
+    Graph dynamicGraph = GraphGenerators.grid(3, 3, 10, 1);
+    DynamicShortestPaths dynamicPaths = new DynamicShortestPaths(dynamicGraph);
+    dynamicPaths.addSource(0);
+    int touched = dynamicPaths.addEdge(0, 8, 1);
+    System.out.println("dynamic distance from 0 to 8: " + dynamicPaths.getDistance(0, 8) + ", "
+        + touched + " nodes touched");
+
+    if (SearchMetrics.ENABLED) {
+      SearchMetrics metrics = SearchMetrics.getInstance();
+      System.out.println("search metrics: " + metrics.getSearches() + " searches, "
+          + metrics.getSettledNodes() + " settled, p99 " + metrics.getLatencyP99Micros() + " us");
+    }
+
+    VersionedGraph versionedGraph = new VersionedGraph(exampleGraph);
+    VersionedGraph.Snapshot pinned = versionedGraph.snapshot();
+    versionedGraph.newBatch().addEdge(0, 3, 1).updateEdgeWeight(0, 2, 1).commit();
+    System.out.println("versioned distances: " + dijkstra(pinned, 0).getFirst() + " at version "
+        + pinned.getVersion() + ", " + dijkstra(versionedGraph.snapshot(), 0).getFirst()
+        + " at version " + versionedGraph.snapshot().getVersion());
+
+    NodeReordering reordering = NodeReordering.reverseCuthillMcKee(compressedGraph);
+    System.out.println("reordered path from 0 to 3: "
+        + reordering.shortestPath(new SearchWorkspace(reordering.getGraph()), 0, 3)
+        + ", node 0 is " + reordering.toReordered(0) + " in the reordered graph");
+
+    EncodedGraph encodedGraph = EncodedGraph.encode(compressedGraph, true);
+    System.out.println("encoded path from 0 to 3: "
+        + workspace.shortestPath(encodedGraph, 0, 3).getPath(3) + ", "
+        + encodedGraph.estimateMemoryBytes() + " bytes encoded, "
+        + compressedGraph.estimateMemoryBytes() + " bytes compressed");
+
+    BoundedSearch boundedSearch = new BoundedSearch(compressedGraph);
+    System.out.println("within 10 of 0: " + boundedSearch.withinRadius(0, 10)
+        + ", 2 nearest of 1, 3 and 5 from 0: " + boundedSearch.nearest(0, new int[] {1, 3, 5}, 2)
+        + ", within 4 of 0 or 4: " + boundedSearch.isochrone(new int[] {0, 4}, 4));
+
+    System.out.println("3 shortest paths from 0 to 3: "
+        + new KShortestPaths(compressedGraph).shortestPaths(0, 3, 3));
+
+    int[] matrix = new BatchShortestPaths(compressedGraph).allPairs();
+    int numberOfNodes = compressedGraph.getNumberOfNodes();
+    for (int source = 0; source < numberOfNodes; source++) {
+      int[] row = Arrays.copyOfRange(matrix, source * numberOfNodes, (source + 1) * numberOfNodes);
+      System.out.println("all pairs row " + source + ": " + Arrays.toString(row));
+    }
+
+    try {
+      Path graphFile = Files.createTempFile("example", ".graph");
+      GraphFile.write(exampleGraph, graphFile, true);
+      MappedGraph mappedGraph = GraphFile.map(graphFile);
+      System.out.println("mapped distances: " + dijkstra(mappedGraph, 0).getFirst() + ", "
+          + mappedGraph.getMappedBytes() + " bytes mapped");
+      Files.delete(graphFile);
+
+      Path dimacsFile = Files.createTempFile("example", ".gr");
+      Files.write(dimacsFile, Arrays.asList("c the example graph", "p sp 6 10", "a 1 3 5",
+          "a 1 5 9", "a 1 6 3", "a 5 2 4", "a 2 6 6", "a 3 4 8", "a 3 5 10", "a 5 6 2",
+          "a 2 4 3", "a 5 4 11"));
+      GraphImporter importer = new GraphImporter(GraphImporter.Format.DIMACS);
+      System.out.println("imported distances: " + dijkstra(importer.read(dimacsFile), 0).getFirst()
+          + ", " + importer.getNumberOfEdgesRead() + " edges in " + importer.getElapsedMillis()
+          + " ms");
+      Files.delete(dimacsFile);
+    } catch (IOException e) {
+      System.out.println("could not write the graph file: " + e.getMessage());
+    }
   }
 }
 
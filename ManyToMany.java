@@ -0,0 +1,411 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes distance matrices between sets of sources and targets with the bucket algorithm on a
+ * contraction hierarchy. First a backward upward search runs from every target over the incoming
+ * edges of the hierarchy, and leaves an entry (target, distance to it) in the bucket of every node
+ * it settles. Then a forward upward search runs from every source, and at every node it settles
+ * scans the bucket: every entry is a path to its target through that node. Since every shortest
+ * path climbs to its most important node and descends from there, that node is settled by both
+ * searches and the best of the entries is the distance.
+ *
+ * Upward searches settle a few hundred nodes, so the whole matrix costs about as much as one search
+ * per source and per target rather than a search over the whole graph per source. The backward
+ * searches and then the forward searches run in parallel across a fork-join pool, and each forward
+ * search stops once its smallest key reaches the largest distance of its row, since from then on no
+ * bucket entry can improve any target
+ */
+public class ManyToMany {
+
+  // the number of searches below which a range of searches is not split any further
+  private static final int SPLIT_THRESHOLD = 8;
+
+  private final ContractionHierarchy hierarchy;
+  private final ForkJoinPool pool;
+  private final ThreadLocal<Search> search;
+  private final LongAdder forwardSettledNodes;
+
+  /**
+   * The reusable state of the upward searches of one worker
+   */
+  private static class Search {
+
+    private final int[] distances;
+    private final int[] stamps;
+    private final PriorityQueue queue;
+    private int[] settledNodes; // the nodes the last search settled, in order
+    private int[] settledDistances;
+    private int numberSettled;
+    private int epoch;
+
+    /**
+     * Constructs a new Search
+     *
+     * @param numberOfNodes The number of nodes of the hierarchy
+     */
+    private Search(int numberOfNodes) {
+      this.distances = new int[numberOfNodes];
+      this.stamps = new int[numberOfNodes];
+      this.queue = new PriorityQueue(numberOfNodes);
+      this.settledNodes = new int[16];
+      this.settledDistances = new int[16];
+      this.epoch = 0;
+    }
+
+    /**
+     * Starts a new search from _root_
+     *
+     * @param root The root of the search
+     */
+    private void start(int root) {
+      this.queue.clear();
+      this.epoch += 1;
+      if (this.epoch == Integer.MAX_VALUE) {
+        Arrays.fill(this.stamps, 0);
+        this.epoch = 1;
+      }
+      this.numberSettled = 0;
+      this.reach(root, 0);
+    }
+
+    /**
+     * Offers a node a tentative distance
+     *
+     * @param node     The node reached
+     * @param distance The distance it was reached with
+     */
+    private void reach(int node, int distance) {
+      if (this.stamps[node] != this.epoch) {
+        this.stamps[node] = this.epoch;
+        this.queue.insert(node, distance);
+      } else if (distance < this.distances[node] && this.queue.contains(node)) {
+        this.queue.decreaseKey(node, distance);
+      } else {
+        return;
+      }
+      this.distances[node] = distance;
+    }
+
+    /**
+     * Records that a node was settled
+     *
+     * @param node     The node
+     * @param distance Its distance
+     */
+    private void settle(int node, int distance) {
+      if (this.numberSettled == this.settledNodes.length) {
+        this.settledNodes = Arrays.copyOf(this.settledNodes, 2 * this.numberSettled);
+        this.settledDistances = Arrays.copyOf(this.settledDistances, 2 * this.numberSettled);
+      }
+      this.settledNodes[this.numberSettled] = node;
+      this.settledDistances[this.numberSettled] = distance;
+      this.numberSettled += 1;
+    }
+  }
+
+  /**
+   * The bucket entries of every node, in compressed sparse row form
+   */
+  private static class Buckets {
+
+    private final int numberOfTargets;
+    private final int[] offsets;
+    private final int[] targets; // the index of the target of every entry
+    private final int[] distances; // the distance from the node to the target of every entry
+
+    /**
+     * Constructs new Buckets
+     *
+     * @param numberOfTargets The number of targets
+     * @param offsets         The first entry of every node, and the number of entries at the end
+     * @param targets         The index of the target of every entry
+     * @param distances       The distance of every entry
+     */
+    private Buckets(int numberOfTargets, int[] offsets, int[] targets, int[] distances) {
+      this.numberOfTargets = numberOfTargets;
+      this.offsets = offsets;
+      this.targets = targets;
+      this.distances = distances;
+    }
+  }
+
+  /**
+   * Constructs a new ManyToMany on the common pool
+   *
+   * @param hierarchy The contraction hierarchy of the graph
+   * @throws IllegalArgumentException if the hierarchy is null
+   */
+  public ManyToMany(ContractionHierarchy hierarchy) throws IllegalArgumentException {
+    this(hierarchy, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new ManyToMany
+   *
+   * @param hierarchy The contraction hierarchy of the graph
+   * @param pool      The pool the searches run on
+   * @throws IllegalArgumentException if the hierarchy or pool is null
+   */
+  public ManyToMany(ContractionHierarchy hierarchy, ForkJoinPool pool)
+      throws IllegalArgumentException {
+    this.hierarchy = InputValidation.ensureNotNull(hierarchy);
+    this.pool = InputValidation.ensureNotNull(pool);
+    this.search = new ThreadLocal<Search>() {
+      @Override
+      protected Search initialValue() {
+        return new Search(ManyToMany.this.hierarchy.getNumberOfNodes());
+      }
+    };
+    this.forwardSettledNodes = new LongAdder();
+  }
+
+  /**
+   * Computes the distance from every source to every target
+   *
+   * @param sources The nodes the paths start at
+   * @param targets The nodes the paths end at
+   * @return The row major distance matrix, in which the distance from sources[i] to targets[j] is
+   *         at index i * targets.length + j, with Main.UNREACHABLE for pairs that are not
+   *         connected
+   * @throws IllegalArgumentException if the sources or targets are null, a node is not contained in
+   *                                  the graph, or the matrix does not fit in an array
+   */
+  public int[] distances(int[] sources, int[] targets) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(sources);
+    InputValidation.ensureNotNull(targets);
+    int numberOfNodes = this.hierarchy.getNumberOfNodes();
+    for (int source : sources) {
+      InputValidation.ensureWithin(source, 0, numberOfNodes - 1,
+          "Source is not contained the graph");
+    }
+    for (int target : targets) {
+      InputValidation.ensureWithin(target, 0, numberOfNodes - 1,
+          "Target is not contained the graph");
+    }
+    if ((long) sources.length * targets.length > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Distance matrix is too large for an array");
+    }
+
+    int[] matrix = new int[sources.length * targets.length];
+    Arrays.fill(matrix, Main.UNREACHABLE);
+    if (matrix.length == 0) {
+      return matrix;
+    }
+
+    int[][] backwardNodes = new int[targets.length][];
+    int[][] backwardDistances = new int[targets.length][];
+    this.pool.invoke(new Searches(targets, 0, targets.length, null, backwardNodes,
+        backwardDistances, null));
+    Buckets buckets = group(numberOfNodes, backwardNodes, backwardDistances);
+
+    this.pool.invoke(new Searches(sources, 0, sources.length, buckets, null, null, matrix));
+    return matrix;
+  }
+
+  /**
+   * Returns the number of nodes settled by the forward searches of every matrix computed so far,
+   * which shows how much the row bound cuts them short
+   *
+   * @return The number of settled nodes
+   */
+  public long getForwardSettledNodes() {
+    return this.forwardSettledNodes.sum();
+  }
+
+  /**
+   * Runs the backward upward search from a target and copies out the nodes it settled
+   *
+   * @param search        The state of the search
+   * @param target        The target
+   * @param nodes         Filled with the settled nodes at _index_
+   * @param nodeDistances Filled with their distances to the target at _index_
+   * @param index         The index of the target
+   */
+  private void backward(Search search, int target, int[][] nodes, int[][] nodeDistances,
+      int index) {
+    ContractionHierarchy hierarchy = this.hierarchy;
+    search.start(target);
+    while (!search.queue.isEmpty()) {
+      int closestDistance = search.queue.getMinimumDistance();
+      int closestNode = search.queue.extractMin();
+      search.settle(closestNode, closestDistance);
+      int end = hierarchy.getDownwardEnd(closestNode);
+      for (int edge = hierarchy.getDownwardBegin(closestNode); edge < end; edge++) {
+        search.reach(hierarchy.getDownwardSource(edge),
+            closestDistance + hierarchy.getDownwardWeight(edge));
+      }
+    }
+    nodes[index] = Arrays.copyOf(search.settledNodes, search.numberSettled);
+    nodeDistances[index] = Arrays.copyOf(search.settledDistances, search.numberSettled);
+  }
+
+  /**
+   * Runs the forward upward search from a source and fills its row of the matrix from the buckets
+   * of the nodes it settles
+   *
+   * @param search  The state of the search
+   * @param source  The source
+   * @param buckets The bucket entries left by the backward searches
+   * @param matrix  The matrix, whose row _index_ is filled
+   * @param index   The index of the source
+   */
+  private void forward(Search search, int source, Buckets buckets, int[] matrix, int index) {
+    ContractionHierarchy hierarchy = this.hierarchy;
+    int width = buckets.numberOfTargets;
+    int rowBegin = index * width;
+    int unbounded = width;
+    // an upper bound on the largest distance of the row, set once every target has one
+    int rowBound = Main.UNREACHABLE;
+    int settledNodes = 0;
+    search.start(source);
+    while (!search.queue.isEmpty()) {
+      int closestDistance = search.queue.getMinimumDistance();
+      if (closestDistance >= rowBound) {
+        // distances only shrink, so the bound is recomputed before the search gives up
+        rowBound = getRowMaximum(matrix, rowBegin, width);
+        if (closestDistance >= rowBound) {
+          break;
+        }
+      }
+      int closestNode = search.queue.extractMin();
+      settledNodes += 1;
+      for (int entry = buckets.offsets[closestNode]; entry < buckets.offsets[closestNode + 1];
+          entry++) {
+        int column = rowBegin + buckets.targets[entry];
+        int distance = closestDistance + buckets.distances[entry];
+        if (distance < matrix[column]) {
+          if (matrix[column] == Main.UNREACHABLE) {
+            unbounded -= 1;
+          }
+          matrix[column] = distance;
+          if (unbounded == 0 && rowBound == Main.UNREACHABLE) {
+            rowBound = getRowMaximum(matrix, rowBegin, width);
+          }
+        }
+      }
+      int end = hierarchy.getUpwardEnd(closestNode);
+      for (int edge = hierarchy.getUpwardBegin(closestNode); edge < end; edge++) {
+        search.reach(hierarchy.getUpwardTarget(edge),
+            closestDistance + hierarchy.getUpwardWeight(edge));
+      }
+    }
+    this.forwardSettledNodes.add(settledNodes);
+  }
+
+  /**
+   * Returns the largest distance of a row of the matrix
+   *
+   * @param matrix   The matrix
+   * @param rowBegin The index of the first column of the row
+   * @param width    The number of columns
+   * @return The largest distance, Main.UNREACHABLE if a target has none yet
+   */
+  private static int getRowMaximum(int[] matrix, int rowBegin, int width) {
+    int maximum = 0;
+    for (int column = rowBegin; column < rowBegin + width; column++) {
+      maximum = Math.max(maximum, matrix[column]);
+    }
+    return maximum;
+  }
+
+  /**
+   * Counting sorts the nodes settled by the backward searches into buckets
+   *
+   * @param numberOfNodes     The number of nodes of the hierarchy
+   * @param backwardNodes     The nodes every backward search settled
+   * @param backwardDistances Their distances to the target of the search
+   * @return The buckets, with the entries of every node in order of target
+   * @throws IllegalArgumentException if there are too many entries for an array
+   */
+  private static Buckets group(int numberOfNodes, int[][] backwardNodes,
+      int[][] backwardDistances) throws IllegalArgumentException {
+    int[] offsets = new int[numberOfNodes + 1];
+    long numberOfEntries = 0;
+    for (int[] nodes : backwardNodes) {
+      numberOfEntries += nodes.length;
+      for (int node : nodes) {
+        offsets[node + 1] += 1;
+      }
+    }
+    if (numberOfEntries > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many bucket entries for an array");
+    }
+    for (int node = 0; node < numberOfNodes; node++) {
+      offsets[node + 1] += offsets[node];
+    }
+    int[] targets = new int[(int) numberOfEntries];
+    int[] distances = new int[(int) numberOfEntries];
+    int[] next = Arrays.copyOf(offsets, numberOfNodes);
+    for (int target = 0; target < backwardNodes.length; target++) {
+      for (int entry = 0; entry < backwardNodes[target].length; entry++) {
+        int slot = next[backwardNodes[target][entry]]++;
+        targets[slot] = target;
+        distances[slot] = backwardDistances[target][entry];
+      }
+    }
+    return new Buckets(backwardNodes.length, offsets, targets, distances);
+  }
+
+  /**
+   * A range of backward or forward searches. Ranges larger than the threshold are split in half
+   * and searched in parallel
+   */
+  private class Searches extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] roots;
+    private final int begin;
+    private final int end;
+    private final transient Buckets buckets; // null for backward searches
+    private final int[][] backwardNodes;
+    private final int[][] backwardDistances;
+    private final int[] matrix;
+
+    /**
+     * Constructs a new Searches
+     *
+     * @param roots             The roots of every search
+     * @param begin             The first index of the range
+     * @param end               The exclusive last index of the range
+     * @param buckets           The buckets the forward searches scan, null for backward searches
+     * @param backwardNodes     The settled nodes of every backward search, to be filled
+     * @param backwardDistances The distances of the settled nodes of every backward search
+     * @param matrix            The matrix the forward searches fill
+     */
+    private Searches(int[] roots, int begin, int end, Buckets buckets, int[][] backwardNodes,
+        int[][] backwardDistances, int[] matrix) {
+      this.roots = roots;
+      this.begin = begin;
+      this.end = end;
+      this.buckets = buckets;
+      this.backwardNodes = backwardNodes;
+      this.backwardDistances = backwardDistances;
+      this.matrix = matrix;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.end - this.begin > SPLIT_THRESHOLD) {
+        int middle = (this.begin + this.end) >>> 1;
+        invokeAll(new Searches(this.roots, this.begin, middle, this.buckets, this.backwardNodes,
+            this.backwardDistances, this.matrix), new Searches(this.roots, middle, this.end,
+            this.buckets, this.backwardNodes, this.backwardDistances, this.matrix));
+        return;
+      }
+
+      Search search = ManyToMany.this.search.get();
+      for (int index = this.begin; index < this.end; index++) {
+        if (this.buckets == null) {
+          ManyToMany.this.backward(search, this.roots[index], this.backwardNodes,
+              this.backwardDistances, index);
+        } else {
+          ManyToMany.this.forward(search, this.roots[index], this.buckets, this.matrix, index);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A graph served straight from a memory mapped graph file, as opened by GraphFile.map. Nothing is
+ * copied onto the heap, so opening a graph only costs the mapping itself, the operating system
+ * pages adjacency in as the searches touch it, and processes that map the same file share those
+ * pages. Graphs may be larger than the heap. Every array of the file is mapped in chunks of at
+ * most 2^28 ints, since a single mapping cannot exceed 2 GiB
+ */
+public class MappedGraph implements GraphView {
+
+  private final int numberOfNodes;
+  private final int numberOfEdges;
+  private final int maxWeight;
+  private final IntSection forwardOffsets;
+  private final IntSection forwardTargets;
+  private final IntSection forwardWeights;
+  private final IntSection reverseOffsets; // null if the file has no reverse index
+  private final IntSection reverseSources;
+  private final IntSection reverseWeights;
+
+  /**
+   * Constructs a new MappedGraph from the mapped arrays of a graph file. Only GraphFile calls this
+   *
+   * @param numberOfNodes  The number of nodes in the graph
+   * @param numberOfEdges  The number of edges in the graph
+   * @param maxWeight      The largest edge weight
+   * @param forwardOffsets The offsets into the forward arrays, of length numberOfNodes + 1
+   * @param forwardTargets The target of each outgoing edge
+   * @param forwardWeights The weight of each outgoing edge
+   * @param reverseOffsets The offsets into the reverse arrays, null without a reverse index
+   * @param reverseSources The source of each incoming edge, null without a reverse index
+   * @param reverseWeights The weight of each incoming edge, null without a reverse index
+   */
+  MappedGraph(int numberOfNodes, int numberOfEdges, int maxWeight, IntSection forwardOffsets,
+      IntSection forwardTargets, IntSection forwardWeights, IntSection reverseOffsets,
+      IntSection reverseSources, IntSection reverseWeights) {
+    this.numberOfNodes = numberOfNodes;
+    this.numberOfEdges = numberOfEdges;
+    this.maxWeight = maxWeight;
+    this.forwardOffsets = forwardOffsets;
+    this.forwardTargets = forwardTargets;
+    this.forwardWeights = forwardWeights;
+    this.reverseOffsets = reverseOffsets;
+    this.reverseSources = reverseSources;
+    this.reverseWeights = reverseWeights;
+  }
+
+  @Override
+  public int getNumberOfNodes() {
+    return this.numberOfNodes;
+  }
+
+  @Override
+  public int getNumberOfEdges() {
+    return this.numberOfEdges;
+  }
+
+  @Override
+  public int getMaxWeight() {
+    return this.maxWeight;
+  }
+
+  @Override
+  public int getOutgoingBegin(int node) {
+    return this.forwardOffsets.get(node);
+  }
+
+  @Override
+  public int getOutgoingEnd(int node) {
+    return this.forwardOffsets.get(node + 1);
+  }
+
+  @Override
+  public int getTarget(int edge) {
+    return this.forwardTargets.get(edge);
+  }
+
+  @Override
+  public int getWeight(int edge) {
+    return this.forwardWeights.get(edge);
+  }
+
+  @Override
+  public boolean hasIncomingEdges() {
+    return this.reverseOffsets != null;
+  }
+
+  @Override
+  public int getIncomingBegin(int node) throws UnsupportedOperationException {
+    return this.reverse(this.reverseOffsets).get(node);
+  }
+
+  @Override
+  public int getIncomingEnd(int node) throws UnsupportedOperationException {
+    return this.reverse(this.reverseOffsets).get(node + 1);
+  }
+
+  @Override
+  public int getSource(int edge) throws UnsupportedOperationException {
+    return this.reverse(this.reverseSources).get(edge);
+  }
+
+  @Override
+  public int getIncomingWeight(int edge) throws UnsupportedOperationException {
+    return this.reverse(this.reverseWeights).get(edge);
+  }
+
+  /**
+   * Asks the operating system to page the whole file in, so that the first searches do not pay for
+   * page faults. This is optional, and pointless for graphs larger than the available memory
+   */
+  public void load() {
+    IntSection[] sections = {this.forwardOffsets, this.forwardTargets, this.forwardWeights,
+        this.reverseOffsets, this.reverseSources, this.reverseWeights};
+    for (IntSection section : sections) {
+      if (section != null) {
+        section.load();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes of the file that are mapped
+   *
+   * @return The size of the mappings in bytes
+   */
+  public long getMappedBytes() {
+    long bytes = 4L * (this.numberOfNodes + 1 + 2L * this.numberOfEdges);
+    return this.hasIncomingEdges() ? 2 * bytes : bytes;
+  }
+
+  /**
+   * Ensures the reverse index is present
+   *
+   * @param section A section of the reverse index
+   * @return The section
+   * @throws UnsupportedOperationException if the file has no reverse index
+   */
+  private IntSection reverse(IntSection section) throws UnsupportedOperationException {
+    if (section == null) {
+      throw new UnsupportedOperationException("Graph file has no reverse index");
+    }
+    return section;
+  }
+
+  /**
+   * An array of ints stored in a file and mapped in chunks
+   */
+  static class IntSection {
+
+    private static final int CHUNK_SHIFT = 28;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final MappedByteBuffer[] buffers;
+    private final IntBuffer[] chunks;
+
+    /**
+     * Maps _count_ little endian ints starting at _position_ of the file
+     *
+     * @param channel  The channel of the file, which may be closed once the mapping is made
+     * @param position The offset of the first int in the file
+     * @param count    The number of ints
+     * @throws IOException if the file cannot be mapped
+     */
+    IntSection(FileChannel channel, long position, long count) throws IOException {
+      int numberOfChunks = (int) ((count + CHUNK_MASK) >>> CHUNK_SHIFT);
+      this.buffers = new MappedByteBuffer[numberOfChunks];
+      this.chunks = new IntBuffer[numberOfChunks];
+      for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+        long first = (long) chunk << CHUNK_SHIFT;
+        long length = Math.min(1L << CHUNK_SHIFT, count - first);
+        this.buffers[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, position + 4 * first,
+            4 * length);
+        this.chunks[chunk] = this.buffers[chunk].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+      }
+    }
+
+    /**
+     * Returns the int at the given index
+     *
+     * @param index The index of the int
+     * @return The int stored at that index
+     */
+    int get(int index) {
+      return this.chunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+    }
+
+    /**
+     * Pages every chunk in
+     */
+    void load() {
+      for (MappedByteBuffer buffer : this.buffers) {
+        buffer.load();
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * A min priority queue of node ids keyed by distance, as used by the shortest path engines. Nodes
+ * are the integers 0, 1, ..., capacity - 1. Implementations may require the queue to be monotone,
+ * meaning that no key is ever inserted below the last key extracted, which every dijkstra search
+ * on positively weighted edges satisfies
+ */
+public interface NodeQueue {
+
+  // the largest edge weight for which a Dial bucket queue is used
+  int DIAL_MAX_WEIGHT = 1 << 12;
+  // the largest edge weight for which a radix heap is used
+  int RADIX_MAX_WEIGHT = 1 << 24;
+
+  /**
+   * Inserts a node with the given distance
+   *
+   * @param node     The ID of the new node being added to the queue
+   * @param distance The distance associated with the node
+   * @throws IllegalArgumentException if the node is already contained in the queue
+   */
+  void insert(int node, int distance) throws IllegalArgumentException;
+
+  /**
+   * Decreases the distance associated with the given node
+   *
+   * @param node     The ID of the node whose distance we wish to decrease
+   * @param distance The new distance associated with the given node
+   * @throws IllegalArgumentException if the node is not contained in the queue or if the new value
+   *                                  is greater than the currently associated distance
+   */
+  void decreaseKey(int node, int distance) throws IllegalArgumentException;
+
+  /**
+   * Determines whether the given node is in the queue
+   *
+   * @param node The node to be looked for
+   * @return True if the node is in the queue, False otherwise
+   */
+  boolean contains(int node);
+
+  /**
+   * Returns the smallest distance in the queue without removing it
+   *
+   * @return The smallest distance
+   * @throws UnsupportedOperationException if the queue is empty
+   */
+  int getMinimumDistance() throws UnsupportedOperationException;
+
+  /**
+   * Removes a node with the smallest distance from the queue
+   *
+   * @return The closest node. Its distance is the one getMinimumDistance returned before the call
+   * @throws UnsupportedOperationException if the queue is empty
+   */
+  int extractMin() throws UnsupportedOperationException;
+
+  /**
+   * Determines whether the queue is empty
+   *
+   * @return True if the queue is empty, False otherwise
+   */
+  boolean isEmpty();
+
+  /**
+   * Returns the number of nodes in the queue
+   *
+   * @return The number of nodes in the queue
+   */
+  int size();
+
+  /**
+   * Removes every node from the queue
+   */
+  void clear();
+
+  /**
+   * Chooses the fastest queue for a monotone search over edges of at most _maxWeight_. Small
+   * weights get a Dial bucket queue, where extractMin is amortized constant time. Larger weights
+   * get a radix heap, where it is amortized O(log maxWeight). Beyond that a radix heap moves every
+   * node through as many buckets as a binary heap has levels, so the binary heap is used instead
+   *
+   * @param capacity  The number of node ids the queue must hold
+   * @param maxWeight The largest edge weight of the graph being searched
+   * @return An empty queue
+   */
+  static NodeQueue forMaxWeight(int capacity, int maxWeight) {
+    if (maxWeight <= DIAL_MAX_WEIGHT) {
+      return new DialQueue(capacity, Math.max(1, maxWeight));
+    } else if (maxWeight <= RADIX_MAX_WEIGHT) {
+      return new RadixHeap(capacity);
+    } else {
+      return new PriorityQueue(capacity);
+    }
+  }
+}
@@ -0,0 +1,496 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Renumbers the nodes of a graph so that nodes close to each other in the graph get close ids.
+ * Dijkstra touches the distances, parents and adjacency of every neighbor of the node it expands,
+ * and with ids in insertion order those are scattered across memory; once neighbors have nearby
+ * ids, most of these accesses fall into cache lines that were just loaded. Three orders are
+ * offered:
+ *
+ * - breadth first search order, which lays out every level of a search next to the one before
+ *
+ * - reverse Cuthill-McKee, the classic bandwidth reducing order, which starts every component at a
+ * node far from its center and visits neighbors by increasing degree
+ *
+ * - Hilbert curve order of the nodes' coordinates, for geometric graphs like road networks
+ *
+ * A reordering holds the renumbered graph together with the mapping in both directions, and its
+ * query methods take and return original ids, so callers never see the internal numbering
+ */
+public class NodeReordering {
+
+  // the resolution of each axis of the Hilbert curve, as a power of two
+  private static final int HILBERT_BITS = 16;
+
+  private final int[] reorderedIds; // original id -> reordered id
+  private final int[] originalIds; // reordered id -> original id
+  private final CompressedGraph graph;
+
+  /**
+   * Constructs a new NodeReordering from the order in which the nodes are to be numbered
+   *
+   * @param graph The graph to be renumbered
+   * @param order The original ids of the nodes, in their new order
+   */
+  private NodeReordering(GraphView graph, int[] order) {
+    int numberOfNodes = graph.getNumberOfNodes();
+    this.originalIds = order;
+    this.reorderedIds = new int[numberOfNodes];
+    for (int reordered = 0; reordered < numberOfNodes; reordered++) {
+      this.reorderedIds[order[reordered]] = reordered;
+    }
+    this.graph = this.permute(graph);
+  }
+
+  /**
+   * Renumbers the nodes in the given order
+   *
+   * @param graph The graph to be renumbered
+   * @param order The original ids of the nodes, in their new order
+   * @return The reordering
+   * @throws IllegalArgumentException if the graph or order is null, or the order is not a
+   *                                  permutation of the nodes
+   */
+  public static NodeReordering of(GraphView graph, int[] order) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    InputValidation.ensureNotNull(order);
+    boolean[] seen = new boolean[graph.getNumberOfNodes()];
+    if (order.length != seen.length) {
+      throw new IllegalArgumentException("Order must hold every node once");
+    }
+    for (int node : order) {
+      InputValidation.ensureWithin(node, 0, seen.length - 1, "Order holds a node not in the graph");
+      if (seen[node]) {
+        throw new IllegalArgumentException("Order must hold every node once");
+      }
+      seen[node] = true;
+    }
+    return new NodeReordering(graph, order.clone());
+  }
+
+  /**
+   * Renumbers the nodes in the order a breadth first search reaches them, following edges in both
+   * directions. Each component is started at its lowest original id
+   *
+   * @param graph The graph to be renumbered
+   * @return The reordering
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public static NodeReordering breadthFirst(GraphView graph) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    int numberOfNodes = graph.getNumberOfNodes();
+    int[] order = new int[numberOfNodes];
+    boolean[] visited = new boolean[numberOfNodes];
+    int numberOrdered = 0;
+    for (int root = 0; root < numberOfNodes; root++) {
+      if (!visited[root]) {
+        numberOrdered = search(graph, root, visited, order, numberOrdered, null);
+      }
+    }
+    return new NodeReordering(graph, order);
+  }
+
+  /**
+   * Renumbers the nodes in reverse Cuthill-McKee order, following edges in both directions. Each
+   * component is started at a pseudo peripheral node found by repeated breadth first searches, and
+   * the neighbors of every node are visited by increasing degree
+   *
+   * @param graph The graph to be renumbered
+   * @return The reordering
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public static NodeReordering reverseCuthillMcKee(GraphView graph)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    int numberOfNodes = graph.getNumberOfNodes();
+    int[] degrees = new int[numberOfNodes];
+    for (int node = 0; node < numberOfNodes; node++) {
+      degrees[node] = getDegree(graph, node);
+    }
+    int[] order = new int[numberOfNodes];
+    boolean[] visited = new boolean[numberOfNodes];
+    int[] scratch = new int[numberOfNodes];
+    int[] depths = new int[numberOfNodes];
+    Arrays.fill(depths, -1);
+    int numberOrdered = 0;
+    for (int node = 0; node < numberOfNodes; node++) {
+      if (!visited[node]) {
+        int root = findPeripheralNode(graph, node, degrees, scratch, depths);
+        numberOrdered = search(graph, root, visited, order, numberOrdered, degrees);
+      }
+    }
+    for (int index = 0; index < numberOfNodes / 2; index++) {
+      int swapped = order[index];
+      order[index] = order[numberOfNodes - 1 - index];
+      order[numberOfNodes - 1 - index] = swapped;
+    }
+    return new NodeReordering(graph, order);
+  }
+
+  /**
+   * Renumbers the nodes in the order a Hilbert curve passes through their coordinates, which keeps
+   * nodes that are near each other in the plane near each other in memory
+   *
+   * @param graph The graph to be renumbered
+   * @param x     The first coordinate of every node
+   * @param y     The second coordinate of every node
+   * @return The reordering
+   * @throws IllegalArgumentException if an argument is null or a coordinate array does not have an
+   *                                  entry per node
+   */
+  public static NodeReordering hilbert(GraphView graph, double[] x, double[] y)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    InputValidation.ensureNotNull(x);
+    InputValidation.ensureNotNull(y);
+    int numberOfNodes = graph.getNumberOfNodes();
+    if (x.length != numberOfNodes || y.length != numberOfNodes) {
+      throw new IllegalArgumentException("There must be coordinates for every node");
+    }
+    double minX = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int node = 0; node < numberOfNodes; node++) {
+      minX = Math.min(minX, x[node]);
+      maxX = Math.max(maxX, x[node]);
+      minY = Math.min(minY, y[node]);
+      maxY = Math.max(maxY, y[node]);
+    }
+    int side = (1 << HILBERT_BITS) - 1;
+    double scaleX = maxX > minX ? side / (maxX - minX) : 0;
+    double scaleY = maxY > minY ? side / (maxY - minY) : 0;
+
+    // the curve index takes the high bits, so sorting sorts by index and then by id
+    long[] keys = new long[numberOfNodes];
+    for (int node = 0; node < numberOfNodes; node++) {
+      long index = getHilbertIndex((int) ((x[node] - minX) * scaleX),
+          (int) ((y[node] - minY) * scaleY));
+      keys[node] = index << 31 | node;
+    }
+    Arrays.sort(keys);
+    int[] order = new int[numberOfNodes];
+    for (int position = 0; position < numberOfNodes; position++) {
+      order[position] = (int) (keys[position] & Integer.MAX_VALUE);
+    }
+    return new NodeReordering(graph, order);
+  }
+
+  /**
+   * Returns the renumbered graph, whose node ids are the reordered ids
+   *
+   * @return The renumbered graph
+   */
+  public CompressedGraph getGraph() {
+    return this.graph;
+  }
+
+  /**
+   * Returns the id a node has in the renumbered graph
+   *
+   * @param original The original id of the node
+   * @return The reordered id
+   * @throws IllegalArgumentException if the node is not contained in the graph
+   */
+  public int toReordered(int original) throws IllegalArgumentException {
+    InputValidation.ensureWithin(original, 0, this.reorderedIds.length - 1,
+        "Node is not contained in the graph");
+    return this.reorderedIds[original];
+  }
+
+  /**
+   * Returns the original id of a node of the renumbered graph
+   *
+   * @param reordered The reordered id of the node
+   * @return The original id
+   * @throws IllegalArgumentException if the node is not contained in the graph
+   */
+  public int toOriginal(int reordered) throws IllegalArgumentException {
+    InputValidation.ensureWithin(reordered, 0, this.originalIds.length - 1,
+        "Node is not contained in the graph");
+    return this.originalIds[reordered];
+  }
+
+  /**
+   * Finds the shortest path between two nodes of the original graph by searching the renumbered
+   * one
+   *
+   * @param workspace A workspace that fits the renumbered graph
+   * @param source    The original id of the node the path starts at
+   * @param target    The original id of the node the path ends at
+   * @return The distance, the path in original ids and the number of settled nodes
+   * @throws IllegalArgumentException if the workspace is null or too small, or either node is not
+   *                                  contained in the graph
+   */
+  public PathResult shortestPath(SearchWorkspace workspace, int source, int target)
+      throws IllegalArgumentException {
+    int reorderedTarget = this.toReordered(target);
+    PathResult result = InputValidation.ensureNotNull(workspace)
+        .shortestPath(this.graph, this.toReordered(source), reorderedTarget)
+        .getPath(reorderedTarget);
+    List<Integer> path = result.getPath();
+    for (int index = 0; index < path.size(); index++) {
+      path.set(index, this.originalIds[path.get(index)]);
+    }
+    return new PathResult(result.getDistance(), path, result.getSettledNodes());
+  }
+
+  /**
+   * Computes the distances from a node of the original graph to every other by searching the
+   * renumbered one
+   *
+   * @param workspace   A workspace that fits the renumbered graph
+   * @param source      The original id of the node the search starts at
+   * @param destination Filled with the distance of every node, indexed by original id, with
+   *                    Main.UNREACHABLE for nodes that cannot be reached
+   * @throws IllegalArgumentException if an argument is null, the workspace is too small, the
+   *                                  destination is too short or the source is not contained in
+   *                                  the graph
+   */
+  public void distancesFrom(SearchWorkspace workspace, int source, int[] destination)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(destination);
+    if (destination.length < this.originalIds.length) {
+      throw new IllegalArgumentException("Destination is too short");
+    }
+    ShortestPathTree tree = InputValidation.ensureNotNull(workspace)
+        .shortestPathTree(this.graph, this.toReordered(source), false);
+    for (int reordered = 0; reordered < this.originalIds.length; reordered++) {
+      destination[this.originalIds[reordered]] = tree.getDistance(reordered);
+    }
+  }
+
+  /**
+   * Returns the mean distance between the ids of the two ends of an edge, a rough measure of how
+   * scattered the memory accesses of a search are
+   *
+   * @param graph The graph
+   * @return The mean id gap over all edges, 0 if there are none
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public static double getMeanEdgeGap(GraphView graph) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    long total = 0;
+    for (int node = 0; node < graph.getNumberOfNodes(); node++) {
+      int end = graph.getOutgoingEnd(node);
+      for (int edge = graph.getOutgoingBegin(node); edge < end; edge++) {
+        total += Math.abs(graph.getTarget(edge) - node);
+      }
+    }
+    return graph.getNumberOfEdges() == 0 ? 0 : (double) total / graph.getNumberOfEdges();
+  }
+
+  /**
+   * Builds the renumbered graph. The edges of every node are sorted by the new id of their target,
+   * so that relaxing them walks the distance array forward
+   *
+   * @param original The graph to be renumbered
+   * @return The renumbered graph
+   */
+  private CompressedGraph permute(GraphView original) {
+    int numberOfNodes = original.getNumberOfNodes();
+    CompressedGraph.Builder builder = new CompressedGraph.Builder(numberOfNodes);
+    long[] edges = new long[16];
+    for (int reordered = 0; reordered < numberOfNodes; reordered++) {
+      int node = this.originalIds[reordered];
+      int begin = original.getOutgoingBegin(node);
+      int degree = original.getOutgoingEnd(node) - begin;
+      if (edges.length < degree) {
+        edges = new long[Math.max(degree, 2 * edges.length)];
+      }
+      for (int index = 0; index < degree; index++) {
+        edges[index] = (long) this.reorderedIds[original.getTarget(begin + index)] << 32
+            | original.getWeight(begin + index);
+      }
+      Arrays.sort(edges, 0, degree);
+      for (int index = 0; index < degree; index++) {
+        builder.addEdge(reordered, (int) (edges[index] >>> 32), (int) edges[index]);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Runs a breadth first search over the edges in both directions, appending every node it
+   * reaches to the order
+   *
+   * @param graph         The graph
+   * @param root          The node the search starts at
+   * @param visited       The nodes ordered so far, updated
+   * @param order         The order, filled from _numberOrdered_ on
+   * @param numberOrdered The number of nodes ordered so far
+   * @param degrees       The degree of every node to visit neighbors by increasing degree, null to
+   *                      visit them as they are stored
+   * @return The number of nodes ordered after the search
+   */
+  private static int search(GraphView graph, int root, boolean[] visited, int[] order,
+      int numberOrdered, int[] degrees) {
+    visited[root] = true;
+    order[numberOrdered++] = root;
+    for (int head = numberOrdered - 1; head < numberOrdered; head++) {
+      int node = order[head];
+      int firstNew = numberOrdered;
+      int end = graph.getOutgoingEnd(node);
+      for (int edge = graph.getOutgoingBegin(node); edge < end; edge++) {
+        int neighbor = graph.getTarget(edge);
+        if (!visited[neighbor]) {
+          visited[neighbor] = true;
+          order[numberOrdered++] = neighbor;
+        }
+      }
+      if (graph.hasIncomingEdges()) {
+        end = graph.getIncomingEnd(node);
+        for (int edge = graph.getIncomingBegin(node); edge < end; edge++) {
+          int neighbor = graph.getSource(edge);
+          if (!visited[neighbor]) {
+            visited[neighbor] = true;
+            order[numberOrdered++] = neighbor;
+          }
+        }
+      }
+      if (degrees != null) {
+        sortByDegree(order, firstNew, numberOrdered, degrees);
+      }
+    }
+    return numberOrdered;
+  }
+
+  /**
+   * Finds a node far from the center of the component of _start_, by searching again from the
+   * farthest node of lowest degree until the depth of the search stops growing
+   *
+   * @param graph   The graph
+   * @param start   A node of the component
+   * @param degrees The degree of every node
+   * @param order   Scratch space for the searches
+   * @param depths  Scratch space for the searches, all -1 on entry and on return
+   * @return A pseudo peripheral node
+   */
+  private static int findPeripheralNode(GraphView graph, int start, int[] degrees, int[] order,
+      int[] depths) {
+    int root = start;
+    int depth = -1;
+    while (true) {
+      int reached = measureDepths(graph, root, order, depths);
+      int lastDepth = depths[order[reached - 1]];
+      // the farthest nodes come last in the order of the search
+      int candidate = order[reached - 1];
+      for (int index = reached - 1; index >= 0 && depths[order[index]] == lastDepth; index--) {
+        if (degrees[order[index]] < degrees[candidate]) {
+          candidate = order[index];
+        }
+      }
+      for (int index = 0; index < reached; index++) {
+        depths[order[index]] = -1;
+      }
+      if (lastDepth <= depth) {
+        return root;
+      }
+      depth = lastDepth;
+      root = candidate;
+    }
+  }
+
+  /**
+   * Runs a breadth first search over the edges in both directions, recording the depth of every
+   * node it reaches
+   *
+   * @param graph  The graph
+   * @param root   The node the search starts at
+   * @param order  Filled with the reached nodes in the order of the search
+   * @param depths The depth of every node, -1 for nodes not reached yet, updated
+   * @return The number of nodes reached
+   */
+  private static int measureDepths(GraphView graph, int root, int[] order, int[] depths) {
+    depths[root] = 0;
+    order[0] = root;
+    int reached = 1;
+    for (int head = 0; head < reached; head++) {
+      int node = order[head];
+      int end = graph.getOutgoingEnd(node);
+      for (int edge = graph.getOutgoingBegin(node); edge < end; edge++) {
+        int neighbor = graph.getTarget(edge);
+        if (depths[neighbor] < 0) {
+          depths[neighbor] = depths[node] + 1;
+          order[reached++] = neighbor;
+        }
+      }
+      if (graph.hasIncomingEdges()) {
+        end = graph.getIncomingEnd(node);
+        for (int edge = graph.getIncomingBegin(node); edge < end; edge++) {
+          int neighbor = graph.getSource(edge);
+          if (depths[neighbor] < 0) {
+            depths[neighbor] = depths[node] + 1;
+            order[reached++] = neighbor;
+          }
+        }
+      }
+    }
+    return reached;
+  }
+
+  /**
+   * Returns the number of edges of a node in both directions
+   *
+   * @param graph The graph
+   * @param node  The node
+   * @return The degree
+   */
+  private static int getDegree(GraphView graph, int node) {
+    int degree = graph.getOutgoingEnd(node) - graph.getOutgoingBegin(node);
+    if (graph.hasIncomingEdges()) {
+      degree += graph.getIncomingEnd(node) - graph.getIncomingBegin(node);
+    }
+    return degree;
+  }
+
+  /**
+   * Sorts a range of nodes by increasing degree with an insertion sort, as the nodes discovered
+   * from one node are few
+   *
+   * @param nodes   The nodes
+   * @param begin   The first position of the range
+   * @param end     The position after the range
+   * @param degrees The degree of every node
+   */
+  private static void sortByDegree(int[] nodes, int begin, int end, int[] degrees) {
+    for (int index = begin + 1; index < end; index++) {
+      int node = nodes[index];
+      int position = index;
+      while (position > begin && degrees[nodes[position - 1]] > degrees[node]) {
+        nodes[position] = nodes[position - 1];
+        position -= 1;
+      }
+      nodes[position] = node;
+    }
+  }
+
+  /**
+   * Returns the position of a cell along the Hilbert curve through a grid of 2^HILBERT_BITS cells
+   * a side
+   *
+   * @param x The column of the cell
+   * @param y The row of the cell
+   * @return The position along the curve
+   */
+  private static long getHilbertIndex(int x, int y) {
+    long index = 0;
+    for (int half = 1 << (HILBERT_BITS - 1); half > 0; half >>>= 1) {
+      int right = (x & half) != 0 ? 1 : 0;
+      int top = (y & half) != 0 ? 1 : 0;
+      index += (long) half * half * ((3 * right) ^ top);
+      // rotate the quadrant so that the curve within it starts and ends where it should
+      if (top == 0) {
+        if (right == 1) {
+          x = (1 << HILBERT_BITS) - 1 - x;
+          y = (1 << HILBERT_BITS) - 1 - y;
+        }
+        int swapped = x;
+        x = y;
+        y = swapped;
+      }
+    }
+    return index;
+  }
+}
@@ -0,0 +1,312 @@
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * A compressed graph whose offset, neighbor and weight arrays live outside the java heap, in
+ * memory segments allocated from an arena the caller supplies. The garbage collector never scans
+ * or copies off-heap memory, so however many edges the graph holds, it adds nothing to the heap
+ * and nothing to the length of collection pauses. The graph is both a GraphView, for the searches
+ * that walk flat edge ranges, and an AdjacencyView, for OffHeapWorkspace.
+ *
+ * The graph is only usable while its arena is open, and accessing it afterwards throws an
+ * IllegalStateException. A graph allocated from a confined arena can only be read by the thread
+ * that opened the arena, so graphs shared by several query threads need a shared arena. Edges are
+ * still numbered by ints, so a single graph holds at most 2^31 - 1 edges
+ */
+public class OffHeapGraph implements GraphView, AdjacencyView {
+
+  private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT;
+
+  private final int numberOfNodes;
+  private final int numberOfEdges;
+  private final int maxWeight;
+  private final MemorySegment forwardOffsets;
+  private final MemorySegment forwardTargets;
+  private final MemorySegment forwardWeights;
+  private final MemorySegment reverseOffsets; // null without incoming edges
+  private final MemorySegment reverseSources;
+  private final MemorySegment reverseWeights;
+
+  /**
+   * Constructs a new OffHeapGraph over filled segments. Only the factories call this
+   *
+   * @param numberOfNodes  The number of nodes in the graph
+   * @param numberOfEdges  The number of edges in the graph
+   * @param maxWeight      The largest edge weight
+   * @param forwardOffsets The offsets into the forward segments, of numberOfNodes + 1 ints
+   * @param forwardTargets The target of each outgoing edge
+   * @param forwardWeights The weight of each outgoing edge
+   * @param reverseOffsets The offsets into the reverse segments, null without incoming edges
+   * @param reverseSources The source of each incoming edge, null without incoming edges
+   * @param reverseWeights The weight of each incoming edge, null without incoming edges
+   */
+  private OffHeapGraph(int numberOfNodes, int numberOfEdges, int maxWeight,
+      MemorySegment forwardOffsets, MemorySegment forwardTargets, MemorySegment forwardWeights,
+      MemorySegment reverseOffsets, MemorySegment reverseSources, MemorySegment reverseWeights) {
+    this.numberOfNodes = numberOfNodes;
+    this.numberOfEdges = numberOfEdges;
+    this.maxWeight = maxWeight;
+    this.forwardOffsets = forwardOffsets;
+    this.forwardTargets = forwardTargets;
+    this.forwardWeights = forwardWeights;
+    this.reverseOffsets = reverseOffsets;
+    this.reverseSources = reverseSources;
+    this.reverseWeights = reverseWeights;
+  }
+
+  /**
+   * Copies the edges of a graph read node by node, such as a Graph, into segments allocated from
+   * the given arena. The edges are copied in both directions, without building a compressed copy
+   * of the graph on the heap first
+   *
+   * @param graph The graph to be copied
+   * @param arena The arena the segments are allocated from, which owns them from then on
+   * @return The off-heap copy of the graph
+   * @throws IllegalArgumentException if the graph or the arena is null, or the graph has more
+   *                                  than 2^31 - 1 edges
+   */
+  public static OffHeapGraph fromGraph(AdjacencyView graph, Arena arena)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    InputValidation.ensureNotNull(arena);
+    int numberOfNodes = graph.getNumberOfNodes();
+
+    MemorySegment forwardOffsets = allocate(arena, numberOfNodes + 1L);
+    MemorySegment reverseOffsets = allocate(arena, numberOfNodes + 1L);
+    long forwardEnd = 0;
+    long reverseEnd = 0;
+    for (int node = 0; node < numberOfNodes; node++) {
+      forwardOffsets.setAtIndex(INT, node, toEdgeIndex(forwardEnd));
+      reverseOffsets.setAtIndex(INT, node, toEdgeIndex(reverseEnd));
+      forwardEnd += graph.getOutDegree(node);
+      reverseEnd += graph.getInDegree(node);
+    }
+    forwardOffsets.setAtIndex(INT, numberOfNodes, toEdgeIndex(forwardEnd));
+    reverseOffsets.setAtIndex(INT, numberOfNodes, toEdgeIndex(reverseEnd));
+
+    MemorySegment forwardTargets = allocate(arena, forwardEnd);
+    MemorySegment forwardWeights = allocate(arena, forwardEnd);
+    MemorySegment reverseSources = allocate(arena, reverseEnd);
+    MemorySegment reverseWeights = allocate(arena, reverseEnd);
+    int maxWeight = 0;
+    for (int node = 0; node < numberOfNodes; node++) {
+      long edge = forwardOffsets.getAtIndex(INT, node);
+      int degree = graph.getOutDegree(node);
+      for (int index = 0; index < degree; index++, edge++) {
+        int weight = graph.getOutWeight(node, index);
+        forwardTargets.setAtIndex(INT, edge, graph.getOutNeighbor(node, index));
+        forwardWeights.setAtIndex(INT, edge, weight);
+        maxWeight = Math.max(maxWeight, weight);
+      }
+      edge = reverseOffsets.getAtIndex(INT, node);
+      degree = graph.getInDegree(node);
+      for (int index = 0; index < degree; index++, edge++) {
+        reverseSources.setAtIndex(INT, edge, graph.getInNeighbor(node, index));
+        reverseWeights.setAtIndex(INT, edge, graph.getInWeight(node, index));
+      }
+    }
+    return new OffHeapGraph(numberOfNodes, (int) forwardEnd, maxWeight, forwardOffsets,
+        forwardTargets, forwardWeights, reverseOffsets, reverseSources, reverseWeights);
+  }
+
+  /**
+   * Copies a compressed graph, such as a CompressedGraph or a MappedGraph, into segments allocated
+   * from the given arena. The incoming edges are copied if the graph has them. The edges are read
+   * from the range of every node and packed in order, so the copy does not depend on how the graph
+   * numbers its edges
+   *
+   * @param graph The graph to be copied
+   * @param arena The arena the segments are allocated from, which owns them from then on
+   * @return The off-heap copy of the graph
+   * @throws IllegalArgumentException if the graph or the arena is null
+   */
+  public static OffHeapGraph copyOf(GraphView graph, Arena arena) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    InputValidation.ensureNotNull(arena);
+    int numberOfNodes = graph.getNumberOfNodes();
+    int numberOfEdges = graph.getNumberOfEdges();
+
+    MemorySegment forwardOffsets = allocate(arena, numberOfNodes + 1L);
+    MemorySegment forwardTargets = allocate(arena, numberOfEdges);
+    MemorySegment forwardWeights = allocate(arena, numberOfEdges);
+    int next = 0;
+    for (int node = 0; node < numberOfNodes; node++) {
+      forwardOffsets.setAtIndex(INT, node, next);
+      int end = graph.getOutgoingEnd(node);
+      for (int edge = graph.getOutgoingBegin(node); edge < end; edge++, next++) {
+        forwardTargets.setAtIndex(INT, next, graph.getTarget(edge));
+        forwardWeights.setAtIndex(INT, next, graph.getWeight(edge));
+      }
+    }
+    forwardOffsets.setAtIndex(INT, numberOfNodes, next);
+    if (!graph.hasIncomingEdges()) {
+      return new OffHeapGraph(numberOfNodes, numberOfEdges, graph.getMaxWeight(), forwardOffsets,
+          forwardTargets, forwardWeights, null, null, null);
+    }
+
+    MemorySegment reverseOffsets = allocate(arena, numberOfNodes + 1L);
+    MemorySegment reverseSources = allocate(arena, numberOfEdges);
+    MemorySegment reverseWeights = allocate(arena, numberOfEdges);
+    next = 0;
+    for (int node = 0; node < numberOfNodes; node++) {
+      reverseOffsets.setAtIndex(INT, node, next);
+      int end = graph.getIncomingEnd(node);
+      for (int edge = graph.getIncomingBegin(node); edge < end; edge++, next++) {
+        reverseSources.setAtIndex(INT, next, graph.getSource(edge));
+        reverseWeights.setAtIndex(INT, next, graph.getIncomingWeight(edge));
+      }
+    }
+    reverseOffsets.setAtIndex(INT, numberOfNodes, next);
+    return new OffHeapGraph(numberOfNodes, numberOfEdges, graph.getMaxWeight(), forwardOffsets,
+        forwardTargets, forwardWeights, reverseOffsets, reverseSources, reverseWeights);
+  }
+
+  @Override
+  public int getNumberOfNodes() {
+    return this.numberOfNodes;
+  }
+
+  @Override
+  public int getNumberOfEdges() {
+    return this.numberOfEdges;
+  }
+
+  @Override
+  public int getMaxWeight() {
+    return this.maxWeight;
+  }
+
+  @Override
+  public int getMaxEdgeWeight() {
+    return this.maxWeight;
+  }
+
+  @Override
+  public int getOutgoingBegin(int node) {
+    return this.forwardOffsets.getAtIndex(INT, node);
+  }
+
+  @Override
+  public int getOutgoingEnd(int node) {
+    return this.forwardOffsets.getAtIndex(INT, node + 1L);
+  }
+
+  @Override
+  public int getTarget(int edge) {
+    return this.forwardTargets.getAtIndex(INT, edge);
+  }
+
+  @Override
+  public int getWeight(int edge) {
+    return this.forwardWeights.getAtIndex(INT, edge);
+  }
+
+  @Override
+  public boolean hasIncomingEdges() {
+    return this.reverseOffsets != null;
+  }
+
+  @Override
+  public int getIncomingBegin(int node) throws UnsupportedOperationException {
+    return this.reverse(this.reverseOffsets).getAtIndex(INT, node);
+  }
+
+  @Override
+  public int getIncomingEnd(int node) throws UnsupportedOperationException {
+    return this.reverse(this.reverseOffsets).getAtIndex(INT, node + 1L);
+  }
+
+  @Override
+  public int getSource(int edge) throws UnsupportedOperationException {
+    return this.reverse(this.reverseSources).getAtIndex(INT, edge);
+  }
+
+  @Override
+  public int getIncomingWeight(int edge) throws UnsupportedOperationException {
+    return this.reverse(this.reverseWeights).getAtIndex(INT, edge);
+  }
+
+  @Override
+  public int getOutDegree(int node) throws IllegalArgumentException {
+    InputValidation
+        .ensureWithin(node, 0, this.numberOfNodes - 1, "Node is not contained the graph");
+    return this.getOutgoingEnd(node) - this.getOutgoingBegin(node);
+  }
+
+  @Override
+  public int getOutNeighbor(int node, int index) {
+    return this.getTarget(this.getOutgoingBegin(node) + index);
+  }
+
+  @Override
+  public int getOutWeight(int node, int index) {
+    return this.getWeight(this.getOutgoingBegin(node) + index);
+  }
+
+  @Override
+  public int getInDegree(int node) throws IllegalArgumentException {
+    InputValidation
+        .ensureWithin(node, 0, this.numberOfNodes - 1, "Node is not contained the graph");
+    return this.getIncomingEnd(node) - this.getIncomingBegin(node);
+  }
+
+  @Override
+  public int getInNeighbor(int node, int index) {
+    return this.getSource(this.getIncomingBegin(node) + index);
+  }
+
+  @Override
+  public int getInWeight(int node, int index) {
+    return this.getIncomingWeight(this.getIncomingBegin(node) + index);
+  }
+
+  /**
+   * Returns the number of bytes the graph occupies outside the heap
+   *
+   * @return The size of the segments in bytes
+   */
+  public long getOffHeapBytes() {
+    long bytes = 4L * (this.numberOfNodes + 1 + 2L * this.numberOfEdges);
+    return this.hasIncomingEdges() ? 2 * bytes : bytes;
+  }
+
+  /**
+   * Allocates a segment of ints from an arena
+   *
+   * @param arena The arena to allocate from
+   * @param count The number of ints
+   * @return The segment, zeroed
+   */
+  private static MemorySegment allocate(Arena arena, long count) {
+    return arena.allocate(count * INT.byteSize(), INT.byteAlignment());
+  }
+
+  /**
+   * Ensures an edge index can be numbered by an int
+   *
+   * @param edge The index of an edge
+   * @return The index as an int
+   * @throws IllegalArgumentException if the index is larger than an int can hold
+   */
+  private static int toEdgeIndex(long edge) throws IllegalArgumentException {
+    if (edge > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Graph has too many edges to be numbered by ints");
+    }
+    return (int) edge;
+  }
+
+  /**
+   * Ensures the incoming edges are present
+   *
+   * @param segment A segment of the incoming edges
+   * @return The segment
+   * @throws UnsupportedOperationException if the graph has no incoming edges
+   */
+  private MemorySegment reverse(MemorySegment segment) throws UnsupportedOperationException {
+    if (segment == null) {
+      throw new UnsupportedOperationException("Graph has no incoming edges");
+    }
+    return segment;
+  }
+}
@@ -0,0 +1,404 @@
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The reusable state of dijkstra searches kept outside the java heap. Like SearchWorkspace, a
+ * workspace holds distance and parent arrays sized to the graph and forgets a search by advancing
+ * an epoch, but here those arrays, the stamps and an indexed binary heap are memory segments, so
+ * a service running many workspaces over a large graph keeps its heap small. Searches read the
+ * graph through an AdjacencyView, so the same workspace serves a Graph on the heap and an
+ * OffHeapGraph outside of it.
+ *
+ * A workspace allocates from a confined arena it owns, unless given an arena, and must be closed
+ * to release its memory. Closing a workspace closes its own arena but never one it was given. A
+ * workspace is not thread safe, and one allocated from a confined arena is only usable by the
+ * thread that created it
+ */
+public class OffHeapWorkspace implements AutoCloseable {
+
+  private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT;
+  private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG;
+  private static final long NODE_MASK = 0xFFFFFFFFL;
+
+  private final int capacity;
+  private final Arena arena;
+  private final boolean ownsArena;
+  private final MemorySegment distances;
+  private final MemorySegment parents;
+  private final MemorySegment stamps; // the epoch in which each node was last reached
+  private final MemorySegment positions; // the heap position of each reached node, -1 if settled
+  private final MemorySegment heap; // distance << 32 | node, ordered by distance
+  private int heapSize;
+  private int epoch;
+  private int root;
+  private int settledNodes;
+
+  /**
+   * Constructs a new OffHeapWorkspace for searches over graphs with at most _capacity_ nodes,
+   * allocated from a confined arena of its own
+   *
+   * @param capacity The largest number of nodes of a graph to be searched
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  public OffHeapWorkspace(int capacity) throws IllegalArgumentException {
+    this(capacity, Arena.ofConfined(), true);
+  }
+
+  /**
+   * Constructs a new OffHeapWorkspace for searches over graphs with at most _capacity_ nodes,
+   * allocated from the given arena, which the caller remains responsible for closing
+   *
+   * @param capacity The largest number of nodes of a graph to be searched
+   * @param arena    The arena to allocate from
+   * @throws IllegalArgumentException if the capacity is negative or the arena is null
+   */
+  public OffHeapWorkspace(int capacity, Arena arena) throws IllegalArgumentException {
+    this(capacity, InputValidation.ensureNotNull(arena), false);
+  }
+
+  /**
+   * Constructs a new OffHeapWorkspace
+   *
+   * @param capacity  The largest number of nodes of a graph to be searched
+   * @param arena     The arena to allocate from
+   * @param ownsArena Whether closing the workspace closes the arena
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  private OffHeapWorkspace(int capacity, Arena arena, boolean ownsArena)
+      throws IllegalArgumentException {
+    this.capacity = InputValidation.ensureGreaterThan(capacity, 0, "Capacity cannot be negative");
+    this.arena = arena;
+    this.ownsArena = ownsArena;
+    // segments are zeroed, so every stamp starts out before the first epoch
+    this.distances = arena.allocate(capacity * INT.byteSize(), INT.byteAlignment());
+    this.parents = arena.allocate(capacity * INT.byteSize(), INT.byteAlignment());
+    this.stamps = arena.allocate(capacity * INT.byteSize(), INT.byteAlignment());
+    this.positions = arena.allocate(capacity * INT.byteSize(), INT.byteAlignment());
+    this.heap = arena.allocate(capacity * LONG.byteSize(), LONG.byteAlignment());
+    this.heapSize = 0;
+    this.epoch = 0;
+    this.root = -1;
+    this.settledNodes = 0;
+  }
+
+  /**
+   * Computes the shortest path tree rooted at _root_
+   *
+   * @param graph   The graph to be searched
+   * @param root    The root of the tree
+   * @param reverse Whether to follow incoming rather than outgoing edges, which gives the distances
+   *                from every node to the root
+   * @return This workspace, holding the tree until its next search
+   * @throws IllegalArgumentException if the graph is null or does not fit in the workspace, or the
+   *                                  root is not contained in the graph
+   */
+  public OffHeapWorkspace shortestPathTree(AdjacencyView graph, int root, boolean reverse)
+      throws IllegalArgumentException {
+    this.search(graph, root, -1, reverse);
+    return this;
+  }
+
+  /**
+   * Runs a search from _source_ that stops once _target_ is settled, after which the path to the
+   * target is available through getPath
+   *
+   * @param graph  The graph to be searched
+   * @param source The source of the path
+   * @param target The target of the path
+   * @return This workspace, holding the partial tree until its next search
+   * @throws IllegalArgumentException if the graph is null or does not fit in the workspace, or
+   *                                  either node is not contained in the graph
+   */
+  public OffHeapWorkspace shortestPath(AdjacencyView graph, int source, int target)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    InputValidation.ensureWithin(target, 0, graph.getNumberOfNodes() - 1,
+        "Target is not contained the graph");
+    this.search(graph, source, target, false);
+    return this;
+  }
+
+  /**
+   * Returns the root of the last search
+   *
+   * @return The root, -1 before the first search
+   */
+  public int getRoot() {
+    return this.root;
+  }
+
+  /**
+   * Returns the distance the last search found between its root and the given node
+   *
+   * @param node The node
+   * @return The distance, Main.UNREACHABLE if the node was not reached
+   * @throws IllegalArgumentException if the node does not fit in the workspace
+   */
+  public int getDistance(int node) throws IllegalArgumentException {
+    this.ensureNode(node);
+    return this.isStamped(node) ? this.distances.getAtIndex(INT, node) : Main.UNREACHABLE;
+  }
+
+  /**
+   * Returns the node the last search reached the given node from
+   *
+   * @param node The node
+   * @return The parent, -1 if the node was not reached
+   * @throws IllegalArgumentException if the node does not fit in the workspace
+   */
+  public int getParent(int node) throws IllegalArgumentException {
+    this.ensureNode(node);
+    return this.isStamped(node) ? this.parents.getAtIndex(INT, node) : -1;
+  }
+
+  /**
+   * Returns whether the last search reached the given node
+   *
+   * @param node The node
+   * @return Whether the node was reached
+   * @throws IllegalArgumentException if the node does not fit in the workspace
+   */
+  public boolean isReachable(int node) throws IllegalArgumentException {
+    return this.getDistance(node) != Main.UNREACHABLE;
+  }
+
+  /**
+   * Returns the path the last search found between its root and the given node, listed from the
+   * root
+   *
+   * @param node The node
+   * @return The path, with the number of nodes settled by the search
+   * @throws IllegalArgumentException if the node does not fit in the workspace
+   */
+  public PathResult getPath(int node) throws IllegalArgumentException {
+    if (!this.isReachable(node)) {
+      return PathResult.unreachable(this.settledNodes);
+    }
+    List<Integer> path = new ArrayList<Integer>();
+    for (int current = node; current != this.root; current = this.getParent(current)) {
+      path.add(current);
+    }
+    path.add(this.root);
+    Collections.reverse(path);
+    return new PathResult(this.getDistance(node), path, this.settledNodes);
+  }
+
+  /**
+   * Returns the number of nodes the last search settled
+   *
+   * @return The number of settled nodes
+   */
+  public int getSettledNodes() {
+    return this.settledNodes;
+  }
+
+  /**
+   * Returns the largest number of nodes of a graph the workspace can search
+   *
+   * @return The capacity of the workspace
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Returns the number of bytes the workspace occupies outside the heap
+   *
+   * @return The size of the segments in bytes
+   */
+  public long getOffHeapBytes() {
+    return 24L * this.capacity;
+  }
+
+  /**
+   * Releases the memory of the workspace if it owns its arena. The workspace cannot be used after
+   */
+  @Override
+  public void close() {
+    if (this.ownsArena) {
+      this.arena.close();
+    }
+  }
+
+  /**
+   * Runs dijkstra's algorithm from _root_, stopping early once _target_ is settled
+   *
+   * @param graph   The graph to be searched
+   * @param root    The root of the search
+   * @param target  The node to stop at, -1 to search the whole graph
+   * @param reverse Whether to follow incoming edges
+   * @throws IllegalArgumentException if the search cannot be run
+   */
+  private void search(AdjacencyView graph, int root, int target, boolean reverse)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    int numberOfNodes = graph.getNumberOfNodes();
+    if (numberOfNodes > this.capacity) {
+      throw new IllegalArgumentException("Graph does not fit in the workspace");
+    }
+    InputValidation.ensureWithin(root, 0, numberOfNodes - 1, "Root is not contained the graph");
+    this.reset(root);
+
+    this.relax(root, 0, root);
+    while (this.heapSize > 0) {
+      long entry = this.pop();
+      int closestNode = (int) (entry & NODE_MASK);
+      int closestDistance = (int) (entry >>> 32);
+      this.settledNodes += 1;
+      if (closestNode == target) {
+        break;
+      }
+
+      int degree = reverse ? graph.getInDegree(closestNode) : graph.getOutDegree(closestNode);
+      for (int index = 0; index < degree; index++) {
+        if (reverse) {
+          this.relax(graph.getInNeighbor(closestNode, index),
+              closestDistance + graph.getInWeight(closestNode, index), closestNode);
+        } else {
+          this.relax(graph.getOutNeighbor(closestNode, index),
+              closestDistance + graph.getOutWeight(closestNode, index), closestNode);
+        }
+      }
+    }
+  }
+
+  /**
+   * Offers a node a new tentative distance, inserting it into the heap or moving it up
+   *
+   * @param node        The node on the other end of the edge
+   * @param newDistance The distance of the node through the edge
+   * @param parent      The node being expanded
+   */
+  private void relax(int node, int newDistance, int parent) {
+    int position;
+    if (this.isStamped(node)) {
+      // settled nodes are never farther than the node being expanded, so they fail this check
+      if (this.distances.getAtIndex(INT, node) <= newDistance) {
+        return;
+      }
+      position = this.positions.getAtIndex(INT, node);
+    } else {
+      this.stamps.setAtIndex(INT, node, this.epoch);
+      position = this.heapSize;
+      this.heapSize += 1;
+    }
+    this.distances.setAtIndex(INT, node, newDistance);
+    this.parents.setAtIndex(INT, node, parent);
+    this.siftUp(position, (long) newDistance << 32 | node);
+  }
+
+  /**
+   * Removes the closest entry of the heap and marks its node settled
+   *
+   * @return The entry, distance << 32 | node
+   */
+  private long pop() {
+    long closest = this.heap.getAtIndex(LONG, 0);
+    this.positions.setAtIndex(INT, (int) (closest & NODE_MASK), -1);
+    this.heapSize -= 1;
+    if (this.heapSize > 0) {
+      this.siftDown(0, this.heap.getAtIndex(LONG, this.heapSize));
+    }
+    return closest;
+  }
+
+  /**
+   * Places an entry at a position of the heap, moving it up past larger parents
+   *
+   * @param position The position that is free
+   * @param entry    The entry to be placed
+   */
+  private void siftUp(int position, long entry) {
+    while (position > 0) {
+      int up = (position - 1) >>> 1;
+      long parent = this.heap.getAtIndex(LONG, up);
+      if (parent <= entry) {
+        break;
+      }
+      this.place(position, parent);
+      position = up;
+    }
+    this.place(position, entry);
+  }
+
+  /**
+   * Places an entry at a position of the heap, moving it down past smaller children
+   *
+   * @param position The position that is free
+   * @param entry    The entry to be placed
+   */
+  private void siftDown(int position, long entry) {
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= this.heapSize) {
+        break;
+      }
+      long smallest = this.heap.getAtIndex(LONG, child);
+      if (child + 1 < this.heapSize) {
+        long right = this.heap.getAtIndex(LONG, child + 1);
+        if (right < smallest) {
+          smallest = right;
+          child += 1;
+        }
+      }
+      if (entry <= smallest) {
+        break;
+      }
+      this.place(position, smallest);
+      position = child;
+    }
+    this.place(position, entry);
+  }
+
+  /**
+   * Stores an entry at a position of the heap and records that position for its node
+   *
+   * @param position The position
+   * @param entry    The entry
+   */
+  private void place(int position, long entry) {
+    this.heap.setAtIndex(LONG, position, entry);
+    this.positions.setAtIndex(INT, (int) (entry & NODE_MASK), position);
+  }
+
+  /**
+   * Starts a new epoch, which forgets every node reached before
+   *
+   * @param root The root of the next search
+   */
+  private void reset(int root) {
+    this.heapSize = 0;
+    this.epoch += 1;
+    if (this.epoch == Integer.MAX_VALUE) {
+      // only after two billion searches, so clearing every stamp once is cheap enough
+      this.stamps.fill((byte) 0);
+      this.epoch = 1;
+    }
+    this.root = root;
+    this.settledNodes = 0;
+  }
+
+  /**
+   * Returns whether a node was reached in the current epoch
+   *
+   * @param node The node
+   * @return Whether the node was reached
+   */
+  private boolean isStamped(int node) {
+    return this.stamps.getAtIndex(INT, node) == this.epoch;
+  }
+
+  /**
+   * Ensures a node fits in the workspace
+   *
+   * @param node The node
+   * @throws IllegalArgumentException if the node does not fit
+   */
+  private void ensureNode(int node) throws IllegalArgumentException {
+    InputValidation.ensureWithin(node, 0, this.capacity - 1, "Node is not contained the graph");
+  }
+}
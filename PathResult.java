@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the answer to a single source-target shortest path query: the distance, the nodes on
+ * the path, and the number of nodes the search settled to find it
+ */
+public class PathResult {
+
+  private int distance;
+  private List<Integer> path;
+  private int settledNodes;
+
+  /**
+   * Constructs a new PathResult
+   *
+   * @param distance     The length of the shortest path, or -1 if the target is unreachable
+   * @param path         The nodes of the path from source to target, empty if unreachable
+   * @param settledNodes The number of nodes the search settled
+   * @throws IllegalArgumentException if the path is null
+   */
+  public PathResult(int distance, List<Integer> path, int settledNodes)
+      throws IllegalArgumentException {
+    this.distance = distance;
+    this.path = InputValidation.ensureNotNull(path);
+    this.settledNodes = settledNodes;
+  }
+
+  /**
+   * Constructs the result of a query whose target could not be reached
+   *
+   * @param settledNodes The number of nodes the search settled
+   * @return A result without a path
+   */
+  public static PathResult unreachable(int settledNodes) {
+    return new PathResult(-1, new ArrayList<Integer>(), settledNodes);
+  }
+
+  /**
+   * Returns the length of the shortest path
+   *
+   * @return The length of the shortest path, or -1 if the target is unreachable
+   */
+  public int getDistance() {
+    return this.distance;
+  }
+
+  /**
+   * Returns a copy of the nodes on the shortest path, starting with the source and ending with the
+   * target
+   *
+   * @return A copy of the path
+   */
+  public List<Integer> getPath() {
+    return new ArrayList<Integer>(this.path);
+  }
+
+  /**
+   * Returns the number of nodes the search settled before it could stop
+   *
+   * @return The number of settled nodes
+   */
+  public int getSettledNodes() {
+    return this.settledNodes;
+  }
+
+  /**
+   * Determines whether the target was reachable from the source
+   *
+   * @return True if a path was found, False otherwise
+   */
+  public boolean isReachable() {
+    return this.distance >= 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("distance: %d, path: %s, settled: %d", this.distance, this.path,
+        this.settledNodes);
+  }
+}
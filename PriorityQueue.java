@@ -1,28 +1,46 @@
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
- * A representation for a minheap to be used in an improved implementation of Dijkstra's shortest
- * path algorithm
+ * A representation for an indexed d-ary minheap to be used in an improved implementation of
+ * Dijkstra's shortest path algorithm. Nodes are the integers 0, 1, ..., capacity - 1, and the heap
+ * is kept in three primitive arrays so that no operation boxes a value or allocates
  */
-public class PriorityQueue {
+public class PriorityQueue implements NodeQueue {
 
-  Map<Integer, Integer> nodeIndices; // maps from node id to index in distances array
-  Map<Integer, Integer> reverseIndices; // maps from index in distances array to node id
-  List<Integer> nodeDistances;
+  private final int arity;
+  private int[] heapNodes; // maps from index in the heap to node id
+  private int[] heapDistances; // maps from index in the heap to the distance of that node
+  private int[] positions; // maps from node id to index in the heap, -1 if absent
+  private int size;
 
   /**
-   * Constructs a new Priority Queue with an initial capacity
+   * Constructs a new binary Priority Queue with an initial capacity
    *
    * @param capacity The capacity of the queue
    */
   public PriorityQueue(int capacity) {
-    this.nodeIndices = new HashMap<Integer, Integer>(capacity);
-    this.reverseIndices = new HashMap<Integer, Integer>(capacity);
-    this.nodeDistances = new ArrayList<Integer>(capacity);
+    this(capacity, 2);
+  }
+
+  /**
+   * Constructs a new Priority Queue with an initial capacity in which every entry has _arity_
+   * children. Wider heaps are shallower, which makes decreaseKey cheaper and keeps the children of
+   * an entry on the same cache line, at the cost of more comparisons in extractMin
+   *
+   * @param capacity The capacity of the queue
+   * @param arity    The number of children of every entry, typically 2, 4 or 8
+   * @throws IllegalArgumentException if the capacity is negative or the arity is less than 2
+   */
+  public PriorityQueue(int capacity, int arity) throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(capacity, 0, "Capacity cannot be negative");
+    this.arity = InputValidation.ensureGreaterThan(arity, 2, "Arity must be at least 2");
+    this.heapNodes = new int[capacity];
+    this.heapDistances = new int[capacity];
+    this.positions = new int[capacity];
+    Arrays.fill(this.positions, -1);
+    this.size = 0;
   }
 
   /**
@@ -31,9 +49,9 @@ public class PriorityQueue {
    * @return A copy of the values of in this priority queue
    */
   public List<Integer> getValues() {
-    List<Integer> valuesCopy = new ArrayList<Integer>(this.nodeDistances.size());
-    for (int index = 0; index < this.nodeDistances.size(); index++) {
-      valuesCopy.add(this.nodeDistances.get(index));
+    List<Integer> valuesCopy = new ArrayList<Integer>(this.size);
+    for (int index = 0; index < this.size; index++) {
+      valuesCopy.add(this.heapDistances[index]);
     }
     return valuesCopy;
   }
@@ -43,44 +61,19 @@ public class PriorityQueue {
    *
    * @param node     The ID of the new node being added to the heap
    * @param distance The distance associated with the node
+   * @throws IllegalArgumentException if the node is negative or already contained in the heap
    */
-  public void insert(int node, int distance) {
-    if (this.nodeDistances.size() > 0) {
-      int newIndex = this.nodeDistances.size();
-      this.nodeDistances.add(distance);
-      int parentIndex = (int) Math.floor(newIndex / 2);
-      int parentDistance = this.nodeDistances.get(parentIndex);
-      // the node id of the parent
-      int parentNode = this.reverseIndices.get(parentIndex);
-
-      while (parentDistance > distance) {
-        // swapping the two distances in the distances array
-        Collections.swap(this.nodeDistances, parentIndex, newIndex);
-
-        // fixing the index the parent node points to
-        this.nodeIndices.put(parentNode, newIndex);
-        this.reverseIndices.put(newIndex, parentNode);
-
-        // calculating the new index values
-        newIndex = parentIndex;
-        parentIndex = (int) Math.floor(newIndex / 2);
-        parentDistance = this.nodeDistances.get(parentIndex);
-        parentNode = this.reverseIndices.get(parentIndex);
-
-        // breaking out of the loop if the new index is at the root
-        if (newIndex == 0) {
-          break;
-        }
-      }
-
-      // assigning the index the new node points to
-      this.nodeIndices.put(node, newIndex);
-      this.reverseIndices.put(newIndex, node);
-    } else {
-      this.nodeDistances.add(distance);
-      this.nodeIndices.put(node, 0);
-      this.reverseIndices.put(0, node);
+  public void insert(int node, int distance) throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(node, 0, "Node cannot be negative");
+    if (node >= this.positions.length) {
+      this.grow(node + 1);
     }
+    if (this.positions[node] != -1) {
+      throw new IllegalArgumentException("Node is already contained in the heap");
+    }
+
+    this.siftUp(node, distance, this.size);
+    this.size += 1;
   }
 
   /**
@@ -91,80 +84,56 @@ public class PriorityQueue {
    * @throws IllegalArgumentException if the node is not contained the map
    */
   public int lookup(int node) throws IllegalArgumentException {
-    if (!this.nodeIndices.containsKey(node)) {
+    if (!this.contains(node)) {
       throw new IllegalArgumentException("Node not contained in heap");
     }
-    int nodeIndex = this.nodeIndices.get(node);
-    int nodeDistance = this.nodeDistances.get(nodeIndex);
-    return nodeDistance;
+    return this.heapDistances[this.positions[node]];
+  }
+
+  /**
+   * Determines whether the given node is in the heap
+   *
+   * @param node The node to be looked for
+   * @return True if the node is in the heap, False otherwise
+   */
+  public boolean contains(int node) {
+    return node >= 0 && node < this.positions.length && this.positions[node] != -1;
+  }
+
+  /**
+   * Returns the smallest distance in the heap without removing it. Together with extractMin this
+   * replaces the pair that used to be returned, so that nothing is allocated per extraction
+   *
+   * @return The distance of the node at the root of the heap
+   * @throws UnsupportedOperationException if the heap is empty
+   */
+  public int getMinimumDistance() throws UnsupportedOperationException {
+    if (this.size == 0) {
+      throw new UnsupportedOperationException("Cannot peek at an empty heap");
+    }
+    return this.heapDistances[0];
   }
 
   /**
    * Extracts the minimum value of the heap and downheaps the new root node pulled from the back
    *
-   * @return A pair that contains the closest node and its distance
+   * @return The closest node. Its distance is the one getMinimumDistance returned before the call
    * @throws UnsupportedOperationException if the heap is empty
    */
-  public Pair<Integer, Integer> extractMin() throws UnsupportedOperationException {
+  public int extractMin() throws UnsupportedOperationException {
     // throw exception when heap is empty
-    if (this.nodeDistances.isEmpty()) {
+    if (this.size == 0) {
       throw new UnsupportedOperationException("Cannot extract min on an empty heap");
-    } else {
-      int closestNode = this.reverseIndices.get(0);
-      int minimumDistance = this.nodeDistances.get(0);
-      if (this.nodeDistances.size() == 1) {
-        this.nodeDistances.remove(0);
-        this.nodeIndices.remove(this.reverseIndices.remove(0));
-      } else {
-        // remove link for the first node, and adjust link for the last node
-        int parentNode = this.reverseIndices.get(this.nodeDistances.size() - 1);
-        this.nodeIndices.remove(this.reverseIndices.remove(0));
-        this.nodeIndices.remove(this.reverseIndices.remove(this.nodeDistances.size() - 1));
-        this.nodeIndices.put(parentNode, 0);
-        this.reverseIndices.put(0, parentNode);
-        // remove the node from the front of the list and replace with the last node in the list
-        this.nodeDistances.set(0, this.nodeDistances.remove(this.nodeDistances.size() - 1));
-        // calculate the parent and children indices
-        int parentIndex = 0;
-        int parentDistance = this.nodeDistances.get(parentIndex);
-        int leftChildIndex = 1;
-        int rightChildIndex = 2;
-
-        while ((rightChildIndex < this.nodeDistances.size() && parentDistance > Math
-            .min(this.nodeDistances.get(leftChildIndex), this.nodeDistances.get(rightChildIndex)))
-            || (leftChildIndex < this.nodeDistances.size() && parentDistance > this.nodeDistances
-            .get(leftChildIndex))) {
-          // FIXME: ABSTRACT THIS CODE INTO A HELPER METHOD
-          if (rightChildIndex < this.nodeDistances.size() && parentDistance > Math
-              .min(this.nodeDistances.get(leftChildIndex),
-                  this.nodeDistances.get(rightChildIndex))
-              && this.nodeDistances.get(rightChildIndex) < this.nodeDistances.get(leftChildIndex)) {
-            // the parent is to be replaced by the right node
-            int rightChildNode = this.reverseIndices.get(rightChildIndex);
-            this.nodeIndices.put(rightChildNode, parentIndex);
-            this.reverseIndices.put(parentIndex, rightChildNode);
-            this.nodeIndices.put(parentNode, rightChildIndex);
-            this.reverseIndices.put(rightChildIndex, parentNode);
-            Collections.swap(this.nodeDistances, parentIndex, rightChildIndex);
-            parentIndex = rightChildIndex;
-            leftChildIndex = 2 * parentIndex;
-            rightChildIndex = (2 * parentIndex) + 1;
-          } else {
-            // the parent is to be replaced by the left node
-            int leftChildNode = this.reverseIndices.get(leftChildIndex);
-            this.nodeIndices.put(leftChildNode, parentIndex);
-            this.reverseIndices.put(parentIndex, leftChildNode);
-            this.nodeIndices.put(parentNode, leftChildIndex);
-            this.reverseIndices.put(leftChildIndex, parentNode);
-            Collections.swap(this.nodeDistances, parentIndex, leftChildIndex);
-            parentIndex = leftChildIndex;
-            leftChildIndex = 2 * parentIndex;
-            rightChildIndex = (2 * parentIndex) + 1;
-          }
-        }
-      }
-      return new Pair<Integer, Integer>(closestNode, minimumDistance);
     }
+
+    int closestNode = this.heapNodes[0];
+    this.positions[closestNode] = -1;
+    this.size -= 1;
+    if (this.size > 0) {
+      // move the last entry to the root and let it sink
+      this.siftDown(this.heapNodes[this.size], this.heapDistances[this.size], 0);
+    }
+    return closestNode;
   }
 
   /**
@@ -177,53 +146,143 @@ public class PriorityQueue {
    *                                  is not strictly less than the currently associate distance
    */
   public void decreaseKey(int node, int distance) throws IllegalArgumentException {
-    if (!this.nodeIndices.containsKey(node)) {
+    if (!this.contains(node)) {
       throw new IllegalArgumentException("Node is not contained in the heap");
     }
 
-    int currentNodeIndex = this.nodeIndices.get(node);
-    int currentNodeDistance = this.nodeDistances.get(currentNodeIndex);
+    int currentNodeIndex = this.positions[node];
     // ensure that new distance is less than or equal to current node distance
-    if (!(distance <= currentNodeDistance)) {
+    if (!(distance <= this.heapDistances[currentNodeIndex])) {
       throw new IllegalArgumentException("New distance is greater than the current distance");
     }
-    this.nodeDistances.set(currentNodeIndex, distance);
+    this.siftUp(node, distance, currentNodeIndex);
+  }
+
+  /**
+   * Increases the distance associated with the given node to _distance_ and downheaps it
+   *
+   * @param node     The ID of the node whose distance we wish to increase
+   * @param distance The new distance associated with the given node
+   * @throws IllegalArgumentException if the node is not contained in the heap or if the new value
+   *                                  is less than the currently associated distance
+   */
+  public void increaseKey(int node, int distance) throws IllegalArgumentException {
+    if (!this.contains(node)) {
+      throw new IllegalArgumentException("Node is not contained in the heap");
+    }
 
-    int parentIndex = (int) Math.floor(currentNodeIndex / 2);
-    int parentDistance = this.nodeDistances.get(parentIndex);
-    // the node id of the parent
-    int parentNode = this.reverseIndices.get(parentIndex);
+    int currentNodeIndex = this.positions[node];
+    if (distance < this.heapDistances[currentNodeIndex]) {
+      throw new IllegalArgumentException("New distance is less than the current distance");
+    }
+    this.siftDown(node, distance, currentNodeIndex);
+  }
 
-    while (parentDistance > distance) {
-      // swapping the two distances in the distances array
-      Collections.swap(this.nodeDistances, parentIndex, currentNodeIndex);
+  /**
+   * Determines whether the heap is empty
+   * @return True if the heap is empty, False otherwise
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
 
-      // fixing the index the parent node points to
-      this.nodeIndices.put(parentNode, currentNodeIndex);
-      this.reverseIndices.put(currentNodeIndex, parentNode);
+  /**
+   * Returns the number of nodes in the heap
+   *
+   * @return The number of nodes in the heap
+   */
+  public int size() {
+    return this.size;
+  }
 
-      // calculating the new index values
-      currentNodeIndex = parentIndex;
-      parentIndex = (int) Math.floor(currentNodeIndex / 2);
-      parentDistance = this.nodeDistances.get(parentIndex);
-      parentNode = this.reverseIndices.get(parentIndex);
+  /**
+   * Removes every node from the heap. This only touches the entries still in the heap, so a queue
+   * can be reused across searches without paying for its full capacity
+   */
+  public void clear() {
+    for (int index = 0; index < this.size; index++) {
+      this.positions[this.heapNodes[index]] = -1;
+    }
+    this.size = 0;
+  }
 
-      // breaking out of the loop if the new index is at the root
-      if (currentNodeIndex == 0) {
+  /**
+   * Moves the hole at _index_ up until _distance_ can be placed without breaking heap order, then
+   * places _node_ there
+   *
+   * @param node     The node being placed
+   * @param distance The distance of the node
+   * @param index    The index of the hole to start from
+   */
+  private void siftUp(int node, int distance, int index) {
+    while (index > 0) {
+      int parentIndex = (index - 1) / this.arity;
+      int parentDistance = this.heapDistances[parentIndex];
+      if (parentDistance <= distance) {
         break;
       }
+      // pull the parent down into the hole
+      int parentNode = this.heapNodes[parentIndex];
+      this.heapNodes[index] = parentNode;
+      this.heapDistances[index] = parentDistance;
+      this.positions[parentNode] = index;
+      index = parentIndex;
     }
+    this.heapNodes[index] = node;
+    this.heapDistances[index] = distance;
+    this.positions[node] = index;
+  }
 
-    // assigning the index the new node points to
-    this.nodeIndices.put(node, currentNodeIndex);
-    this.reverseIndices.put(currentNodeIndex, node);
+  /**
+   * Moves the hole at _index_ down until _distance_ can be placed without breaking heap order, then
+   * places _node_ there
+   *
+   * @param node     The node being placed
+   * @param distance The distance of the node
+   * @param index    The index of the hole to start from
+   */
+  private void siftDown(int node, int distance, int index) {
+    while (true) {
+      int firstChildIndex = this.arity * index + 1;
+      if (firstChildIndex >= this.size) {
+        break;
+      }
+      // find the closest of the children
+      int lastChildIndex = Math.min(firstChildIndex + this.arity, this.size);
+      int smallestChildIndex = firstChildIndex;
+      int smallestChildDistance = this.heapDistances[firstChildIndex];
+      for (int childIndex = firstChildIndex + 1; childIndex < lastChildIndex; childIndex++) {
+        if (this.heapDistances[childIndex] < smallestChildDistance) {
+          smallestChildIndex = childIndex;
+          smallestChildDistance = this.heapDistances[childIndex];
+        }
+      }
+      if (smallestChildDistance >= distance) {
+        break;
+      }
+      // pull the child up into the hole
+      int childNode = this.heapNodes[smallestChildIndex];
+      this.heapNodes[index] = childNode;
+      this.heapDistances[index] = smallestChildDistance;
+      this.positions[childNode] = index;
+      index = smallestChildIndex;
+    }
+    this.heapNodes[index] = node;
+    this.heapDistances[index] = distance;
+    this.positions[node] = index;
   }
 
   /**
-   * Determines whether the heap is empty
-   * @return True if the heap is empty, False otherwise
+   * Grows the arrays of the heap so that nodes below _minimumCapacity_ can be inserted
+   *
+   * @param minimumCapacity The smallest capacity needed
    */
-  public boolean isEmpty() {
-    return this.nodeDistances.isEmpty();
+  private void grow(int minimumCapacity) {
+    int newCapacity = Math.max(minimumCapacity, 2 * this.positions.length);
+    int oldCapacity = this.positions.length;
+    this.heapNodes = Arrays.copyOf(this.heapNodes, newCapacity);
+    this.heapDistances = Arrays.copyOf(this.heapDistances, newCapacity);
+    this.positions = Arrays.copyOf(this.positions, newCapacity);
+    Arrays.fill(this.positions, oldCapacity, newCapacity, -1);
   }
 }
@@ -0,0 +1,530 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small HTTP server answering shortest path queries over a read-only snapshot of a graph, built
+ * on the JDK's com.sun.net.httpserver. Every request runs on its own virtual thread, so tens of
+ * thousands of concurrent clients cost no more than their sockets. The searches themselves are
+ * bound by the processors, so they borrow one of a fixed pool of SearchWorkspaces, one per
+ * processor by default, and wait for a free one if there is none; a semaphore caps the number of
+ * requests in flight, and those beyond it are turned away at once with 503 rather than queued
+ * without bound. The snapshot is a CompressedGraph or a MappedGraph, neither of which can change,
+ * so the workspaces search it without any locking.
+ *
+ * Endpoints, all answering in plain text:
+ *
+ * GET /distance?source=S&target=T the distance, or "unreachable"
+ *
+ * GET /path?source=S&target=T the distance and the nodes of the path separated by spaces, or
+ * "unreachable"
+ *
+ * GET /tree?source=S one line of node, distance and parent per reachable node
+ *
+ * POST /batch a body of "source target" lines, answered by one distance per line in the same
+ * order. Queries are grouped by source, so all targets of a source cost a single search
+ *
+ * GET /stats the counters of the server
+ *
+ * Usage: java QueryServer [graph file] [format] [port], where the format is dimacs, edgelist or
+ * binary for a file written by GraphFile
+ */
+public class QueryServer {
+
+  // the most queries a single batch may hold
+  public static final int MAX_BATCH_SIZE = 1 << 20;
+
+  static {
+    // the server writes the headers and the body of a response separately, which with Nagle's
+    // algorithm and delayed acknowledgements stalls every response by tens of milliseconds
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final GraphView graph;
+  private final int port;
+  private final int maxPendingRequests;
+  private final BlockingQueue<SearchWorkspace> workspaces;
+  private final Semaphore admission;
+  private final AtomicLong requests;
+  private final AtomicLong queries;
+  private final AtomicLong rejected;
+  private final AtomicLong failed;
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * The answer to a request that could not be served
+   */
+  private static class RequestException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    /**
+     * Constructs a new RequestException
+     *
+     * @param status  The HTTP status to be sent
+     * @param message The reason, sent as the body
+     */
+    private RequestException(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+  }
+
+  /**
+   * An endpoint that runs searches. It takes care of admission, borrowing a workspace and turning
+   * the answer or the failure into a response
+   */
+  private abstract class SearchEndpoint implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      QueryServer.this.requests.incrementAndGet();
+      if (!QueryServer.this.admission.tryAcquire()) {
+        QueryServer.this.rejected.incrementAndGet();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, 503, "Too many pending requests\n");
+        return;
+      }
+      SearchWorkspace workspace = null;
+      try {
+        String answer;
+        try {
+          // reading the request before taking a workspace keeps slow clients from holding one
+          Map<String, String> parameters = parseQuery(exchange.getRequestURI());
+          List<int[]> batch = this.readBatch(exchange);
+          workspace = QueryServer.this.workspaces.take();
+          answer = this.answer(parameters, batch, workspace);
+        } catch (IllegalArgumentException e) {
+          throw new RequestException(400, e.getMessage() + "\n");
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RequestException(503, "Server is shutting down\n");
+        }
+        respond(exchange, 200, answer);
+      } catch (RequestException e) {
+        QueryServer.this.failed.incrementAndGet();
+        respond(exchange, e.status, e.getMessage());
+      } catch (RuntimeException e) {
+        QueryServer.this.failed.incrementAndGet();
+        respond(exchange, 500, "Internal error: " + e + "\n");
+      } finally {
+        if (workspace != null) {
+          QueryServer.this.workspaces.add(workspace);
+        }
+        QueryServer.this.admission.release();
+      }
+    }
+
+    /**
+     * Reads the queries in the body of a batch request
+     *
+     * @param exchange The exchange
+     * @return The queries as pairs of source and target, null for endpoints without a body
+     * @throws RequestException if the body cannot be read
+     */
+    List<int[]> readBatch(HttpExchange exchange) throws RequestException {
+      return null;
+    }
+
+    /**
+     * Answers a request
+     *
+     * @param parameters The parameters of the query string
+     * @param batch      The queries of a batch request, null for other requests
+     * @param workspace  The workspace to search with, owned by this request until it returns
+     * @return The body of the response
+     * @throws IllegalArgumentException if a parameter is missing or not valid
+     */
+    abstract String answer(Map<String, String> parameters, List<int[]> batch,
+        SearchWorkspace workspace) throws IllegalArgumentException;
+  }
+
+  /**
+   * Constructs a new QueryServer over a snapshot of a graph, taken now, with one workspace per
+   * processor. Later changes to the graph are not seen by the server
+   *
+   * @param graph The graph to be served
+   * @param port  The port to listen on, 0 to pick a free one
+   * @throws IllegalArgumentException if the graph is null or the port is not valid
+   */
+  public QueryServer(Graph graph, int port) throws IllegalArgumentException {
+    this(CompressedGraph.fromGraph(InputValidation.ensureNotNull(graph)), port,
+        Runtime.getRuntime().availableProcessors(), 10000);
+  }
+
+  /**
+   * Constructs a new QueryServer over a graph that cannot change
+   *
+   * @param graph              The graph to be served, a CompressedGraph or a MappedGraph
+   * @param port               The port to listen on, 0 to pick a free one
+   * @param numberOfWorkspaces The number of searches run at once
+   * @param maxPendingRequests The number of requests in flight beyond which requests are rejected
+   * @throws IllegalArgumentException if the graph is null, the port is not valid, or either number
+   *                                  is not positive
+   */
+  public QueryServer(GraphView graph, int port, int numberOfWorkspaces, int maxPendingRequests)
+      throws IllegalArgumentException {
+    this.graph = InputValidation.ensureNotNull(graph);
+    this.port = InputValidation.ensureWithin(port, 0, 65535, "Port is not valid");
+    InputValidation.ensureGreaterThan(numberOfWorkspaces, 1,
+        "Number of workspaces must be positive");
+    this.maxPendingRequests = InputValidation.ensureGreaterThan(maxPendingRequests, 1,
+        "Number of pending requests must be positive");
+    this.workspaces = new ArrayBlockingQueue<SearchWorkspace>(numberOfWorkspaces);
+    for (int index = 0; index < numberOfWorkspaces; index++) {
+      this.workspaces.add(new SearchWorkspace(graph));
+    }
+    this.admission = new Semaphore(maxPendingRequests);
+    this.requests = new AtomicLong();
+    this.queries = new AtomicLong();
+    this.rejected = new AtomicLong();
+    this.failed = new AtomicLong();
+  }
+
+  /**
+   * Starts listening
+   *
+   * @throws IOException if the port cannot be bound
+   * @throws UnsupportedOperationException if the server was started before
+   */
+  public synchronized void start() throws IOException, UnsupportedOperationException {
+    if (this.server != null) {
+      throw new UnsupportedOperationException("Server was already started");
+    }
+    this.server = HttpServer.create(new InetSocketAddress(this.port), 0);
+    this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    this.server.setExecutor(this.executor);
+
+    this.server.createContext("/distance", new SearchEndpoint() {
+      @Override
+      String answer(Map<String, String> parameters, List<int[]> batch, SearchWorkspace workspace) {
+        int source = getNode(parameters, "source");
+        int target = getNode(parameters, "target");
+        QueryServer.this.queries.incrementAndGet();
+        ShortestPathTree tree = workspace.shortestPath(QueryServer.this.graph, source, target);
+        return tree.isReachable(target) ? tree.getDistance(target) + "\n" : "unreachable\n";
+      }
+    });
+    this.server.createContext("/path", new SearchEndpoint() {
+      @Override
+      String answer(Map<String, String> parameters, List<int[]> batch, SearchWorkspace workspace) {
+        int source = getNode(parameters, "source");
+        int target = getNode(parameters, "target");
+        QueryServer.this.queries.incrementAndGet();
+        PathResult path = workspace.shortestPath(QueryServer.this.graph, source, target)
+            .getPath(target);
+        if (!path.isReachable()) {
+          return "unreachable\n";
+        }
+        StringBuilder answer = new StringBuilder().append(path.getDistance());
+        for (int node : path.getPath()) {
+          answer.append(' ').append(node);
+        }
+        return answer.append('\n').toString();
+      }
+    });
+    this.server.createContext("/tree", new SearchEndpoint() {
+      @Override
+      String answer(Map<String, String> parameters, List<int[]> batch, SearchWorkspace workspace) {
+        int source = getNode(parameters, "source");
+        QueryServer.this.queries.incrementAndGet();
+        ShortestPathTree tree = workspace.shortestPathTree(QueryServer.this.graph, source, false);
+        StringBuilder answer = new StringBuilder();
+        for (int node = 0; node < QueryServer.this.graph.getNumberOfNodes(); node++) {
+          if (tree.isReachable(node)) {
+            answer.append(node).append('\t').append(tree.getDistance(node)).append('\t')
+                .append(tree.getParent(node)).append('\n');
+          }
+        }
+        return answer.toString();
+      }
+    });
+    this.server.createContext("/batch", new SearchEndpoint() {
+      @Override
+      List<int[]> readBatch(HttpExchange exchange) throws RequestException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+          throw new RequestException(405, "Batches must be posted\n");
+        }
+        return QueryServer.this.readQueries(exchange);
+      }
+
+      @Override
+      String answer(Map<String, String> parameters, List<int[]> batch, SearchWorkspace workspace) {
+        return QueryServer.this.answerBatch(batch, workspace);
+      }
+    });
+    this.server.createContext("/stats", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, QueryServer.this.getStatistics());
+      }
+    });
+    this.server.start();
+  }
+
+  /**
+   * Stops listening, giving requests in progress up to a second to finish
+   */
+  public synchronized void stop() {
+    if (this.server != null) {
+      this.server.stop(1);
+      this.executor.shutdown();
+    }
+  }
+
+  /**
+   * Returns the port the server listens on, which is only known once it has started if it was
+   * constructed with port 0
+   *
+   * @return The port
+   * @throws UnsupportedOperationException if the server has not been started
+   */
+  public synchronized int getPort() throws UnsupportedOperationException {
+    if (this.server == null) {
+      throw new UnsupportedOperationException("Server has not been started");
+    }
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * Returns the number of requests received, including rejected and failed ones
+   *
+   * @return The number of requests
+   */
+  public long getRequests() {
+    return this.requests.get();
+  }
+
+  /**
+   * Returns the number of queries answered, counting every query of a batch
+   *
+   * @return The number of queries
+   */
+  public long getQueries() {
+    return this.queries.get();
+  }
+
+  /**
+   * Returns the number of requests turned away because too many were pending
+   *
+   * @return The number of rejected requests
+   */
+  public long getRejected() {
+    return this.rejected.get();
+  }
+
+  /**
+   * Returns the counters of the server as lines of name and value
+   *
+   * @return The counters
+   */
+  public String getStatistics() {
+    return "requests\t" + this.requests.get() + "\nqueries\t" + this.queries.get()
+        + "\nrejected\t" + this.rejected.get() + "\nfailed\t" + this.failed.get()
+        + "\npending\t" + (this.maxPendingRequests - this.admission.availablePermits())
+        + "\nnodes\t" + this.graph.getNumberOfNodes() + "\nedges\t"
+        + this.graph.getNumberOfEdges() + "\n";
+  }
+
+  /**
+   * Answers a batch of queries. The queries are sorted by source, and every source is searched
+   * once: until its only target is settled if it has one, and over the whole graph otherwise
+   *
+   * @param batch     The queries as pairs of source and target
+   * @param workspace The workspace to search with
+   * @return One distance, or -1 if unreachable, per query in the order of the batch
+   * @throws IllegalArgumentException if a node is not contained in the graph
+   */
+  private String answerBatch(List<int[]> batch, SearchWorkspace workspace)
+      throws IllegalArgumentException {
+    int numberOfNodes = this.graph.getNumberOfNodes();
+    long[] order = new long[batch.size()];
+    for (int index = 0; index < batch.size(); index++) {
+      int[] query = batch.get(index);
+      InputValidation.ensureWithin(query[0], 0, numberOfNodes - 1,
+          "Source is not contained the graph");
+      InputValidation.ensureWithin(query[1], 0, numberOfNodes - 1,
+          "Target is not contained the graph");
+      // sorting the source above the index groups the queries by source
+      order[index] = (long) query[0] << 32 | index;
+    }
+    Arrays.sort(order);
+
+    int[] distances = new int[batch.size()];
+    for (int begin = 0; begin < order.length; ) {
+      int source = (int) (order[begin] >>> 32);
+      int end = begin + 1;
+      while (end < order.length && (int) (order[end] >>> 32) == source) {
+        end += 1;
+      }
+      int firstTarget = batch.get((int) order[begin])[1];
+      ShortestPathTree tree = end - begin == 1
+          ? workspace.shortestPath(this.graph, source, firstTarget)
+          : workspace.shortestPathTree(this.graph, source, false);
+      for (int position = begin; position < end; position++) {
+        int index = (int) order[position];
+        distances[index] = tree.getDistance(batch.get(index)[1]);
+      }
+      begin = end;
+    }
+    this.queries.addAndGet(batch.size());
+
+    StringBuilder answer = new StringBuilder();
+    for (int distance : distances) {
+      answer.append(distance == Main.UNREACHABLE ? -1 : distance).append('\n');
+    }
+    return answer.toString();
+  }
+
+  /**
+   * Reads the "source target" lines of a batch request. Blank lines are skipped
+   *
+   * @param exchange The exchange
+   * @return The queries as pairs of source and target
+   * @throws RequestException if a line is malformed, the batch is too large or the body cannot be
+   *                          read
+   */
+  private List<int[]> readQueries(HttpExchange exchange) throws RequestException {
+    List<int[]> batch = new ArrayList<int[]>();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.US_ASCII))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (batch.size() == MAX_BATCH_SIZE) {
+          throw new RequestException(413, "Batches hold at most " + MAX_BATCH_SIZE
+              + " queries\n");
+        }
+        String[] fields = line.split("\\s+");
+        if (fields.length != 2) {
+          throw new RequestException(400, "Malformed query: " + line + "\n");
+        }
+        batch.add(new int[] {Integer.parseInt(fields[0]), Integer.parseInt(fields[1])});
+      }
+    } catch (NumberFormatException e) {
+      throw new RequestException(400, "Malformed query: " + e.getMessage() + "\n");
+    } catch (IOException e) {
+      throw new RequestException(400, "Could not read the batch\n");
+    }
+    return batch;
+  }
+
+  /**
+   * Splits the query string of a request into its parameters
+   *
+   * @param uri The URI of the request
+   * @return The parameters by name
+   */
+  private static Map<String, String> parseQuery(URI uri) {
+    Map<String, String> parameters = new HashMap<String, String>();
+    String query = uri.getRawQuery();
+    if (query == null) {
+      return parameters;
+    }
+    for (String parameter : query.split("&")) {
+      int equals = parameter.indexOf('=');
+      if (equals > 0) {
+        parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * Reads a node from the parameters of a request
+   *
+   * @param parameters The parameters
+   * @param name       The name of the parameter
+   * @return The node
+   * @throws IllegalArgumentException if the parameter is missing or not a number
+   */
+  private static int getNode(Map<String, String> parameters, String name)
+      throws IllegalArgumentException {
+    String value = parameters.get(name);
+    if (value == null) {
+      throw new IllegalArgumentException("Missing parameter " + name);
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Parameter " + name + " is not a node: " + value);
+    }
+  }
+
+  /**
+   * Sends a plain text response and closes the exchange
+   *
+   * @param exchange The exchange
+   * @param status   The HTTP status
+   * @param body     The body
+   * @throws IOException if the response cannot be written
+   */
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  /**
+   * Loads a graph and serves it until the process is stopped
+   *
+   * @param args The graph file, its format and the port
+   * @throws IOException if the graph cannot be read or the port cannot be bound
+   */
+  public static void main(String[] args) throws IOException {
+    String usage = "usage: java QueryServer [graph file] [dimacs|edgelist|binary] [port]";
+    if (args.length < 2) {
+      System.out.println(usage);
+      return;
+    }
+    Path file = Paths.get(args[0]);
+    int port = args.length > 2 ? Integer.parseInt(args[2]) : 8080;
+    GraphView graph;
+    if (args[1].equals("binary")) {
+      graph = GraphFile.map(file);
+    } else if (args[1].equals("dimacs")) {
+      graph = new GraphImporter(GraphImporter.Format.DIMACS).deduplicate(true).read(file);
+    } else if (args[1].equals("edgelist")) {
+      graph = new GraphImporter(GraphImporter.Format.EDGE_LIST).deduplicate(true).read(file);
+    } else {
+      System.out.println(usage);
+      return;
+    }
+    QueryServer server = new QueryServer(graph, port, Runtime.getRuntime().availableProcessors(),
+        10000);
+    server.start();
+    System.out.println("serving " + graph.getNumberOfNodes() + " nodes and "
+        + graph.getNumberOfEdges() + " edges on port " + server.getPort());
+  }
+}
@@ -0,0 +1,202 @@
+import java.util.Arrays;
+
+/**
+ * A representation for a radix heap, a monotone priority queue for 32 bit distances. Bucket 0
+ * holds the nodes whose distance equals the last extracted one, and bucket i holds those whose
+ * distance first differs from it in bit i - 1. When bucket 0 runs empty, the smallest distance of
+ * the next nonempty bucket becomes the new reference and that bucket is spread over the lower ones.
+ * Each node can only move down, so extractMin is amortized O(log C) for a maximum weight C. Buckets
+ * are int arrays, and every node remembers its slot so decreaseKey can move it in constant time
+ */
+public class RadixHeap implements NodeQueue {
+
+  private static final int NUMBER_OF_BUCKETS = 33;
+
+  private int[][] buckets;
+  private int[] bucketSizes;
+  private int[] distances; // the distance of every node in the heap
+  private int[] bucketOf; // the bucket of every node, -1 if absent
+  private int[] slotOf; // the index of every node inside its bucket
+  private int lastDistance; // the reference distance of bucket 0
+  private int size;
+
+  /**
+   * Constructs a new RadixHeap
+   *
+   * @param capacity The number of node ids the heap must hold
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  public RadixHeap(int capacity) throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(capacity, 0, "Capacity cannot be negative");
+    this.buckets = new int[NUMBER_OF_BUCKETS][];
+    for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+      this.buckets[bucket] = new int[4];
+    }
+    this.bucketSizes = new int[NUMBER_OF_BUCKETS];
+    this.distances = new int[capacity];
+    this.bucketOf = new int[capacity];
+    Arrays.fill(this.bucketOf, -1);
+    this.slotOf = new int[capacity];
+    this.lastDistance = 0;
+    this.size = 0;
+  }
+
+  @Override
+  public void insert(int node, int distance) throws IllegalArgumentException {
+    InputValidation.ensureWithin(node, 0, this.bucketOf.length - 1,
+        "Node is outside the capacity of the heap");
+    if (this.bucketOf[node] != -1) {
+      throw new IllegalArgumentException("Node is already contained in the heap");
+    }
+    // an empty heap may start over lower, but otherwise keeps its reference so that later keys
+    // between the last extracted distance and this one are still accepted
+    if (this.size == 0 && distance < this.lastDistance) {
+      this.lastDistance = distance;
+    }
+    if (distance < this.lastDistance) {
+      throw new IllegalArgumentException("Distance cannot be less than the last extracted one");
+    }
+    this.distances[node] = distance;
+    this.push(node, this.bucketFor(distance));
+    this.size += 1;
+  }
+
+  @Override
+  public void decreaseKey(int node, int distance) throws IllegalArgumentException {
+    if (!this.contains(node)) {
+      throw new IllegalArgumentException("Node is not contained in the heap");
+    }
+    if (distance > this.distances[node]) {
+      throw new IllegalArgumentException("New distance is greater than the current distance");
+    }
+    if (distance < this.lastDistance) {
+      throw new IllegalArgumentException("Distance cannot be less than the last extracted one");
+    }
+    this.distances[node] = distance;
+    int bucket = this.bucketFor(distance);
+    if (bucket != this.bucketOf[node]) {
+      this.remove(node);
+      this.push(node, bucket);
+    }
+  }
+
+  @Override
+  public boolean contains(int node) {
+    return node >= 0 && node < this.bucketOf.length && this.bucketOf[node] != -1;
+  }
+
+  @Override
+  public int getMinimumDistance() throws UnsupportedOperationException {
+    if (this.size == 0) {
+      throw new UnsupportedOperationException("Cannot peek at an empty heap");
+    }
+    this.refill();
+    return this.lastDistance;
+  }
+
+  @Override
+  public int extractMin() throws UnsupportedOperationException {
+    if (this.size == 0) {
+      throw new UnsupportedOperationException("Cannot extract min on an empty heap");
+    }
+    this.refill();
+    int closestNode = this.buckets[0][this.bucketSizes[0] - 1];
+    this.remove(closestNode);
+    this.size -= 1;
+    return closestNode;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public void clear() {
+    for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+      for (int slot = 0; slot < this.bucketSizes[bucket]; slot++) {
+        this.bucketOf[this.buckets[bucket][slot]] = -1;
+      }
+      this.bucketSizes[bucket] = 0;
+    }
+    this.size = 0;
+  }
+
+  /**
+   * Makes sure bucket 0 is not empty by spreading the first nonempty bucket over the lower ones
+   */
+  private void refill() {
+    if (this.bucketSizes[0] > 0) {
+      return;
+    }
+    int bucket = 1;
+    while (this.bucketSizes[bucket] == 0) {
+      bucket += 1;
+    }
+
+    int[] nodes = this.buckets[bucket];
+    int count = this.bucketSizes[bucket];
+    int smallestDistance = Integer.MAX_VALUE;
+    for (int slot = 0; slot < count; slot++) {
+      smallestDistance = Math.min(smallestDistance, this.distances[nodes[slot]]);
+    }
+    this.lastDistance = smallestDistance;
+
+    // every node lands in a lower bucket relative to the new reference, so _nodes_ is not
+    // written to while it is read
+    this.bucketSizes[bucket] = 0;
+    for (int slot = 0; slot < count; slot++) {
+      int node = nodes[slot];
+      this.push(node, this.bucketFor(this.distances[node]));
+    }
+  }
+
+  /**
+   * Computes the bucket of a distance relative to the last extracted distance
+   *
+   * @param distance The distance, at least the last extracted one
+   * @return The index of the bucket
+   */
+  private int bucketFor(int distance) {
+    return distance == this.lastDistance
+        ? 0 : 32 - Integer.numberOfLeadingZeros(distance ^ this.lastDistance);
+  }
+
+  /**
+   * Appends the node to the given bucket
+   *
+   * @param node   The node to be added
+   * @param bucket The index of the bucket
+   */
+  private void push(int node, int bucket) {
+    int count = this.bucketSizes[bucket];
+    if (count == this.buckets[bucket].length) {
+      this.buckets[bucket] = Arrays.copyOf(this.buckets[bucket], 2 * count);
+    }
+    this.buckets[bucket][count] = node;
+    this.bucketOf[node] = bucket;
+    this.slotOf[node] = count;
+    this.bucketSizes[bucket] = count + 1;
+  }
+
+  /**
+   * Removes the node from its bucket by moving the last node of the bucket into its slot
+   *
+   * @param node The node to be removed
+   */
+  private void remove(int node) {
+    int bucket = this.bucketOf[node];
+    int slot = this.slotOf[node];
+    int last = this.bucketSizes[bucket] - 1;
+    int lastNode = this.buckets[bucket][last];
+    this.buckets[bucket][slot] = lastNode;
+    this.slotOf[lastNode] = slot;
+    this.bucketSizes[bucket] = last;
+    this.bucketOf[node] = -1;
+  }
+}
@@ -0,0 +1,13 @@
+/**
+ * Receives the statistics of every search once it has finished, when SearchMetrics.ENABLED is set.
+ * Listeners are called on the thread that ran the search, so they should be quick and thread safe
+ */
+public interface SearchListener {
+
+  /**
+   * Called after a search has finished
+   *
+   * @param statistics The statistics of the search, which may be reused once this returns
+   */
+  void searchFinished(SearchStatistics statistics);
+}
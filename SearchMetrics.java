@@ -0,0 +1,317 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The process wide aggregate of the statistics of every instrumented search: dijkstra over a Graph
+ * and over a GraphView, shortestPath, bidirectionalShortestPath, shortestPathTree and the searches
+ * of SearchWorkspace.
+ *
+ * Instrumentation is switched by ENABLED, a compile time constant. The engines guard every counter
+ * with it, so when it is false javac removes the instrumentation from the bytecode altogether and
+ * the hot loops run exactly as before; set it to true and recompile to collect statistics. When it
+ * is true, every search reports its SearchStatistics to the listeners and folds them into the
+ * counters and the latency histogram here, which register() publishes over JMX.
+ *
+ * The histogram is log linear: latencies below 16 ns get a bucket each, and every power of two
+ * above that is split into 8 buckets, so a percentile is within an eighth of the true value
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+
+  // switches the instrumentation of every engine, which needs a recompile to take effect
+  public static final boolean ENABLED = false;
+
+  public static final String OBJECT_NAME = "DijkstrasShortestPath:type=SearchMetrics";
+
+  private static final int LINEAR_BUCKETS = 16;
+  private static final int SUB_BUCKETS = 8;
+  private static final int NUMBER_OF_BUCKETS = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+  private static final SearchMetrics INSTANCE = new SearchMetrics();
+
+  private final List<SearchListener> listeners;
+  private final LongAdder searches;
+  private final LongAdder settledNodes;
+  private final LongAdder relaxedEdges;
+  private final LongAdder improvedEdges;
+  private final LongAdder inserts;
+  private final LongAdder decreaseKeys;
+  private final LongAdder extractMins;
+  private final AtomicInteger peakQueueSize;
+  private final LongAdder initializationNanos;
+  private final LongAdder searchNanos;
+  private final LongAdder resultNanos;
+  private final AtomicLongArray latencyHistogram;
+
+  /**
+   * Constructs the only SearchMetrics
+   */
+  private SearchMetrics() {
+    this.listeners = new CopyOnWriteArrayList<SearchListener>();
+    this.searches = new LongAdder();
+    this.settledNodes = new LongAdder();
+    this.relaxedEdges = new LongAdder();
+    this.improvedEdges = new LongAdder();
+    this.inserts = new LongAdder();
+    this.decreaseKeys = new LongAdder();
+    this.extractMins = new LongAdder();
+    this.peakQueueSize = new AtomicInteger();
+    this.initializationNanos = new LongAdder();
+    this.searchNanos = new LongAdder();
+    this.resultNanos = new LongAdder();
+    this.latencyHistogram = new AtomicLongArray(NUMBER_OF_BUCKETS);
+  }
+
+  /**
+   * Returns the process wide metrics
+   *
+   * @return The metrics
+   */
+  public static SearchMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Publishes the metrics over JMX under OBJECT_NAME, unless they already are
+   *
+   * @throws IllegalStateException if the platform MBean server refuses the bean
+   */
+  public static synchronized void register() throws IllegalStateException {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(INSTANCE, name);
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("Could not register the search metrics", e);
+    }
+  }
+
+  /**
+   * Adds a listener that is told about every search from now on
+   *
+   * @param listener The listener
+   * @throws IllegalArgumentException if the listener is null
+   */
+  public void addListener(SearchListener listener) throws IllegalArgumentException {
+    this.listeners.add(InputValidation.ensureNotNull(listener));
+  }
+
+  /**
+   * Removes a listener
+   *
+   * @param listener The listener
+   * @return True if the listener had been added, False otherwise
+   */
+  public boolean removeListener(SearchListener listener) {
+    return this.listeners.remove(listener);
+  }
+
+  /**
+   * Folds the statistics of a finished search into the aggregates and tells the listeners
+   *
+   * @param statistics The statistics of the search
+   */
+  void record(SearchStatistics statistics) {
+    this.searches.increment();
+    this.settledNodes.add(statistics.getSettledNodes());
+    this.relaxedEdges.add(statistics.getRelaxedEdges());
+    this.improvedEdges.add(statistics.getImprovedEdges());
+    this.inserts.add(statistics.getInserts());
+    this.decreaseKeys.add(statistics.getDecreaseKeys());
+    this.extractMins.add(statistics.getExtractMins());
+    this.peakQueueSize.accumulateAndGet(statistics.getPeakQueueSize(), Math::max);
+    this.initializationNanos.add(statistics.getInitializationNanos());
+    this.searchNanos.add(statistics.getSearchNanos());
+    this.resultNanos.add(statistics.getResultNanos());
+    this.latencyHistogram.incrementAndGet(getBucket(statistics.getTotalNanos()));
+    for (SearchListener listener : this.listeners) {
+      listener.searchFinished(statistics);
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return ENABLED;
+  }
+
+  @Override
+  public long getSearches() {
+    return this.searches.sum();
+  }
+
+  @Override
+  public long getSettledNodes() {
+    return this.settledNodes.sum();
+  }
+
+  @Override
+  public long getRelaxedEdges() {
+    return this.relaxedEdges.sum();
+  }
+
+  @Override
+  public long getImprovedEdges() {
+    return this.improvedEdges.sum();
+  }
+
+  @Override
+  public long getInserts() {
+    return this.inserts.sum();
+  }
+
+  @Override
+  public long getDecreaseKeys() {
+    return this.decreaseKeys.sum();
+  }
+
+  @Override
+  public long getExtractMins() {
+    return this.extractMins.sum();
+  }
+
+  @Override
+  public int getPeakQueueSize() {
+    return this.peakQueueSize.get();
+  }
+
+  @Override
+  public long getInitializationNanos() {
+    return this.initializationNanos.sum();
+  }
+
+  @Override
+  public long getSearchNanos() {
+    return this.searchNanos.sum();
+  }
+
+  @Override
+  public long getResultNanos() {
+    return this.resultNanos.sum();
+  }
+
+  @Override
+  public double getMeanLatencyMicros() {
+    long numberOfSearches = this.searches.sum();
+    long totalNanos = this.initializationNanos.sum() + this.searchNanos.sum()
+        + this.resultNanos.sum();
+    return numberOfSearches == 0 ? 0 : totalNanos / 1000.0 / numberOfSearches;
+  }
+
+  @Override
+  public double getLatencyP50Micros() {
+    return this.getLatencyPercentileMicros(0.5);
+  }
+
+  @Override
+  public double getLatencyP90Micros() {
+    return this.getLatencyPercentileMicros(0.9);
+  }
+
+  @Override
+  public double getLatencyP99Micros() {
+    return this.getLatencyPercentileMicros(0.99);
+  }
+
+  @Override
+  public double getLatencyP999Micros() {
+    return this.getLatencyPercentileMicros(0.999);
+  }
+
+  @Override
+  public long[] getLatencyHistogram() {
+    long[] counts = new long[NUMBER_OF_BUCKETS];
+    for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+      counts[bucket] = this.latencyHistogram.get(bucket);
+    }
+    return counts;
+  }
+
+  @Override
+  public void reset() {
+    this.searches.reset();
+    this.settledNodes.reset();
+    this.relaxedEdges.reset();
+    this.improvedEdges.reset();
+    this.inserts.reset();
+    this.decreaseKeys.reset();
+    this.extractMins.reset();
+    this.peakQueueSize.set(0);
+    this.initializationNanos.reset();
+    this.searchNanos.reset();
+    this.resultNanos.reset();
+    for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+      this.latencyHistogram.set(bucket, 0);
+    }
+  }
+
+  /**
+   * Returns a percentile of the latency of a search, as the upper limit of the histogram bucket it
+   * falls in
+   *
+   * @param fraction The percentile as a fraction within (0, 1]
+   * @return The percentile in microseconds, 0 if no search was recorded
+   * @throws IllegalArgumentException if the fraction is not within (0, 1]
+   */
+  public double getLatencyPercentileMicros(double fraction) throws IllegalArgumentException {
+    if (!(fraction > 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("Percentile must be within (0, 1]");
+    }
+    long[] counts = this.getLatencyHistogram();
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    long rank = (long) Math.ceil(fraction * total);
+    long seen = 0;
+    for (int bucket = 0; bucket < NUMBER_OF_BUCKETS && total > 0; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return getBucketLimitNanos(bucket) / 1000.0;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the upper limit of a bucket of the latency histogram
+   *
+   * @param bucket The index of the bucket
+   * @return The smallest latency in nanoseconds that falls beyond the bucket
+   * @throws IllegalArgumentException if there is no such bucket
+   */
+  public static long getBucketLimitNanos(int bucket) throws IllegalArgumentException {
+    InputValidation.ensureWithin(bucket, 0, NUMBER_OF_BUCKETS - 1, "There is no such bucket");
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket + 1;
+    }
+    int exponent = 4 + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+    // the limit of the last bucket does not fit in a long
+    return exponent == 62 && subBucket == SUB_BUCKETS - 1
+        ? Long.MAX_VALUE : (long) (SUB_BUCKETS + subBucket + 1) << (exponent - 3);
+  }
+
+  /**
+   * Returns the bucket of the latency histogram a latency falls in
+   *
+   * @param nanos The latency in nanoseconds
+   * @return The index of the bucket
+   */
+  private static int getBucket(long nanos) {
+    if (nanos < LINEAR_BUCKETS) {
+      return (int) Math.max(0, nanos);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    // the three bits after the leading one pick the sub bucket
+    int subBucket = (int) (nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+    return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+  }
+}
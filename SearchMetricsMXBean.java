@@ -0,0 +1,137 @@
+/**
+ * The management interface of SearchMetrics, which JMX clients such as jconsole see as attributes
+ * of the bean DijkstrasShortestPath:type=SearchMetrics
+ */
+public interface SearchMetricsMXBean {
+
+  /**
+   * Returns whether the engines were compiled with metrics enabled
+   *
+   * @return SearchMetrics.ENABLED
+   */
+  boolean isEnabled();
+
+  /**
+   * Returns the number of searches recorded
+   *
+   * @return The number of searches
+   */
+  long getSearches();
+
+  /**
+   * Returns the number of nodes settled by all searches
+   *
+   * @return The number of settled nodes
+   */
+  long getSettledNodes();
+
+  /**
+   * Returns the number of edges looked at by all searches
+   *
+   * @return The number of relaxed edges
+   */
+  long getRelaxedEdges();
+
+  /**
+   * Returns the number of edges that improved a tentative distance over all searches
+   *
+   * @return The number of successful relaxations
+   */
+  long getImprovedEdges();
+
+  /**
+   * Returns the number of queue inserts over all searches
+   *
+   * @return The number of inserts
+   */
+  long getInserts();
+
+  /**
+   * Returns the number of queue decrease keys over all searches
+   *
+   * @return The number of decrease keys
+   */
+  long getDecreaseKeys();
+
+  /**
+   * Returns the number of queue extract mins over all searches
+   *
+   * @return The number of extract mins
+   */
+  long getExtractMins();
+
+  /**
+   * Returns the largest queue size any search reached
+   *
+   * @return The peak queue size
+   */
+  int getPeakQueueSize();
+
+  /**
+   * Returns the time all searches spent in their initialization phase
+   *
+   * @return The initialization time in nanoseconds
+   */
+  long getInitializationNanos();
+
+  /**
+   * Returns the time all searches spent in their main loop
+   *
+   * @return The search time in nanoseconds
+   */
+  long getSearchNanos();
+
+  /**
+   * Returns the time all searches spent building their answers
+   *
+   * @return The result time in nanoseconds
+   */
+  long getResultNanos();
+
+  /**
+   * Returns the mean latency of a search
+   *
+   * @return The mean latency in microseconds
+   */
+  double getMeanLatencyMicros();
+
+  /**
+   * Returns the median latency of a search
+   *
+   * @return The median latency in microseconds
+   */
+  double getLatencyP50Micros();
+
+  /**
+   * Returns the 90th percentile of the latency of a search
+   *
+   * @return The 90th percentile in microseconds
+   */
+  double getLatencyP90Micros();
+
+  /**
+   * Returns the 99th percentile of the latency of a search
+   *
+   * @return The 99th percentile in microseconds
+   */
+  double getLatencyP99Micros();
+
+  /**
+   * Returns the 99.9th percentile of the latency of a search
+   *
+   * @return The 99.9th percentile in microseconds
+   */
+  double getLatencyP999Micros();
+
+  /**
+   * Returns the number of searches in each bucket of the latency histogram
+   *
+   * @return The counts, bucket i holding latencies below SearchMetrics.getBucketLimitNanos(i)
+   */
+  long[] getLatencyHistogram();
+
+  /**
+   * Clears every counter and the histogram
+   */
+  void reset();
+}
@@ -0,0 +1,239 @@
+/**
+ * The counters and phase timings of a single search, filled in by the engines when
+ * SearchMetrics.ENABLED is set. The engines only touch these behind that constant, so when it is
+ * false the compiler drops the calls and the hot loops pay nothing.
+ *
+ * A search hands its statistics to every SearchListener once it has finished. Engines that reuse
+ * their state, like SearchWorkspace, reuse the statistics too, so a listener must copy out what it
+ * keeps
+ */
+public class SearchStatistics {
+
+  private final String engine;
+  private long settledNodes;
+  private long relaxedEdges;
+  private long improvedEdges;
+  private long inserts;
+  private long decreaseKeys;
+  private long extractMins;
+  private int peakQueueSize;
+  private long initializationNanos;
+  private long searchNanos;
+  private long resultNanos;
+  private long phaseStart;
+
+  /**
+   * Constructs a new SearchStatistics
+   *
+   * @param engine The name of the engine running the search
+   */
+  public SearchStatistics(String engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * Clears the counters and starts timing the initialization phase of a new search
+   */
+  void start() {
+    this.settledNodes = 0;
+    this.relaxedEdges = 0;
+    this.improvedEdges = 0;
+    this.inserts = 0;
+    this.decreaseKeys = 0;
+    this.extractMins = 0;
+    this.peakQueueSize = 0;
+    this.initializationNanos = 0;
+    this.searchNanos = 0;
+    this.resultNanos = 0;
+    this.phaseStart = System.nanoTime();
+  }
+
+  /**
+   * Ends the initialization phase, in which the state of the search is set up, and starts the
+   * search phase
+   */
+  void endInitialization() {
+    long now = System.nanoTime();
+    this.initializationNanos = now - this.phaseStart;
+    this.phaseStart = now;
+  }
+
+  /**
+   * Ends the search phase and starts the result phase, in which the answer is built
+   */
+  void endSearch() {
+    long now = System.nanoTime();
+    this.searchNanos = now - this.phaseStart;
+    this.phaseStart = now;
+  }
+
+  /**
+   * Ends the result phase and reports the search to SearchMetrics
+   */
+  void finish() {
+    this.resultNanos = System.nanoTime() - this.phaseStart;
+    SearchMetrics.getInstance().record(this);
+  }
+
+  /**
+   * Counts a node taken from the queue and settled
+   */
+  void extracted() {
+    this.extractMins += 1;
+    this.settledNodes += 1;
+  }
+
+  /**
+   * Counts an edge looked at by the search
+   */
+  void relaxed() {
+    this.relaxedEdges += 1;
+  }
+
+  /**
+   * Counts a node put into the queue before the search starts, such as a source, which no edge
+   * improved
+   *
+   * @param queueSize The size of the queue after the insert
+   */
+  void seeded(int queueSize) {
+    this.inserts += 1;
+    if (queueSize > this.peakQueueSize) {
+      this.peakQueueSize = queueSize;
+    }
+  }
+
+  /**
+   * Counts a node put into the queue by a relaxation, whose tentative distance improved
+   *
+   * @param queueSize The size of the queue after the insert
+   */
+  void inserted(int queueSize) {
+    this.improvedEdges += 1;
+    this.seeded(queueSize);
+  }
+
+  /**
+   * Counts a node whose key in the queue was lowered, whose tentative distance improved
+   */
+  void decreased() {
+    this.improvedEdges += 1;
+    this.decreaseKeys += 1;
+  }
+
+  /**
+   * Returns the name of the engine that ran the search
+   *
+   * @return The name of the engine
+   */
+  public String getEngine() {
+    return this.engine;
+  }
+
+  /**
+   * Returns the number of nodes the search settled
+   *
+   * @return The number of settled nodes
+   */
+  public long getSettledNodes() {
+    return this.settledNodes;
+  }
+
+  /**
+   * Returns the number of edges the search looked at
+   *
+   * @return The number of relaxed edges
+   */
+  public long getRelaxedEdges() {
+    return this.relaxedEdges;
+  }
+
+  /**
+   * Returns the number of edges that improved the tentative distance of their target
+   *
+   * @return The number of successful relaxations
+   */
+  public long getImprovedEdges() {
+    return this.improvedEdges;
+  }
+
+  /**
+   * Returns the number of queue inserts
+   *
+   * @return The number of inserts
+   */
+  public long getInserts() {
+    return this.inserts;
+  }
+
+  /**
+   * Returns the number of queue decrease keys
+   *
+   * @return The number of decrease keys
+   */
+  public long getDecreaseKeys() {
+    return this.decreaseKeys;
+  }
+
+  /**
+   * Returns the number of queue extract mins
+   *
+   * @return The number of extract mins
+   */
+  public long getExtractMins() {
+    return this.extractMins;
+  }
+
+  /**
+   * Returns the largest number of nodes the queue held at once
+   *
+   * @return The peak queue size
+   */
+  public int getPeakQueueSize() {
+    return this.peakQueueSize;
+  }
+
+  /**
+   * Returns the time taken to set up the state of the search
+   *
+   * @return The initialization time in nanoseconds
+   */
+  public long getInitializationNanos() {
+    return this.initializationNanos;
+  }
+
+  /**
+   * Returns the time taken by the main loop of the search
+   *
+   * @return The search time in nanoseconds
+   */
+  public long getSearchNanos() {
+    return this.searchNanos;
+  }
+
+  /**
+   * Returns the time taken to build the answer once the search was done
+   *
+   * @return The result time in nanoseconds
+   */
+  public long getResultNanos() {
+    return this.resultNanos;
+  }
+
+  /**
+   * Returns the time taken by the whole search
+   *
+   * @return The total time in nanoseconds
+   */
+  public long getTotalNanos() {
+    return this.initializationNanos + this.searchNanos + this.resultNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %d settled, %d relaxed, %d improved, %d inserts, %d decrease keys, "
+        + "%d extract mins, peak queue %d, %d/%d/%d ns", this.engine, this.settledNodes,
+        this.relaxedEdges, this.improvedEdges, this.inserts, this.decreaseKeys, this.extractMins,
+        this.peakQueueSize, this.initializationNanos, this.searchNanos, this.resultNanos);
+  }
+}
@@ -0,0 +1,345 @@
+import java.util.Arrays;
+
+/**
+ * The reusable state of dijkstra searches, for callers that run many queries. A workspace holds
+ * primitive distance and parent arrays and a queue sized to the graph, and is reset between
+ * searches by advancing an epoch instead of clearing the arrays: an entry only counts if it was
+ * stamped with the current epoch, so a reset costs nothing regardless of the size of the graph.
+ * Searches walk the adjacency of a GraphView in place, or decode that of an EncodedGraph with a
+ * cursor the workspace owns, and report through a ShortestPathTree view of the workspace, so once
+ * a workspace exists, its queries allocate nothing.
+ *
+ * A workspace is not thread safe. Each thread running queries should own one
+ */
+public final class SearchWorkspace {
+
+  private final int capacity;
+  private final int maxWeight;
+  private final int[] distances;
+  private final int[] parents;
+  private final int[] stamps; // the epoch in which each node was last reached
+  private final NodeQueue queue;
+  private final ShortestPathTree tree;
+  private final EncodedGraph.Cursor cursor;
+  private final SearchStatistics statistics; // null unless SearchMetrics.ENABLED
+  private int epoch;
+  private int settledNodes;
+
+  /**
+   * Constructs a new SearchWorkspace for searches over the given graph
+   *
+   * @param graph The graph to be searched
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public SearchWorkspace(GraphView graph) throws IllegalArgumentException {
+    this(InputValidation.ensureNotNull(graph).getNumberOfNodes(), graph.getMaxWeight());
+  }
+
+  /**
+   * Constructs a new SearchWorkspace for searches over graphs with at most _capacity_ nodes and
+   * edges of at most _maxWeight_
+   *
+   * @param capacity  The largest number of nodes of a graph to be searched
+   * @param maxWeight The largest edge weight of a graph to be searched
+   * @throws IllegalArgumentException if the capacity or the weight is negative
+   */
+  public SearchWorkspace(int capacity, int maxWeight) throws IllegalArgumentException {
+    this.capacity = InputValidation.ensureGreaterThan(capacity, 0, "Capacity cannot be negative");
+    this.maxWeight = InputValidation.ensureGreaterThan(maxWeight, 0,
+        "Maximum weight cannot be negative");
+    this.distances = new int[capacity];
+    this.parents = new int[capacity];
+    this.stamps = new int[capacity];
+    this.queue = NodeQueue.forMaxWeight(capacity, maxWeight);
+    this.tree = new ShortestPathTree(this);
+    this.cursor = new EncodedGraph.Cursor();
+    this.statistics = SearchMetrics.ENABLED ? new SearchStatistics("workspace") : null;
+    this.epoch = 0;
+    this.settledNodes = 0;
+  }
+
+  /**
+   * Computes the shortest path tree rooted at _root_
+   *
+   * @param graph   The graph to be searched
+   * @param root    The root of the tree
+   * @param reverse Whether to follow incoming rather than outgoing edges, which gives the distances
+   *                from every node to the root
+   * @return A view of the tree, valid until the next search with this workspace
+   * @throws IllegalArgumentException if the graph does not fit in the workspace, the root is not
+   *                                  contained in the graph, or a reverse search is requested on a
+   *                                  graph without incoming edges
+   */
+  public ShortestPathTree shortestPathTree(GraphView graph, int root, boolean reverse)
+      throws IllegalArgumentException {
+    this.search(graph, root, -1, reverse);
+    return this.tree;
+  }
+
+  /**
+   * Searches from _source_ until _target_ is settled. Only the distances of settled nodes, which
+   * include the target and every node on its path, are final in the returned tree
+   *
+   * @param graph  The graph to be searched
+   * @param source The node the path starts at
+   * @param target The node the path ends at
+   * @return A view of the partial tree, valid until the next search with this workspace
+   * @throws IllegalArgumentException if the graph does not fit in the workspace, or either node is
+   *                                  not contained in the graph
+   */
+  public ShortestPathTree shortestPath(GraphView graph, int source, int target)
+      throws IllegalArgumentException {
+    InputValidation.ensureWithin(target, 0, InputValidation.ensureNotNull(graph)
+        .getNumberOfNodes() - 1, "Target is not contained the graph");
+    this.search(graph, source, target, false);
+    return this.tree;
+  }
+
+  /**
+   * Computes the shortest path tree rooted at _root_ of an EncodedGraph, decoding the edges of
+   * every node as it is expanded
+   *
+   * @param graph   The graph to be searched
+   * @param root    The root of the tree
+   * @param reverse Whether to follow incoming rather than outgoing edges, which gives the distances
+   *                from every node to the root
+   * @return A view of the tree, valid until the next search with this workspace
+   * @throws IllegalArgumentException if the graph does not fit in the workspace, the root is not
+   *                                  contained in the graph, or a reverse search is requested on a
+   *                                  graph without incoming edges
+   */
+  public ShortestPathTree shortestPathTree(EncodedGraph graph, int root, boolean reverse)
+      throws IllegalArgumentException {
+    this.search(graph, root, -1, reverse);
+    return this.tree;
+  }
+
+  /**
+   * Searches an EncodedGraph from _source_ until _target_ is settled. Only the distances of
+   * settled nodes, which include the target and every node on its path, are final in the returned
+   * tree
+   *
+   * @param graph  The graph to be searched
+   * @param source The node the path starts at
+   * @param target The node the path ends at
+   * @return A view of the partial tree, valid until the next search with this workspace
+   * @throws IllegalArgumentException if the graph does not fit in the workspace, or either node is
+   *                                  not contained in the graph
+   */
+  public ShortestPathTree shortestPath(EncodedGraph graph, int source, int target)
+      throws IllegalArgumentException {
+    InputValidation.ensureWithin(target, 0, InputValidation.ensureNotNull(graph)
+        .getNumberOfNodes() - 1, "Target is not contained the graph");
+    this.search(graph, source, target, false);
+    return this.tree;
+  }
+
+  /**
+   * Returns the number of nodes the workspace can hold
+   *
+   * @return The capacity of the workspace
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Runs dijkstra's algorithm from _root_, stopping early once _target_ is settled
+   *
+   * @param graph   The graph to be searched
+   * @param root    The root of the search
+   * @param target  The node to stop at, -1 to search the whole graph
+   * @param reverse Whether to follow incoming edges
+   * @throws IllegalArgumentException if the search cannot be run
+   */
+  private void search(GraphView graph, int root, int target, boolean reverse)
+      throws IllegalArgumentException {
+    if (SearchMetrics.ENABLED) {
+      this.statistics.start();
+    }
+    InputValidation.ensureNotNull(graph);
+    if (reverse && !graph.hasIncomingEdges()) {
+      throw new IllegalArgumentException("Graph has no incoming edges to search");
+    }
+    this.begin(graph.getNumberOfNodes(), graph.getMaxWeight(), root);
+    while (!this.queue.isEmpty()) {
+      int closestDistance = this.queue.getMinimumDistance();
+      int closestNode = this.queue.extractMin();
+      this.settledNodes += 1;
+      if (SearchMetrics.ENABLED) {
+        this.statistics.extracted();
+      }
+      if (closestNode == target) {
+        // the rest of the queue is left for the next reset to drop
+        break;
+      }
+
+      int begin = reverse
+          ? graph.getIncomingBegin(closestNode) : graph.getOutgoingBegin(closestNode);
+      int end = reverse ? graph.getIncomingEnd(closestNode) : graph.getOutgoingEnd(closestNode);
+      for (int edge = begin; edge < end; edge++) {
+        this.relax(reverse ? graph.getSource(edge) : graph.getTarget(edge), closestDistance
+            + (reverse ? graph.getIncomingWeight(edge) : graph.getWeight(edge)), closestNode);
+      }
+    }
+    if (SearchMetrics.ENABLED) {
+      // the tree is a view, so there is no result to build
+      this.statistics.endSearch();
+      this.statistics.finish();
+    }
+  }
+
+  /**
+   * Runs dijkstra's algorithm on an EncodedGraph from _root_, stopping early once _target_ is
+   * settled
+   *
+   * @param graph   The graph to be searched
+   * @param root    The root of the search
+   * @param target  The node to stop at, -1 to search the whole graph
+   * @param reverse Whether to follow incoming edges
+   * @throws IllegalArgumentException if the search cannot be run
+   */
+  private void search(EncodedGraph graph, int root, int target, boolean reverse)
+      throws IllegalArgumentException {
+    if (SearchMetrics.ENABLED) {
+      this.statistics.start();
+    }
+    InputValidation.ensureNotNull(graph);
+    if (reverse && !graph.hasIncomingEdges()) {
+      throw new IllegalArgumentException("Graph has no incoming edges to search");
+    }
+    this.begin(graph.getNumberOfNodes(), graph.getMaxWeight(), root);
+    while (!this.queue.isEmpty()) {
+      int closestDistance = this.queue.getMinimumDistance();
+      int closestNode = this.queue.extractMin();
+      this.settledNodes += 1;
+      if (SearchMetrics.ENABLED) {
+        this.statistics.extracted();
+      }
+      if (closestNode == target) {
+        break;
+      }
+
+      EncodedGraph.Cursor cursor = this.cursor.moveTo(graph, closestNode, reverse);
+      while (cursor.next()) {
+        this.relax(cursor.getNeighbor(), closestDistance + cursor.getWeight(), closestNode);
+      }
+    }
+    if (SearchMetrics.ENABLED) {
+      this.statistics.endSearch();
+      this.statistics.finish();
+    }
+  }
+
+  /**
+   * Checks that a graph fits in the workspace, forgets the previous search and puts the root into
+   * the queue
+   *
+   * @param numberOfNodes The number of nodes of the graph to be searched
+   * @param maxWeight     The largest edge weight of the graph to be searched
+   * @param root          The root of the search
+   * @throws IllegalArgumentException if the graph does not fit or the root is not contained in it
+   */
+  private void begin(int numberOfNodes, int maxWeight, int root) throws IllegalArgumentException {
+    if (numberOfNodes > this.capacity || maxWeight > this.maxWeight) {
+      throw new IllegalArgumentException("Graph does not fit in the workspace");
+    }
+    InputValidation.ensureWithin(root, 0, numberOfNodes - 1, "Root is not contained the graph");
+    this.reset(root);
+    this.settledNodes = 0;
+
+    this.reach(root, 0, root);
+    this.queue.insert(root, 0);
+    if (SearchMetrics.ENABLED) {
+      this.statistics.seeded(this.queue.size());
+      this.statistics.endInitialization();
+    }
+  }
+
+  /**
+   * Offers a node a new tentative distance through the node being expanded
+   *
+   * @param neighbor    The node on the other end of the edge
+   * @param newDistance The distance of the neighbor through the edge
+   * @param parent      The node being expanded
+   */
+  private void relax(int neighbor, int newDistance, int parent) {
+    if (SearchMetrics.ENABLED) {
+      this.statistics.relaxed();
+    }
+    // settled nodes are never farther than the node being expanded, so they fail this check
+    if (this.getDistance(neighbor) <= newDistance) {
+      return;
+    }
+    if (this.queue.contains(neighbor)) {
+      this.queue.decreaseKey(neighbor, newDistance);
+      if (SearchMetrics.ENABLED) {
+        this.statistics.decreased();
+      }
+    } else {
+      this.queue.insert(neighbor, newDistance);
+      if (SearchMetrics.ENABLED) {
+        this.statistics.inserted(this.queue.size());
+      }
+    }
+    this.reach(neighbor, newDistance, parent);
+  }
+
+  /**
+   * Starts a new epoch, which forgets every node reached before
+   *
+   * @param root The root of the next search
+   */
+  private void reset(int root) {
+    this.queue.clear();
+    this.epoch += 1;
+    if (this.epoch == Integer.MAX_VALUE) {
+      // only after two billion searches, so clearing every stamp once is cheap enough
+      Arrays.fill(this.stamps, 0);
+      this.epoch = 1;
+    }
+    this.tree.root = root;
+  }
+
+  /**
+   * Records a new tentative distance and parent of a node
+   *
+   * @param node     The node reached
+   * @param distance Its distance
+   * @param parent   The node it was reached from
+   */
+  private void reach(int node, int distance, int parent) {
+    this.distances[node] = distance;
+    this.parents[node] = parent;
+    this.stamps[node] = this.epoch;
+  }
+
+  /**
+   * Returns the distance of a node in the current epoch
+   *
+   * @param node The node
+   * @return The distance, Main.UNREACHABLE if the node was not reached
+   */
+  int getDistance(int node) {
+    return this.stamps[node] == this.epoch ? this.distances[node] : Main.UNREACHABLE;
+  }
+
+  /**
+   * Returns the parent of a node in the current epoch
+   *
+   * @param node The node
+   * @return The parent, -1 if the node was not reached
+   */
+  int getParent(int node) {
+    return this.stamps[node] == this.epoch ? this.parents[node] : -1;
+  }
+
+  /**
+   * Returns the number of nodes the last search settled
+   *
+   * @return The number of settled nodes
+   */
+  int getSettledNodes() {
+    return this.settledNodes;
+  }
+}
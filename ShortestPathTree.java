@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A view of the result of the last search of a SearchWorkspace. The view reads the primitive arrays
+ * of the workspace directly, so nothing is copied or boxed, and the same view is handed out by
+ * every search of its workspace: it changes as soon as the workspace runs its next search, and
+ * whatever must outlive that has to be copied out first
+ */
+public class ShortestPathTree {
+
+  private final SearchWorkspace workspace;
+  int root; // set by the workspace at the start of every search
+
+  /**
+   * Constructs a new ShortestPathTree. Only SearchWorkspace calls this
+   *
+   * @param workspace The workspace the view reads from
+   */
+  ShortestPathTree(SearchWorkspace workspace) {
+    this.workspace = workspace;
+    this.root = -1;
+  }
+
+  /**
+   * Returns the root of the tree
+   *
+   * @return The node the search started at
+   */
+  public int getRoot() {
+    return this.root;
+  }
+
+  /**
+   * Returns the distance between the root and _node_
+   *
+   * @param node The node
+   * @return The distance, Main.UNREACHABLE if the node was not reached
+   * @throws IllegalArgumentException if the node is not contained in the workspace
+   */
+  public int getDistance(int node) throws IllegalArgumentException {
+    this.ensureContained(node);
+    return this.workspace.getDistance(node);
+  }
+
+  /**
+   * Returns the parent of _node_ in the tree
+   *
+   * @param node The node
+   * @return The parent, the root for the root itself and -1 if the node was not reached
+   * @throws IllegalArgumentException if the node is not contained in the workspace
+   */
+  public int getParent(int node) throws IllegalArgumentException {
+    this.ensureContained(node);
+    return this.workspace.getParent(node);
+  }
+
+  /**
+   * Determines whether the search reached _node_
+   *
+   * @param node The node
+   * @return True if the node was reached, False otherwise
+   * @throws IllegalArgumentException if the node is not contained in the workspace
+   */
+  public boolean isReachable(int node) throws IllegalArgumentException {
+    return this.getDistance(node) != Main.UNREACHABLE;
+  }
+
+  /**
+   * Returns the number of nodes the search settled
+   *
+   * @return The number of settled nodes
+   */
+  public int getSettledNodes() {
+    return this.workspace.getSettledNodes();
+  }
+
+  /**
+   * Copies the distances of the first _count_ nodes into an array
+   *
+   * @param destination The array to be filled
+   * @param offset      The index the distance of node 0 is copied to
+   * @param count       The number of nodes
+   * @throws IllegalArgumentException if the destination is null or too short, or the count exceeds
+   *                                  the capacity of the workspace
+   */
+  public void copyDistances(int[] destination, int offset, int count)
+      throws IllegalArgumentException {
+    InputValidation.ensureNotNull(destination);
+    InputValidation.ensureWithin(count, 0, this.workspace.getCapacity(),
+        "Count exceeds the capacity of the workspace");
+    if (offset < 0 || (long) offset + count > destination.length) {
+      throw new IllegalArgumentException("Destination is too short");
+    }
+    for (int node = 0; node < count; node++) {
+      destination[offset + node] = this.workspace.getDistance(node);
+    }
+  }
+
+  /**
+   * Builds the path from the root to _node_. Unlike the other methods this allocates the result
+   *
+   * @param node The node the path ends at
+   * @return The distance and nodes of the path, or an unreachable result if the node was not
+   *         reached
+   * @throws IllegalArgumentException if the node is not contained in the workspace
+   */
+  public PathResult getPath(int node) throws IllegalArgumentException {
+    if (!this.isReachable(node)) {
+      return PathResult.unreachable(this.getSettledNodes());
+    }
+    List<Integer> path = new ArrayList<Integer>();
+    for (int current = node; current != this.root; current = this.workspace.getParent(current)) {
+      path.add(current);
+    }
+    path.add(this.root);
+    Collections.reverse(path);
+    return new PathResult(this.workspace.getDistance(node), path, this.getSettledNodes());
+  }
+
+  /**
+   * Ensures the node is within the capacity of the workspace
+   *
+   * @param node The node
+   * @throws IllegalArgumentException if it is not
+   */
+  private void ensureContained(int node) throws IllegalArgumentException {
+    InputValidation.ensureWithin(node, 0, this.workspace.getCapacity() - 1,
+        "Node is not contained in the workspace");
+  }
+}
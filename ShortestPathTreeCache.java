@@ -0,0 +1,251 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of shortest path trees in front of Main.shortestPathTree, for workloads that keep asking
+ * for the trees of the same sources. Trees are kept in least recently used order and evicted once
+ * their arrays take more than a given number of bytes. Every tree remembers the version of the
+ * graph it was computed from, and the whole cache is dropped as soon as the graph reports a newer
+ * version, so adding nodes or edges never lets a stale tree be returned. Concurrent requests for
+ * the same missing source wait for a single computation instead of each running their own.
+ *
+ * The cache may be used from many threads, but like every search it must not run while the graph
+ * is being changed
+ */
+public class ShortestPathTreeCache {
+
+  // the bookkeeping of an entry besides its two arrays: the key, the entry and the map node
+  private static final long ENTRY_OVERHEAD_BYTES = 96;
+
+  private final Graph graph;
+  private final long maxBytes;
+  private final LinkedHashMap<Integer, Entry> entries; // guarded by itself
+  private final ConcurrentHashMap<Integer, CompletableFuture<Entry>> computations;
+  private long sizeBytes; // guarded by entries
+  private long cachedVersion; // guarded by entries
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * A cached tree and the version of the graph it was computed from
+   */
+  private static class Entry {
+
+    private final Pair<int[], int[]> tree;
+    private final long version;
+    private final long bytes;
+
+    /**
+     * Constructs a new Entry
+     *
+     * @param tree    The distance and parent arrays
+     * @param version The version of the graph they were computed from
+     */
+    private Entry(Pair<int[], int[]> tree, long version) {
+      this.tree = tree;
+      this.version = version;
+      this.bytes = ENTRY_OVERHEAD_BYTES + 4L * (tree.getFirst().length + tree.getSecond().length);
+    }
+  }
+
+  /**
+   * Constructs a new ShortestPathTreeCache
+   *
+   * @param graph    The graph the trees are computed on
+   * @param maxBytes The largest number of bytes the cached trees may take
+   * @throws IllegalArgumentException if the graph is null or the size is negative
+   */
+  public ShortestPathTreeCache(Graph graph, long maxBytes) throws IllegalArgumentException {
+    this.graph = InputValidation.ensureNotNull(graph);
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Maximum size cannot be negative");
+    }
+    this.maxBytes = maxBytes;
+    // access order makes iteration start at the least recently used entry
+    this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+    this.computations = new ConcurrentHashMap<Integer, CompletableFuture<Entry>>();
+    this.sizeBytes = 0;
+    this.cachedVersion = graph.getVersion();
+  }
+
+  /**
+   * Returns the shortest path tree of _source_, computing it if it is not cached. The arrays are
+   * shared with the cache and every other caller, so they must not be modified
+   *
+   * @param source The root of the tree
+   * @return A pair of the distance array and the parent array, as returned by
+   *         Main.shortestPathTree
+   * @throws IllegalArgumentException if the source is not contained in the graph
+   */
+  public Pair<int[], int[]> get(int source) throws IllegalArgumentException {
+    InputValidation.ensureWithin(source, 0, this.graph.getNumberOfNodes() - 1,
+        "Source is not contained the graph");
+    long version = this.graph.getVersion();
+
+    synchronized (this.entries) {
+      this.invalidateIfChanged(version);
+      Entry cached = this.entries.get(source);
+      if (cached != null) {
+        this.hits.incrementAndGet();
+        return cached.tree;
+      }
+    }
+
+    while (true) {
+      CompletableFuture<Entry> computation = new CompletableFuture<Entry>();
+      CompletableFuture<Entry> running = this.computations.putIfAbsent(source, computation);
+      if (running != null) {
+        // another thread is computing this tree, so wait for it rather than repeat the work
+        Entry entry = running.join();
+        if (entry.version >= version) {
+          this.coalesced.incrementAndGet();
+          return entry.tree;
+        }
+        // the tree was computed before the graph changed, so it is no use to us
+        this.computations.remove(source, running);
+        continue;
+      }
+
+      this.misses.incrementAndGet();
+      try {
+        Entry entry = new Entry(Main.shortestPathTree(this.graph, source, false), version);
+        this.put(source, entry);
+        computation.complete(entry);
+        return entry.tree;
+      } catch (RuntimeException e) {
+        computation.completeExceptionally(e);
+        throw e;
+      } finally {
+        this.computations.remove(source, computation);
+      }
+    }
+  }
+
+  /**
+   * Removes every cached tree
+   */
+  public void clear() {
+    synchronized (this.entries) {
+      this.entries.clear();
+      this.sizeBytes = 0;
+    }
+  }
+
+  /**
+   * Returns the number of requests answered from the cache
+   *
+   * @return The number of hits
+   */
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  /**
+   * Returns the number of requests that computed a tree
+   *
+   * @return The number of misses
+   */
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  /**
+   * Returns the number of requests that waited for a tree another request was computing
+   *
+   * @return The number of coalesced requests
+   */
+  public long getCoalesced() {
+    return this.coalesced.get();
+  }
+
+  /**
+   * Returns the number of trees removed to make room for others
+   *
+   * @return The number of evictions
+   */
+  public long getEvictions() {
+    return this.evictions.get();
+  }
+
+  /**
+   * Returns the number of trees dropped because the graph changed
+   *
+   * @return The number of invalidated trees
+   */
+  public long getInvalidations() {
+    return this.invalidations.get();
+  }
+
+  /**
+   * Returns the number of trees in the cache
+   *
+   * @return The number of cached trees
+   */
+  public int getNumberOfEntries() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * Returns the number of bytes the cached trees take
+   *
+   * @return The size of the cache in bytes
+   */
+  public long getSizeBytes() {
+    synchronized (this.entries) {
+      return this.sizeBytes;
+    }
+  }
+
+  /**
+   * Adds a computed tree, unless the graph has changed since, and evicts the least recently used
+   * trees until the cache fits
+   *
+   * @param source The root of the tree
+   * @param entry  The tree
+   */
+  private void put(int source, Entry entry) {
+    synchronized (this.entries) {
+      this.invalidateIfChanged(this.graph.getVersion());
+      if (entry.version != this.cachedVersion || entry.bytes > this.maxBytes) {
+        return;
+      }
+      Entry replaced = this.entries.put(source, entry);
+      if (replaced != null) {
+        this.sizeBytes -= replaced.bytes;
+      }
+      this.sizeBytes += entry.bytes;
+
+      Iterator<Map.Entry<Integer, Entry>> eldest = this.entries.entrySet().iterator();
+      while (this.sizeBytes > this.maxBytes && eldest.hasNext()) {
+        this.sizeBytes -= eldest.next().getValue().bytes;
+        eldest.remove();
+        this.evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Drops every cached tree if the graph has a newer version than the cached trees. The caller
+   * must hold the lock of the entries
+   *
+   * @param version The current version of the graph
+   */
+  private void invalidateIfChanged(long version) {
+    if (version != this.cachedVersion) {
+      this.invalidations.addAndGet(this.entries.size());
+      this.entries.clear();
+      this.sizeBytes = 0;
+      this.cachedVersion = version;
+    }
+  }
+}
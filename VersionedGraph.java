@@ -0,0 +1,818 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A graph that can be changed while other threads search it. Every change produces a new immutable
+ * Snapshot, and readers pin the snapshot they search with a single lock free read, so they never
+ * block and never see a change half made. Writers collect changes in a Batch, and committing the
+ * batch publishes a new version atomically; commits are serialized among themselves.
+ *
+ * The adjacency of a snapshot is split into blocks of 64 nodes, stored in CSR form in each
+ * direction. A commit copies only the blocks its changes touch and shares every other block with
+ * the previous version, so the cost of publishing follows the size of the change rather than the
+ * size of the graph. Snapshots implement GraphView with dense edge ids, each block continuing where
+ * the previous one ends, so SearchWorkspace, BatchShortestPaths and the other engines, including
+ * those that copy the edge arrays, run on them unchanged.
+ *
+ * Old versions are ordinary garbage: a snapshot, and the blocks only it still refers to, are
+ * reclaimed by the collector once no query holds it. The graph tracks them through weak references
+ * to report how many old snapshots and how many bytes of replaced blocks are still alive, along
+ * with the time taken to publish each version
+ */
+public class VersionedGraph {
+
+  // nodes per block, as a power of two
+  private static final int BLOCK_BITS = 6;
+  private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+  private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+  // edge ids are grouped in slots of this power of two, and the block of an edge is searched for
+  // among the blocks starting within its slot
+  private static final int ALIGN_BITS = 10;
+
+  private final AtomicReference<Snapshot> current;
+  private final Object writeLock = new Object();
+  private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+  private final Set<Tracked> tracked = new HashSet<Tracked>(); // guarded by writeLock
+  private long retainedBytes; // guarded by writeLock
+  private int liveSnapshots; // guarded by writeLock
+  private long publications; // guarded by writeLock
+  private long lastPublishNanos; // guarded by writeLock
+  private long maxPublishNanos; // guarded by writeLock
+  private long totalPublishNanos; // guarded by writeLock
+
+  /**
+   * The CSR adjacency of the nodes of one block in one direction. Blocks never change once built
+   */
+  private static final class Block {
+
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final int[] weights;
+
+    /**
+     * Constructs a new Block
+     *
+     * @param offsets   The start of the edges of every node, followed by the number of edges
+     * @param neighbors The neighbor of every edge
+     * @param weights   The weight of every edge
+     */
+    private Block(int[] offsets, int[] neighbors, int[] weights) {
+      this.offsets = offsets;
+      this.neighbors = neighbors;
+      this.weights = weights;
+    }
+
+    /**
+     * Returns the number of edges of the block
+     *
+     * @return The number of edges
+     */
+    private int getNumberOfEdges() {
+      return this.offsets[this.offsets.length - 1];
+    }
+
+    /**
+     * Estimates the memory taken by the block
+     *
+     * @return The size in bytes, counting object and array headers
+     */
+    private long estimateBytes() {
+      return 24 + 3 * 16 + 4L * (this.offsets.length + this.neighbors.length
+          + this.weights.length);
+    }
+  }
+
+  /**
+   * A weak reference to a replaced block or an old snapshot, remembering what it accounted for
+   */
+  private static final class Tracked extends WeakReference<Object> {
+
+    private final long bytes;
+    private final boolean snapshot;
+
+    /**
+     * Constructs a new Tracked
+     *
+     * @param referent The block or snapshot
+     * @param queue    The queue it is put on once collected
+     * @param bytes    The bytes of a block, 0 for a snapshot
+     * @param snapshot Whether the referent is a snapshot
+     */
+    private Tracked(Object referent, ReferenceQueue<Object> queue, long bytes, boolean snapshot) {
+      super(referent, queue);
+      this.bytes = bytes;
+      this.snapshot = snapshot;
+    }
+  }
+
+  /**
+   * One immutable version of the graph. Edge ids are only meaningful within the snapshot that
+   * handed them out
+   */
+  public static final class Snapshot implements GraphView {
+
+    private final long version;
+    private final int numberOfNodes;
+    private final int numberOfEdges;
+    private final int maxWeight;
+    private final Block[] outgoing;
+    private final Block[] incoming;
+    private final int[] outgoingBase;
+    private final int[] incomingBase;
+    private final int[] outgoingTable;
+    private final int[] incomingTable;
+
+    /**
+     * Constructs a new Snapshot, laying out the edge ids of its blocks
+     *
+     * @param version       The version number
+     * @param numberOfNodes The number of nodes
+     * @param numberOfEdges The number of edges
+     * @param maxWeight     An upper bound on the edge weights
+     * @param outgoing      The blocks of outgoing edges
+     * @param incoming      The blocks of incoming edges
+     * @throws IllegalArgumentException if the edge ids do not fit in an int
+     */
+    private Snapshot(long version, int numberOfNodes, int numberOfEdges, int maxWeight,
+        Block[] outgoing, Block[] incoming) throws IllegalArgumentException {
+      this.version = version;
+      this.numberOfNodes = numberOfNodes;
+      this.numberOfEdges = numberOfEdges;
+      this.maxWeight = maxWeight;
+      this.outgoing = outgoing;
+      this.incoming = incoming;
+      this.outgoingBase = new int[outgoing.length];
+      this.incomingBase = new int[incoming.length];
+      this.outgoingTable = layOut(outgoing, this.outgoingBase);
+      this.incomingTable = layOut(incoming, this.incomingBase);
+    }
+
+    /**
+     * Returns the version number of the snapshot, which grows by one with every commit
+     *
+     * @return The version
+     */
+    public long getVersion() {
+      return this.version;
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+      return this.numberOfNodes;
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+      return this.numberOfEdges;
+    }
+
+    @Override
+    public int getMaxWeight() {
+      return this.maxWeight;
+    }
+
+    @Override
+    public int getOutgoingBegin(int node) {
+      int block = node >>> BLOCK_BITS;
+      return this.outgoingBase[block] + this.outgoing[block].offsets[node & BLOCK_MASK];
+    }
+
+    @Override
+    public int getOutgoingEnd(int node) {
+      int block = node >>> BLOCK_BITS;
+      return this.outgoingBase[block] + this.outgoing[block].offsets[(node & BLOCK_MASK) + 1];
+    }
+
+    @Override
+    public int getTarget(int edge) {
+      int block = findBlock(this.outgoingBase, this.outgoingTable, edge);
+      return this.outgoing[block].neighbors[edge - this.outgoingBase[block]];
+    }
+
+    @Override
+    public int getWeight(int edge) {
+      int block = findBlock(this.outgoingBase, this.outgoingTable, edge);
+      return this.outgoing[block].weights[edge - this.outgoingBase[block]];
+    }
+
+    @Override
+    public boolean hasIncomingEdges() {
+      return true;
+    }
+
+    @Override
+    public int getIncomingBegin(int node) {
+      int block = node >>> BLOCK_BITS;
+      return this.incomingBase[block] + this.incoming[block].offsets[node & BLOCK_MASK];
+    }
+
+    @Override
+    public int getIncomingEnd(int node) {
+      int block = node >>> BLOCK_BITS;
+      return this.incomingBase[block] + this.incoming[block].offsets[(node & BLOCK_MASK) + 1];
+    }
+
+    @Override
+    public int getSource(int edge) {
+      int block = findBlock(this.incomingBase, this.incomingTable, edge);
+      return this.incoming[block].neighbors[edge - this.incomingBase[block]];
+    }
+
+    @Override
+    public int getIncomingWeight(int edge) {
+      int block = findBlock(this.incomingBase, this.incomingTable, edge);
+      return this.incoming[block].weights[edge - this.incomingBase[block]];
+    }
+
+    /**
+     * Returns the weight of the edge from _from_ to _to_
+     *
+     * @param from The node the edge comes from
+     * @param to   The node the edge goes to
+     * @return The weight, -1 if there is no such edge
+     * @throws IllegalArgumentException if either node is not contained in the snapshot
+     */
+    public int getEdgeWeight(int from, int to) throws IllegalArgumentException {
+      InputValidation.ensureWithin(from, 0, this.numberOfNodes - 1,
+          "From node is not contained the graph");
+      InputValidation.ensureWithin(to, 0, this.numberOfNodes - 1,
+          "To node is not contained the graph");
+      int end = this.getOutgoingEnd(from);
+      for (int edge = this.getOutgoingBegin(from); edge < end; edge++) {
+        if (this.getTarget(edge) == to) {
+          return this.getWeight(edge);
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Gives every block the next range of edge ids, so that the ids of the snapshot are dense, and
+     * builds the table that maps every multiple of 2^ALIGN_BITS to the last block starting at or
+     * before it
+     *
+     * @param blocks The blocks
+     * @param base   Filled with the first edge id of every block
+     * @return The table
+     * @throws IllegalArgumentException if the edge ids do not fit in an int
+     */
+    private static int[] layOut(Block[] blocks, int[] base) throws IllegalArgumentException {
+      long next = 0;
+      for (int block = 0; block < blocks.length; block++) {
+        base[block] = (int) next;
+        next += blocks[block].getNumberOfEdges();
+        if (next > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException("Graph has too many edges to be versioned");
+        }
+      }
+      // one extra slot bounds the search for the edges of the last slot
+      int[] table = new int[(int) (next >>> ALIGN_BITS) + 2];
+      int block = 0;
+      for (int slot = 0; slot < table.length; slot++) {
+        long start = (long) slot << ALIGN_BITS;
+        while (block + 1 < blocks.length && base[block + 1] <= start) {
+          block++;
+        }
+        table[slot] = block;
+      }
+      return table;
+    }
+
+    /**
+     * Finds the block holding an edge id, the last block whose range starts at or before it. The
+     * table narrows the search to the blocks starting within the edge's slot, usually one
+     *
+     * @param base  The first edge id of every block
+     * @param table The table built by layOut
+     * @param edge  The edge id
+     * @return The block
+     */
+    private static int findBlock(int[] base, int[] table, int edge) {
+      int slot = edge >>> ALIGN_BITS;
+      int low = table[slot];
+      int high = table[slot + 1];
+      while (low < high) {
+        int middle = (low + high + 1) >>> 1;
+        if (base[middle] <= edge) {
+          low = middle;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * A set of changes to be published together as one new version. Changes are checked and applied
+   * in order when the batch is committed, and if any of them fails, none is published. A batch is
+   * meant for a single writer thread
+   */
+  public static final class Batch {
+
+    private static final int ADD_NODES = 0;
+    private static final int ADD_EDGE = 1;
+    private static final int UPDATE_EDGE = 2;
+    private static final int REMOVE_EDGE = 3;
+
+    private final VersionedGraph graph;
+    private final List<int[]> changes;
+
+    /**
+     * Constructs a new Batch
+     *
+     * @param graph The graph the batch is committed to
+     */
+    private Batch(VersionedGraph graph) {
+      this.graph = graph;
+      this.changes = new ArrayList<int[]>();
+    }
+
+    /**
+     * Adds _numberToBeAdded_ nodes
+     *
+     * @param numberToBeAdded The number of nodes to be added
+     * @return This batch
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public Batch addNodes(int numberToBeAdded) throws IllegalArgumentException {
+      InputValidation.ensureGreaterThan(numberToBeAdded, 1, "Must add a positive number of nodes");
+      this.changes.add(new int[] {ADD_NODES, numberToBeAdded, 0, 0});
+      return this;
+    }
+
+    /**
+     * Adds an edge, which must not exist yet
+     *
+     * @param from   The node the edge comes from
+     * @param to     The node the edge goes to
+     * @param weight The weight of the edge
+     * @return This batch
+     * @throws IllegalArgumentException if the weight is not positive
+     */
+    public Batch addEdge(int from, int to, int weight) throws IllegalArgumentException {
+      InputValidation.ensureGreaterThan(weight, 1, "Edges must be positively weighted");
+      this.changes.add(new int[] {ADD_EDGE, from, to, weight});
+      return this;
+    }
+
+    /**
+     * Changes the weight of an existing edge
+     *
+     * @param from   The node the edge comes from
+     * @param to     The node the edge goes to
+     * @param weight The new weight of the edge
+     * @return This batch
+     * @throws IllegalArgumentException if the weight is not positive
+     */
+    public Batch updateEdgeWeight(int from, int to, int weight) throws IllegalArgumentException {
+      InputValidation.ensureGreaterThan(weight, 1, "Edges must be positively weighted");
+      this.changes.add(new int[] {UPDATE_EDGE, from, to, weight});
+      return this;
+    }
+
+    /**
+     * Removes an existing edge
+     *
+     * @param from The node the edge comes from
+     * @param to   The node the edge goes to
+     * @return This batch
+     */
+    public Batch removeEdge(int from, int to) {
+      this.changes.add(new int[] {REMOVE_EDGE, from, to, 0});
+      return this;
+    }
+
+    /**
+     * Returns the number of changes in the batch
+     *
+     * @return The number of changes
+     */
+    public int size() {
+      return this.changes.size();
+    }
+
+    /**
+     * Publishes the changes as a new version and empties the batch
+     *
+     * @return The new snapshot
+     * @throws IllegalArgumentException if a change refers to a missing node or edge, or adds an
+     *                                  edge that exists; nothing is published then
+     */
+    public Snapshot commit() throws IllegalArgumentException {
+      try {
+        return this.graph.commit(this.changes);
+      } finally {
+        this.changes.clear();
+      }
+    }
+  }
+
+  /**
+   * The editable copy of one block, made when a commit first touches it
+   */
+  private static final class BlockEditor {
+
+    private final int[][] neighbors;
+    private final int[][] weights;
+    private final int[] degrees;
+
+    /**
+     * Constructs a new BlockEditor holding the edges of a block
+     *
+     * @param block         The block, null for a new block
+     * @param numberOfNodes The number of nodes the block has after the commit
+     */
+    private BlockEditor(Block block, int numberOfNodes) {
+      this.neighbors = new int[numberOfNodes][];
+      this.weights = new int[numberOfNodes][];
+      this.degrees = new int[numberOfNodes];
+      int existingNodes = block == null ? 0 : block.offsets.length - 1;
+      for (int local = 0; local < numberOfNodes; local++) {
+        if (local < existingNodes) {
+          int begin = block.offsets[local];
+          int end = block.offsets[local + 1];
+          this.neighbors[local] = Arrays.copyOfRange(block.neighbors, begin, end);
+          this.weights[local] = Arrays.copyOfRange(block.weights, begin, end);
+          this.degrees[local] = end - begin;
+        } else {
+          this.neighbors[local] = new int[0];
+          this.weights[local] = new int[0];
+        }
+      }
+    }
+
+    /**
+     * Returns the position of the edge to _neighbor_ among the edges of a node
+     *
+     * @param local    The node within the block
+     * @param neighbor The neighbor
+     * @return The position, -1 if there is no such edge
+     */
+    private int indexOf(int local, int neighbor) {
+      for (int index = 0; index < this.degrees[local]; index++) {
+        if (this.neighbors[local][index] == neighbor) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Appends an edge to a node
+     *
+     * @param local    The node within the block
+     * @param neighbor The neighbor
+     * @param weight   The weight
+     */
+    private void add(int local, int neighbor, int weight) {
+      if (this.degrees[local] == this.neighbors[local].length) {
+        int capacity = Math.max(4, 2 * this.degrees[local]);
+        this.neighbors[local] = Arrays.copyOf(this.neighbors[local], capacity);
+        this.weights[local] = Arrays.copyOf(this.weights[local], capacity);
+      }
+      this.neighbors[local][this.degrees[local]] = neighbor;
+      this.weights[local][this.degrees[local]] = weight;
+      this.degrees[local] += 1;
+    }
+
+    /**
+     * Removes an edge of a node, keeping the order of the others
+     *
+     * @param local The node within the block
+     * @param index The position of the edge
+     */
+    private void remove(int local, int index) {
+      int moved = this.degrees[local] - index - 1;
+      System.arraycopy(this.neighbors[local], index + 1, this.neighbors[local], index, moved);
+      System.arraycopy(this.weights[local], index + 1, this.weights[local], index, moved);
+      this.degrees[local] -= 1;
+    }
+
+    /**
+     * Lays the edges out as a new immutable block
+     *
+     * @return The block
+     */
+    private Block build() {
+      int[] offsets = new int[this.degrees.length + 1];
+      for (int local = 0; local < this.degrees.length; local++) {
+        offsets[local + 1] = offsets[local] + this.degrees[local];
+      }
+      int[] blockNeighbors = new int[offsets[this.degrees.length]];
+      int[] blockWeights = new int[offsets[this.degrees.length]];
+      for (int local = 0; local < this.degrees.length; local++) {
+        System.arraycopy(this.neighbors[local], 0, blockNeighbors, offsets[local],
+            this.degrees[local]);
+        System.arraycopy(this.weights[local], 0, blockWeights, offsets[local], this.degrees[local]);
+      }
+      return new Block(offsets, blockNeighbors, blockWeights);
+    }
+  }
+
+  /**
+   * Constructs a new VersionedGraph with _numberOfNodes_ nodes and no edges, at version 0
+   *
+   * @param numberOfNodes The number of nodes
+   * @throws IllegalArgumentException if the number of nodes is negative
+   */
+  public VersionedGraph(int numberOfNodes) throws IllegalArgumentException {
+    InputValidation.ensureGreaterThan(numberOfNodes, 0, "Number of nodes must be positive");
+    this.current = new AtomicReference<Snapshot>(firstVersion(numberOfNodes, null));
+  }
+
+  /**
+   * Constructs a new VersionedGraph holding a copy of _graph_, at version 0
+   *
+   * @param graph The graph to be copied
+   * @throws IllegalArgumentException if the graph is null
+   */
+  public VersionedGraph(Graph graph) throws IllegalArgumentException {
+    InputValidation.ensureNotNull(graph);
+    this.current = new AtomicReference<Snapshot>(firstVersion(graph.getNumberOfNodes(), graph));
+  }
+
+  /**
+   * Builds the blocks of the first version directly, rather than committing the edges as a change
+   * to an empty graph, so the copy is neither published nor counted in the publication latencies
+   *
+   * @param numberOfNodes The number of nodes
+   * @param graph         The graph whose edges are copied, null for a graph without edges
+   * @return The snapshot of version 0
+   */
+  private static Snapshot firstVersion(int numberOfNodes, Graph graph) {
+    int numberOfBlocks = (numberOfNodes + BLOCK_MASK) >>> BLOCK_BITS;
+    Block[] outgoing = new Block[numberOfBlocks];
+    Block[] incoming = new Block[numberOfBlocks];
+    int numberOfEdges = 0;
+    int maxWeight = 0;
+    for (int block = 0; block < numberOfBlocks; block++) {
+      int nodes = Math.min(BLOCK_SIZE, numberOfNodes - (block << BLOCK_BITS));
+      BlockEditor out = new BlockEditor(null, nodes);
+      BlockEditor in = new BlockEditor(null, nodes);
+      for (int local = 0; graph != null && local < nodes; local++) {
+        int node = (block << BLOCK_BITS) + local;
+        for (int index = 0; index < graph.getOutDegree(node); index++) {
+          int weight = graph.getOutWeight(node, index);
+          out.add(local, graph.getOutNeighbor(node, index), weight);
+          maxWeight = Math.max(maxWeight, weight);
+          numberOfEdges += 1;
+        }
+        for (int index = 0; index < graph.getInDegree(node); index++) {
+          in.add(local, graph.getInNeighbor(node, index), graph.getInWeight(node, index));
+        }
+      }
+      outgoing[block] = out.build();
+      incoming[block] = in.build();
+    }
+    return new Snapshot(0, numberOfNodes, numberOfEdges, maxWeight, outgoing, incoming);
+  }
+
+  /**
+   * Returns the current version of the graph. This is a single lock free read, and the snapshot
+   * stays valid and unchanged for as long as it is held, whatever writers do meanwhile
+   *
+   * @return The current snapshot
+   */
+  public Snapshot snapshot() {
+    return this.current.get();
+  }
+
+  /**
+   * Starts a new batch of changes
+   *
+   * @return An empty batch
+   */
+  public Batch newBatch() {
+    return new Batch(this);
+  }
+
+  /**
+   * Returns the number of versions published since the graph was constructed
+   *
+   * @return The number of commits
+   */
+  public long getPublications() {
+    synchronized (this.writeLock) {
+      return this.publications;
+    }
+  }
+
+  /**
+   * Returns the time the last commit took, from taking the write lock to publishing the snapshot
+   *
+   * @return The publication latency in nanoseconds
+   */
+  public long getLastPublishNanos() {
+    synchronized (this.writeLock) {
+      return this.lastPublishNanos;
+    }
+  }
+
+  /**
+   * Returns the longest time a commit took
+   *
+   * @return The largest publication latency in nanoseconds
+   */
+  public long getMaxPublishNanos() {
+    synchronized (this.writeLock) {
+      return this.maxPublishNanos;
+    }
+  }
+
+  /**
+   * Returns the mean time a commit took
+   *
+   * @return The mean publication latency in nanoseconds, 0 before the first commit
+   */
+  public double getMeanPublishNanos() {
+    synchronized (this.writeLock) {
+      return this.publications == 0 ? 0 : (double) this.totalPublishNanos / this.publications;
+    }
+  }
+
+  /**
+   * Returns the number of replaced snapshots that have not been reclaimed yet, because a query
+   * still holds them or the collector has not run since
+   *
+   * @return The number of old snapshots alive
+   */
+  public int getLiveSnapshots() {
+    synchronized (this.writeLock) {
+      this.expunge();
+      return this.liveSnapshots;
+    }
+  }
+
+  /**
+   * Returns the memory taken by replaced blocks that have not been reclaimed yet, which is what old
+   * versions cost beyond the current one
+   *
+   * @return The retained memory in bytes
+   */
+  public long getRetainedBytes() {
+    synchronized (this.writeLock) {
+      this.expunge();
+      return this.retainedBytes;
+    }
+  }
+
+  /**
+   * Applies changes to a copy of the touched blocks of the current snapshot and publishes the
+   * result
+   *
+   * @param changes The changes
+   * @return The new snapshot
+   * @throws IllegalArgumentException if a change cannot be applied
+   */
+  private Snapshot commit(List<int[]> changes) throws IllegalArgumentException {
+    synchronized (this.writeLock) {
+      long start = System.nanoTime();
+      Snapshot previous = this.current.get();
+      int numberOfNodes = previous.numberOfNodes;
+      int numberOfEdges = previous.numberOfEdges;
+      int maxWeight = previous.maxWeight;
+      Map<Integer, BlockEditor> outgoingEditors = new HashMap<Integer, BlockEditor>();
+      Map<Integer, BlockEditor> incomingEditors = new HashMap<Integer, BlockEditor>();
+
+      for (int[] change : changes) {
+        if (change[0] == Batch.ADD_NODES) {
+          // the last block and any new ones change size, so they are rebuilt below
+          numberOfNodes = Math.addExact(numberOfNodes, change[1]);
+          continue;
+        }
+        int from = InputValidation.ensureWithin(change[1], 0, numberOfNodes - 1,
+            "From node is not contained the graph");
+        int to = InputValidation.ensureWithin(change[2], 0, numberOfNodes - 1,
+            "To node is not contained the graph");
+        BlockEditor out = edit(outgoingEditors, previous.outgoing, from >>> BLOCK_BITS,
+            numberOfNodes);
+        BlockEditor in = edit(incomingEditors, previous.incoming, to >>> BLOCK_BITS,
+            numberOfNodes);
+        int outIndex = out.indexOf(from & BLOCK_MASK, to);
+        int inIndex = in.indexOf(to & BLOCK_MASK, from);
+
+        if (change[0] == Batch.ADD_EDGE) {
+          if (outIndex != -1) {
+            throw new IllegalArgumentException("Duplicate edges are not allowed");
+          }
+          out.add(from & BLOCK_MASK, to, change[3]);
+          in.add(to & BLOCK_MASK, from, change[3]);
+          numberOfEdges += 1;
+        } else if (outIndex == -1) {
+          throw new IllegalArgumentException("There is no edge from " + from + " to " + to);
+        } else if (change[0] == Batch.UPDATE_EDGE) {
+          out.weights[from & BLOCK_MASK][outIndex] = change[3];
+          in.weights[to & BLOCK_MASK][inIndex] = change[3];
+        } else {
+          out.remove(from & BLOCK_MASK, outIndex);
+          in.remove(to & BLOCK_MASK, inIndex);
+          numberOfEdges -= 1;
+        }
+        maxWeight = Math.max(maxWeight, change[3]);
+      }
+
+      Block[] outgoing = this.rebuild(previous.outgoing, outgoingEditors, numberOfNodes);
+      Block[] incoming = this.rebuild(previous.incoming, incomingEditors, numberOfNodes);
+      Snapshot next = new Snapshot(previous.version + 1, numberOfNodes, numberOfEdges, maxWeight,
+          outgoing, incoming);
+      this.current.set(next);
+
+      long elapsed = System.nanoTime() - start;
+      this.publications += 1;
+      this.lastPublishNanos = elapsed;
+      this.maxPublishNanos = Math.max(this.maxPublishNanos, elapsed);
+      this.totalPublishNanos += elapsed;
+      this.tracked.add(new Tracked(previous, this.collected, 0, true));
+      this.liveSnapshots += 1;
+      this.expunge();
+      return next;
+    }
+  }
+
+  /**
+   * Builds the blocks of a new version, sharing every block that was not changed and recording
+   * the replaced ones
+   *
+   * @param blocks        The blocks of the previous version
+   * @param editors       The edited blocks by index
+   * @param numberOfNodes The number of nodes of the new version
+   * @return The blocks of the new version
+   */
+  private Block[] rebuild(Block[] blocks, Map<Integer, BlockEditor> editors, int numberOfNodes) {
+    int numberOfBlocks = (numberOfNodes + BLOCK_MASK) >>> BLOCK_BITS;
+    Block[] rebuilt = new Block[numberOfBlocks];
+    for (int block = 0; block < numberOfBlocks; block++) {
+      int nodes = Math.min(BLOCK_SIZE, numberOfNodes - (block << BLOCK_BITS));
+      Block existing = block < blocks.length ? blocks[block] : null;
+      if (!editors.containsKey(block) && existing != null
+          && existing.offsets.length - 1 == nodes) {
+        rebuilt[block] = existing;
+        continue;
+      }
+      rebuilt[block] = edit(editors, blocks, block, numberOfNodes).build();
+      if (existing != null) {
+        this.tracked.add(new Tracked(existing, this.collected, existing.estimateBytes(), false));
+        this.retainedBytes += existing.estimateBytes();
+      }
+    }
+    return rebuilt;
+  }
+
+  /**
+   * Returns the editor of a block, making it on first use and growing it if nodes were added to
+   * the block since
+   *
+   * @param editors       The editors by block
+   * @param blocks        The blocks of the previous version
+   * @param block         The index of the block
+   * @param numberOfNodes The number of nodes after the changes seen so far
+   * @return The editor
+   */
+  private static BlockEditor edit(Map<Integer, BlockEditor> editors, Block[] blocks, int block,
+      int numberOfNodes) {
+    int nodes = Math.min(BLOCK_SIZE, numberOfNodes - (block << BLOCK_BITS));
+    BlockEditor editor = editors.get(block);
+    if (editor == null || editor.degrees.length < nodes) {
+      // a block edited before nodes were added to it keeps its edits
+      BlockEditor grown = new BlockEditor(block < blocks.length ? blocks[block] : null, nodes);
+      if (editor != null) {
+        for (int local = 0; local < editor.degrees.length; local++) {
+          grown.neighbors[local] = editor.neighbors[local];
+          grown.weights[local] = editor.weights[local];
+          grown.degrees[local] = editor.degrees[local];
+        }
+      }
+      editor = grown;
+      editors.put(block, editor);
+    }
+    return editor;
+  }
+
+  /**
+   * Drops the bookkeeping of blocks and snapshots the collector has reclaimed. The caller must
+   * hold the write lock
+   */
+  private void expunge() {
+    Reference<?> reference;
+    while ((reference = this.collected.poll()) != null) {
+      Tracked reclaimed = (Tracked) reference;
+      if (this.tracked.remove(reclaimed)) {
+        if (reclaimed.snapshot) {
+          this.liveSnapshots -= 1;
+        } else {
+          this.retainedBytes -= reclaimed.bytes;
+        }
+      }
+    }
+  }
+}